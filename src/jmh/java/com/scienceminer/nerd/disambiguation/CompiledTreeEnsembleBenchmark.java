@@ -0,0 +1,87 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.openjdk.jmh.annotations.*;
+import smile.data.Attribute;
+import smile.data.NominalAttribute;
+import smile.data.NumericAttribute;
+import smile.regression.GradientTreeBoost;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring of the candidates of a mention with the ranker model (gradient tree boost of 500
+ * trees with 6 leaves, as trained by NerdRanker): the Smile model against the compiled one,
+ * one vector at a time and as a batch.
+ *
+ * Run like this: ./gradlew jmh -Pbench=CompiledTreeEnsembleBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompiledTreeEnsembleBenchmark {
+
+	// number of candidates scored
+	@Param({"1", "10", "50"})
+	public int nbCandidates;
+
+	private GradientTreeBoost smileModel;
+	private CompiledTreeEnsemble compiledModel;
+	private double[][] candidates;
+	private double[] scores;
+
+	@Setup
+	public void setup() {
+		Attribute[] attributes = {
+			new NumericAttribute("prob_c"),
+			new NumericAttribute("relatedness"),
+			new NumericAttribute("context_quality"),
+			new NominalAttribute("bestCaseContext", new String[]{"false", "true"}),
+			new NumericAttribute("embeddings_centroid_similarity")
+		};
+		Random random = new Random(34);
+		double[][] x = new double[5000][];
+		double[] y = new double[x.length];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = randomVector(random);
+			y[i] = (0.5 * x[i][0] + 0.3 * x[i][1] + 0.2 * x[i][4] + 0.1 * random.nextGaussian() > 0.5) ? 1.0 : 0.0;
+		}
+		smile.math.Math.setSeed(7);
+		smileModel = new GradientTreeBoost(attributes, x, y,
+			GradientTreeBoost.Loss.LeastAbsoluteDeviation, 500, 6, 0.05, 0.5);
+		compiledModel = CompiledTreeEnsemble.compile(smileModel);
+
+		candidates = new double[nbCandidates][];
+		for (int i = 0; i < nbCandidates; i++)
+			candidates[i] = randomVector(random);
+		scores = new double[nbCandidates];
+	}
+
+	private static double[] randomVector(Random random) {
+		return new double[] { random.nextDouble(), random.nextDouble(), random.nextDouble() * 10,
+			random.nextInt(2), random.nextDouble() };
+	}
+
+	@Benchmark
+	public double[] smile() {
+		for (int i = 0; i < nbCandidates; i++)
+			scores[i] = smileModel.predict(candidates[i]);
+		return scores;
+	}
+
+	@Benchmark
+	public double[] compiled() {
+		for (int i = 0; i < nbCandidates; i++)
+			scores[i] = compiledModel.predict(candidates[i]);
+		return scores;
+	}
+
+	@Benchmark
+	public double[] compiledBatch() {
+		compiledModel.predict(candidates, nbCandidates, scores);
+		return scores;
+	}
+}
@@ -0,0 +1,124 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.kb.db.PostingList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared link counting of the Milne and Witten measure: the former merge over boxed link lists,
+ * the merge over the compressed posting lists, and the int[] kernels of {@link LinkOverlap}
+ * (including the decoding of the posting lists into reused buffers).
+ *
+ * Run like this: ./gradlew jmh -Pbench=LinkOverlapBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkOverlapBenchmark {
+
+	// sizes of the two link lists, e.g. a niche article against a very popular one
+	@Param({"200:200", "5000:5000", "50:100000", "500:300000"})
+	public String sizes;
+
+	private static final int ID_A = 1;
+	private static final int ID_B = 2;
+
+	private List<Integer> listA;
+	private List<Integer> listB;
+	private PostingList postingsA;
+	private PostingList postingsB;
+	private int[] bufferA;
+	private int[] bufferB;
+
+	@Setup
+	public void setup() {
+		String[] pieces = sizes.split(":");
+		Random random = new Random(29);
+		// ids spread over a range similar to the English Wikipedia page ids
+		postingsA = randomList(random, Integer.parseInt(pieces[0]), 60000000);
+		postingsB = randomList(random, Integer.parseInt(pieces[1]), 60000000);
+		listA = postingsA.toList();
+		listB = postingsB.toList();
+		bufferA = new int[postingsA.size()];
+		bufferB = new int[postingsB.size()];
+		postingsA.decodeInto(bufferA);
+		postingsB.decodeInto(bufferB);
+	}
+
+	private static PostingList randomList(Random random, int size, int range) {
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++)
+			values[i] = random.nextInt(range);
+		return PostingList.of(values, size);
+	}
+
+	@Benchmark
+	public int boxedMerge() {
+		int intersection = 0;
+		int indexA = 0;
+		int indexB = 0;
+		while (indexA < listA.size() || indexB < listB.size()) {
+			boolean useA = false;
+			boolean useB = false;
+			Integer linkA = null;
+			Integer linkB = null;
+			if (indexA < listA.size())
+				linkA = listA.get(indexA);
+			if (indexB < listB.size())
+				linkB = listB.get(indexB);
+
+			if ((linkA != null) && (linkB != null) && (linkA.equals(linkB))) {
+				useA = true;
+				useB = true;
+				intersection++;
+			} else if (linkA != null && (linkB == null || linkA < linkB)) {
+				useA = true;
+				if (linkA.equals(ID_B))
+					intersection++;
+			} else {
+				useB = true;
+				if (linkB.equals(ID_A))
+					intersection++;
+			}
+			if (useA)
+				indexA++;
+			if (useB)
+				indexB++;
+		}
+		return intersection;
+	}
+
+	@Benchmark
+	public int postingListMerge() {
+		int intersection = PostingList.intersectionSize(postingsA, postingsB);
+		if (postingsA.contains(ID_B) && !postingsB.contains(ID_B))
+			intersection++;
+		if (postingsB.contains(ID_A) && !postingsA.contains(ID_A))
+			intersection++;
+		return intersection;
+	}
+
+	@Benchmark
+	public int decodeAndIntersect() {
+		int lengthA = postingsA.decodeInto(bufferA);
+		int lengthB = postingsB.decodeInto(bufferB);
+		return LinkOverlap.intersectionSize(bufferA, lengthA, bufferB, lengthB)
+			+ LinkOverlap.mutualLinks(bufferA, lengthA, ID_A, bufferB, lengthB, ID_B);
+	}
+
+	@Benchmark
+	public int linearIntersect() {
+		return LinkOverlap.linearIntersectionSize(bufferA, postingsA.size(), bufferB, postingsB.size());
+	}
+
+	@Benchmark
+	public int adaptiveIntersect() {
+		return LinkOverlap.intersectionSize(bufferA, postingsA.size(), bufferB, postingsB.size());
+	}
+}
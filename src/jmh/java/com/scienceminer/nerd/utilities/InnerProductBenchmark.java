@@ -0,0 +1,101 @@
+package com.scienceminer.nerd.utilities;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dot products of quantized embeddings (300 dimensions, as the fastText word and entity
+ * embeddings): the former float kernel on vectors widened to float, the integer kernel on
+ * the short vectors, and the multi-row integer kernels scoring one vector against the rows 
+ * of several entities or words.
+ *
+ * Run like this: ./gradlew jmh -Pbench=InnerProductBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InnerProductBenchmark {
+
+    private static final int SIZE = 300;
+
+    // number of rows scored against the vector, e.g. the candidates of a mention
+    @Param({"1", "10", "50"})
+    public int nbRows;
+
+    private short[] vector;
+    private int[] centroid;
+    private short[] rows;
+    private float[] floatVector;
+    private float[] floatRows;
+    private float[] floatResults;
+    private long[] results;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(11);
+        vector = new short[SIZE];
+        centroid = new int[SIZE];
+        floatVector = new float[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            vector[i] = quantized(random);
+            centroid[i] = vector[i] * 25;
+            floatVector[i] = vector[i];
+        }
+        rows = new short[nbRows * SIZE];
+        floatRows = new float[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = quantized(random);
+            floatRows[i] = rows[i];
+        }
+        floatResults = new float[nbRows];
+        results = new long[nbRows];
+    }
+
+    // quantized values with the usual factor of 5
+    private static short quantized(Random random) {
+        return (short) Math.round(random.nextGaussian() * 5);
+    }
+
+    @Benchmark
+    public float[] floatKernel() {
+        for (int r = 0; r < nbRows; r++)
+            floatResults[r] = Utilities.inner(SIZE, floatVector, 0, floatRows, r * SIZE);
+        return floatResults;
+    }
+
+    @Benchmark
+    public float[] floatKernelWithConversion() {
+        // the entity vectors widened to float before each dot product, as done by the scorers
+        float[] entity = new float[SIZE];
+        for (int r = 0; r < nbRows; r++) {
+            for (int i = 0; i < SIZE; i++)
+                entity[i] = rows[r * SIZE + i];
+            floatResults[r] = Utilities.inner(SIZE, floatVector, 0, entity, 0);
+        }
+        return floatResults;
+    }
+
+    @Benchmark
+    public long[] shortKernel() {
+        for (int r = 0; r < nbRows; r++)
+            results[r] = Utilities.inner(SIZE, vector, 0, rows, r * SIZE);
+        return results;
+    }
+
+    @Benchmark
+    public long[] shortMultiRowKernel() {
+        Utilities.inner(SIZE, vector, 0, rows, 0, nbRows, results);
+        return results;
+    }
+
+    @Benchmark
+    public long[] centroidMultiRowKernel() {
+        Utilities.inner(SIZE, centroid, 0, rows, 0, nbRows, results);
+        return results;
+    }
+}
@@ -20,9 +20,13 @@ public class ArticlePair {
     }
 
     public static long computeKey(Article art1, Article art2) {
+        return computeKey(art1.getId(), art2.getId());
+    }
+
+    public static long computeKey(int id1, int id2) {
         //generate unique key for the pair of articles
-        int min = Math.min(art1.getId(), art2.getId());
-        int max = Math.max(art1.getId(), art2.getId());
+        int min = Math.min(id1, id2);
+        int max = Math.max(id1, id2);
         //long key = min + (max << 30);
 //System.out.println(min + " / " + max);
         return (((long) min) << 32) | (max & 0xffffffffL);
@@ -0,0 +1,106 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.utilities.NerdConfig;
+
+import java.util.List;
+
+/**
+ * First stage of the ranking, deciding the mentions which are not ambiguous enough to need
+ * the ranker: a mention with a single candidate, or whose best candidate has a prior
+ * probability (prob_c) of at least minPriorProbability and ahead of the second best by at
+ * least minPriorMargin. The best candidate of these mentions gets its prior probability as 
+ * ranking score, without relatedness, embeddings similarity and ranker model, the other 
+ * candidates being left unscored (0.0) for the selector.
+ */
+public class CascadeRanking {
+
+	public static final CascadeRanking DISABLED = new CascadeRanking(false, 1.0, 1.0);
+
+	private final boolean enabled;
+	private final double minPriorProbability;
+	private final double minPriorMargin;
+
+	public CascadeRanking(boolean enabled, double minPriorProbability, double minPriorMargin) {
+		this.enabled = enabled;
+		this.minPriorProbability = minPriorProbability;
+		this.minPriorMargin = minPriorMargin;
+	}
+
+	public static CascadeRanking fromConfig(NerdConfig conf) {
+		return new CascadeRanking(conf.getCascadeRanking(),
+			conf.getCascadeMinPriorProbability(), conf.getCascadeMinPriorMargin());
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public double getMinPriorProbability() {
+		return minPriorProbability;
+	}
+
+	public double getMinPriorMargin() {
+		return minPriorMargin;
+	}
+
+	/**
+	 * @return the index of the best candidate of the mention if the mention does not need the
+	 * ranker, -1 otherwise
+	 */
+	public int getDecidedCandidate(List<NerdCandidate> candidates) {
+		if (!enabled || candidates == null || candidates.isEmpty())
+			return -1;
+		double[] priors = new double[candidates.size()];
+		for (int i = 0; i < priors.length; i++)
+			priors[i] = candidates.get(i).getProb_c();
+		return getDecidedCandidate(priors);
+	}
+
+	/**
+	 * @return the index of the highest prior probability if it decides the mention, -1
+	 * otherwise
+	 */
+	public int getDecidedCandidate(double[] priors) {
+		if (!enabled || priors.length == 0)
+			return -1;
+		if (priors.length == 1)
+			return 0;
+		int best = 0;
+		double second = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i < priors.length; i++) {
+			if (priors[i] > priors[best]) {
+				second = priors[best];
+				best = i;
+			} else if (priors[i] > second) {
+				second = priors[i];
+			}
+		}
+		if (priors[best] >= minPriorProbability && priors[best] - second >= minPriorMargin)
+			return best;
+		return -1;
+	}
+
+	/**
+	 * Decides the mention of the given candidates if possible: the decided candidate gets its
+	 * prior probability as ranking score, the scores of the other candidates are reset, so 
+	 * that the selector does not take their prior probability for a ranker score.
+	 *
+	 * @return the index of the decided candidate, -1 if the mention needs the ranker, its 
+	 * candidates being then unchanged
+	 */
+	public int decide(List<NerdCandidate> candidates) {
+		int decided = getDecidedCandidate(candidates);
+		if (decided == -1)
+			return -1;
+		for (int i = 0; i < candidates.size(); i++) {
+			NerdCandidate candidate = candidates.get(i);
+			candidate.setNerdScore(i == decided ? candidate.getProb_c() : 0.0);
+		}
+		return decided;
+	}
+
+	@Override
+	public String toString() {
+		return enabled ? "prior >= " + minPriorProbability + ", margin >= " + minPriorMargin : "disabled";
+	}
+}
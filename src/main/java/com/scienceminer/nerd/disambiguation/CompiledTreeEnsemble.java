@@ -0,0 +1,344 @@
+package com.scienceminer.nerd.disambiguation;
+
+import smile.data.Attribute;
+import smile.regression.GradientTreeBoost;
+import smile.regression.RandomForest;
+import smile.regression.Regression;
+import smile.regression.RegressionTree;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A Smile tree ensemble regression model (GradientTreeBoost or RandomForest) compiled into
+ * contiguous primitive arrays, for scoring feature vectors without walking the object graph
+ * of the Smile regression trees.
+ *
+ * The nodes of all the trees are stored in depth-first order, the true child of an internal
+ * node directly following it, so only the offset of the false child is stored. A leaf has the
+ * feature -1 and its output as value. The tree outputs are summed in the same order and with
+ * the same operations as Smile, so the scores are the ones of the Smile model.
+ *
+ * Smile 1.3 does not expose the tree nodes, they are read by reflection when compiling.
+ *
+ * A compiled model is also the binary model format of the ranker and the selector, see 
+ * {@link #write(File)} and {@link #read(File)}.
+ */
+public class CompiledTreeEnsemble {
+
+	// header of the binary model files
+	private static final int MAGIC = 0x4E455244; // "NERD"
+	private static final int FORMAT_VERSION = 1;
+
+	// first node of each tree
+	private final int[] roots;
+
+	// per node: split feature (-1 for a leaf), equality test for nominal features, split value
+	// (or output for a leaf) and offset of the false child
+	private final int[] features;
+	private final boolean[] nominal;
+	private final double[] values;
+	private final int[] falseChildren;
+
+	// gradient tree boost: intercept + shrinkage * sum of the tree outputs
+	// random forest: average of the tree outputs
+	private final double intercept;
+	private final double shrinkage;
+	private final boolean average;
+
+	private final int numFeatures;
+
+	private CompiledTreeEnsemble(int[] roots, int[] features, boolean[] nominal, double[] values,
+			int[] falseChildren, double intercept, double shrinkage, boolean average, int numFeatures) {
+		this.roots = roots;
+		this.features = features;
+		this.nominal = nominal;
+		this.values = values;
+		this.falseChildren = falseChildren;
+		this.intercept = intercept;
+		this.shrinkage = shrinkage;
+		this.average = average;
+		this.numFeatures = numFeatures;
+	}
+
+	/**
+	 * Compiles a trained Smile GradientTreeBoost or RandomForest regression model
+	 *
+	 * @throws IllegalArgumentException if the model is not supported
+	 */
+	public static CompiledTreeEnsemble compile(Regression<double[]> model) {
+		RegressionTree[] trees;
+		double intercept = 0.0;
+		double shrinkage = 1.0;
+		boolean average = false;
+		if (model instanceof GradientTreeBoost) {
+			trees = getTrees(model);
+			int ntrees = ((Number) getField(model, "ntrees")).intValue();
+			if (ntrees < trees.length)
+				trees = Arrays.copyOf(trees, ntrees);
+			intercept = ((Number) getField(model, "b")).doubleValue();
+			shrinkage = ((Number) getField(model, "shrinkage")).doubleValue();
+		} else if (model instanceof RandomForest) {
+			trees = getTrees(model);
+			average = true;
+		} else {
+			throw new IllegalArgumentException("Unsupported regression model: " +
+				(model == null ? null : model.getClass().getName()));
+		}
+		if (trees.length == 0)
+			throw new IllegalArgumentException("The model has no tree");
+
+		Flattener flattener = new Flattener();
+		int[] roots = new int[trees.length];
+		int numFeatures = 0;
+		for (int i = 0; i < trees.length; i++) {
+			Attribute[] attributes = (Attribute[]) getField(trees[i], "attributes");
+			numFeatures = Math.max(numFeatures, attributes.length);
+			roots[i] = flattener.size;
+			flattener.add(getField(trees[i], "root"), attributes);
+		}
+		return new CompiledTreeEnsemble(roots,
+			Arrays.copyOf(flattener.features, flattener.size),
+			Arrays.copyOf(flattener.nominal, flattener.size),
+			Arrays.copyOf(flattener.values, flattener.size),
+			Arrays.copyOf(flattener.falseChildren, flattener.size),
+			intercept, shrinkage, average, numFeatures);
+	}
+
+	/**
+	 * @return the score of a feature vector
+	 */
+	public double predict(double[] x) {
+		double y = intercept;
+		for (int root : roots)
+			y += shrinkage * evaluate(root, x);
+		return average ? y / roots.length : y;
+	}
+
+	/**
+	 * Scores the first n feature vectors, tree by tree so that the nodes of a tree stay in
+	 * cache while scoring all the vectors.
+	 *
+	 * @param scores receives the n scores
+	 */
+	public void predict(double[][] x, int n, double[] scores) {
+		Arrays.fill(scores, 0, n, intercept);
+		for (int root : roots) {
+			for (int i = 0; i < n; i++)
+				scores[i] += shrinkage * evaluate(root, x[i]);
+		}
+		if (average) {
+			for (int i = 0; i < n; i++)
+				scores[i] /= roots.length;
+		}
+	}
+
+	private double evaluate(int node, double[] x) {
+		int feature;
+		while ((feature = features[node]) >= 0) {
+			double value = x[feature];
+			boolean goTrue = nominal[node] ? value == values[node] : value <= values[node];
+			node = goTrue ? node + 1 : falseChildren[node];
+		}
+		return values[node];
+	}
+
+	/**
+	 * Writes the model in the binary model format: a header (magic number and format 
+	 * version), the combination parameters, then the node arrays.
+	 */
+	public void write(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeDouble(intercept);
+			out.writeDouble(shrinkage);
+			out.writeBoolean(average);
+			out.writeInt(numFeatures);
+			out.writeInt(roots.length);
+			for (int root : roots)
+				out.writeInt(root);
+			out.writeInt(features.length);
+			for (int node = 0; node < features.length; node++) {
+				out.writeInt(features[node]);
+				out.writeBoolean(nominal[node]);
+				out.writeDouble(values[node]);
+				out.writeInt(falseChildren[node]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a model written with {@link #write(File)}
+	 *
+	 * @throws IOException if the file is not a binary model of a supported format version
+	 */
+	public static CompiledTreeEnsemble read(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a binary model file: " + file.getPath());
+			int version = in.readInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException("Unsupported binary model format version " + version + ": " + file.getPath());
+			double intercept = in.readDouble();
+			double shrinkage = in.readDouble();
+			boolean average = in.readBoolean();
+			int numFeatures = in.readInt();
+			int[] roots = new int[in.readInt()];
+			for (int i = 0; i < roots.length; i++)
+				roots[i] = in.readInt();
+			int size = in.readInt();
+			int[] features = new int[size];
+			boolean[] nominal = new boolean[size];
+			double[] values = new double[size];
+			int[] falseChildren = new int[size];
+			for (int node = 0; node < size; node++) {
+				features[node] = in.readInt();
+				nominal[node] = in.readBoolean();
+				values[node] = in.readDouble();
+				falseChildren[node] = in.readInt();
+			}
+			if (roots.length == 0)
+				throw new IOException("The model has no tree: " + file.getPath());
+			return new CompiledTreeEnsemble(roots, features, nominal, values, falseChildren, 
+				intercept, shrinkage, average, numFeatures);
+		}
+	}
+
+	public int getNumTrees() {
+		return roots.length;
+	}
+
+	public int getNumNodes() {
+		return features.length;
+	}
+
+	/**
+	 * Draws feature vectors whose values are split values of the trees or just above them, so
+	 * that both branches of the splits are exercised, for checking the compiled model against
+	 * the original one.
+	 */
+	public double[][] sampleFeatureVectors(int n, Random random) {
+		double[][] splits = new double[numFeatures][];
+		int[] nbSplits = new int[numFeatures];
+		boolean[] nominalFeatures = new boolean[numFeatures];
+		for (int f = 0; f < numFeatures; f++)
+			splits[f] = new double[8];
+		for (int node = 0; node < features.length; node++) {
+			int f = features[node];
+			if (f < 0)
+				continue;
+			if (nbSplits[f] == splits[f].length)
+				splits[f] = Arrays.copyOf(splits[f], nbSplits[f] * 2);
+			splits[f][nbSplits[f]++] = values[node];
+			nominalFeatures[f] = nominal[node];
+		}
+
+		double[][] vectors = new double[n][numFeatures];
+		for (int i = 0; i < n; i++) {
+			for (int f = 0; f < numFeatures; f++) {
+				if (nbSplits[f] == 0)
+					continue;
+				double split = splits[f][random.nextInt(nbSplits[f])];
+				vectors[i][f] = (random.nextBoolean() || nominalFeatures[f]) ? split : Math.nextUp(split);
+			}
+		}
+		return vectors;
+	}
+
+	/**
+	 * Appends the nodes of a tree in depth-first order
+	 */
+	private static class Flattener {
+		int[] features = new int[1024];
+		boolean[] nominal = new boolean[1024];
+		double[] values = new double[1024];
+		int[] falseChildren = new int[1024];
+		int size = 0;
+
+		// fields of the Smile tree nodes
+		private Field output;
+		private Field splitFeature;
+		private Field splitValue;
+		private Field trueChild;
+		private Field falseChild;
+
+		void add(Object node, Attribute[] attributes) {
+			if (output == null)
+				initFields(node.getClass());
+			try {
+				int index = size++;
+				if (index == features.length) {
+					int capacity = features.length * 2;
+					features = Arrays.copyOf(features, capacity);
+					nominal = Arrays.copyOf(nominal, capacity);
+					values = Arrays.copyOf(values, capacity);
+					falseChildren = Arrays.copyOf(falseChildren, capacity);
+				}
+				Object trueNode = trueChild.get(node);
+				Object falseNode = falseChild.get(node);
+				if (trueNode == null && falseNode == null) {
+					features[index] = -1;
+					values[index] = output.getDouble(node);
+					return;
+				}
+
+				int feature = splitFeature.getInt(node);
+				Attribute.Type type = attributes[feature].getType();
+				if (type != Attribute.Type.NUMERIC && type != Attribute.Type.NOMINAL)
+					throw new IllegalArgumentException("Unsupported attribute type: " + type);
+				features[index] = feature;
+				nominal[index] = (type == Attribute.Type.NOMINAL);
+				values[index] = splitValue.getDouble(node);
+				add(trueNode, attributes);
+				falseChildren[index] = size;
+				add(falseNode, attributes);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("Cannot read the regression tree nodes", e);
+			}
+		}
+
+		private void initFields(Class<?> nodeClass) {
+			output = getDeclaredField(nodeClass, "output");
+			splitFeature = getDeclaredField(nodeClass, "splitFeature");
+			splitValue = getDeclaredField(nodeClass, "splitValue");
+			trueChild = getDeclaredField(nodeClass, "trueChild");
+			falseChild = getDeclaredField(nodeClass, "falseChild");
+		}
+	}
+
+	private static RegressionTree[] getTrees(Object model) {
+		Object trees = getField(model, "trees");
+		if (trees instanceof RegressionTree[])
+			return (RegressionTree[]) trees;
+		if (trees instanceof List) {
+			List<?> list = (List<?>) trees;
+			return list.toArray(new RegressionTree[list.size()]);
+		}
+		throw new IllegalArgumentException("Cannot read the trees of " + model.getClass().getName());
+	}
+
+	private static Object getField(Object object, String name) {
+		try {
+			return getDeclaredField(object.getClass(), name).get(object);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot read " + name + " of " + object.getClass().getName(), e);
+		}
+	}
+
+	private static Field getDeclaredField(Class<?> type, String name) {
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			try {
+				Field field = current.getDeclaredField(name);
+				field.setAccessible(true);
+				return field;
+			} catch (NoSuchFieldException e) {
+				// look in the super class
+			}
+		}
+		throw new IllegalArgumentException("No field " + name + " in " + type.getName());
+	}
+}
@@ -0,0 +1,91 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.kb.model.Article;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental computation of the quality of a disambiguation context, i.e. the sum of the
+ * weights of the context articles, each weight being adjusted with the average relatedness of
+ * the article with the other articles of the context:
+ *   weight = (prior weight + 4 * average relatedness) / 5
+ *
+ * The sum of the relatedness of each article with the others is kept, so that only the pairs
+ * involving the articles added since the last update are computed. The sums are accumulated
+ * in the order of the context articles, so the result is exactly the one of the full pairwise
+ * computation.
+ */
+class ContextQuality {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ContextQuality.class);
+
+	/**
+	 * Relatedness between two context articles
+	 */
+	interface PairRelatedness {
+		double get(Article article1, Article article2) throws Exception;
+	}
+
+	// for each of the first nbScored context articles: its weight before adjustment,
+	// and the sum of its relatedness with the other scored articles
+	private double[] priorWeights = new double[16];
+	private double[] relatednessSums = new double[16];
+	private int nbScored = 0;
+
+	private double quality = 0.0;
+
+	/**
+	 * Updates the quality with the articles appended to the context since the last update,
+	 * and sets the adjusted weights of the context articles. Without new article, this only
+	 * returns the last computed quality.
+	 *
+	 * @param articles the context articles, new articles being appended at the end
+	 * @return the quality of the context
+	 */
+	double update(List<Article> articles, PairRelatedness relatedness) {
+		int size = articles.size();
+		if (size == nbScored)
+			return quality;
+		if (size < nbScored) {
+			// articles have been removed, everything is computed again
+			nbScored = 0;
+		}
+
+		if (priorWeights.length < size) {
+			int capacity = Math.max(size, priorWeights.length * 2);
+			priorWeights = Arrays.copyOf(priorWeights, capacity);
+			relatednessSums = Arrays.copyOf(relatednessSums, capacity);
+		}
+
+		for (int k = nbScored; k < size; k++) {
+			Article article = articles.get(k);
+			priorWeights[k] = (article.getWeight() == null) ? 0.0 : article.getWeight().doubleValue();
+			relatednessSums[k] = 0.0;
+			for (int j = 0; j < k; j++) {
+				Article other = articles.get(j);
+				if (article.getId() == other.getId())
+					continue;
+				double related = 0.0;
+				try {
+					related = relatedness.get(other, article);
+				} catch(Exception e) {
+					LOGGER.warn("Error computing semantic relatedness for " + other + " and " + article, e);
+				}
+				relatednessSums[j] += related;
+				relatednessSums[k] += related;
+			}
+		}
+		nbScored = size;
+
+		quality = 0.0;
+		for (int i = 0; i < size; i++) {
+			double avgRelatedness = relatednessSums[i] / (size - 1);
+			double weight = (priorWeights[i] + (4*avgRelatedness)) / 5;
+			articles.get(i).setWeight(weight);
+			quality += weight;
+		}
+		return quality;
+	}
+}
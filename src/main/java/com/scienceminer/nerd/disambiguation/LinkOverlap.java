@@ -0,0 +1,125 @@
+package com.scienceminer.nerd.disambiguation;
+
+/**
+ * Allocation-free kernels for counting the overlap of two link lists, given as sorted arrays of
+ * distinct page ids, as needed by the Milne and Witten relatedness measure.
+ *
+ * When the two lists have comparable sizes, a linear merge is used. When one list is much
+ * larger than the other (e.g. a niche article against "United States"), each element of the
+ * small list is searched in the large one by galloping (exponential then binary search), which
+ * costs O(m log(n/m)) instead of O(m + n).
+ */
+public class LinkOverlap {
+
+	// size ratio above which galloping is used instead of a linear merge
+	public static final int GALLOP_RATIO = 16;
+
+	/**
+	 * @return the number of values present in both arrays, considering the first lengthA and
+	 * lengthB values only
+	 */
+	public static int intersectionSize(int[] linksA, int lengthA, int[] linksB, int lengthB) {
+		if (lengthA == 0 || lengthB == 0)
+			return 0;
+		if (lengthA > lengthB)
+			return intersectionSize(linksB, lengthB, linksA, lengthA);
+		if (lengthB / lengthA >= GALLOP_RATIO)
+			return gallopingIntersectionSize(linksA, lengthA, linksB, lengthB);
+		return linearIntersectionSize(linksA, lengthA, linksB, lengthB);
+	}
+
+	/**
+	 * Intersection by merging the two arrays
+	 */
+	public static int linearIntersectionSize(int[] linksA, int lengthA, int[] linksB, int lengthB) {
+		int intersection = 0;
+		int indexA = 0;
+		int indexB = 0;
+		while (indexA < lengthA && indexB < lengthB) {
+			int linkA = linksA[indexA];
+			int linkB = linksB[indexB];
+			if (linkA == linkB) {
+				intersection++;
+				indexA++;
+				indexB++;
+			} else if (linkA < linkB) {
+				indexA++;
+			} else {
+				indexB++;
+			}
+		}
+		return intersection;
+	}
+
+	/**
+	 * Intersection by searching each value of the small array in the large one, the search
+	 * starting from the position of the previous match.
+	 */
+	public static int gallopingIntersectionSize(int[] small, int lengthSmall, int[] large, int lengthLarge) {
+		int intersection = 0;
+		int low = 0;
+		for (int i = 0; i < lengthSmall && low < lengthLarge; i++) {
+			int target = small[i];
+			// exponential search for a range containing the target
+			int step = 1;
+			int high = low;
+			while (high < lengthLarge && large[high] < target) {
+				low = high + 1;
+				high += step;
+				step <<= 1;
+			}
+			if (high >= lengthLarge)
+				high = lengthLarge - 1;
+			// binary search in [low, high]
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int value = large[middle];
+				if (value < target) {
+					low = middle + 1;
+				} else if (value > target) {
+					high = middle - 1;
+				} else {
+					intersection++;
+					low = middle + 1;
+					break;
+				}
+			}
+		}
+		return intersection;
+	}
+
+	/**
+	 * @return true if the value is present in the first length values of the sorted array
+	 */
+	public static boolean contains(int[] links, int length, int value) {
+		int low = 0;
+		int high = length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = links[middle];
+			if (current < value)
+				low = middle + 1;
+			else if (current > value)
+				high = middle - 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Following WikipediaMiner, a direct link between the two articles counts as a shared link,
+	 * when it is not already shared by the two lists: article B in the links of A, or article A
+	 * in the links of B.
+	 *
+	 * @return the number of such mutual links, between 0 and 2
+	 */
+	public static int mutualLinks(int[] linksA, int lengthA, int idA, int[] linksB, int lengthB, int idB) {
+		int mutual = 0;
+		if (contains(linksA, lengthA, idB) && !contains(linksB, lengthB, idB))
+			mutual++;
+		if (contains(linksB, lengthB, idA) && !contains(linksA, lengthA, idA))
+			mutual++;
+		return mutual;
+	}
+}
@@ -0,0 +1,62 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts the XStream XML ranker and selector models into the binary model format, which is
+ * loaded in place of the XML model when present.
+ *
+ * Run like this: ./gradlew convert_models
+ * or for given models: ./gradlew convert_models -Pmodels=data/models/ranker-long-en.model
+ */
+public class ModelConverter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ModelConverter.class);
+
+	public static final String MODEL_DIRECTORY = "data/models";
+
+	public static void main(String[] args) throws Exception {
+		List<File> xmlFiles = new ArrayList<>();
+		if (args.length == 0) {
+			File[] files = new File(MODEL_DIRECTORY).listFiles((dir, name) -> name.endsWith(NerdModel.XML_MODEL_EXTENSION));
+			if (files != null) {
+				for (File file : files)
+					xmlFiles.add(file);
+			}
+		} else {
+			for (String arg : args)
+				xmlFiles.add(new File(arg));
+		}
+		if (xmlFiles.isEmpty()) {
+			System.out.println("No XML model to convert");
+			return;
+		}
+
+		int failures = 0;
+		for (File xmlFile : xmlFiles) {
+			String path = xmlFile.getPath();
+			if (!path.endsWith(NerdModel.XML_MODEL_EXTENSION) || !xmlFile.exists()) {
+				LOGGER.error("Not an XML model file: " + path);
+				failures++;
+				continue;
+			}
+			File binaryFile = new File(path.substring(0, path.length() - NerdModel.XML_MODEL_EXTENSION.length()) +
+				NerdModel.BINARY_MODEL_EXTENSION);
+			try {
+				long start = System.currentTimeMillis();
+				NerdModel.convertModel(xmlFile, binaryFile);
+				System.out.println(path + " -> " + binaryFile.getPath() + " in " +
+					(System.currentTimeMillis() - start) + " ms");
+			} catch(Exception e) {
+				LOGGER.error("Cannot convert the model " + path, e);
+				failures++;
+			}
+		}
+		if (failures > 0)
+			System.exit(1);
+	}
+}
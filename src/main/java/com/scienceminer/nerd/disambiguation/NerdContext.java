@@ -34,6 +34,7 @@ public class NerdContext {
 	protected List<Mention> entityRepository = null;
 
 	protected double totalWeight = 0.0;
+	private final ContextQuality contextQuality = new ContextQuality();
 	protected Relatedness relatedness = Relatedness.getInstance();
 	protected String lang = null;
 	private Map<String, LowerKnowledgeBase> wikipediaConfs;
@@ -152,34 +153,19 @@ public class NerdContext {
 			contextArticles.size();
 	}
 
+	/**
+	 * The quality of the context is the sum of the weights of the context articles, adjusted
+	 * with their average relatedness with the other context articles. It is updated 
+	 * incrementally: only the pairs involving the articles added since the last call are 
+	 * computed.
+	 */
 	public double getQuality() {
 		if ((contextArticles == null) || (contextArticles.size() == 0)) 
 			return 0.0;
 
-		if (totalWeight != 0.0)
-			return totalWeight;
-//System.out.println("size of context: " + contextArticles.size());
-		for (Article art : contextArticles) {
-			double avgRelatedness = 0.0;
-			for (Article art2 : contextArticles) {
-				if (art.getId() != art2.getId()) {
-					try {
-						avgRelatedness += relatedness.getRelatedness(art, art2, lang);
-					} catch(Exception e) {
-						e.printStackTrace();
-					}
-				}
-			}
-			
-			avgRelatedness = avgRelatedness / (contextArticles.size() - 1);
-			if (art.getWeight() != null)
-				art.setWeight((art.getWeight().doubleValue() + (4*avgRelatedness)) / 5);
-			else
-				art.setWeight(((4*avgRelatedness)) / 5);
-			totalWeight += art.getWeight();
-		}
-
-		return totalWeight;		
+		totalWeight = contextQuality.update(contextArticles, 
+			(art1, art2) -> relatedness.getRelatedness(art1, art2, lang));
+		return totalWeight;
 	}	
 
 	public double getRelatednessTo(Article art) throws Exception {
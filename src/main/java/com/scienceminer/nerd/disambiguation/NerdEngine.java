@@ -1,9 +1,11 @@
 package com.scienceminer.nerd.disambiguation;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import com.scienceminer.nerd.utilities.NerdConfig;
 import com.scienceminer.nerd.utilities.StringProcessor;
+import com.scienceminer.nerd.utilities.TokenNormaliser;
 import org.apache.commons.collections4.CollectionUtils;
 import org.grobid.core.lang.Language;
 import org.grobid.core.utilities.LanguageUtilities;
@@ -16,11 +18,14 @@ import org.grobid.core.lexicon.NERLexicon;
 import org.grobid.core.lexicon.NERLexicon.NER_Type;
 
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.kb.db.SimilarEntities;
 import com.scienceminer.nerd.kb.db.WikipediaDomainMap;
 import com.scienceminer.nerd.exceptions.*;
 import com.scienceminer.nerd.mention.*;
 import com.scienceminer.nerd.service.NerdQuery;
 import com.scienceminer.nerd.embeddings.SimilarityScorer;
+import com.scienceminer.nerd.embeddings.WordVectorCache;
+import com.scienceminer.nerd.embeddings.EntityScorer;
 import com.scienceminer.nerd.features.GenericRankerFeatureVector;
 import com.scienceminer.nerd.utilities.Utilities;
 
@@ -51,6 +56,7 @@ public class NerdEngine {
 	private EngineParsers parsers = null;
 
 	private Map<String, LowerKnowledgeBase> wikipedias = null;
+	// models per language, swapped atomically when a model is reloaded
 	private Map<String, NerdRanker> rankers = null;
 	private Map<String, NerdSelector> selectors = null;
 	private Relatedness relatedness = null;
@@ -91,8 +97,8 @@ public class NerdEngine {
 		this.wikipedias = UpperKnowledgeBase.getInstance().getWikipediaConfs();
 		try {
 			this.relatedness = Relatedness.getInstance();
-			this.rankers = new HashMap<>();
-			this.selectors = new HashMap<>();
+			this.rankers = new ConcurrentHashMap<>();
+			this.selectors = new ConcurrentHashMap<>();
 			this.wikipediaDomainMaps = UpperKnowledgeBase.getInstance().getWikipediaDomainMaps();
 		} catch(Exception e) {
 			throw new NerdResourceException("Error when opening the relatedness model", e);
@@ -110,6 +116,14 @@ public class NerdEngine {
 	 *         the enriched and disambiguated query
 	 */
 	public List<NerdEntity> disambiguate(NerdQuery nerdQuery) {
+		return disambiguate(nerdQuery, null);
+	}
+
+	/**
+	 * Disambiguate a structured query with the candidates already generated for its entities,
+	 * see {@link #generateCandidates(NerdQuery)}, or generated here if null.
+	 */
+	public List<NerdEntity> disambiguate(NerdQuery nerdQuery, Map<NerdEntity, List<NerdCandidate>> candidates) {
 		// Validation //TODO we should find a way to move this out of here.
 		String text = nerdQuery.getText();
 		String shortText = nerdQuery.getShortText();
@@ -182,7 +196,8 @@ public class NerdEngine {
 		if (nerdQuery.getMaxTermFrequency() != -1.0)
 			maxTermFrequency = nerdQuery.getMaxTermFrequency();
 
-		Map<NerdEntity, List<NerdCandidate>> candidates = generateCandidatesSimple(entities, lang, maxTermFrequency);
+		if (candidates == null)
+			candidates = generateCandidatesSimple(entities, lang, maxTermFrequency);
 		//Map<NerdEntity, List<NerdCandidate>> candidates = generateCandidatesMultiple(entities, lang);
 
 		/*for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
@@ -220,7 +235,16 @@ public class NerdEngine {
 
 		for(List<LayoutToken> subToken : subTokens) {
 			NerdContext localContext = rank(candidates, lang, context, shortTextVal, subToken);*/
-		NerdContext localContext = rank(candidates, lang, context, shortTextVal, tokens);
+		Relatedness.Mode relatednessMode = null;
+		if (nerdQuery.getRelatednessMode() != null) {
+			relatednessMode = Relatedness.Mode.fromString(nerdQuery.getRelatednessMode());
+			if (relatednessMode == null)
+				LOGGER.warn("Unknown relatedness mode: " + nerdQuery.getRelatednessMode() + ", using the default one");
+			else if (relatednessMode == Relatedness.Mode.approximate && wikipedia.getLinkSketches() == null)
+				relatednessMode = Relatedness.Mode.exact;
+		}
+
+		NerdContext localContext = rank(candidates, lang, context, shortTextVal, tokens, relatednessMode);
 
 		/*for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
@@ -349,6 +373,18 @@ public class NerdEngine {
 	}
 
 
+	/**
+	 * Generate the candidates of the entities of a query, whose language is identified, with 
+	 * the maximum term frequency of the query or of the language configuration
+	 */
+	public Map<NerdEntity, List<NerdCandidate>> generateCandidates(NerdQuery nerdQuery) {
+		String lang = nerdQuery.getLanguage().getLang();
+		double maxTermFrequency = wikipedias.get(lang).getConfig().getMaxTermFrequency();
+		if (nerdQuery.getMaxTermFrequency() != -1.0)
+			maxTermFrequency = nerdQuery.getMaxTermFrequency();
+		return generateCandidatesSimple(nerdQuery.getEntities(), lang, maxTermFrequency);
+	}
+
 	public Map<NerdEntity, List<NerdCandidate>> generateCandidatesSimple(List<NerdEntity> entities, String lang, double maxTermFrequency) {
 		Map<NerdEntity, List<NerdCandidate>> result = new TreeMap<>();
 		LowerKnowledgeBase wikipedia = wikipedias.get(lang);
@@ -405,7 +441,10 @@ public class NerdEngine {
 			if (bestLabel != null && !bestLabel.exists()) {
 				//if (entity.getIsAcronym())
 				//System.out.println("No concepts found for '" + normalisedString + "' " + " / " + entity.getRawName() );
-				if (entity.getType() != null) {
+				// optionally, the entities closest to the words of the mention become its candidates
+				if (conf.getEmbeddingsCandidates() > 0 && wikipedia.getEntityEmbeddingsIndex() != null)
+					addEmbeddingsCandidates(entity, normalisedString, lang, wikipedia, candidates, conf.getEmbeddingsCandidates());
+				if ( (entity.getType() != null) || (candidates.size() > 0) ) {
 					result.put(entity, candidates);
 					continue;
 				}
@@ -546,6 +585,71 @@ public class NerdEngine {
 		return result;
 	}
 
+	/**
+	 * Adds as candidates of a mention without label in the KB the entities closest to the sum 
+	 * of the word vectors of the mention in the embeddings space, found with the entity 
+	 * embeddings index. Each candidate gets the sense of its article for the label of the article
+	 * title, so that it can be ranked like the candidates of a label.
+	 */
+	private void addEmbeddingsCandidates(NerdEntity entity, String normalisedString, String lang, 
+			LowerKnowledgeBase wikipedia, List<NerdCandidate> candidates, int nbCandidates) {
+		int[] vector = new int[wikipedia.getEmbeddingsSize()];
+		boolean hasWords = false;
+		List<String> tokens = GrobidAnalyzer.getInstance().tokenize(normalisedString, new Language(lang, 1.0));
+		for (String token : tokens) {
+			String word = TokenNormaliser.normalise(token);
+			if (word == null)
+				continue;
+			short[] wordVector = wikipedia.getWordEmbeddings(word);
+			if (wordVector == null)
+				continue;
+			for (int i = 0; i < vector.length; i++)
+				vector[i] += wordVector[i];
+			hasWords = true;
+		}
+		if (!hasWords)
+			return;
+
+		SimilarEntities similar = wikipedia.getSimilarEntities(vector, nbCandidates);
+		if (similar == null)
+			return;
+		for (int rank = 0; rank < similar.size(); rank++) {
+			Integer pageId = UpperKnowledgeBase.getInstance().getPageIdByLang(similar.getId(rank), lang);
+			if (pageId == null)
+				continue;
+			Page page = wikipedia.getPageById(pageId);
+			if (page.getType() != PageType.article || page.getTitle() == null)
+				continue;
+			Label label = new Label(wikipedia.getEnvironment(), page.getTitle());
+			if (!label.exists() || label.getSenses() == null)
+				continue;
+			Label.Sense sense = null;
+			for (Label.Sense labelSense : label.getSenses()) {
+				if (labelSense.getId() == pageId) {
+					sense = labelSense;
+					break;
+				}
+			}
+			if (sense == null)
+				continue;
+
+			NerdCandidate candidate = new NerdCandidate(entity);
+			candidate.setWikiSense(sense);
+			candidate.setWikipediaExternalRef(sense.getId());
+			if (sense.getPriorProbability() == 0.0)
+				candidate.setProb_c(1.0);
+			else
+				candidate.setProb_c(sense.getPriorProbability());
+			candidate.setPreferredTerm(sense.getTitle());
+			candidate.setLang(lang);
+			candidate.setLabel(label);
+			candidate.setWikidataId(similar.getId(rank));
+			candidate.setBestCaseContext(false);
+			candidates.add(candidate);
+		}
+		Collections.sort(candidates);
+	}
+
 	public Map<NerdEntity, List<NerdCandidate>> generateCandidatesMultiple(List<NerdEntity> entities, String lang) {
 		Map<NerdEntity, List<NerdCandidate>> result = new TreeMap<>();
 		LowerKnowledgeBase wikipedia = wikipedias.get(lang);
@@ -905,6 +1009,27 @@ public class NerdEngine {
 	 */
 	public NerdContext rank(Map<NerdEntity, List<NerdCandidate>> candidates, String lang,
 		NerdContext context, boolean shortText, List<LayoutToken> tokens) {
+		return rank(candidates, lang, context, shortText, tokens, null);
+	}
+
+	/**
+	 * Same as {@link #rank(Map, String, NerdContext, boolean, List)}, with the given mode for
+	 * computing the relatedness of the candidates with the context, or the one of the language
+	 * configuration if null.
+	 */
+	public NerdContext rank(Map<NerdEntity, List<NerdCandidate>> candidates, String lang,
+		NerdContext context, boolean shortText, List<LayoutToken> tokens, Relatedness.Mode relatednessMode) {
+		return rank(candidates, lang, context, shortText, tokens, relatednessMode, null);
+	}
+
+	/**
+	 * Same as {@link #rank(Map, String, NerdContext, boolean, List, Relatedness.Mode)}, with the
+	 * given cascade for deciding the mentions without the ranker, or the one of the language
+	 * configuration if null.
+	 */
+	public NerdContext rank(Map<NerdEntity, List<NerdCandidate>> candidates, String lang,
+		NerdContext context, boolean shortText, List<LayoutToken> tokens, Relatedness.Mode relatednessMode,
+		CascadeRanking cascade) {
 		// we rank candidates for each entity mention
 		//relatedness.resetCache(lang);
 
@@ -944,73 +1069,89 @@ public class NerdEngine {
 			}
 		}
 
-		// second pass for producing the ranking score
+		if (cascade == null)
+			cascade = CascadeRanking.fromConfig(wikipedias.get(lang).getConfig());
+
+		// the mentions decided by the priors of their candidates are not passed to the ranker,
+		// only the relatedness of their best candidate is computed, as it is a selector feature
+		List<NerdCandidate> rankedCandidates = new ArrayList<>();
+		List<NerdCandidate> relatedCandidates = new ArrayList<>();
+		List<Map.Entry<NerdEntity, List<NerdCandidate>>> rankedMentions = new ArrayList<>();
+		int nbDecided = 0;
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
-			NerdEntity entity = entry.getKey();
-
-			if (cands == null)
+			if (cands == null || cands.isEmpty())
 				continue;
+			int decided = cascade.decide(cands);
+			if (decided == -1) {
+				rankedMentions.add(entry);
+				rankedCandidates.addAll(cands);
+				relatedCandidates.addAll(cands);
+			} else {
+				relatedCandidates.add(cands.get(decided));
+				nbDecided++;
+			}
+		}
+		if (cascade.isEnabled()) {
+			LOGGER.debug("cascade ranking - " + nbDecided + " mentions decided by the priors, " + 
+				rankedMentions.size() + " ranked");
+		}
 
-			// get a window of layout tokens around without target tokens
-			List<LayoutToken> subTokens = com.scienceminer.nerd.utilities.Utilities.getWindow(entity, tokens,
-				NerdRanker.EMBEDDINGS_WINDOW_SIZE, lang);
+		// relatedness of the candidates with the context, computed as a batch only if needed
+		if (feature.Add_relatedness) {
+			try {
+				if (relatednessMode == null)
+					relatednessMode = relatedness.getDefaultMode(lang);
+				double[] related = relatedness.getRelatednessTo(relatedCandidates, localContext, lang, true, relatednessMode);
+				for (int i = 0; i < relatedCandidates.size(); i++)
+					relatedCandidates.get(i).setRelatednessScore(related[i]);
+			} catch(Exception e) {
+				LOGGER.error("Error computing semantic relatedness of the candidates with the context", e);
+			}
+		}
 
-//			LOGGER.debug("Mention: " + entry.toString());
-			for(NerdCandidate candidate : cands) {
-//			    LOGGER.debug("Candidate: " +  candidate.toString());
-				double score = 0.0;
+		// second pass for producing the ranking score, all the candidates being scored as a batch
+		float[] embeddingsSimilarities = null;
+		// computed only if needed
+		if (feature.Add_embeddings_centroid_similarity) {
+			embeddingsSimilarities = new float[rankedCandidates.size()];
+			// the windows of the mentions overlap, the word embeddings are looked up once
+			WordVectorCache wordVectors = new WordVectorCache();
+			int i = 0;
+			for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : rankedMentions) {
+				List<NerdCandidate> cands = entry.getValue();
+
+				// get a window of layout tokens around without target tokens
+				List<LayoutToken> subTokens = com.scienceminer.nerd.utilities.Utilities.getWindow(entry.getKey(), tokens,
+					NerdRanker.EMBEDDINGS_WINDOW_SIZE, lang);
+				// the context is built once and shared by the candidates of the mention
 				try {
-					double commonness = candidate.getProb_c();
-
-					double related = 0.0;
-					// computed only if needed
-					if (feature.Add_relatedness) {
-						related = relatedness.getRelatednessTo(candidate, localContext, lang);
-						candidate.setRelatednessScore(related);
-					}
-
-					boolean bestCaseContext = candidate.getBestCaseContext();
-					/*if (!entity.getNormalisedName().equals(bestLabel.getText())) {
-						bestCaseContext = false;
-					}*/
-
-					float embeddingsSimilarity = 0.0F;
-					// computed only if needed
-					if (feature.Add_embeddings_centroid_similarity) {
-						embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, subTokens, lang);
-					}
-
-					if (ranker == null) {
-						LOGGER.error("Cannot rank candidates: disambiguator for the language " +
-							lang + " is invalid");
-					}
-
-					String wikidataId = "Q0"; // undefined entity
-					//if (candidate.getWikidataId() != null)
-					//	wikidataId = candidate.getWikidataId();
-
-					String wikidataP31Id = "Q0"; // undefined entity
-					//if (candidate.getWikidataP31Id() != null)
-					//	wikidataP31Id = candidate.getWikidataP31Id();
-
-					score = ranker.getProbability(commonness, related, quality,
-						bestCaseContext, embeddingsSimilarity, wikidataId, wikidataP31Id);
-
-					/*System.out.println("RANKER - " + candidate.getWikidataId() + " = " + entity.getRawName() + " -> commonness: " + commonness + 
-						", related: " + related + ", quality: " + quality + 
-						", bestCaseContext: " + bestCaseContext + ", embeddingsSimilarity: " + embeddingsSimilarity + " = " + score);*/
-
-					//System.out.println(entity.getRawName() + " -> " + candidate.getWikiSense().getTitle() + "(candidate) " + score + "(ranker/nerd score) " +  " " + entity.toString());
-					//System.out.println("\t\t" + "commonness: " + commonness + ", relatedness: " + related + ", embeddingsSimilarity: " + embeddingsSimilarity);
-				}
-				catch(Exception e) {
-					LOGGER.debug("Fail to compute ranker score.", e);
+					float[] similarities = SimilarityScorer.getInstance().getCentroidScores(cands, subTokens, lang, wordVectors);
+					System.arraycopy(similarities, 0, embeddingsSimilarities, i, similarities.length);
+				} catch(Exception e) {
+					LOGGER.debug("Fail to compute embeddings similarity.", e);
 				}
+				i += cands.size();
+			}
+		}
 
-				candidate.setNerdScore(score);
+		double[] scores = null;
+		if (ranker == null) {
+			LOGGER.error("Cannot rank candidates: disambiguator for the language " +
+				lang + " is invalid");
+		} else if (!rankedCandidates.isEmpty()) {
+			try {
+				scores = ranker.scoreAll(rankedCandidates, quality, embeddingsSimilarities);
+			} catch(Exception e) {
+				LOGGER.debug("Fail to compute ranker score.", e);
 			}
-			Collections.sort(cands);
+		}
+		for (int i = 0; i < rankedCandidates.size(); i++)
+			rankedCandidates.get(i).setNerdScore((scores == null) ? 0.0 : scores[i]);
+
+		for (List<NerdCandidate> cands : candidates.values()) {
+			if (cands != null)
+				Collections.sort(cands);
 		}
 
 		//System.out.println("relatedness - Comparisons requested: " + relatedness.getComparisonsRequested());
@@ -1025,7 +1166,9 @@ public class NerdEngine {
 			LowerKnowledgeBase wikipedia = wikipedias.get(lang);
 			try {
 				ranker = new NerdRanker(wikipedia);
-				rankers.put(lang, ranker);
+				NerdRanker previous = rankers.putIfAbsent(lang, ranker);
+				if (previous != null)
+					ranker = previous;
 			}
 			catch(Exception e) {
 				LOGGER.error("Cannot load ranker for language " + lang, e);
@@ -1035,6 +1178,79 @@ public class NerdEngine {
 		return ranker;
 	}
 
+	/**
+	 * Loads the ranker and selector models of all the languages concurrently, so that the 
+	 * first requests do not wait for the models to be read. Languages without model files are
+	 * skipped.
+	 */
+	public void loadModels() {
+		long start = System.currentTimeMillis();
+		Map<String, Future<?>> tasks = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, Math.min(2 * wikipedias.size(), Runtime.getRuntime().availableProcessors())));
+		try {
+			for (String lang : wikipedias.keySet()) {
+				tasks.put("ranker " + lang, executor.submit(() -> {
+					rankers.put(lang, loadRanker(lang));
+					return null;
+				}));
+				tasks.put("selector " + lang, executor.submit(() -> {
+					selectors.put(lang, loadSelector(lang));
+					return null;
+				}));
+			}
+			for (Map.Entry<String, Future<?>> task : tasks.entrySet()) {
+				try {
+					task.getValue().get();
+				} catch(ExecutionException e) {
+					if (e.getCause() instanceof NerdResourceException)
+						LOGGER.info("No " + task.getKey() + " model loaded: " + e.getCause().getMessage());
+					else
+						LOGGER.error("Cannot load the " + task.getKey() + " model", e.getCause());
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.warn("Loading of the models interrupted");
+		} finally {
+			executor.shutdownNow();
+		}
+		LOGGER.info("Models loaded in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Reads the model of the given type ("ranker" or "selector") and language from its files, 
+	 * then swaps it with the model in use. The requests being processed finish with the 
+	 * previous model; if the new model cannot be loaded, the previous one stays in use.
+	 */
+	public void reloadModel(String type, String lang) throws Exception {
+		if (!wikipedias.containsKey(lang))
+			throw new QueryException("Unsupported language: " + lang);
+		if ("ranker".equals(type))
+			rankers.put(lang, loadRanker(lang));
+		else if ("selector".equals(type))
+			selectors.put(lang, loadSelector(lang));
+		else
+			throw new QueryException("Unknown model type: " + type + " (expected ranker or selector)");
+		LOGGER.info("Model " + type + " for " + lang + " reloaded");
+	}
+
+	private NerdRanker loadRanker(String lang) throws Exception {
+		NerdRanker ranker = new NerdRanker(wikipedias.get(lang));
+		if (!ranker.modelExists())
+			throw new NerdResourceException("no model file for language " + lang);
+		ranker.loadModel();
+		return ranker;
+	}
+
+	private NerdSelector loadSelector(String lang) throws Exception {
+		NerdSelector selector = new NerdSelector(wikipedias.get(lang));
+		if (!selector.modelExists())
+			throw new NerdResourceException("no model file for language " + lang);
+		selector.loadModel();
+		return selector;
+	}
+
 	/**
 	 * Ranking of candidates for a term rawTerm in a vector of weighted terms.
 	 * Optionally a contextual text is given, where the terms of the vector might occur (or not).
@@ -1077,6 +1293,15 @@ public class NerdEngine {
 			// calculated if needed
 			quality = context.getQuality();
 		}
+		// the embeddings context is the same for all the candidates, built once if needed
+		EntityScorer.ScorerContext embeddingsContext = null;
+		if (feature.Add_embeddings_centroid_similarity) {
+			try {
+				embeddingsContext = SimilarityScorer.getInstance().getCentroidContext(tokens, lang, null);
+			} catch(Exception e) {
+				LOGGER.debug("Fail to compute embeddings similarity.", e);
+			}
+		}
 		// second pass for producing the ranking score
 		for(NerdCandidate candidate : candidates) {
 			double score = 0.0;
@@ -1095,7 +1320,7 @@ public class NerdEngine {
 
 				if (feature.Add_embeddings_centroid_similarity) {
 					//embeddingsSimilarity = SimilarityScorer.getInstance().getLRScore(candidate, tokens, lang);
-					embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, tokens, lang);
+					embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, embeddingsContext);
 				}
 
 				// for the candidate
@@ -1617,7 +1842,9 @@ System.out.println("Merging...");
 		NerdSelector selector = selectors.get(lang);
 		if (selector == null) {
 			selector = new NerdSelector(wikipedia);
-			selectors.put(lang, selector);
+			NerdSelector previous = selectors.putIfAbsent(lang, selector);
+			if (previous != null)
+				selector = previous;
 		}
 
 		NerdConfig conf = wikipedia.getConfig();
@@ -1641,34 +1868,12 @@ System.out.println("Merging...");
 			double dice = ProcessText.getDICECoefficient(entity.getNormalisedName(), lang);
 
 			boolean isNe = entity.getType() != null;
-			for(NerdCandidate candidate : candidates) {
-				//if (candidate.getMethod() == NerdCandidate.NERD)
-				//{
-				try {
-					double tf = Utilities.getOccCount(candidate.getLabel().getText(), text);
-					double idf = ((double)wikipedia.getArticleCount()) / candidate.getLabel().getDocCount();
-					double prob = selector.getProbability(candidate.getNerdScore(),
-						candidate.getLabel().getLinkProbability(),
-						candidate.getWikiSense().getPriorProbability(),
-						words.size(),
-						candidate.getRelatednessScore(),
-						context.contains(candidate),
-						isNe,
-						tf*idf,
-						dice);
-
-					/*System.out.println("SELECTOR - " + candidate.getWikidataId() + " = " + entity.getRawName() + " -> nerdScore: " + candidate.getNerdScore() + 
-						", linkProbability: " + candidate.getLabel().getLinkProbability() + 
-						", priorProbability(): " + candidate.getWikiSense().getPriorProbability() + 
-						", size: " + words.size() + ", relatedness: " + candidate.getRelatednessScore() + 
-						", context: " + context.contains(candidate) + 
-						", isNe: " + isNe + ", tf*idf: " + tf*idf + ", dice: " + dice + " = " + prob);*/
-
-					candidate.setSelectionScore(prob);
-				} catch(Exception e) {
-					e.printStackTrace();
-				}
-				//}
+			try {
+				double[] scores = selector.scoreAll(candidates, words.size(), isNe, dice, context, text);
+				for (int i = 0; i < candidates.size(); i++)
+					candidates.get(i).setSelectionScore(scores[i]);
+			} catch(Exception e) {
+				e.printStackTrace();
 			}
 
 /*System.out.println("Surface: " + entity.getRawName());	
@@ -2216,7 +2421,7 @@ System.out.println(acronym.getRawName() + " / " + base.getRawName());
 			if (pageId != -1) {
 				for(NerdCandidate cand : cands) {
 					if (cand.getWikipediaExternalRef() == pageId) {
-						cand.setNerdScore(cand.getNerdScore() + 0.02*count.getB());
+						cand.setNerdScore(cand.getNerdScore() + DocumentContext.REINFORCEMENT_PER_OCCURRENCE*count.getB());
 						//System.out.println(cand.toString());
 					}
 				}
@@ -2225,6 +2430,66 @@ System.out.println(acronym.getRawName() + " / " + base.getRawName());
 		}
 	}
 
+	/**
+	 * Select the high-confidence senses of the mentions of a document before their 
+	 * disambiguation, to be used as document-level context: the senses given by the user, 
+	 * and the ones decided by the prior probabilities of the candidates as in the cascade 
+	 * ranking (with the thresholds of the language configuration, even if the cascade ranking
+	 * is disabled). The candidates are the ones generated for the disambiguation of the 
+	 * segments of the document, they are not modified.
+	 *
+	 * @param segmentCandidates the candidates of the mentions of each segment
+	 * @return one entity per selected sense of the mentions, its selection score being its 
+	 * prior probability weighted by its relative frequency in the document
+	 */
+	public List<NerdEntity> getHighConfidenceEntities(List<Map<NerdEntity, List<NerdCandidate>>> segmentCandidates, 
+			String lang) {
+		List<NerdEntity> result = new ArrayList<>();
+		NerdConfig conf = wikipedias.get(lang).getConfig();
+		CascadeRanking cascade = new CascadeRanking(true, 
+			conf.getCascadeMinPriorProbability(), conf.getCascadeMinPriorMargin());
+
+		Map<Integer, NerdEntity> senses = new LinkedHashMap<>();
+		Map<Integer, Integer> occurrences = new HashMap<>();
+		int maxOccurrences = 0;
+		for (Map<NerdEntity, List<NerdCandidate>> candidates : segmentCandidates) {
+			for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
+				NerdEntity entity = entry.getKey();
+				List<NerdCandidate> cands = entry.getValue();
+				NerdEntity sense = null;
+				if (entity.getSource() == ProcessText.MentionMethod.user) {
+					if (entity.getWikipediaExternalRef() != -1) {
+						sense = new NerdEntity(entity);
+						sense.setSelectionScore(1.0);
+					}
+				} else {
+					int decided = cascade.getDecidedCandidate(cands);
+					if (decided != -1) {
+						NerdCandidate candidate = cands.get(decided);
+						sense = new NerdEntity(entity);
+						sense.setWikipediaExternalRef(candidate.getWikipediaExternalRef());
+						sense.setSelectionScore(candidate.getProb_c());
+					}
+				}
+				if (sense == null)
+					continue;
+				int pageId = sense.getWikipediaExternalRef();
+				NerdEntity previous = senses.get(pageId);
+				if (previous == null || previous.getSelectionScore() < sense.getSelectionScore())
+					senses.put(pageId, sense);
+				int nb = occurrences.merge(pageId, 1, Integer::sum);
+				maxOccurrences = Math.max(maxOccurrences, nb);
+			}
+		}
+
+		for (NerdEntity sense : senses.values()) {
+			int pageId = sense.getWikipediaExternalRef();
+			sense.setSelectionScore(sense.getSelectionScore() * occurrences.get(pageId) / maxOccurrences);
+			result.add(sense);
+		}
+		return result;
+	}
+
 	public String solveCitation(BiblioItem citation) {
 
         final String originalDOI= citation.getDOI();
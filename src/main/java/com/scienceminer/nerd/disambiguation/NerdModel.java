@@ -78,13 +78,31 @@ public class NerdModel {
 	// regression model
 	protected Regression<double[]> forest = null;
 
+	// the regression model compiled into flat arrays, null if it could not be compiled
+	protected CompiledTreeEnsemble compiledForest = null;
+
+	// maximum difference between the compiled model and the Smile model scores
+	private static final double COMPILED_MODEL_TOLERANCE = 1e-9;
+
+	// set once a model is available for scoring, read without lock by the scoring threads
+	protected volatile boolean loaded = false;
+
+	// model file extensions: XStream XML model and binary compiled model
+	public static final String XML_MODEL_EXTENSION = ".model";
+	public static final String BINARY_MODEL_EXTENSION = ".bin";
+
+	// per-thread feature matrix reused by the batch scoring, growing to the largest batch
+	private final ThreadLocal<double[][]> featureMatrices = ThreadLocal.withInitial(() -> new double[0][]);
+
 	// for serialization of the classifier
 	protected XStream xstream = null;
 	protected ArffParser arffParser = null;
 
 	// data
-	protected String arffDataset = null;
-	protected AttributeDataset attributeDataset = null;
+	// the training data are written on disk as they are produced and loaded as arrays for 
+	// training the model, without holding the ARFF text in memory
+	protected File trainingDataFile = null;
+	protected FeatureDataset trainingDataset = null;
 	protected Attribute[] attributes = null;
 	protected int positives = 0; // nb of positive examples for the dataset
 	protected int negatives =0; // nb of positive examples for the dataset
@@ -93,31 +111,179 @@ public class NerdModel {
 	// for sample < 1.0, positive increases correspondingly
 	protected double sampling = 1.0;
 
+	// number of threads extracting the training examples of the articles
+	protected int trainingThreads = Runtime.getRuntime().availableProcessors();
+
 	public NerdModel() {
-		xstream = new XStream();
+		xstream = createXStream();
+		arffParser = new ArffParser();
+	}
+
+	/**
+	 * @return an XStream instance for (de)serializing the Smile regression models
+	 */
+	protected static XStream createXStream() {
+		XStream xstream = new XStream();
 		XStream.setupDefaultSecurity(xstream);
 		Class[] classArray = new Class[] {
 			GradientTreeBoost.class, RandomForest.class, 
 			RegressionTree.class, NumericAttribute.class, 
 			NominalAttribute.class, Attribute.class};
 		xstream.allowTypes(classArray);
-		arffParser = new ArffParser();
+		return xstream;
+	}
+
+	/**
+	 * @return true if a model file, binary or XML, exists for the given model path (without 
+	 * extension)
+	 */
+	public static boolean modelExists(String modelPath) {
+		return new File(modelPath + BINARY_MODEL_EXTENSION).exists() || 
+			new File(modelPath + XML_MODEL_EXTENSION).exists();
+	}
+
+	/**
+	 * Reads the model of the given path (without extension): the binary model if present and
+	 * at least as recent as the XML model, which is scored without the Smile model, otherwise 
+	 * the XStream XML model, which is then compiled. A binary model older than the XML model 
+	 * (e.g. the XML model has just been retrained) is rebuilt from the XML model, or deleted 
+	 * if the XML model cannot be compiled.
+	 */
+	protected void readModel(String modelPath) throws Exception {
+		File binaryFile = new File(modelPath + BINARY_MODEL_EXTENSION);
+		File xmlFile = new File(modelPath + XML_MODEL_EXTENSION);
+		if (binaryFile.exists() && 
+				(!xmlFile.exists() || binaryFile.lastModified() >= xmlFile.lastModified())) {
+			compiledForest = CompiledTreeEnsemble.read(binaryFile);
+			forest = null;
+			LOGGER.info("Binary model loaded: " + binaryFile.getPath());
+			return;
+		}
+		if (!xmlFile.exists())
+			throw new NerdResourceException("Model file " + xmlFile.getPath() + " does not exist.");
+		forest = readXmlModel(xstream, xmlFile);
+		compileForest();
+		if (binaryFile.exists()) {
+			LOGGER.warn("The binary model " + binaryFile.getPath() + " is older than the model " + 
+				xmlFile.getPath() + ", it is replaced");
+			if (compiledForest != null)
+				compiledForest.write(binaryFile);
+			else
+				binaryFile.delete();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Regression<double[]> readXmlModel(XStream xstream, File xmlFile) throws IOException {
+		try (InputStream xml = new BufferedInputStream(new FileInputStream(xmlFile))) {
+			return (Regression<double[]>)xstream.fromXML(xml);
+		}
+	}
+
+	/**
+	 * Saves the model under the given path (without extension) in XML and, if the model could 
+	 * be compiled, in the binary format.
+	 */
+	protected void writeModel(String modelPath) throws Exception {
+		File xmlFile = new File(modelPath + XML_MODEL_EXTENSION);
+		FileUtils.writeStringToFile(xmlFile, xstream.toXML(forest), StandardCharsets.UTF_8);
+		System.out.println("Model saved under " + xmlFile.getPath());
+		File binaryFile = new File(modelPath + BINARY_MODEL_EXTENSION);
+		if (compiledForest != null) {
+			compiledForest.write(binaryFile);
+			System.out.println("Binary model saved under " + binaryFile.getPath());
+		} else if (binaryFile.exists()) {
+			// a previous binary model would be loaded in place of the new XML model
+			binaryFile.delete();
+		}
+	}
+
+	/**
+	 * Converts an XML model into the binary format. The compiled model is checked against the 
+	 * Smile model on sampled feature vectors before being written.
+	 *
+	 * @throws NerdResourceException if the model cannot be compiled or does not give the same 
+	 * scores
+	 */
+	public static void convertModel(File xmlFile, File binaryFile) throws Exception {
+		Regression<double[]> forest = readXmlModel(createXStream(), xmlFile);
+		CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(forest);
+		if (!sameScores(forest, compiled))
+			throw new NerdResourceException("The compiled model does not match the model " + xmlFile.getPath());
+		compiled.write(binaryFile);
+		LOGGER.info(xmlFile.getPath() + " converted into " + binaryFile.getPath() + ": " + 
+			compiled.getNumTrees() + " trees, " + compiled.getNumNodes() + " nodes");
+	}
+
+	private static boolean sameScores(Regression<double[]> forest, CompiledTreeEnsemble compiled) {
+		for (double[] features : compiled.sampleFeatureVectors(100, new Random(7))) {
+			double expected = forest.predict(features);
+			if (Math.abs(compiled.predict(features) - expected) > COMPILED_MODEL_TOLERANCE)
+				return false;
+		}
+		return true;
 	}
 
 	public void saveTrainingData(File file) throws Exception {
-		FileUtils.writeStringToFile(file, arffDataset, StandardCharsets.UTF_8);
+		if (trainingDataFile == null)
+			throw new NerdResourceException("No training data to save");
+		if (!file.getCanonicalFile().equals(trainingDataFile.getCanonicalFile()))
+			FileUtils.copyFile(trainingDataFile, file);
 		System.out.println("Training data saved under " + file.getPath());
 	}
 	
 	public void loadTrainingData(File file) throws Exception {
-		attributeDataset = arffParser.parse(new FileInputStream(file));
-		System.out.println("Training data loaded from file " + file.getPath());
+		trainingDataFile = file;
+		trainingDataset = FeatureDataset.read(file);
+		System.out.println("Training data loaded from file " + file.getPath() + ": " + 
+			trainingDataset.size() + " instances");
+	}
+
+	/**
+	 * @return the training data, read from the training data file if not already loaded, null 
+	 * if no training data have been prepared or loaded
+	 */
+	protected FeatureDataset getTrainingDataset() throws Exception {
+		if (trainingDataset == null && trainingDataFile != null && trainingDataFile.exists())
+			loadTrainingData(trainingDataFile);
+		return trainingDataset;
+	}
+
+	/**
+	 * @return the attributes of the features described by an ARFF header, parsed with a 
+	 * single feature vector
+	 */
+	protected Attribute[] parseAttributes(String arffHeader, String vector) throws Exception {
+		String arff = arffHeader + "\n" + vector;
+		return arffParser.parse(IOUtils.toInputStream(arff, StandardCharsets.UTF_8)).attributes();
 	}
 	
+	public void setTrainingThreads(int trainingThreads) {
+		this.trainingThreads = trainingThreads;
+	}
+
+	/**
+	 * Applies the sampling ratio to the next training example: a negative example is kept 
+	 * while the ratio of negatives to positives is below the sampling ratio, a positive one 
+	 * otherwise. The examples must be passed in a fixed order for a reproducible dataset.
+	 *
+	 * @return true if the example is kept
+	 */
+	protected boolean keepExample(double label) {
+		if ( ((label == 0.0) && ((double)this.negatives / this.positives < sampling)) ||
+			 ((label == 1.0) && ((double)this.negatives / this.positives >= sampling)) ) {
+			if (label == 0.0)
+				this.negatives++;
+			else
+				this.positives++;
+			return true;
+		}
+		return false;
+	}
+
 	public void clearTrainingData() {
-		//dataset = null;
-		arffDataset = null;
-		attributeDataset = null;
+		trainingDataFile = null;
+		trainingDataset = null;
 	}
 
 	/**
@@ -143,6 +309,103 @@ public class NerdModel {
         } 
     } 
 
+	/**
+	 * @return true if a model is available for scoring
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Compiles the regression model into flat arrays for faster scoring. The compiled model is
+	 * checked against the Smile model on sampled feature vectors; if it cannot be compiled or 
+	 * its scores differ, the Smile model is used.
+	 */
+	protected void compileForest() {
+		compiledForest = null;
+		if (forest == null)
+			return;
+		try {
+			CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(forest);
+			if (!sameScores(forest, compiled)) {
+				LOGGER.warn("The compiled model does not match the Smile model, the Smile model is used");
+				return;
+			}
+			compiledForest = compiled;
+			LOGGER.info("Model compiled: " + compiled.getNumTrees() + " trees, " + compiled.getNumNodes() + " nodes");
+		} catch(Exception e) {
+			LOGGER.warn("Cannot compile the model, the Smile model is used", e);
+		}
+	}
+
+	/**
+	 * @return the score of a feature vector, with the compiled model if available
+	 */
+	protected double predict(double[] features) {
+		if (compiledForest != null)
+			return compiledForest.predict(features);
+		return forest.predict(features);
+	}
+
+	/**
+	 * Scores the first n feature vectors of a matrix, with the compiled model if available
+	 *
+	 * @param scores receives the n scores
+	 */
+	protected void predict(double[][] features, int n, double[] scores) {
+		if (compiledForest != null) {
+			compiledForest.predict(features, n, scores);
+		} else {
+			for (int i = 0; i < n; i++)
+				scores[i] = forest.predict(features[i]);
+		}
+	}
+
+	/**
+	 * Scores the feature vectors of the first n candidates as a batch. If the batch fails, the
+	 * vectors are scored one by one, so that one failing candidate does not zero the scores of
+	 * the others: a candidate which cannot be scored is logged and gets 0.0, as well as the 
+	 * candidates whose feature vector could not be built.
+	 *
+	 * @param failed the candidates whose feature vector could not be built, null if none
+	 * @param scores receives the n scores
+	 */
+	protected void predict(double[][] features, int n, double[] scores, boolean[] failed, 
+			List<NerdCandidate> candidates) {
+		try {
+			predict(features, n, scores);
+		} catch(Exception e) {
+			LOGGER.warn("Cannot score the candidates as a batch, they are scored one by one", e);
+			for (int i = 0; i < n; i++) {
+				try {
+					scores[i] = predict(features[i]);
+				} catch(Exception e2) {
+					LOGGER.warn("Cannot score the candidate " + candidates.get(i), e2);
+					scores[i] = 0.0;
+				}
+			}
+		}
+		if (failed != null) {
+			for (int i = 0; i < n; i++) {
+				if (failed[i])
+					scores[i] = 0.0;
+			}
+		}
+	}
+
+	/**
+	 * @return a feature matrix of at least the given number of rows of the given size, reused
+	 * by the successive calls of the current thread
+	 */
+	protected double[][] getFeatureMatrix(int rows, int size) {
+		double[][] matrix = featureMatrices.get();
+		if (matrix.length < rows || (matrix.length > 0 && matrix[0].length < size)) {
+			matrix = new double[Math.max(rows, 2 * matrix.length)][size];
+			featureMatrices.set(matrix);
+		}
+		return matrix;
+	}
+
     public FeatureType getFeatureTypeFromString(String localFeaturesTypeString) {
     	FeatureType localFeaturesType = null;
     	try {
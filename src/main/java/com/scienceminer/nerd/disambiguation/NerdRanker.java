@@ -10,11 +10,13 @@ import java.util.concurrent.*;
 import com.scienceminer.nerd.kb.*;
 import com.scienceminer.nerd.disambiguation.NerdCandidate;
 import com.scienceminer.nerd.utilities.NerdConfig;
+import com.scienceminer.nerd.utilities.OrderedParallelProcessor;
 import com.scienceminer.nerd.utilities.Utilities;
 import com.scienceminer.nerd.exceptions.*;
 import com.scienceminer.nerd.evaluation.*;
 import com.scienceminer.nerd.mention.*;
 import com.scienceminer.nerd.embeddings.SimilarityScorer;
+import com.scienceminer.nerd.embeddings.WordVectorCache;
 import com.scienceminer.nerd.disambiguation.NerdModel.PredictTask;
 
 import org.grobid.core.utilities.OffsetPosition;
@@ -140,34 +142,7 @@ public class NerdRanker extends NerdModel {
 			return relatedness;
 		}
 
-		if (forest == null) {
-			// load model
-			File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-			if (!modelFile.exists()) {
-                logger.debug("Invalid model file for nerd ranker.");
-			}
-			InputStream xml = new FileInputStream(modelFile);
-
-			if (model == MLModel.RANDOM_FOREST)
-				forest = (RandomForest)xstream.fromXML(xml);
-			else
-				forest = (GradientTreeBoost)xstream.fromXML(xml);
-			if (attributeDataset != null) 
-				attributes = attributeDataset.attributes();
-			else {
-				StringBuilder arffBuilder = new StringBuilder();
-				GenericRankerFeatureVector feature = getNewFeature();
-
-				arffBuilder.append(feature.getArffHeader()).append("\n");
-				arffBuilder.append(feature.printVector());
-				String arff = arffBuilder.toString();
-				attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, StandardCharsets.UTF_8));
-				attributes = attributeDataset.attributes();
-				attributeDataset = null;
-			}
-			logger.info("Model for nerd ranker loaded: " + 
-				MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
-		}
+		loadModelIfNeeded();
 
 		GenericRankerFeatureVector feature = getNewFeature();
 
@@ -212,7 +187,7 @@ public class NerdRanker extends NerdModel {
 			counter++;
 		}*/
 
-		double score = forest.predict(features);
+		double score = predict(features);
 		/*logger.debug("[Ranker] score: "+ score +
 							", commonness: " + commonness +
 							", relatedness: " + relatedness + 
@@ -223,32 +198,117 @@ public class NerdRanker extends NerdModel {
 		return score;
 	}
 
+	/**
+	 * Scores a list of candidates in one pass: the feature vectors of the candidates are 
+	 * written in a feature matrix reused by the calls of the current thread and scored as a
+	 * batch. This gives the same scores as {@link #getProbability} for each candidate. A 
+	 * candidate which cannot be scored is logged and gets 0.0, the others being still scored.
+	 *
+	 * @param candidates the candidates to be scored, possibly of several mentions, with their 
+	 *                   relatedness score already set if the relatedness feature is used
+	 * @param quality the quality of the context
+	 * @param embeddingsSimilarities the embeddings similarity of each candidate, null if not used
+	 * @return the scores of the candidates, in the order of the list
+	 */
+	public double[] scoreAll(List<NerdCandidate> candidates, 
+							 double quality, 
+							 float[] embeddingsSimilarities) throws Exception {
+		int n = candidates.size();
+		double[] scores = new double[n];
+		if (n == 0)
+			return scores;
+
+		GenericRankerFeatureVector feature = getNewFeature();
+		// special cases with only one feature
+		if (featureType == FeatureType.BASELINE || 
+			featureType == FeatureType.EMBEDDINGS || 
+			featureType == FeatureType.MILNE_WITTEN_RELATEDNESS) {
+			for (int i = 0; i < n; i++) {
+				NerdCandidate candidate = candidates.get(i);
+				if (featureType == FeatureType.BASELINE)
+					scores[i] = candidate.getProb_c();
+				else if (featureType == FeatureType.EMBEDDINGS)
+					scores[i] = (embeddingsSimilarities == null) ? 0.0F : embeddingsSimilarities[i];
+				else
+					scores[i] = feature.Add_relatedness ? candidate.getRelatednessScore() : 0.0;
+			}
+			return scores;
+		}
+
+		loadModelIfNeeded();
+
+		double[][] features = getFeatureMatrix(n, feature.getNumFeatures());
+		feature.context_quality = quality;
+		// undefined entity, see NerdEngine.rank()
+		feature.wikidata_id = "Q0";
+		feature.wikidata_P31_entity_id = "Q0";
+		boolean[] failed = null;
+		for (int i = 0; i < n; i++) {
+			NerdCandidate candidate = candidates.get(i);
+			try {
+				feature.prob_c = candidate.getProb_c();
+				feature.relatedness = feature.Add_relatedness ? candidate.getRelatednessScore() : 0.0;
+				feature.bestCaseContext = candidate.getBestCaseContext();
+				feature.embeddings_centroid_similarity = (embeddingsSimilarities == null) ? 0.0F : embeddingsSimilarities[i];
+				feature.toVector(attributes, features[i]);
+			} catch(Exception e) {
+				logger.warn("Cannot compute the ranker features of the candidate " + candidate, e);
+				if (failed == null)
+					failed = new boolean[n];
+				failed[i] = true;
+				Arrays.fill(features[i], 0.0);
+			}
+		}
+		predict(features, n, scores, failed, candidates);
+
+		return scores;
+	}
+
+	/**
+	 * Loads the model on first use
+	 */
+	private void loadModelIfNeeded() throws Exception {
+		if (!loaded) {
+			synchronized(this) {
+				if (!loaded)
+					loadModel();
+			}
+		}
+	}
+
+	/**
+	 * @return the path of the model files of the language, without extension
+	 */
+	private String getModelPath() {
+		return MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode();
+	}
+
+	/**
+	 * @return true if a model file exists for the language of this ranker
+	 */
+	public boolean modelExists() {
+		return modelExists(getModelPath());
+	}
+
 	public void saveModel() throws Exception {
 		logger.info("saving model");
-		// save the model with XStream
-		String xml = xstream.toXML(forest);
-		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-		if (!modelFile.exists()) {
-            logger.debug("Invalid file for saving author filtering model.");
-		}
-		FileUtils.writeStringToFile(modelFile, xml, StandardCharsets.UTF_8);
-		System.out.println("Model saved under " + modelFile.getPath());
+		writeModel(getModelPath());
 	}
 
-	public void loadModel() throws IOException, Exception {
+	/**
+	 * Loads the model of the language, the binary model if present, otherwise the XML model. 
+	 */
+	public synchronized void loadModel() throws IOException, Exception {
 		logger.info("loading model");
-		// load model
-		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-		if (!modelFile.exists()) {
-        	logger.debug("Model file for nerd ranker does not exist.");
-        	throw new NerdResourceException("Model file for nerd ranker does not exist.");
+		readModel(getModelPath());
+		if (trainingDataset != null) 
+			attributes = trainingDataset.getAttributes();
+		else {
+			GenericRankerFeatureVector feature = getNewFeature();
+			attributes = parseAttributes(feature.getArffHeader(), feature.printVector());
 		}
-		String xml = FileUtils.readFileToString(modelFile, StandardCharsets.UTF_8);
-		if (model == MLModel.RANDOM_FOREST)
-			forest = (RandomForest)xstream.fromXML(xml);
-		else
-			forest = (GradientTreeBoost)xstream.fromXML(xml);
-		logger.debug("Model for nerd ranker loaded.");
+		loaded = true;
+		logger.info("Model for nerd ranker loaded: " + getModelPath());
 	}
 
 	public void trainModel() throws Exception {
@@ -258,31 +318,39 @@ public class NerdRanker extends NerdModel {
 			featureType == FeatureType.MILNE_WITTEN_RELATEDNESS) 
 			return;
 
-		if (attributeDataset == null) {
+		FeatureDataset dataset = getTrainingDataset();
+		if (dataset == null) {
 			logger.debug("Training data for nerd ranker has not been loaded or prepared");
 			return;
 			//throw new NerdResourceException("Training data for nerd ranker has not been loaded or prepared");
 		}
 		logger.info("building model");
 
-		double[][] x = attributeDataset.toArray(new double[attributeDataset.size()][]);
-		double[] y = attributeDataset.toArray(new double[attributeDataset.size()]);
+		double[][] x = dataset.getX();
+		double[] y = dataset.getY();
 		
 		long start = System.currentTimeMillis();
 		smile.math.Math.setSeed(7);
 		if (model == MLModel.RANDOM_FOREST)
-			forest = new RandomForest(attributeDataset.attributes(), x, y, 200);
+			forest = new RandomForest(dataset.getAttributes(), x, y, 200);
 		else {
 			//nb trees: 200, maxNodes: 6, srinkage: 0.05, subsample: 0.5
-			forest = new GradientTreeBoost(attributeDataset.attributes(), x, y, 
+			forest = new GradientTreeBoost(dataset.getAttributes(), x, y, 
 				GradientTreeBoost.Loss.LeastAbsoluteDeviation, 500, 6, 0.05, 0.5);
 		}
 
+		compileForest();
+		loaded = true;
         System.out.println("NERD ranker model created in " + 
 			(System.currentTimeMillis() - start) / (1000.00) + " seconds");
 	}
 
-	public void train(ArticleTrainingSample articles) throws Exception {
+	/**
+	 * Prepares the training data of the ranker from a sample of articles. The sampled 
+	 * examples are written in the given ARFF file as they are produced, the file is then 
+	 * read by trainModel.
+	 */
+	public void train(ArticleTrainingSample articles, File file) throws Exception {
 		if (featureType == FeatureType.BASELINE || 
 			featureType == FeatureType.EMBEDDINGS || 
 			featureType == FeatureType.MILNE_WITTEN_RELATEDNESS) {
@@ -290,30 +358,41 @@ public class NerdRanker extends NerdModel {
 			return;
 		}
 
-		StringBuilder arffBuilder = new StringBuilder();
-
-		GenericRankerFeatureVector feature = getNewFeature();
-
-		arffBuilder.append(feature.getArffHeader()).append("\n");
-		int nbArticle = 0;
 		this.positives = 1;
 		this.negatives = 0;
 		if ( (articles.getSample() == null) || (articles.getSample().size() == 0) )
 			return;
-		for (Article article : articles.getSample()) {
-			System.out.println("Training on " + (nbArticle+1) + "  / " + articles.getSample().size());
-			if (article instanceof CorpusArticle)
-				arffBuilder = trainCorpusArticle(article, arffBuilder);
-			else
-				arffBuilder = trainWikipediaArticle(article, arffBuilder);	
-				
-			nbArticle++;
+		trainingDataset = null;
+		trainingDataFile = file;
+		GenericRankerFeatureVector feature = getNewFeature();
+		// the examples of the articles are extracted in parallel, then sampled and written 
+		// in the order of the sample
+		List<Article> sample = articles.getSample();
+		try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, feature.getArffHeader())) {
+			OrderedParallelProcessor.process(sample, trainingThreads, 
+				article -> (article instanceof CorpusArticle) ? 
+					trainCorpusArticle(article) : trainWikipediaArticle(article),
+				(rank, article, examples) -> {
+					System.out.println("Training on " + (rank+1) + "  / " + sample.size());
+					int nbInstance = 0;
+					for (GenericRankerFeatureVector example : examples) {
+						if (keepExample(example.label)) {
+							writer.write(example.printVector());
+							nbInstance++;
+						}
+					}
+					System.out.println("article contribution: " + nbInstance + " training instances");
+				});
+			System.out.println("Training data saved under " + file.getPath() + ": " + 
+				writer.size() + " instances");
 		}
-		arffDataset = arffBuilder.toString();
-		attributeDataset = arffParser.parse(IOUtils.toInputStream(arffDataset, StandardCharsets.UTF_8));
 	}
 
-	private StringBuilder trainWikipediaArticle(Article article, StringBuilder arffBuilder) throws Exception {
+	/**
+	 * @return the training examples of a Wikipedia article, before sampling
+	 */
+	private List<GenericRankerFeatureVector> trainWikipediaArticle(Article article) throws Exception {
+		List<GenericRankerFeatureVector> examples = new ArrayList<>();
 		List<NerdEntity> refs = new ArrayList<NerdEntity>();
 		String lang = wikipedia.getConfig().getLangCode();
 
@@ -403,7 +482,7 @@ public class NerdRanker extends NerdModel {
 		}
 
 		if (entities == null) 
-			return arffBuilder;
+			return examples;
 
 		// disambiguate and solve entity mentions
 		List<NerdEntity> disambiguatedEntities = new ArrayList<NerdEntity>();
@@ -449,7 +528,8 @@ public class NerdRanker extends NerdModel {
 		}
 
 		double quality = (double)context.getQuality();
-		int nbInstance = 0;
+		// the windows of the mentions overlap, the word embeddings are looked up once
+		WordVectorCache wordVectors = new WordVectorCache();
 		// second pass for producing the disambiguation observations
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
@@ -469,7 +549,19 @@ public class NerdRanker extends NerdModel {
 			// get a window of layout tokens around without target tokens
 			List<LayoutToken> subTokens = Utilities.getWindow(entity, tokens, NerdRanker.EMBEDDINGS_WINDOW_SIZE, lang);
 
-			for(NerdCandidate candidate : cands) {
+			// computed only if needed because it takes time, with a context shared by the 
+			// candidates of the mention
+			float[] embeddingsSimilarities = null;
+			if (getNewFeature().Add_embeddings_centroid_similarity) {
+				try {
+					embeddingsSimilarities = SimilarityScorer.getInstance().getCentroidScores(cands, subTokens, lang, wordVectors);
+				} catch(Exception e) {
+					logger.debug("Fail to compute embeddings similarity.", e);
+				}
+			}
+
+			for(int k = 0; k < cands.size(); k++) {
+				NerdCandidate candidate = cands.get(k);
 				try {
 					nbCandidate++;
 //System.out.println(nbCandidate + " candidate / " + cands.size());
@@ -491,12 +583,9 @@ public class NerdRanker extends NerdModel {
 					}
 
 					float embeddingsSimilarity = 0.0F;
-					// computed only if needed because it takes time
 					GenericRankerFeatureVector feature = getNewFeature();
-					if (feature.Add_embeddings_centroid_similarity) {
-						//embeddingsSimilarity = SimilarityScorer.getInstance().getLRScore(candidate, subTokens, lang);
-						embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, subTokens, lang);
-					}
+					if (embeddingsSimilarities != null)
+						embeddingsSimilarity = embeddingsSimilarities[k];
 
 					feature.prob_c = commonness;
 					feature.relatedness = related;
@@ -515,16 +604,8 @@ public class NerdRanker extends NerdModel {
 
 					feature.label = (expectedId == candidate.getWikipediaExternalRef()) ? 1.0 : 0.0;
 
-					// addition of the example is constrained by the sampling ratio
-					if ( ((feature.label == 0.0) && ((double)this.negatives / this.positives < sampling)) ||
-						 ((feature.label == 1.0) && ((double)this.negatives / this.positives >= sampling)) ) {
-						arffBuilder.append(feature.printVector()).append("\n");
-						nbInstance++;
-						if (feature.label == 0.0)
-							this.negatives++;
-						else
-							this.positives++;
-					}
+					// the sampling ratio is applied when the examples are appended, in order
+					examples.add(feature);
 					
 /*System.out.println("*"+candidate.getWikiSense().getTitle() + "* " + 
 							entity.toString());
@@ -539,11 +620,14 @@ public class NerdRanker extends NerdModel {
 			Collections.sort(cands);
 		}
 
-		System.out.println("article contribution: " + nbInstance + " training instances");
-		return arffBuilder;
+		return examples;
 	}
 
-	private StringBuilder trainCorpusArticle(Article article, StringBuilder arffBuilder) throws Exception {
+	/**
+	 * @return the training examples of a corpus document, before sampling
+	 */
+	private List<GenericRankerFeatureVector> trainCorpusArticle(Article article) throws Exception {
+		List<GenericRankerFeatureVector> examples = new ArrayList<>();
 		String docPath = ((CorpusArticle)article).getPath();
 		String corpus = ((CorpusArticle)article).getCorpus();
 		File docFile = new File(docPath);
@@ -551,7 +635,7 @@ public class NerdRanker extends NerdModel {
 System.out.println(docPath);
 		if (!docFile.exists()) {
 			System.out.println("File invalid: " + docPath);
-			return arffBuilder;
+			return examples;
 		}
 
 		String docContent = null;
@@ -563,7 +647,7 @@ System.out.println(docPath);
 
 		if (docContent == null || docContent.length() == 0) {
 			System.out.println("Document is empty: " + docPath);
-			return arffBuilder;
+			return examples;
 		}
 
 		// if the corpus is AIDA, we need to ignore the two first lines and "massage" 
@@ -587,7 +671,7 @@ System.out.println(docPath);
 
 		if (!corpusRefFile.exists()) {
 			System.out.println("The reference file for corpus " + corpus + " is not found: " + corpusRefFile.getPath());
-			return null;
+			return examples;
 		}
 
 		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
@@ -607,7 +691,7 @@ System.out.println(docPath);
 		NodeList docs = root.getElementsByTagName("document");
 		if (docs == null || docs.getLength() <= 0) {
 			logger.error("the list documents for this corpus is empty");
-			return null;
+			return examples;
 		}
 
 		Set<Integer> referenceDisamb = new HashSet<Integer>();
@@ -733,7 +817,7 @@ System.out.println(docPath);
 		}
 
 		if (entities == null) 
-			return arffBuilder;
+			return examples;
 
 		// disambiguate and solve entity mentions
 		List<NerdEntity> disambiguatedEntities = new ArrayList<NerdEntity>();
@@ -780,7 +864,8 @@ System.out.println(docPath);
 		}
 
 		double quality = (double)context.getQuality();
-		int nbInstance = 0;
+		// the windows of the mentions overlap, the word embeddings are looked up once
+		WordVectorCache wordVectors = new WordVectorCache();
 		// second pass for producing the disambiguation observations
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
@@ -800,7 +885,19 @@ System.out.println(docPath);
 			// get a window of layout tokens around without target tokens
 			List<LayoutToken> subTokens = Utilities.getWindow(entity, tokens, NerdRanker.EMBEDDINGS_WINDOW_SIZE, lang);
 
-			for(NerdCandidate candidate : cands) {
+			// computed only if needed because it takes time, with a context shared by the 
+			// candidates of the mention
+			float[] embeddingsSimilarities = null;
+			if (getNewFeature().Add_embeddings_centroid_similarity) {
+				try {
+					embeddingsSimilarities = SimilarityScorer.getInstance().getCentroidScores(cands, subTokens, lang, wordVectors);
+				} catch(Exception e) {
+					logger.debug("Fail to compute embeddings similarity.", e);
+				}
+			}
+
+			for(int k = 0; k < cands.size(); k++) {
+				NerdCandidate candidate = cands.get(k);
 				try {
 					nbCandidate++;
 //System.out.println(nbCandidate + " candidate / " + cands.size());
@@ -822,12 +919,9 @@ System.out.println(docPath);
 					}
 
 					float embeddingsSimilarity = 0.0F;
-					// computed only if needed because it takes time
 					GenericRankerFeatureVector feature = getNewFeature();
-					if (feature.Add_embeddings_centroid_similarity) {
-						//embeddingsSimilarity = SimilarityScorer.getInstance().getLRScore(candidate, subTokens, lang);
-						embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, subTokens, lang);
-					}
+					if (embeddingsSimilarities != null)
+						embeddingsSimilarity = embeddingsSimilarities[k];
 
 					feature.prob_c = commonness;
 					feature.relatedness = related;
@@ -846,16 +940,8 @@ System.out.println(docPath);
 
 					feature.label = (expectedId == candidate.getWikipediaExternalRef()) ? 1.0 : 0.0;
 
-					// addition of the example is constrained by the sampling ratio
-					if ( ((feature.label == 0.0) && ((double)this.negatives / this.positives < sampling)) ||
-						 ((feature.label == 1.0) && ((double)this.negatives / this.positives >= sampling)) ) {
-						arffBuilder.append(feature.printVector()).append("\n");
-						nbInstance++;
-						if (feature.label == 0.0)
-							this.negatives++;
-						else
-							this.positives++;
-					}
+					// the sampling ratio is applied when the examples are appended, in order
+					examples.add(feature);
 /*System.out.println("*"+candidate.getWikiSense().getTitle() + "* " + 
 							entity.toString());
 					System.out.println("\t\t" + "commonness: " + commonness + 
@@ -869,8 +955,7 @@ System.out.println(docPath);
 			Collections.sort(cands);
 		}
 
-		System.out.println("article contribution: " + nbInstance + " training instances");
-		return arffBuilder;
+		return examples;
 	}
 
 	public LabelStat evaluate(ArticleTrainingSample testSet) throws Exception {	
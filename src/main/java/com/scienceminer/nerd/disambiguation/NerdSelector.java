@@ -10,6 +10,7 @@ import com.scienceminer.nerd.kb.*;
 import com.scienceminer.nerd.disambiguation.NerdCandidate;
 import com.scienceminer.nerd.utilities.NerdConfig;
 import com.scienceminer.nerd.embeddings.SimilarityScorer;
+import com.scienceminer.nerd.embeddings.EntityScorer;
 import com.scienceminer.nerd.disambiguation.NerdModel.PredictTask;
 
 import org.grobid.core.utilities.OffsetPosition;
@@ -37,6 +38,7 @@ import com.scienceminer.nerd.features.*;
 import com.scienceminer.nerd.training.*;
 import com.scienceminer.nerd.mention.*;
 import com.scienceminer.nerd.utilities.mediaWiki.MediaWikiParser;
+import com.scienceminer.nerd.utilities.OrderedParallelProcessor;
 import com.scienceminer.nerd.utilities.Utilities;
 import com.scienceminer.nerd.evaluation.*;
 
@@ -111,32 +113,7 @@ public class NerdSelector extends NerdModel {
 								boolean isNe,
 								double tf_idf, 
 								double dice) throws Exception {
-		if (forest == null) {
-			// load model
-			File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-			if (!modelFile.exists()) {
-                logger.debug("Invalid model file for nerd selector.");
-			}
-			InputStream xml = new FileInputStream(modelFile);
-			if (model == MLModel.RANDOM_FOREST)
-				forest = (RandomForest)xstream.fromXML(xml);
-			else
-				forest = (GradientTreeBoost)xstream.fromXML(xml);
-			if (attributeDataset != null) 
-				attributes = attributeDataset.attributes();
-			else {
-				StringBuilder arffBuilder = new StringBuilder();
-				GenericSelectionFeatureVector feat = getNewFeature();
-				arffBuilder.append(feat.getArffHeader()).append("\n");
-				arffBuilder.append(feat.printVector());
-				String arff = arffBuilder.toString();
-				attributeDataset = arffParser.parse(IOUtils.toInputStream(arff, "UTF-8"));
-				attributes = attributeDataset.attributes();
-				attributeDataset = null;
-			}
-			logger.info("Model for nerd selector loaded: " + 
-				MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model");
-		}
+		loadModelIfNeeded();
 
 		GenericSelectionFeatureVector feature = getNewFeature();
 		feature.nerd_score = nerd_score;
@@ -182,7 +159,7 @@ public class NerdSelector extends NerdModel {
 			counter++;
 		}*/
 
-		final double score = forest.predict(features);
+		final double score = predict(features);
 
 		/*logger.debug("selector: " +
 				"score: " + score + ", " +
@@ -200,88 +177,181 @@ public class NerdSelector extends NerdModel {
 		return score;
 	}
 
+	/**
+	 * Scores the candidates of a mention in one pass: the feature vectors of the candidates are 
+	 * written in a feature matrix reused by the calls of the current thread and scored as a
+	 * batch. This gives the same scores as {@link #getProbability} for each candidate. A 
+	 * candidate which cannot be scored is logged and gets 0.0, the others being still scored.
+	 *
+	 * @param candidates the candidates of the mention, with their ranker and relatedness 
+	 *                   scores already set
+	 * @param nbTokens the number of tokens of the mention
+	 * @param isNe true if the mention is a named entity
+	 * @param dice the DICE coefficient of the mention
+	 * @param context the disambiguation context
+	 * @param text the text the mention occurs in, for the tf-idf of the candidate labels
+	 * @return the scores of the candidates, in the order of the list
+	 */
+	public double[] scoreAll(List<NerdCandidate> candidates, 
+							 int nbTokens, 
+							 boolean isNe, 
+							 double dice, 
+							 NerdContext context,
+							 String text) throws Exception {
+		int n = candidates.size();
+		double[] scores = new double[n];
+		if (n == 0)
+			return scores;
+
+		loadModelIfNeeded();
+
+		GenericSelectionFeatureVector feature = getNewFeature();
+		double[][] features = getFeatureMatrix(n, feature.getNumFeatures());
+		feature.nb_tokens = nbTokens;
+		feature.isNe = isNe;
+		feature.dice = dice;
+		double articleCount = wikipedia.getArticleCount();
+		boolean[] failed = null;
+		for (int i = 0; i < n; i++) {
+			NerdCandidate candidate = candidates.get(i);
+			try {
+				double tf = Utilities.getOccCount(candidate.getLabel().getText(), text);
+				double idf = articleCount / candidate.getLabel().getDocCount();
+				feature.nerd_score = candidate.getNerdScore();
+				feature.prob_anchor_string = candidate.getLabel().getLinkProbability();
+				feature.prob_c = candidate.getWikiSense().getPriorProbability();
+				feature.relatedness = candidate.getRelatednessScore();
+				feature.inContext = context.contains(candidate);
+				feature.tf_idf = tf*idf;
+				feature.toVector(attributes, features[i]);
+			} catch(Exception e) {
+				logger.warn("Cannot compute the selector features of the candidate " + candidate, e);
+				if (failed == null)
+					failed = new boolean[n];
+				failed[i] = true;
+				Arrays.fill(features[i], 0.0);
+			}
+		}
+		predict(features, n, scores, failed, candidates);
+
+		return scores;
+	}
+
+	/**
+	 * Loads the model on first use
+	 */
+	private void loadModelIfNeeded() throws Exception {
+		if (!loaded) {
+			synchronized(this) {
+				if (!loaded)
+					loadModel();
+			}
+		}
+	}
+
+	/**
+	 * @return the path of the model files of the language, without extension
+	 */
+	private String getModelPath() {
+		return MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode();
+	}
+
+	/**
+	 * @return true if a model file exists for the language of this selector
+	 */
+	public boolean modelExists() {
+		return modelExists(getModelPath());
+	}
+
 	public void saveModel() throws Exception {
 		logger.info("saving model");
-		// save the model with XStream
-		String xml = xstream.toXML(forest);
-		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-		if (!modelFile.exists()) {
-            logger.debug("Invalid file for saving author filtering model.");
-		}
-		FileUtils.writeStringToFile(modelFile, xml, "UTF-8");
-		System.out.println("Model saved under " + modelFile.getPath());
+		writeModel(getModelPath());
 	}
 
-	public void loadModel() throws Exception {
+	/**
+	 * Loads the model of the language, the binary model if present, otherwise the XML model. 
+	 */
+	public synchronized void loadModel() throws Exception {
 		logger.info("loading model");
-		// load model
-		File modelFile = new File(MODEL_PATH_LONG+"-"+wikipedia.getConfig().getLangCode()+".model"); 
-		if (!modelFile.exists()) {
-        	logger.debug("Model file for nerd selector does not exist.");
-        	throw new NerdResourceException("Model file for nerd selector does not exist.");
+		readModel(getModelPath());
+		if (trainingDataset != null) 
+			attributes = trainingDataset.getAttributes();
+		else {
+			GenericSelectionFeatureVector feat = getNewFeature();
+			attributes = parseAttributes(feat.getArffHeader(), feat.printVector());
 		}
-		String xml = FileUtils.readFileToString(modelFile, "UTF-8");
-		if (model == MLModel.RANDOM_FOREST)
-			forest = (RandomForest)xstream.fromXML(xml);
-		else
-			forest = (GradientTreeBoost)xstream.fromXML(xml);
-		logger.debug("Model for nerd ranker loaded.");
+		loaded = true;
+		logger.info("Model for nerd selector loaded: " + getModelPath());
 	}
 
 	public void trainModel() throws Exception {
-		if (attributeDataset == null) {
+		FeatureDataset dataset = getTrainingDataset();
+		if (dataset == null) {
 			logger.debug("Training data for nerd selector has not been loaded or prepared");
 			throw new NerdResourceException("Training data for nerd selector has not been loaded or prepared");
 		}
 		logger.info("building model");
-		double[][] x = attributeDataset.toArray(new double[attributeDataset.size()][]);
-		double[] y = attributeDataset.toArray(new double[attributeDataset.size()]);
+		double[][] x = dataset.getX();
+		double[] y = dataset.getY();
 		
 		long start = System.currentTimeMillis();
 		smile.math.Math.setSeed(7);
 		if (model == MLModel.RANDOM_FOREST)
-			forest = new RandomForest(attributeDataset.attributes(), x, y, 200);
+			forest = new RandomForest(dataset.getAttributes(), x, y, 200);
 		else {
 			//nb trees: 500, maxNodes: 6, srinkage: 0.05, subsample: 0.7
-			forest = new GradientTreeBoost(attributeDataset.attributes(), x, y, 
+			forest = new GradientTreeBoost(dataset.getAttributes(), x, y, 
 				GradientTreeBoost.Loss.LeastAbsoluteDeviation, 500, 6, 0.05, 0.7);
 		}
+		compileForest();
+		loaded = true;
         System.out.println("NERD selector model created in " + 
 			(System.currentTimeMillis() - start) / (1000.00) + " seconds");
 	}
 
+	/**
+	 * Prepares the training data of the selector from a sample of articles. The sampled 
+	 * examples are written in the given ARFF file as they are produced, the file is then 
+	 * read by trainModel.
+	 */
 	public void train(ArticleTrainingSample articles, File file) throws Exception {
 		if (articles.size() == 0) {
 			return;
 		}
-		StringBuilder arffBuilder = new StringBuilder();
-		GenericSelectionFeatureVector feat = getNewFeature();
-		arffBuilder.append(feat.getArffHeader()).append("\n");
-		FileUtils.writeStringToFile(file, arffBuilder.toString(), StandardCharsets.UTF_8);
-		int nbArticle = 0;
 		positives = 1;
 		negatives = 0;
+		trainingDataset = null;
+		trainingDataFile = file;
+		GenericSelectionFeatureVector feat = getNewFeature();
 		NerdRanker ranker = new NerdRanker(wikipedia);
-		for (Article article : articles.getSample()) {
-			System.out.println("Training on " + (nbArticle+1) + "  / " + articles.getSample().size());
-			arffBuilder = new StringBuilder();
-			if (article instanceof CorpusArticle)
-				arffBuilder = trainCorpusArticle(article, arffBuilder, ranker);	
-			else
-				arffBuilder = trainWikipediaArticle(article, arffBuilder, ranker);	
-			FileUtils.writeStringToFile(file, arffBuilder.toString(), StandardCharsets.UTF_8, true);
-			nbArticle++;
+		// the examples of the articles are extracted in parallel, then sampled and written 
+		// in the order of the sample
+		List<Article> sample = articles.getSample();
+		try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, feat.getArffHeader())) {
+			OrderedParallelProcessor.process(sample, trainingThreads, 
+				article -> (article instanceof CorpusArticle) ? 
+					trainCorpusArticle(article, ranker) : trainWikipediaArticle(article, ranker),
+				(rank, article, examples) -> {
+					System.out.println("Training on " + (rank+1) + "  / " + sample.size());
+					int nbInstance = 0;
+					for (GenericSelectionFeatureVector example : examples) {
+						if (keepExample(example.label)) {
+							writer.write(example.printVector());
+							nbInstance++;
+						}
+					}
+					System.out.println("article contribution: " + nbInstance + " training instances");
+				});
+			System.out.println("Training data saved under " + file.getPath() + ": " + 
+				writer.size() + " instances");
 		}
-		//arffDataset = arffBuilder.toString();
-		arffDataset = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-		//System.out.println(arffDataset);
-		attributeDataset = arffParser.parse(IOUtils.toInputStream(arffDataset, StandardCharsets.UTF_8));
-		System.out.println("Training data saved under " + file.getPath());
 	}
 
-	private StringBuilder trainWikipediaArticle(Article article, 
-									StringBuilder arffBuilder, 
-									NerdRanker ranker) {
+	/**
+	 * @return the training examples of a Wikipedia article, before sampling
+	 */
+	private List<GenericSelectionFeatureVector> trainWikipediaArticle(Article article, NerdRanker ranker) {
+		List<GenericSelectionFeatureVector> examples = new ArrayList<>();
 		System.out.println(" - training " + article);
 		List<NerdEntity> refs = new ArrayList<NerdEntity>();
 		String lang = wikipedia.getConfig().getLangCode();
@@ -360,7 +430,7 @@ public class NerdSelector extends NerdModel {
 		}
 
 		if ( (entities == null) || (entities.size() == 0) )
-			return arffBuilder;
+			return examples;
 
 		// disambiguate and solve entity mentions
 		List<NerdEntity> disambiguatedEntities = new ArrayList<NerdEntity>();
@@ -404,7 +474,9 @@ public class NerdSelector extends NerdModel {
 		GrobidAnalyzer analyzer = GrobidAnalyzer.getInstance();
 
 		double quality = (double)context.getQuality();
-		int nbInstance = 0;
+		// the embeddings similarity uses the whole content as context, built once for all the 
+		// candidates
+		EntityScorer.ScorerContext embeddingsContext = SimilarityScorer.getInstance().getCentroidContext(tokens, lang, null);
 		// second pass for producing the disambiguation observations
 		for (Map.Entry<NerdEntity, List<NerdCandidate>> entry : candidates.entrySet()) {
 			List<NerdCandidate> cands = entry.getValue();
@@ -444,7 +516,7 @@ public class NerdSelector extends NerdModel {
 						bestCaseContext = false;
 					}
 
-					float embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, tokens, lang);
+					float embeddingsSimilarity = SimilarityScorer.getInstance().getCentroidScore(candidate, embeddingsContext);
 
 					String wikidataId = "Q0"; // undefined entity
 					if (candidate.getWikidataId() != null)	
@@ -482,16 +554,8 @@ public class NerdSelector extends NerdModel {
 
 					feature.label = (expectedId == candidate.getWikipediaExternalRef()) ? 1.0 : 0.0;
 
-					// addition of the example is constrained by the sampling ratio
-					if ( ((feature.label == 0.0) && ((double)this.negatives / this.positives < sampling)) ||
-						 ((feature.label == 1.0) && ((double)this.negatives / this.positives >= sampling)) ) {
-						arffBuilder.append(feature.printVector()).append("\n");
-						nbInstance++;
-						if (feature.label == 0.0)
-							this.negatives++;
-						else
-							this.positives++;
-					}
+					// the sampling ratio is applied when the examples are written, in order
+					examples.add(feature);
 		
 					//System.out.println("*"+candidate.getWikiSense().getTitle() + "* " + 
 					//		entity.toString());
@@ -514,15 +578,12 @@ public class NerdSelector extends NerdModel {
 			Collections.sort(cands);
 		}
 
-		System.out.println("article contribution: " + nbInstance + " training instances");
-		return arffBuilder;
+		return examples;
 	}
 
-	private StringBuilder trainCorpusArticle(Article article, 
-									StringBuilder arffBuilder, 
-									NerdRanker ranker) throws Exception {
+	private List<GenericSelectionFeatureVector> trainCorpusArticle(Article article, NerdRanker ranker) throws Exception {
 
-		return arffBuilder;
+		return new ArrayList<>();
 	}
 
 	/**
@@ -12,47 +12,49 @@ public class PruningService {
      * We prune only entities overlapping and having the same disambiguation information
      */
     public List<NerdEntity> pruneOverlapNBest(List<NerdEntity> entities, boolean shortText) {
-        Set<Integer> toRemove = new HashSet<>();
+        boolean[] toRemove = new boolean[entities.size()];
+        OverlapIndex index = new OverlapIndex(entities);
+        int[] overlapping = new int[entities.size()];
         for (int pos1 = 0; pos1 < entities.size(); pos1++) {
-            if (toRemove.contains(pos1))
+            if (toRemove[pos1])
                 continue;
 
             NerdEntity entity1 = entities.get(pos1);
 
             if (entity1.getRawName() == null) {
-                toRemove.add(pos1);
+                toRemove[pos1] = true;
                 continue;
             }
 
             // find all sub term of this entity and entirely or partially overlapping entities
-            for (int pos2 = 0; pos2 < entities.size(); pos2++) {
+            int nbOverlapping = index.getOverlapping(entity1, overlapping);
+            for (int i = 0; i < nbOverlapping; i++) {
+                int pos2 = overlapping[i];
                 if (pos1 == pos2)
                     continue;
 
                 NerdEntity entity2 = entities.get(pos2);
 
-                if (!areEntityOverlapping(entity1, entity2)) continue;
-
-                if (toRemove.contains(pos2))
+                if (toRemove[pos2])
                     continue;
 
                 // overlap
                 if (entity2.getRawName() == null) {
-                    toRemove.add(pos2);
+                    toRemove[pos2] = true;
                     continue;
                 }
 
                 if (entity1.getWikipediaExternalRef() == entity2.getWikipediaExternalRef()) {
                     if (entity1.getType() != null && entity2.getType() != null) {
                         if (entity1.getType().equals(entity2.getType())) {
-                            toRemove.add(pos2);
+                            toRemove[pos2] = true;
                         }
                         continue;
                     } else if (entity1.getType() != null && entity2.getType() == null) {
-                        toRemove.add(pos2);
+                        toRemove[pos2] = true;
                     } else {
                         if (entity1.getNerdScore() < entity2.getNerdScore()) {
-                            toRemove.add(pos2);
+                            toRemove[pos2] = true;
                         }
                     }
                 }
@@ -63,7 +65,7 @@ public class PruningService {
 
         for (int i = 0; i < entities.size(); i++) {
             final NerdEntity currentEntity = entities.get(i);
-            if (!toRemove.contains(i)) {
+            if (!toRemove[i]) {
                 prunedEntities.add(currentEntity);
             } else {
                 if (shortText) {
@@ -187,46 +189,47 @@ public class PruningService {
      */
     public List<NerdEntity> pruneOverlap(List<NerdEntity> entities, boolean shortText) {
 
-        Set<Integer> toRemove = new HashSet<>();
+        boolean[] toRemove = new boolean[entities.size()];
+        OverlapIndex index = new OverlapIndex(entities);
+        int[] overlapping = new int[entities.size()];
+        // the arity of the entities, computed once when first needed (-1 if not yet computed)
+        int[] arities = new int[entities.size()];
+        Arrays.fill(arities, -1);
         for (int pos1 = 0; pos1 < entities.size(); pos1++) {
-            if (toRemove.contains(pos1))
+            if (toRemove[pos1])
                 continue;
 
             NerdEntity entity1 = entities.get(pos1);
 
             if (entity1.getRawName() == null || entity1.getNormalisedName() == null) {
-                toRemove.add(pos1);
+                toRemove[pos1] = true;
                 continue;
             }
 
-            GrobidAnalyzer analyzer = GrobidAnalyzer.getInstance();
-
-            // the arity measure below does not need to be precise
-            int arity1 = analyzer.tokenize(entity1.getNormalisedName()).size();
+            int arity1 = getArity(entities, pos1, arities);
 
             // find all sub term of this entity and entirely or partially overlapping entities
-            for (int pos2 = 0; pos2 < entities.size(); pos2++) {
+            int nbOverlapping = index.getOverlapping(entity1, overlapping);
+            for (int i = 0; i < nbOverlapping; i++) {
+                int pos2 = overlapping[i];
                 if (pos1 == pos2)
                     continue;
 
-                if (toRemove.contains(pos2))
+                if (toRemove[pos2])
                     continue;
 
                 NerdEntity entity2 = entities.get(pos2);
 
-                if (!areEntityOverlapping(entity1, entity2))
-                    continue;
-
                 // they overlap
                 if (entity2.getRawName() == null) {
-                    toRemove.add(pos2);
+                    toRemove[pos2] = true;
                     continue;
                 }
 
                 if (entity2.getType() != null && entity2.getWikipediaExternalRef() == -1) {
                     // we have a NER not disambiguated check if the other entity has been disambiguated
                     if (entity1.getWikipediaExternalRef() != -1 && entity1.getNerdScore() > 0.2) {
-                        toRemove.add(pos2);
+                        toRemove[pos2] = true;
                         continue;
                     }
                 }
@@ -234,15 +237,15 @@ public class PruningService {
 
                 if (entity1.getWikipediaExternalRef() == entity2.getWikipediaExternalRef()) {
                     if (entity1.getType() != null && entity2.getType() == null) {
-                        toRemove.add(pos2);
+                        toRemove[pos2] = true;
                         continue;
                     }
                 }
 
-                int arity2 = analyzer.tokenize(entity2.getNormalisedName()).size();
+                int arity2 = getArity(entities, pos2, arities);
                 if (arity2 < arity1) {
                     // longest match wins
-                    toRemove.add(pos2);
+                    toRemove[pos2] = true;
                     continue;
                 } else if (arity2 == arity1) {
                     // we check the nerd scores of the top candidate for the two entities
@@ -251,14 +254,14 @@ public class PruningService {
                     //double conf1 = entity1.getSelectionScore();
                     //double conf2 = entity2.getSelectionScore();
                     if (conf2 < conf1) {
-                        toRemove.add(pos2);
+                        toRemove[pos2] = true;
                         continue;
                     } else {
                         double selectionConf1 = entity1.getSelectionScore();
                         double selectionConf2 = entity2.getSelectionScore();
 
                         if (selectionConf2 < selectionConf1) {
-                            toRemove.add(pos2);
+                            toRemove[pos2] = true;
                         }
                     }
                 }
@@ -267,7 +270,7 @@ public class PruningService {
 
         List<NerdEntity> newEntities = new ArrayList<>();
         for (int i = 0; i < entities.size(); i++) {
-            if (!toRemove.contains(i)) {
+            if (!toRemove[i]) {
                 newEntities.add(entities.get(i));
             } else {
                 if (shortText) {
@@ -281,6 +284,18 @@ public class PruningService {
         return newEntities;
     }
 
+    /**
+     * @return the number of words of the normalised name of the entity at the given position,
+     * computed only once per entity
+     */
+    private static int getArity(List<NerdEntity> entities, int pos, int[] arities) {
+        if (arities[pos] == -1) {
+            // the arity measure does not need to be precise
+            arities[pos] = GrobidAnalyzer.getInstance().tokenize(entities.get(pos).getNormalisedName()).size();
+        }
+        return arities[pos];
+    }
+
     public boolean areEntityOverlapping(NerdEntity entity1, NerdEntity entity2) {
         if (entity2.getOffsetEnd() < entity1.getOffsetStart())
             return false;
@@ -315,4 +330,88 @@ public class PruningService {
             Collections.sort(cands);
         }
     }
+
+    /**
+     * Index of the offsets of a list of entities, giving the entities overlapping a given 
+     * entity (as defined by areEntityOverlapping) without comparing it to all the others. 
+     * The entities are sorted by start offset, and a tree keeps the maximum end offset of 
+     * the ranges of this order, so that the ranges of entities ending before the given 
+     * entity are skipped.
+     */
+    static class OverlapIndex {
+        // positions in the list of the entities sorted by start offset, then position
+        private final int[] order;
+        private final int[] starts;
+        // number of leaves of the tree, a power of 2
+        private final int capacity;
+        // maximum end offset of the range of each node, the root being the node 1 and the
+        // children of the node i the nodes 2i and 2i+1
+        private final int[] maxEnds;
+
+        OverlapIndex(List<NerdEntity> entities) {
+            int size = entities.size();
+            long[] keys = new long[size];
+            for (int pos = 0; pos < size; pos++)
+                keys[pos] = ((long) entities.get(pos).getOffsetStart() << 32) | pos;
+            Arrays.sort(keys);
+
+            order = new int[size];
+            starts = new int[size];
+            int leaves = 1;
+            while (leaves < size)
+                leaves <<= 1;
+            capacity = leaves;
+            maxEnds = new int[2 * capacity];
+            Arrays.fill(maxEnds, Integer.MIN_VALUE);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) keys[i];
+                starts[i] = (int) (keys[i] >> 32);
+                maxEnds[capacity + i] = entities.get(order[i]).getOffsetEnd();
+            }
+            for (int node = capacity - 1; node > 0; node--)
+                maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+        }
+
+        /**
+         * Writes in the result array the positions of the entities overlapping the given 
+         * entity, including the entity itself if it is indexed, in no particular order.
+         *
+         * @return the number of overlapping entities
+         */
+        int getOverlapping(NerdEntity entity, int[] result) {
+            // only the entities starting before the end of the entity can overlap it
+            int limit = countStartingBefore(entity.getOffsetEnd());
+            if (limit == 0)
+                return 0;
+            return collect(1, 0, capacity, limit, entity.getOffsetStart(), result, 0);
+        }
+
+        /**
+         * @return the number of entities with a start offset lower than or equal to the offset
+         */
+        private int countStartingBefore(int offset) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= offset)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        private int collect(int node, int from, int to, int limit, int start, int[] result, int nb) {
+            if (from >= limit || maxEnds[node] < start)
+                return nb;
+            if (to - from == 1) {
+                result[nb++] = order[from];
+                return nb;
+            }
+            int middle = (from + to) >>> 1;
+            nb = collect(2 * node, from, middle, limit, start, result, nb);
+            return collect(2 * node + 1, middle, to, limit, start, result, nb);
+        }
+    }
 }
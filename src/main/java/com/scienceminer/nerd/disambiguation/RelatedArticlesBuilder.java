@@ -0,0 +1,177 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.exceptions.NerdResourceException;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
+import com.scienceminer.nerd.kb.UpperKnowledgeBase;
+import com.scienceminer.nerd.kb.db.KBEntry;
+import com.scienceminer.nerd.kb.db.PageIterator;
+import com.scienceminer.nerd.kb.db.RelatedArticles;
+import com.scienceminer.nerd.kb.db.RelatedArticlesDatabase;
+import com.scienceminer.nerd.kb.model.Article;
+import com.scienceminer.nerd.kb.model.Page;
+import com.scienceminer.nerd.kb.model.Page.PageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static com.scienceminer.nerd.kb.UpperKnowledgeBase.TARGET_LANGUAGES;
+
+/**
+ * Offline pre-computation, for each article of a language, of its k most related articles
+ * according to the Milne and Witten relatedness, stored in the relatedArticles database of
+ * the language. The related articles are used to serve related topics and are consulted by
+ * {@link Relatedness} before computing a relatedness score.
+ *
+ * The candidates of an article are the articles it links to or that link to it, the articles
+ * linked in both directions first, limited to a maximum number of candidates. Articles are
+ * processed by batches, each batch being scored in parallel and then written in a single
+ * transaction.
+ *
+ * The index must be built again when the knowledge base is updated.
+ *
+ * Example: ./gradlew build_related_articles -Plang=en -Pk=50 -Pthreads=8
+ */
+public class RelatedArticlesBuilder {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RelatedArticlesBuilder.class);
+
+	private static final int BATCH_SIZE = 10000;
+
+	private final String lang;
+	private final LowerKnowledgeBase wikipedia;
+	private final Relatedness relatedness;
+	private final RelatedArticlesDatabase database;
+
+	private final int k;
+	private final int maxCandidates;
+
+	public RelatedArticlesBuilder(String lang, int k, int maxCandidates) {
+		this.lang = lang;
+		this.wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+		if (wikipedia == null)
+			throw new NerdResourceException("The language is not supported or not loaded: " + lang);
+		this.relatedness = Relatedness.getInstance();
+		this.database = wikipedia.getEnvironment().getDbRelatedArticles();
+		this.k = k;
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Computes the related articles of all the articles, with the given number of threads
+	 *
+	 * @return the number of articles with related articles
+	 */
+	public long build(int nbThreads) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(nbThreads);
+		PageIterator iterator = wikipedia.getPageIterator(PageType.article);
+		long nbArticles = 0;
+		long nbStored = 0;
+		try {
+			List<Article> batch = new ArrayList<>(BATCH_SIZE);
+			while (iterator.hasNext()) {
+				batch.add((Article)iterator.next());
+				if (batch.size() == BATCH_SIZE || !iterator.hasNext()) {
+					nbStored += store(pool, batch);
+					nbArticles += batch.size();
+					batch.clear();
+					LOGGER.info(nbArticles + " articles processed, " + nbStored + " with related articles");
+				}
+			}
+		} finally {
+			iterator.close();
+			pool.shutdown();
+		}
+		return nbStored;
+	}
+
+	private int store(ForkJoinPool pool, List<Article> batch) throws Exception {
+		List<KBEntry<Integer, RelatedArticles>> entries = pool.submit(() ->
+			batch.parallelStream()
+				.map(article -> new KBEntry<>(article.getId(), getRelatedArticles(article)))
+				.filter(entry -> entry.getValue().size() > 0)
+				.collect(Collectors.toList())
+		).get();
+		database.store(entries);
+		return entries.size();
+	}
+
+	/**
+	 * @return the k most related articles of the given article
+	 */
+	private RelatedArticles getRelatedArticles(Article article) {
+		List<Article> candidates = getCandidates(article);
+		if (candidates.isEmpty())
+			return RelatedArticles.EMPTY;
+
+		double[] scores = relatedness.getRelatednessWithoutCache(article, candidates, lang);
+		int[] ids = new int[candidates.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = candidates.get(i).getId();
+		return RelatedArticles.top(ids, scores, k);
+	}
+
+	/**
+	 * The articles linked with the given article, in both directions first
+	 */
+	private List<Article> getCandidates(Article article) {
+		int[] inLinks = wikipedia.getLinkPostings(article.getId(), Direction.In).toArray();
+		int[] outLinks = wikipedia.getLinkPostings(article.getId(), Direction.Out).toArray();
+
+		List<Integer> mutual = new ArrayList<>();
+		List<Integer> others = new ArrayList<>();
+		for (int id : inLinks) {
+			if (Arrays.binarySearch(outLinks, id) >= 0)
+				mutual.add(id);
+			else
+				others.add(id);
+		}
+		for (int id : outLinks) {
+			if (Arrays.binarySearch(inLinks, id) < 0)
+				others.add(id);
+		}
+		mutual.addAll(others);
+
+		List<Article> candidates = new ArrayList<>();
+		for (Integer id : mutual) {
+			if (candidates.size() == maxCandidates)
+				break;
+			if (id == article.getId())
+				continue;
+			Page page = wikipedia.getPageById(id);
+			if (page.getType() == PageType.article)
+				candidates.add((Article)page);
+		}
+		return candidates;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.out.println("usage: command lang k [maxCandidates] [threads]");
+			System.exit(-1);
+		}
+
+		String lang = args[0];
+		if (!TARGET_LANGUAGES.contains(lang)) {
+			System.out.println("unsupported language, must be one of " + TARGET_LANGUAGES.toString());
+			System.exit(-1);
+		}
+		int k = Integer.parseInt(args[1]);
+		int maxCandidates = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+		int nbThreads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		RelatedArticlesBuilder builder = new RelatedArticlesBuilder(lang, k, maxCandidates);
+		long start = System.currentTimeMillis();
+		try {
+			long nbStored = builder.build(nbThreads);
+			LOGGER.info("Related articles for " + lang + ": " + nbStored + " articles stored in "
+				+ (System.currentTimeMillis() - start) + " ms");
+		} finally {
+			builder.relatedness.close();
+		}
+	}
+}
@@ -1,12 +1,11 @@
 package com.scienceminer.nerd.disambiguation;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
 import com.scienceminer.nerd.kb.UpperKnowledgeBase;
+import com.scienceminer.nerd.kb.db.LinkSketches;
+import com.scienceminer.nerd.kb.db.PostingList;
+import com.scienceminer.nerd.kb.db.RelatedArticles;
 import com.scienceminer.nerd.kb.model.Article;
 import com.scienceminer.nerd.kb.model.Label;
 import com.scienceminer.nerd.kb.model.Page;
@@ -15,6 +14,7 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.*;
 
 import java.util.concurrent.ConcurrentHashMap;
@@ -24,6 +24,7 @@ import java.util.regex.Pattern;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import static com.scienceminer.nerd.kb.UpperKnowledgeBase.TARGET_LANGUAGES;
 
@@ -39,12 +40,43 @@ public class Relatedness {
 
 	// all the maps use the language code as a key
 	private Map<String, LowerKnowledgeBase> wikipedias = null;
-	private Map<String, LoadingCache<ArticlePair, Double>> caches = null;
+	private Map<String, RelatednessCache> caches = null;
+	private Map<String, RelatednessStore> stores = null;
+	// the languages for which the most related articles have been precomputed
+	private Set<String> indexedLanguages = null;
 
 	private long comparisonsRequested = 0;
 	private long comparisonsCalculated = 0;
 	private final static int MAX_CACHE_SIZE = 5000000;
 
+	// minimum number of pairs to be computed for a batch to be split across cores
+	private final static int MIN_PARALLEL_PAIRS = 256;
+
+	// per-thread buffers the link lists are decoded into, growing to the largest list seen
+	private static final ThreadLocal<int[][]> linkBuffersA = ThreadLocal.withInitial(() -> new int[][] { new int[1024] });
+	private static final ThreadLocal<int[][]> linkBuffersB = ThreadLocal.withInitial(() -> new int[][] { new int[1024] });
+
+
+	/**
+	 * Relatedness computation mode: exact, or approximate with link sketches
+	 */
+	public enum Mode {
+		exact,
+		approximate;
+
+		/**
+		 * @return the mode with the given name, null if the name is null or unknown
+		 */
+		public static Mode fromString(String name) {
+			if (name == null)
+				return null;
+			for (Mode mode : values()) {
+				if (mode.name().equalsIgnoreCase(name.trim()))
+					return mode;
+			}
+			return null;
+		}
+	}
 
 	public static Relatedness getInstance() {
 	    if (instance == null) {
@@ -53,6 +85,14 @@ public class Relatedness {
 	    return instance;
 	}
 
+	/**
+	 * @return the instance if it has already been created, null otherwise, without creating 
+	 * it (e.g. for monitoring)
+	 */
+	public static Relatedness getInstanceIfCreated() {
+		return instance;
+	}
+
 	/**
 	 * Creates a new instance.
 	 */
@@ -68,19 +108,50 @@ public class Relatedness {
 		wikipedias = UpperKnowledgeBase.getInstance().getWikipediaConfs();
 		caches = new HashMap<>();
 		for (String lang : TARGET_LANGUAGES) {
-			 caches.put(lang, CacheBuilder.newBuilder()
-					.maximumSize(MAX_CACHE_SIZE)  // if cache reach the max, then remove the older elements
-					.build(
-							new CacheLoader<ArticlePair, Double>() {
-								@Override
-								public Double load(ArticlePair articlePair) throws Exception {
-									return getRelatednessWithoutCache(articlePair.getArticleA(),articlePair.getArtticleB() ,lang);
-								}
-							}
-					)
-			 );
+			// if cache reach the max, then remove the least recently used elements
+			caches.put(lang, new RelatednessCache(MAX_CACHE_SIZE));
+		}
+
+		stores = new HashMap<>();
+		for (Map.Entry<String, LowerKnowledgeBase> entry : wikipedias.entrySet()) {
+			String lang = entry.getKey();
+			RelatednessStore store = openStore(entry.getValue());
+			if (store == null)
+				continue;
+			stores.put(lang, store);
+
+			// warm up the in-memory cache with the persisted scores
+			RelatednessCache cache = caches.get(lang);
+			if (cache != null) {
+				store.forEach(cache::put, MAX_CACHE_SIZE);
+				LOGGER.info("Relatedness cache for " + lang + " preloaded with " + cache.size() + " pairs");
+			}
+			store.startBackgroundWriter();
 		}
 
+		indexedLanguages = new HashSet<>();
+		for (Map.Entry<String, LowerKnowledgeBase> entry : wikipedias.entrySet()) {
+			if (entry.getValue().hasRelatedArticles()) {
+				indexedLanguages.add(entry.getKey());
+				LOGGER.info("Precomputed related articles available for " + entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Open the persistent relatedness store of a Wikipedia, if one is configured.
+	 */
+	private static RelatednessStore openStore(LowerKnowledgeBase wikipedia) {
+		NerdConfig conf = wikipedia.getConfig();
+		if (conf.getRelatednessStore() == null)
+			return null;
+		try {
+			return new RelatednessStore(new File(conf.getRelatednessStore()),
+				conf.getRelatednessStoreSize(), wikipedia.getSnapshotVersion());
+		} catch(Exception e) {
+			LOGGER.error("Cannot open the relatedness store " + conf.getRelatednessStore(), e);
+			return null;
+		}
 	}
 
 	/**
@@ -129,14 +200,342 @@ public class Relatedness {
 		return totalRelatedness / totalComparisons;
 	}
 
+	/**
+	 * Calculate the relatedness of a list of candidates with a context, as a batch: the link 
+	 * lists of the candidate and context articles are read only once, whatever the number of 
+	 * pairs they are involved in, and the pairs not already cached are computed possibly in 
+	 * parallel. The result for each candidate is the same as with 
+	 * {@link #getRelatednessTo(NerdCandidate, NerdContext, String)}.
+	 *
+	 * @param parallel if true, the pairs can be computed on several cores when they are
+	 * numerous enough
+	 * @return the relatedness of each candidate, in the order of the list
+	 */
+	public double[] getRelatednessTo(List<NerdCandidate> candidates, NerdContext context, String lang, boolean parallel) {
+		return getRelatednessTo(candidates, context, lang, parallel, getDefaultMode(lang));
+	}
+
+	/**
+	 * Same as {@link #getRelatednessTo(List, NerdContext, String, boolean)} with the given
+	 * relatedness mode instead of the one of the language configuration
+	 */
+	public double[] getRelatednessTo(List<NerdCandidate> candidates, NerdContext context, String lang, 
+			boolean parallel, Mode mode) {
+		double[] result = new double[candidates.size()];
+		if (context == null)
+			return result;
+
+		List<Article> contextArticles = context.getArticles();
+		boolean noContext = (contextArticles == null) || (contextArticles.size() == 0);
+
+		// distinct candidate articles, i.e. the rows of the relatedness matrix
+		List<Article> articles = new ArrayList<>();
+		Map<Integer, Integer> rowIndex = new HashMap<>();
+		int[] rows = new int[candidates.size()];
+		for (int i = 0; i < candidates.size(); i++) {
+			rows[i] = -1;
+			Label.Sense sense = candidates.get(i).getWikiSense();
+			if (sense.getType() != Page.PageType.article)
+				continue;
+			if (noContext) {
+				// if there is no context, we can set an arbitrary score
+				result[i] = 0.1;
+				continue;
+			}
+			Integer row = rowIndex.get(sense.getId());
+			if (row == null) {
+				row = articles.size();
+				rowIndex.put(sense.getId(), row);
+				articles.add((Article) sense);
+			}
+			rows[i] = row;
+		}
+		if (articles.isEmpty())
+			return result;
+
+		double[][] matrix = getRelatednessMatrix(articles, contextArticles, lang, parallel, mode);
+		for (int i = 0; i < candidates.size(); i++) {
+			if (rows[i] == -1)
+				continue;
+			double totalRelatedness = 0.0;
+			for (double relatedness : matrix[rows[i]])
+				totalRelatedness += relatedness;
+			result[i] = totalRelatedness / contextArticles.size();
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the relatedness between each article of a first list and each article of a 
+	 * second list, reading the link lists of each article at most once.
+	 *
+	 * @param parallel if true, the pairs can be computed on several cores when they are
+	 * numerous enough
+	 * @return the relatedness matrix, with one row per article of the first list and one 
+	 * column per article of the second list
+	 */
+	public double[][] getRelatednessMatrix(List<Article> articles, List<Article> otherArticles, String lang, boolean parallel) {
+		return getRelatednessMatrix(articles, otherArticles, lang, parallel, getDefaultMode(lang));
+	}
+
+	/**
+	 * Same as {@link #getRelatednessMatrix(List, List, String, boolean)} with the given 
+	 * relatedness mode instead of the one of the language configuration. In approximate mode,
+	 * the scores not already cached are estimated from the link sketches, and only the pairs
+	 * whose estimation is too uncertain are computed exactly. Estimated scores are not cached.
+	 */
+	public double[][] getRelatednessMatrix(List<Article> articles, List<Article> otherArticles, String lang,
+			boolean parallel, Mode mode) {
+		LowerKnowledgeBase wikipedia = wikipedias.get(lang);
+		RelatednessCache relatednessCache = caches.get(lang);
+		RelatednessStore store = stores.get(lang);
+		int nbColumns = otherArticles.size();
+		double[][] matrix = new double[articles.size()][nbColumns];
+
+		// first, the pairs already known
+		int[] missing = new int[articles.size() * nbColumns];
+		int nbMissing = 0;
+		for (int i = 0; i < articles.size(); i++) {
+			Article article = articles.get(i);
+			for (int j = 0; j < nbColumns; j++) {
+				Article otherArticle = otherArticles.get(j);
+				if (article.getId() == otherArticle.getId()) {
+					matrix[i][j] = 1.0;
+					continue;
+				}
+				long key = ArticlePair.computeKey(article, otherArticle);
+				float relatedness = relatednessCache.get(key);
+				if (Float.isNaN(relatedness) && store != null) {
+					relatedness = store.get(key);
+					if (!Float.isNaN(relatedness))
+						relatednessCache.put(key, relatedness);
+				}
+				if (Float.isNaN(relatedness))
+					missing[nbMissing++] = i * nbColumns + j;
+				else
+					matrix[i][j] = relatedness;
+			}
+		}
+		comparisonsRequested += articles.size() * nbColumns;
+
+		// then the pairs found in the precomputed most related articles
+		if (nbMissing > 0 && indexedLanguages.contains(lang)) {
+			Map<Integer, RelatedArticles> related = new HashMap<>();
+			int nbNotIndexed = 0;
+			for (int k = 0; k < nbMissing; k++) {
+				Article article = articles.get(missing[k] / nbColumns);
+				Article otherArticle = otherArticles.get(missing[k] % nbColumns);
+				float relatedness = getIndexedRelatedness(article.getId(), otherArticle.getId(), related, wikipedia);
+				if (Float.isNaN(relatedness)) {
+					missing[nbNotIndexed++] = missing[k];
+				} else {
+					relatednessCache.put(ArticlePair.computeKey(article, otherArticle), relatedness);
+					matrix[missing[k] / nbColumns][missing[k] % nbColumns] = relatedness;
+				}
+			}
+			nbMissing = nbNotIndexed;
+		}
+
+		// in approximate mode, the estimations precise enough are kept
+		LinkSketches sketches = (mode == Mode.approximate) ? wikipedia.getLinkSketches() : null;
+		if (sketches != null) {
+			int nbUncertain = 0;
+			for (int k = 0; k < nbMissing; k++) {
+				int i = missing[k] / nbColumns;
+				int j = missing[k] % nbColumns;
+				double estimate = getApproximateRelatedness(articles.get(i), otherArticles.get(j), sketches, wikipedia);
+				if (Double.isNaN(estimate))
+					missing[nbUncertain++] = missing[k];
+				else
+					matrix[i][j] = estimate;
+			}
+			nbMissing = nbUncertain;
+		}
+		if (nbMissing == 0)
+			return matrix;
+
+		// then the other ones, each link list being read only once
+		Map<Integer, ArticleLinks> links = new HashMap<>();
+		for (int k = 0; k < nbMissing; k++) {
+			links.computeIfAbsent(articles.get(missing[k] / nbColumns).getId(), id -> new ArticleLinks(id, wikipedia));
+			links.computeIfAbsent(otherArticles.get(missing[k] % nbColumns).getId(), id -> new ArticleLinks(id, wikipedia));
+		}
+		float[] values = new float[nbMissing];
+		IntStream range = IntStream.range(0, nbMissing);
+		if (parallel && nbMissing >= MIN_PARALLEL_PAIRS)
+			range = range.parallel();
+		range.forEach(k -> {
+			Article article = articles.get(missing[k] / nbColumns);
+			Article otherArticle = otherArticles.get(missing[k] % nbColumns);
+			// scores are kept as float, as in the cache
+			values[k] = (float) getRelatednessWithoutCache(article, otherArticle, 
+				links.get(article.getId()), links.get(otherArticle.getId()), wikipedia);
+		});
+		comparisonsCalculated += nbMissing;
+
+		for (int k = 0; k < nbMissing; k++) {
+			int i = missing[k] / nbColumns;
+			int j = missing[k] % nbColumns;
+			long key = ArticlePair.computeKey(articles.get(i), otherArticles.get(j));
+			relatednessCache.put(key, values[k]);
+			if (store != null)
+				store.offer(key, values[k]);
+			matrix[i][j] = values[k];
+		}
+		return matrix;
+	}
+
+	/**
+	 * Same as {@link #getRelatednessWithoutCache(Article, Article, String)}, with link lists
+	 * already read
+	 */
+	private double getRelatednessWithoutCache(Article artA, Article artB, ArticleLinks linksA, ArticleLinks linksB,
+			LowerKnowledgeBase wikipedia) {
+		if (artA.getId() == artB.getId())
+			return 1.0;
+
+		NerdConfig conf = wikipedia.getConfig();
+		EntityPairRelatedness epr = new EntityPairRelatedness(artA, artB);
+		if (linksA.inLinks.length > 0 && linksB.inLinks.length > 0) {
+			setPageLinkFeatures(epr, Direction.In, linksA.inLinks, linksA.inLinks.length, 
+				linksB.inLinks, linksB.inLinks.length, wikipedia.getArticleCount());
+		}
+		if (conf.getUseLinkOut() && linksA.outLinks.length > 0 && linksB.outLinks.length > 0) {
+			setPageLinkFeatures(epr, Direction.Out, linksA.outLinks, linksA.outLinks.length, 
+				linksB.outLinks, linksB.outLinks.length, wikipedia.getArticleCount());
+		}
+
+		if (!epr.inLinkFeaturesSet() && !epr.outLinkFeaturesSet())
+			return 0.0;
+
+		return combineLinkMeasures(epr, conf);
+	}
+
+	/**
+	 * Estimates the relatedness of two articles from their link sketches. The Jaccard 
+	 * similarity of the link sets gives the number of shared links, direct links between
+	 * the two articles are ignored. The relatedness is also evaluated at the bounds of a 95% 
+	 * confidence interval of the proportion of identical sketch values (Agresti-Coull), if 
+	 * the resulting range is larger than the configured margin the estimation is rejected.
+	 *
+	 * @return the estimated relatedness, or NaN if an article has no sketch or if the 
+	 * estimation is too uncertain
+	 */
+	private double getApproximateRelatedness(Article artA, Article artB, LinkSketches sketches, 
+			LowerKnowledgeBase wikipedia) {
+		int rowA = sketches.getRow(artA.getId());
+		int rowB = sketches.getRow(artB.getId());
+		if (rowA == -1 || rowB == -1)
+			return Double.NaN;
+
+		NerdConfig conf = wikipedia.getConfig();
+		EntityPairRelatedness estimate = new EntityPairRelatedness(artA, artB);
+		EntityPairRelatedness lower = new EntityPairRelatedness(artA, artB);
+		EntityPairRelatedness upper = new EntityPairRelatedness(artA, artB);
+		setSketchFeatures(estimate, lower, upper, Direction.In, rowA, rowB, sketches, wikipedia.getArticleCount());
+		if (conf.getUseLinkOut())
+			setSketchFeatures(estimate, lower, upper, Direction.Out, rowA, rowB, sketches, wikipedia.getArticleCount());
+
+		if (!estimate.inLinkFeaturesSet() && !estimate.outLinkFeaturesSet())
+			return 0.0;
+		if (combineLinkMeasures(upper, conf) - combineLinkMeasures(lower, conf) > conf.getRelatednessSketchMargin())
+			return Double.NaN;
+		return combineLinkMeasures(estimate, conf);
+	}
+
+	private static void setSketchFeatures(EntityPairRelatedness estimate, EntityPairRelatedness lower,
+			EntityPairRelatedness upper, Direction dir, int rowA, int rowB, LinkSketches sketches, long articleCount) {
+		int sizeA = sketches.getLinkCount(rowA, dir);
+		int sizeB = sketches.getLinkCount(rowB, dir);
+		//we can't do anything if there are no links
+		if (sizeA == 0 || sizeB == 0)
+			return;
+
+		int matches = sketches.countMatches(rowA, rowB, dir);
+		double n = LinkSketches.SKETCH_SIZE + 4;
+		double p = (matches + 2) / n;
+		double error = 2 * Math.sqrt(p * (1 - p) / n);
+		double proportion = (double) matches / LinkSketches.SKETCH_SIZE;
+
+		setEstimatedLinkFeatures(estimate, dir, sizeA, sizeB, LinkSketches.estimateJaccard(proportion), articleCount);
+		setEstimatedLinkFeatures(lower, dir, sizeA, sizeB, LinkSketches.estimateJaccard(p - error), articleCount);
+		setEstimatedLinkFeatures(upper, dir, sizeA, sizeB, LinkSketches.estimateJaccard(p + error), articleCount);
+	}
+
+	private static void setEstimatedLinkFeatures(EntityPairRelatedness epr, Direction dir, int sizeA, int sizeB,
+			double jaccard, long articleCount) {
+		// |A inter B| = J * (|A| + |B|) / (1 + J), less than one shared link means none
+		double intersection = jaccard * (sizeA + sizeB) / (1 + jaccard);
+		intersection = Math.min(intersection, Math.min(sizeA, sizeB));
+		if (intersection < 1)
+			intersection = 0;
+		setLinkFeatures(epr, dir, sizeA, sizeB, intersection, sizeA + sizeB - intersection, articleCount);
+	}
+
+	/**
+	 * Relatedness of two articles found in the precomputed most related articles of one of 
+	 * them, the related articles read being kept in the given map.
+	 *
+	 * @return the relatedness, NaN if the pair is not in the precomputed related articles
+	 */
+	private static float getIndexedRelatedness(int idA, int idB, Map<Integer, RelatedArticles> related,
+			LowerKnowledgeBase wikipedia) {
+		float relatedness = related.computeIfAbsent(idA, id -> readRelatedArticles(id, wikipedia)).getScoreOf(idB);
+		if (Float.isNaN(relatedness))
+			relatedness = related.computeIfAbsent(idB, id -> readRelatedArticles(id, wikipedia)).getScoreOf(idA);
+		return relatedness;
+	}
+
+	private static RelatedArticles readRelatedArticles(int id, LowerKnowledgeBase wikipedia) {
+		RelatedArticles related = wikipedia.getRelatedArticles(id);
+		return (related == null) ? RelatedArticles.EMPTY : related;
+	}
+
+	/**
+	 * Decoded link lists of an article, read once for a batch of relatedness computations
+	 */
+	private static class ArticleLinks {
+		private static final int[] NO_LINKS = new int[0];
+
+		final int[] inLinks;
+		final int[] outLinks;
+
+		ArticleLinks(int id, LowerKnowledgeBase wikipedia) {
+			inLinks = wikipedia.getLinkPostings(id, Direction.In).toArray();
+			if (wikipedia.getConfig().getUseLinkOut())
+				outLinks = wikipedia.getLinkPostings(id, Direction.Out).toArray();
+			else
+				outLinks = NO_LINKS;
+		}
+	}
+
 	/**
 	 * Calculate the relatedness between two articles
 	 */
 	public double getRelatedness(Article art1, Article art2, String lang) throws ExecutionException{
 		comparisonsRequested++;
 
-		LoadingCache<ArticlePair, Double> relatednessCache = caches.get(lang);
-		return relatednessCache.get(new ArticlePair(art1, art2));
+		RelatednessCache relatednessCache = caches.get(lang);
+		long key = ArticlePair.computeKey(art1, art2);
+		float relatedness = relatednessCache.get(key);
+		if (Float.isNaN(relatedness)) {
+			RelatednessStore store = stores.get(lang);
+			if (store != null)
+				relatedness = store.get(key);
+			if (Float.isNaN(relatedness) && indexedLanguages.contains(lang)) {
+				relatedness = getIndexedRelatedness(art1.getId(), art2.getId(), 
+					new HashMap<>(2), wikipedias.get(lang));
+			}
+			if (Float.isNaN(relatedness)) {
+				// scores are kept as float, the same precision is returned on a cache miss 
+				// so that results do not depend on the cache state
+				relatedness = (float) getRelatednessWithoutCache(art1, art2, lang);
+				if (store != null)
+					store.offer(key, relatedness);
+			}
+			relatednessCache.put(key, relatedness);
+		}
+		return relatedness;
 	}
 
 
@@ -152,6 +551,30 @@ public class Relatedness {
 		if (epr == null)
 			return 0.0;
 
+		return combineLinkMeasures(epr, conf);
+	}
+
+	/**
+	 * Same as {@link #getRelatednessWithoutCache(Article, Article, String)} between an article
+	 * and each article of a list, the link lists of the first article being read only once
+	 */
+	public double[] getRelatednessWithoutCache(Article article, List<Article> otherArticles, String lang) {
+		LowerKnowledgeBase wikipedia = wikipedias.get(lang);
+		ArticleLinks links = new ArticleLinks(article.getId(), wikipedia);
+		double[] values = new double[otherArticles.size()];
+		for (int i = 0; i < values.length; i++) {
+			Article otherArticle = otherArticles.get(i);
+			values[i] = getRelatednessWithoutCache(article, otherArticle, links, 
+				new ArticleLinks(otherArticle.getId(), wikipedia), wikipedia);
+		}
+		comparisonsCalculated += values.length;
+		return values;
+	}
+
+	/**
+	 * Relatedness as the average of the in-link and, if used, out-link Milne and Witten measures
+	 */
+	private static double combineLinkMeasures(EntityPairRelatedness epr, NerdConfig conf) {
 		if ( (epr.getInLinkIntersectionProportion() == 0.0) && (epr.getOutLinkIntersectionProportion() == 0.0) )
 			return 0.0;
 
@@ -197,79 +620,56 @@ public class Relatedness {
 			return epr;
 		}
 
-		List<Integer> linksA = wikipedia.getLinks(epr.getArticleA().getId(), dir);
-		List<Integer> linksB = wikipedia.getLinks(epr.getArticleB().getId(), dir);
+		PostingList postingsA = wikipedia.getLinkPostings(epr.getArticleA().getId(), dir);
+		PostingList postingsB = wikipedia.getLinkPostings(epr.getArticleB().getId(), dir);
 
 		//we can't do anything if there are no links
-		if (linksA.isEmpty() || linksB.isEmpty())
+		if (postingsA.isEmpty() || postingsB.isEmpty())
 			return epr;
 
-		NerdConfig conf = wikipedia.getConfig();
-//System.out.println("#linksA: " + linksA.size() + " / " + "#linksB: " + linksB.size());
-
-		int intersection = 0;
-		//int sentenceIntersection = 0;
-		int union = 0;
-
-		int indexA = 0;
-		int indexB = 0;
-
-		List<Double> vectA = new ArrayList<>();
-		List<Double> vectB = new ArrayList<>();
-
-		while (indexA < linksA.size() || indexB < linksB.size()) {
-			//identify which links to use (A, B, or both)
-			boolean useA = false;
-			boolean useB = false;
-			boolean mutual = false;
-
-			Integer linkA = null;
-			Integer linkB = null;
-
-			if (indexA < linksA.size())
-				linkA = linksA.get(indexA);
-
-			if (indexB < linksB.size())
-				linkB = linksB.get(indexB);
-
-			if ( (linkA != null) && (linkB != null) && (linkA.equals(linkB)) ) {
-				useA = true;
-				useB = true;
-				intersection ++;
-			} else {
-				if (linkA != null && (linkB == null || linkA < linkB)) {
-					useA = true;
-					if (linkA.equals(epr.getArticleB().getId())) {
-						intersection++;
-						mutual = true;
-					}
+		int[] linksA = linkBuffer(linkBuffersA, postingsA.size());
+		int[] linksB = linkBuffer(linkBuffersB, postingsB.size());
+		int lengthA = postingsA.decodeInto(linksA);
+		int lengthB = postingsB.decodeInto(linksB);
 
-				} else {
-					useB = true;
-					if (linkB.equals(epr.getArticleA().getId())) {
-						intersection++;
-						mutual = true;
-					}
-				}
-			}
-			union++;
+		return setPageLinkFeatures(epr, dir, linksA, lengthA, linksB, lengthB, wikipedia.getArticleCount());
+	}
 
-			if (useA)
-				indexA++;
-			if (useB)
-				indexB++;
-		}
+	/**
+	 * Milne and Witten features for two decoded link lists, sorted and without duplicates
+	 */
+	private EntityPairRelatedness setPageLinkFeatures(EntityPairRelatedness epr, Direction dir,
+			int[] linksA, int lengthA, int[] linksB, int lengthB, long articleCount) {
+		int idA = epr.getArticleA().getId();
+		int idB = epr.getArticleB().getId();
+
+		// shared links, plus a direct link between A and B when it is not already shared 
+		// by the two lists
+		int common = LinkOverlap.intersectionSize(linksA, lengthA, linksB, lengthB);
+		int intersection = common + LinkOverlap.mutualLinks(linksA, lengthA, idA, linksB, lengthB, idB);
+
+		int union = lengthA + lengthB - common;
+
+		setLinkFeatures(epr, dir, lengthA, lengthB, intersection, union, articleCount);
+		return epr;
+	}
 
+	/**
+	 * Sets the Milne and Witten measure and the proportion of shared links for one direction, 
+	 * given the sizes of the two link sets, the number of shared links and the size of the union.
+	 */
+	private static void setLinkFeatures(EntityPairRelatedness epr, Direction dir, double sizeA, double sizeB,
+			double intersection, double union, long articleCount) {
 		// this is the famous Milne & Witten relatedness measure
 		double milneWittenMeasure = 1.0;
 		if (intersection == 0) {
 			milneWittenMeasure = 1.0;
 		} else {
-			double a = Math.log(linksA.size());
-			double b = Math.log(linksB.size());
+			double a = Math.log(sizeA);
+			double b = Math.log(sizeB);
 			double ab = Math.log(intersection);
 
-			double m = Math.log(wikipedia.getArticleCount());
+			double m = Math.log(articleCount);
 
 			milneWittenMeasure = (Math.max(a, b) - ab) / (m - Math.min(a, b));
 		}
@@ -284,16 +684,20 @@ public class Relatedness {
 		if (union == 0)
 			intersectionProportion = 0;
 		else
-			intersectionProportion = (double)intersection/union;
+			intersectionProportion = intersection/union;
 
 		if (dir == Direction.Out)
 			epr.setOutLinkFeatures(milneWittenMeasure, intersectionProportion);
 		else
 			epr.setInLinkFeatures(milneWittenMeasure, intersectionProportion);
-
-		return epr;
 	}
 
+	private static int[] linkBuffer(ThreadLocal<int[][]> buffers, int size) {
+		int[][] holder = buffers.get();
+		if (holder[0].length < size)
+			holder[0] = new int[Math.max(size, holder[0].length * 2)];
+		return holder[0];
+	}
 
 	public Set<Article> collectAllContextTerms(List<NerdCandidate> candidates, String lang) {
 		// unambiguous context articles
@@ -608,15 +1012,45 @@ public class Relatedness {
 	}
 
 	public void resetCache(String lang) {
-		LoadingCache<ArticlePair,Double> cache = caches.get(lang);
+		RelatednessCache cache = caches.get(lang);
 		if (cache != null) {
-			cache.invalidateAll();
+			cache.clear();
 		}
 		comparisonsCalculated = 0;
 		comparisonsRequested = 0;
 	}
 
+	/**
+	 * @return the relatedness mode of the configuration of the given language, exact if 
+	 * the approximate mode is configured without link sketches
+	 */
+	public Mode getDefaultMode(String lang) {
+		LowerKnowledgeBase wikipedia = wikipedias.get(lang);
+		Mode mode = Mode.fromString(wikipedia.getConfig().getRelatednessMode());
+		if (mode == Mode.approximate && wikipedia.getLinkSketches() != null)
+			return Mode.approximate;
+		return Mode.exact;
+	}
+
+	/**
+	 * @return the relatedness cache for the given language, for monitoring purposes
+	 */
+	public RelatednessCache getCache(String lang) {
+		return caches.get(lang);
+	}
+
+	/**
+	 * @return the persistent relatedness store for the given language, null if not configured
+	 */
+	public RelatednessStore getStore(String lang) {
+		return stores.get(lang);
+	}
+
 	public void close() {
+		for (RelatednessStore store : stores.values()) {
+			store.close();
+		}
+		stores.clear();
 		Iterator it = wikipedias.entrySet().iterator();
 	    while (it.hasNext()) {
 	        Map.Entry pair = (Map.Entry)it.next();
@@ -0,0 +1,264 @@
+package com.scienceminer.nerd.disambiguation;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent cache of relatedness scores keyed by the primitive long built by
+ * {@link ArticlePair#computeKey(int, int)}, with float values.
+ *
+ * The cache is split into stripes, each stripe being an open addressing table (linear probing)
+ * backed by primitive arrays and protected by its own lock. Stripes grow on demand up to their
+ * share of the maximum size, then entries are evicted following the CLOCK algorithm: a hit sets
+ * a reference bit, and the clock hand evicts the first entry whose bit is not set, clearing the
+ * bits it passes over.
+ *
+ * No object is allocated per entry, an entry costs 13 bytes (long key, float value, reference
+ * bit) plus the unused slots of the table.
+ */
+public class RelatednessCache {
+
+	// page ids are never negative, so a key can never be -1
+	private static final long EMPTY = -1L;
+
+	private static final int STRIPE_BITS = 6;
+	private static final int MIN_STRIPE_CAPACITY = 64;
+
+	private final Stripe[] stripes;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maximumSize the maximum number of scores kept in the cache
+	 */
+	public RelatednessCache(int maximumSize) {
+		int nbStripes = 1 << STRIPE_BITS;
+		int maxStripeSize = Math.max(1, maximumSize / nbStripes);
+		stripes = new Stripe[nbStripes];
+		for (int i = 0; i < nbStripes; i++)
+			stripes[i] = new Stripe(maxStripeSize);
+	}
+
+	/**
+	 * @return the cached relatedness for the given key, or Float.NaN if not present
+	 */
+	public float get(long key) {
+		int hash = hash(key);
+		float value = stripes[hash >>> (32 - STRIPE_BITS)].get(key, hash);
+		if (Float.isNaN(value))
+			misses.increment();
+		else
+			hits.increment();
+		return value;
+	}
+
+	public void put(long key, float value) {
+		int hash = hash(key);
+		stripes[hash >>> (32 - STRIPE_BITS)].put(key, value, hash);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes)
+			size += stripe.size();
+		return size;
+	}
+
+	/**
+	 * Removes all the entries and resets the statistics
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes)
+			stripe.clear();
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return the proportion of lookups answered by the cache, 0.0 if no lookup was made
+	 */
+	public double getHitRate() {
+		long nbHits = hits.sum();
+		long total = nbHits + misses.sum();
+		if (total == 0)
+			return 0.0;
+		return (double) nbHits / total;
+	}
+
+	/**
+	 * 64 to 32 bits mixing (MurmurHash3 finalizer), the high bits select the stripe and the low
+	 * bits the slot in the stripe.
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private final class Stripe {
+		private final int maxSize;
+		private final int maxCapacity;
+
+		private long[] keys;
+		private float[] values;
+		private boolean[] referenced;
+		private int size = 0;
+		private int hand = 0;
+
+		Stripe(int maxSize) {
+			this.maxSize = maxSize;
+			// keep the load factor under 0.75 when the stripe is full
+			int capacity = MIN_STRIPE_CAPACITY;
+			while (capacity * 3 / 4 < maxSize)
+				capacity <<= 1;
+			this.maxCapacity = capacity;
+			allocate(Math.min(MIN_STRIPE_CAPACITY, maxCapacity));
+		}
+
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			values = new float[capacity];
+			referenced = new boolean[capacity];
+			size = 0;
+			hand = 0;
+		}
+
+		synchronized float get(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (true) {
+				long current = keys[i];
+				if (current == key) {
+					referenced[i] = true;
+					return values[i];
+				}
+				if (current == EMPTY)
+					return Float.NaN;
+				i = (i + 1) & mask;
+			}
+		}
+
+		synchronized void put(long key, float value, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (keys[i] != EMPTY) {
+				if (keys[i] == key) {
+					values[i] = value;
+					referenced[i] = true;
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+
+			if (size >= maxSize) {
+				evict();
+			} else if (size >= keys.length * 3 / 4 && keys.length < maxCapacity) {
+				grow();
+			} else {
+				insertAt(i, key, value);
+				return;
+			}
+			// the table has changed, look again for a free slot
+			insert(key, value, hash);
+		}
+
+		private void insert(long key, float value, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (keys[i] != EMPTY)
+				i = (i + 1) & mask;
+			insertAt(i, key, value);
+		}
+
+		private void insertAt(int i, long key, float value) {
+			keys[i] = key;
+			values[i] = value;
+			referenced[i] = false;
+			size++;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			float[] oldValues = values;
+			allocate(keys.length << 1);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != EMPTY)
+					insert(oldKeys[i], oldValues[i], hash(oldKeys[i]));
+			}
+		}
+
+		/**
+		 * CLOCK eviction: the hand gives a second chance to referenced entries and removes the
+		 * first one which has not been used since the last pass.
+		 */
+		private void evict() {
+			int mask = keys.length - 1;
+			while (true) {
+				int i = hand;
+				hand = (hand + 1) & mask;
+				if (keys[i] == EMPTY)
+					continue;
+				if (referenced[i]) {
+					referenced[i] = false;
+					continue;
+				}
+				removeAt(i);
+				evictions.increment();
+				return;
+			}
+		}
+
+		/**
+		 * Removes the entry at the given slot, shifting back the following entries of the probe
+		 * sequence so that no tombstone is needed.
+		 */
+		private void removeAt(int hole) {
+			int mask = keys.length - 1;
+			int j = hole;
+			while (true) {
+				j = (j + 1) & mask;
+				long current = keys[j];
+				if (current == EMPTY)
+					break;
+				int ideal = hash(current) & mask;
+				// the entry can fill the hole if the hole is between its ideal slot and its slot
+				if (((j - ideal) & mask) >= ((j - hole) & mask)) {
+					keys[hole] = current;
+					values[hole] = values[j];
+					referenced[hole] = referenced[j];
+					hole = j;
+				}
+			}
+			keys[hole] = EMPTY;
+			referenced[hole] = false;
+			size--;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		synchronized void clear() {
+			allocate(Math.min(MIN_STRIPE_CAPACITY, maxCapacity));
+		}
+	}
+}
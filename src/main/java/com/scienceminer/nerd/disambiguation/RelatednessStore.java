@@ -0,0 +1,323 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A persistent store of relatedness scores, so that a restarted service does not start with an
+ * empty relatedness cache.
+ *
+ * The store is a memory-mapped open addressing hash table (linear probing) of fixed capacity,
+ * associating the long key of a pair of articles, see {@link ArticlePair#computeKey(int, int)},
+ * to a float score. Each slot takes 16 bytes (key, score, padding), a zero key marks an empty
+ * slot. The file header records the version of the knowledge base the scores have been computed
+ * with: a store built against another KB snapshot is discarded when opened.
+ *
+ * Lookups are optimistic reads, validated against the writes and retried under a read lock when
+ * a write happened meanwhile. Writes are exclusive, either directly with {@link #put(long, float)}
+ * (offline pre-computation), or asynchronously with {@link #offer(long, float)}, which buffers
+ * the scores computed by the service and writes them in the background. Once 3/4 of the slots
+ * are used, new scores are ignored.
+ */
+public class RelatednessStore {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RelatednessStore.class);
+
+	private static final int MAGIC = 0x45465253; // "EFRS"
+	private static final int FORMAT_VERSION = 1;
+
+	// header: magic, format version, KB snapshot version, capacity, size
+	private static final int HEADER_SIZE = 32;
+	private static final int SIZE_OFFSET = 20;
+	private static final int SLOT_SIZE = 16;
+
+	// the whole table must fit in a single mapping
+	private static final int MAX_CAPACITY = 1 << 26;
+
+	private static final int PENDING_SIZE = 1 << 16;
+	private static final long FLUSH_PERIOD_SECONDS = 10;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int maxSize;
+	private volatile int size;
+
+	// guards the mapped table: the buffer gives no visibility guarantee between threads
+	private final StampedLock lock = new StampedLock();
+
+	// scores waiting to be written by the background flush
+	private long[] pendingKeys = new long[PENDING_SIZE];
+	private float[] pendingValues = new float[PENDING_SIZE];
+	private int nbPending = 0;
+	private final Object pendingLock = new Object();
+
+	private ScheduledExecutorService flusher = null;
+
+	/**
+	 * Callback for iterating over the stored scores
+	 */
+	public interface EntryConsumer {
+		void accept(long key, float value);
+	}
+
+	/**
+	 * Opens the store at the given path, creating it if it does not exist. An existing store
+	 * built for another KB snapshot or with another capacity is discarded.
+	 *
+	 * @param file the store file
+	 * @param maxPairs the maximum number of pairs to be stored
+	 * @param snapshotVersion the version of the KB the scores are computed with
+	 */
+	public RelatednessStore(File file, int maxPairs, long snapshotVersion) throws IOException {
+		this.file = file;
+		int cap = 1024;
+		while (cap * 3L / 4 < maxPairs && cap < MAX_CAPACITY)
+			cap <<= 1;
+		this.capacity = cap;
+		this.maxSize = (int) (capacity * 3L / 4);
+
+		if (file.getParentFile() != null && !file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+		boolean existing = file.exists() && file.length() == HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+		this.raf = new RandomAccessFile(file, "rw");
+		if (existing) {
+			MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION ||
+				header.getLong(8) != snapshotVersion || header.getInt(16) != capacity) {
+				LOGGER.info("Relatedness store " + file.getPath() + " does not match the current KB, it will be rebuilt");
+				existing = false;
+			}
+		}
+		if (!existing) {
+			// the file is sparse, empty slots are zero
+			raf.setLength(0);
+			raf.setLength(HEADER_SIZE + (long) capacity * SLOT_SIZE);
+		}
+
+		this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+		if (!existing) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.putLong(8, snapshotVersion);
+			buffer.putInt(16, capacity);
+			buffer.putInt(SIZE_OFFSET, 0);
+		}
+		this.size = buffer.getInt(SIZE_OFFSET);
+		LOGGER.info("Relatedness store " + file.getPath() + " opened with " + size + " pairs");
+	}
+
+	/**
+	 * Starts writing in the background the scores passed to {@link #offer(long, float)}
+	 */
+	public synchronized void startBackgroundWriter() {
+		if (flusher != null)
+			return;
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "relatedness-store-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		flusher.scheduleWithFixedDelay(this::flush, FLUSH_PERIOD_SECONDS, FLUSH_PERIOD_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return the stored relatedness for the given key, or Float.NaN if not present
+	 */
+	public float get(long key) {
+		if (key == 0)
+			return Float.NaN;
+		long stamp = lock.tryOptimisticRead();
+		float value = lookup(key);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = lookup(key);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return value;
+	}
+
+	private float lookup(long key) {
+		// at least a quarter of the slots are empty, so the probing ends even on an
+		// inconsistent optimistic read
+		int mask = capacity - 1;
+		int i = slot(key, mask);
+		while (true) {
+			int offset = HEADER_SIZE + i * SLOT_SIZE;
+			long current = buffer.getLong(offset);
+			if (current == key)
+				return buffer.getFloat(offset + 8);
+			if (current == 0)
+				return Float.NaN;
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Writes a score immediately.
+	 *
+	 * @return false if the store is full and the score has not been stored
+	 */
+	public boolean put(long key, float value) {
+		if (key == 0)
+			return false;
+		long stamp = lock.writeLock();
+		try {
+			return insert(key, value);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private boolean insert(long key, float value) {
+		int mask = capacity - 1;
+		int i = slot(key, mask);
+		while (true) {
+			int offset = HEADER_SIZE + i * SLOT_SIZE;
+			long current = buffer.getLong(offset);
+			if (current == key) {
+				buffer.putFloat(offset + 8, value);
+				return true;
+			}
+			if (current == 0) {
+				if (size >= maxSize)
+					return false;
+				buffer.putFloat(offset + 8, value);
+				buffer.putLong(offset, key);
+				size++;
+				buffer.putInt(SIZE_OFFSET, size);
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Buffers a score to be written by the background writer. Scores are dropped if the buffer
+	 * is full or if the store is full.
+	 */
+	public void offer(long key, float value) {
+		if (size >= maxSize)
+			return;
+		synchronized (pendingLock) {
+			if (nbPending < pendingKeys.length) {
+				pendingKeys[nbPending] = key;
+				pendingValues[nbPending] = value;
+				nbPending++;
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffered scores in the store
+	 */
+	public void flush() {
+		long[] keys;
+		float[] values;
+		int nb;
+		synchronized (pendingLock) {
+			if (nbPending == 0)
+				return;
+			keys = pendingKeys;
+			values = pendingValues;
+			nb = nbPending;
+			pendingKeys = new long[PENDING_SIZE];
+			pendingValues = new float[PENDING_SIZE];
+			nbPending = 0;
+		}
+		try {
+			for (int i = 0; i < nb; i++) {
+				if (!put(keys[i], values[i]))
+					break;
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Error when writing in the relatedness store " + file.getPath(), e);
+		}
+	}
+
+	/**
+	 * Iterates over all the stored scores, for instance to warm up an in-memory cache
+	 *
+	 * @param maxEntries maximum number of entries to visit
+	 */
+	public void forEach(EntryConsumer consumer, int maxEntries) {
+		int visited = 0;
+		long stamp = lock.readLock();
+		try {
+			for (int i = 0; i < capacity && visited < maxEntries; i++) {
+				int offset = HEADER_SIZE + i * SLOT_SIZE;
+				long key = buffer.getLong(offset);
+				if (key != 0) {
+					consumer.accept(key, buffer.getFloat(offset + 8));
+					visited++;
+				}
+			}
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isFull() {
+		return size >= maxSize;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes the pending scores, syncs the file and releases it
+	 */
+	public void close() {
+		ScheduledExecutorService writer;
+		synchronized (this) {
+			writer = flusher;
+			flusher = null;
+		}
+		if (writer != null) {
+			writer.shutdown();
+			try {
+				writer.awaitTermination(FLUSH_PERIOD_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+		long stamp = lock.writeLock();
+		try {
+			buffer.force();
+			raf.close();
+		} catch (IOException e) {
+			LOGGER.warn("Error when closing the relatedness store " + file.getPath(), e);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+}
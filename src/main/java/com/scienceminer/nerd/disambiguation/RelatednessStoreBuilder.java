@@ -0,0 +1,143 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.exceptions.NerdResourceException;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
+import com.scienceminer.nerd.kb.UpperKnowledgeBase;
+import com.scienceminer.nerd.kb.db.PageIterator;
+import com.scienceminer.nerd.kb.model.Article;
+import com.scienceminer.nerd.kb.model.Page;
+import com.scienceminer.nerd.kb.model.Page.PageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import static com.scienceminer.nerd.kb.UpperKnowledgeBase.TARGET_LANGUAGES;
+
+/**
+ * Offline pre-computation of the persistent relatedness store of a language, so that a newly
+ * deployed service does not have to compute the most common relatedness scores again.
+ *
+ * The store path is the one given by relatednessStore in the wikipedia-xx.yaml configuration.
+ * The pairs of articles to be scored are either:
+ * - read from a file of page id pairs, one pair per line separated by a tab or a space,
+ *   e.g. pairs extracted from request logs,
+ * - or the pairs of articles co-occurring as links in the same Wikipedia article, limited
+ *   to the first n out-links of each article.
+ *
+ * Example: ./gradlew build_relatedness_store -Plang=en -Plinks=50
+ */
+public class RelatednessStoreBuilder {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RelatednessStoreBuilder.class);
+
+	private final String lang;
+	private final LowerKnowledgeBase wikipedia;
+	private final Relatedness relatedness;
+	private final RelatednessStore store;
+
+	private long nbComputed = 0;
+
+	public RelatednessStoreBuilder(String lang) {
+		this.lang = lang;
+		this.wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+		if (wikipedia == null)
+			throw new NerdResourceException("The language is not supported or not loaded: " + lang);
+		this.relatedness = Relatedness.getInstance();
+		this.store = relatedness.getStore(lang);
+		if (store == null)
+			throw new NerdResourceException("No relatedness store is configured in wikipedia-" + lang + ".yaml");
+	}
+
+	/**
+	 * Scores the pairs of page ids listed in the given file
+	 */
+	public void buildFromPairs(File pairFile) throws Exception {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(pairFile), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null && !store.isFull()) {
+				String[] pieces = line.trim().split("[\t ]+");
+				if (pieces.length < 2)
+					continue;
+				try {
+					score(Integer.parseInt(pieces[0]), Integer.parseInt(pieces[1]));
+				} catch(NumberFormatException e) {
+					LOGGER.warn("Invalid page id pair: " + line);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scores the pairs of articles linked from the same Wikipedia article
+	 *
+	 * @param maxLinks the maximum number of out-links considered per article
+	 */
+	public void buildFromLinkCooccurrences(int maxLinks) {
+		PageIterator iterator = wikipedia.getPageIterator(PageType.article);
+		long nbArticles = 0;
+		try {
+			while (iterator.hasNext() && !store.isFull()) {
+				Page page = iterator.next();
+				int[] links = wikipedia.getLinkPostings(page.getId(), Direction.Out).toArray();
+				int nbLinks = Math.min(links.length, maxLinks);
+				for (int i = 0; i < nbLinks && !store.isFull(); i++) {
+					for (int j = i + 1; j < nbLinks; j++) {
+						score(links[i], links[j]);
+					}
+				}
+				nbArticles++;
+				if (nbArticles % 10000 == 0) {
+					LOGGER.info(nbArticles + " articles processed, " + nbComputed + " pairs computed, "
+						+ store.size() + " pairs stored");
+				}
+			}
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private void score(int idA, int idB) {
+		long key = ArticlePair.computeKey(idA, idB);
+		if (!Float.isNaN(store.get(key)))
+			return;
+		Page pageA = wikipedia.getPageById(idA);
+		Page pageB = wikipedia.getPageById(idB);
+		if (pageA.getType() != PageType.article || pageB.getType() != PageType.article)
+			return;
+		float score = (float) relatedness.getRelatednessWithoutCache((Article)pageA, (Article)pageB, lang);
+		store.put(key, score);
+		nbComputed++;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3 || !(args[1].equals("-pairs") || args[1].equals("-links"))) {
+			System.out.println("usage: command lang -pairs pairFile | lang -links maxLinksPerArticle");
+			System.exit(-1);
+		}
+
+		String lang = args[0];
+		if (!TARGET_LANGUAGES.contains(lang)) {
+			System.out.println("unsupported language, must be one of " + TARGET_LANGUAGES.toString());
+			System.exit(-1);
+		}
+
+		RelatednessStoreBuilder builder = new RelatednessStoreBuilder(lang);
+		long start = System.currentTimeMillis();
+		try {
+			if (args[1].equals("-pairs")) {
+				builder.buildFromPairs(new File(args[2]));
+			} else {
+				builder.buildFromLinkCooccurrences(Integer.parseInt(args[2]));
+			}
+		} finally {
+			LOGGER.info("Relatedness store for " + lang + ": " + builder.store.size() + " pairs stored, "
+				+ builder.nbComputed + " computed in " + (System.currentTimeMillis() - start) + " ms");
+			builder.relatedness.close();
+		}
+	}
+}
@@ -3,6 +3,9 @@ package com.scienceminer.nerd.embeddings;
 import com.scienceminer.nerd.utilities.Utilities;
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Compute similarity score using centroid 
  * 
@@ -16,15 +19,16 @@ public class CentroidEntityScorer extends EntityScorer {
     }
 
     public class CentroidScorerContext extends ScorerContext {
-        float[] centroid_vec;
+        // sum of the quantized word vectors weighted by their counts, exact in integers
+        int[] centroid_vec;
         float norm;
 
-        public CentroidScorerContext(float[] word_vecs, int[] word_counts) {
+        public CentroidScorerContext(short[] word_vecs, int[] word_counts) {
             super(word_vecs, word_counts);
             // compute context centroid
             int word_size = kb.getEmbeddingsSize();
             int n_words = word_counts.length;
-            centroid_vec = new float[ word_size ];
+            centroid_vec = new int[ word_size ];
             for(int i = 0; i < n_words; ++i) {
                 int word_count = word_counts[i];
                 for(int j = 0; j < word_size; ++j) {
@@ -32,22 +36,63 @@ public class CentroidEntityScorer extends EntityScorer {
                 }
             }
 
-            norm = Utilities.inner(centroid_vec.length, centroid_vec, 0, centroid_vec, 0);
-            norm = (float) Math.sqrt(norm);
+            double squares = 0.0;
+            for(int j = 0; j < word_size; ++j) {
+                squares += (double) centroid_vec[j] * centroid_vec[j];
+            }
+            norm = (float) Math.sqrt(squares);
         }
 
         @Override
         public float compute_score() {
-            if (entity_vec == null)
+            if (!has_entity())
                 return 0.0f;
-            int word_size = centroid_vec.length;
-            float score = Utilities.inner(word_size, entity_vec, 0, centroid_vec, 0) / norm;
+            long inner = Utilities.inner(centroid_vec.length, centroid_vec, 0, entity_vec, 0);
+            float score = inner / norm;
             return score;
         }
+
+        /**
+         * The vectors of the entities are gathered and scored against the centroid in a 
+         * single pass
+         */
+        @Override
+        public float[] score(List<String> entity_ids) {
+            float[] scores = new float[entity_ids.size()];
+            if (word_counts.length == 0) {
+                Arrays.fill(scores, DEFAULT_SCORE);
+                return scores;
+            }
+            int word_size = kb.getEmbeddingsSize();
+            short[] rows = new short[entity_ids.size() * word_size];
+            int[] entity_rows = new int[entity_ids.size()];
+            int n_rows = 0;
+            for(int i = 0; i < scores.length; ++i) {
+                String entity_id = entity_ids.get(i);
+                entity_rows[i] = -1;
+                if (entity_id == null) {
+                    scores[i] = DEFAULT_SCORE;
+                    continue;
+                }
+                short[] vector = get_entity_vector(entity_id, rows, n_rows * word_size);
+                if (vector == null)
+                    continue;
+                if (vector != rows)
+                    System.arraycopy(vector, 0, rows, n_rows * word_size, word_size);
+                entity_rows[i] = n_rows++;
+            }
+            long[] inners = new long[n_rows];
+            Utilities.inner(word_size, centroid_vec, 0, rows, 0, n_rows, inners);
+            for(int i = 0; i < scores.length; ++i) {
+                if (entity_rows[i] != -1)
+                    scores[i] = inners[entity_rows[i]] / norm;
+            }
+            return scores;
+        }
     }
 
     @Override
-    public ScorerContext create_context(float[] word_vecs, int[] word_counts) {
+    public ScorerContext create_context(short[] word_vecs, int[] word_counts) {
         return new CentroidScorerContext(word_vecs, word_counts);
     }
 
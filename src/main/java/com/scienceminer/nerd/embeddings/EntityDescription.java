@@ -37,6 +37,9 @@ import java.util.*;
  * Command for creating description:
  * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.embeddings.EntityDescription 
  * -Dexec.args="/mnt/data/wikipedia/embeddings/entity.en.description en"
+ *
+ * The entities are described in parallel, with one thread per core by default or the 
+ * number of threads given as third argument.
  */
 public class EntityDescription {
 	private static final Logger LOGGER = LoggerFactory.getLogger(EntityDescription.class);
@@ -45,6 +48,12 @@ public class EntityDescription {
 
 	private int MAX_WORDS_IN_DESCRIPTION = 100;
 
+	// number of entities of a partition of the entity database scan, described by one worker
+	private static final int PARTITION_SIZE = 1000;
+
+	// number of threads describing the entities
+	private int nbThreads = Runtime.getRuntime().availableProcessors();
+
 	public EntityDescription() {
 		try {
 			upperKB = UpperKnowledgeBase.getInstance();
@@ -54,6 +63,10 @@ public class EntityDescription {
 		}
 	}
 
+	public void setNbThreads(int nbThreads) {
+		this.nbThreads = nbThreads;
+	}
+
 	/**
 	 * Alignment by Entities Description (Zhong and Zhang, 2015), i.e. for us by its
 	 * wikipedia article textual content.
@@ -66,9 +79,6 @@ public class EntityDescription {
 	 * Language Processing.
 	 */
 	public void generateDescriptionSummaries(String path, String lang, boolean full) {
-		BufferedWriter writer = null;
-		KBIterator iter = null;
-
 		LowerKnowledgeBase wikipedia = null;
 		try {
 			wikipedia = upperKB.getWikipediaConf(lang);
@@ -79,67 +89,41 @@ public class EntityDescription {
 			throw new NerdResourceException("Error instanciating the knowledge base. ", e);
 		}
 
-		try {
-			writer = new BufferedWriter(new FileWriter(new File(path+"/" + lang + "/description.summaries."+lang)));
-			iter = upperKB.getEntityIterator();
-			int n = 0;
-			while(iter.hasNext()) {
-				if (n > 10000) {
-					writer.flush();
-					n = 0;
-				}
-				Entry entry = iter.next();
-				byte[] keyData = entry.getKey();
-				byte[] valueData = entry.getValue();
-				//Page p = null;
-				try {
-					String entityId = (String)KBEnvironment.deserialize(keyData);
-					Map<String,Integer> pagesIds = (Map<String,Integer>)KBEnvironment.deserialize(valueData);
-					Integer pageId = pagesIds.get(lang);
-					if (pageId != null) {
-						// get the description summary of the entity
-						Page page = upperKB.getWikipediaConf(lang).getPageById(pageId);
-						String text = null;
-						if (full) {
-							text = page.getFullWikiText();
-							if (text == null || text.length() == 0)
-								text = page.getFirstParagraphWikiText();
-						}
-						else {
-							text = page.getFirstParagraphWikiText();
-							if (text == null || text.length() == 0)
-								text = page.getFullWikiText();
-						}
-						if (text != null) {
-							text = normaliseDescription(text, lang);
-
-							// max N words in the descriptions 
-							text = truncate(text, MAX_WORDS_IN_DESCRIPTION);
-						}
-
-						if (text != null && text.length() > 10) {
-							writer.write(entityId + "\t" + text + "\n");
-							n++;
-						}
-					}
-				} catch(Exception e) {
-					LOGGER.error("fail to write entity description", e);
-				}
-			}
-		} catch(IOException e) {
-			LOGGER.error("Error when writing entity description", e);
- 		} finally {
-			if (iter != null)
-				iter.close();
-			if (writer != null) {
-				try {
-					writer.flush();
-					writer.close();
-				} catch(Exception e) {
-					LOGGER.error("fail to close the entity description file", e);
-				}	
-			}
+		final LowerKnowledgeBase kb = wikipedia;
+		generateDescriptions(new File(path+"/" + lang + "/description.summaries."+lang), 
+			entry -> describeBySummary(entry, kb, lang, full));
+	}
+
+	private String describeBySummary(Entry entry, LowerKnowledgeBase wikipedia, String lang, boolean full) {
+		String entityId = (String)KBEnvironment.deserialize(entry.getKey());
+		Map<String,Integer> pagesIds = (Map<String,Integer>)KBEnvironment.deserialize(entry.getValue());
+		Integer pageId = pagesIds.get(lang);
+		if (pageId == null)
+			return null;
+
+		// get the description summary of the entity
+		Page page = wikipedia.getPageById(pageId);
+		String text = null;
+		if (full) {
+			text = page.getFullWikiText();
+			if (text == null || text.length() == 0)
+				text = page.getFirstParagraphWikiText();
 		}
+		else {
+			text = page.getFirstParagraphWikiText();
+			if (text == null || text.length() == 0)
+				text = page.getFullWikiText();
+		}
+		if (text != null) {
+			text = normaliseDescription(text, lang);
+
+			// max N words in the descriptions 
+			text = truncate(text, MAX_WORDS_IN_DESCRIPTION);
+		}
+
+		if (text != null && text.length() > 10)
+			return entityId + "\t" + text;
+		return null;
 	}
 
 	/**
@@ -166,86 +150,70 @@ public class EntityDescription {
 		LOGGER.info("Loading full wikitext content - this will take a while the first time");
 		wikipedia.loadFullContentDB();
 
-		BufferedWriter writer = null;
-		KBIterator iter = null;
-		try {
-			writer = new BufferedWriter(new FileWriter(new File(path+"/"+lang+"/description.mentions."+lang)));
-			iter = upperKB.getEntityIterator();
-			int n = 0;
-			while(iter.hasNext()) {
-				if (n > 10000) {
-					writer.flush();
-					n = 0;
-				}
-				Entry entry = iter.next();
-				byte[] keyData = entry.getKey();
-				byte[] valueData = entry.getValue();
-				try {
-					String entityId = (String)KBEnvironment.deserialize(keyData);
-					Map<String,Integer> pagesIds = (Map<String,Integer>)KBEnvironment.deserialize(valueData);
-					Integer pageId = pagesIds.get(lang);
-					if (pageId != null) {
-						// get all the pages linking to this page
-						Page page = wikipedia.getPageById(pageId);
-						if (page.getType() == Page.PageType.article) {
-							Article article = (Article)page;
-							Article[] articles = article.getLinksIn();
-							StringBuilder textBuilder = new StringBuilder();
-							// get all the fulltext for the "mentionning" articles
-							for(int i=0; i<articles.length; i++) {
-								String markup = articles[i].getFullWikiText();
-								if ( (markup == null) || (markup.length() < 10) )
-									continue;
-								markup = MediaWikiParser.getInstance().toTextWithInternalLinksOnly(markup, lang);
-								List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(markup, new Language(lang, 1.0));
-								List<int[]> regions = getLinkRegions(markup);
-								int l = 0;
-								for(int[] region : regions) {
-									if (l > 100)
-										break;
-									if (region.length != 2)
-										continue;
-
-									// check if this region correspond to a link to the entity entityId
-									String regionString = markup.substring(region[0]+2, region[1]-2);
-									String title = null;
-									int ind = regionString.indexOf("|");
-									if (ind == -1)
-										title = regionString;
-									else 
-										title = regionString.substring(0,ind);
-									if ( (title == null) || (title.length() < 3) )
-										continue;
-									if (title.indexOf("#") != -1)
-										title = title.substring(0, title.indexOf("#"));
-									Article articleLink = wikipedia.getArticleByTitle(title);
-									if (articleLink == null)
-										continue;
-									int pageLinkId = articleLink.getId();
-									if (pageLinkId == pageId) {
-										List<LayoutToken> subTokens = Utilities.getWindow(region[0]+2, region[1]-2, tokens, 10, lang);
-										for (LayoutToken token : subTokens)
-											textBuilder.append(token.getText()).append(" ");
-										l++;
-									}
-								}
-							}
-							if (textBuilder.length() > 1) {
-								String text = normaliseDescription(textBuilder.toString(), lang);
-								writer.write(entityId + "\t" + text + "\n");
-							}
-						}
-						n++;
-					}
-				} catch(Exception e) {
-					LOGGER.error("fail to write entity description", e);
+		final LowerKnowledgeBase kb = wikipedia;
+		generateDescriptions(new File(path+"/"+lang+"/description.mentions."+lang), 
+			entry -> describeByMentionContexts(entry, kb, lang));
+	}
+
+	private String describeByMentionContexts(Entry entry, LowerKnowledgeBase wikipedia, String lang) throws Exception {
+		String entityId = (String)KBEnvironment.deserialize(entry.getKey());
+		Map<String,Integer> pagesIds = (Map<String,Integer>)KBEnvironment.deserialize(entry.getValue());
+		Integer pageId = pagesIds.get(lang);
+		if (pageId == null)
+			return null;
+
+		// get all the pages linking to this page
+		Page page = wikipedia.getPageById(pageId);
+		if (page.getType() != Page.PageType.article)
+			return null;
+
+		Article article = (Article)page;
+		Article[] articles = article.getLinksIn();
+		StringBuilder textBuilder = new StringBuilder();
+		// get all the fulltext for the "mentionning" articles
+		for(int i=0; i<articles.length; i++) {
+			String markup = articles[i].getFullWikiText();
+			if ( (markup == null) || (markup.length() < 10) )
+				continue;
+			markup = MediaWikiParser.getInstance().toTextWithInternalLinksOnly(markup, lang);
+			List<LayoutToken> tokens = GrobidAnalyzer.getInstance().tokenizeWithLayoutToken(markup, new Language(lang, 1.0));
+			List<int[]> regions = getLinkRegions(markup);
+			int l = 0;
+			for(int[] region : regions) {
+				if (l > 100)
+					break;
+				if (region.length != 2)
+					continue;
+
+				// check if this region correspond to a link to the entity entityId
+				String regionString = markup.substring(region[0]+2, region[1]-2);
+				String title = null;
+				int ind = regionString.indexOf("|");
+				if (ind == -1)
+					title = regionString;
+				else 
+					title = regionString.substring(0,ind);
+				if ( (title == null) || (title.length() < 3) )
+					continue;
+				if (title.indexOf("#") != -1)
+					title = title.substring(0, title.indexOf("#"));
+				Article articleLink = wikipedia.getArticleByTitle(title);
+				if (articleLink == null)
+					continue;
+				int pageLinkId = articleLink.getId();
+				if (pageLinkId == pageId) {
+					List<LayoutToken> subTokens = Utilities.getWindow(region[0]+2, region[1]-2, tokens, 10, lang);
+					for (LayoutToken token : subTokens)
+						textBuilder.append(token.getText()).append(" ");
+					l++;
 				}
 			}
-		} catch(IOException e) {
-			LOGGER.error("Error when writing entity description", e);
- 		} finally {
-			IOUtils.closeQuietly(iter, writer);
 		}
+		if (textBuilder.length() > 1) {
+			String text = normaliseDescription(textBuilder.toString(), lang);
+			return entityId + "\t" + text;
+		}
+		return null;
 	}
 
 	/**
@@ -272,73 +240,136 @@ public class EntityDescription {
 		// build the reverse map giving all the relation where an entity is tail
 		upperKB.loadReverseStatementDatabase(false);
 
-		BufferedWriter writer = null;
-		KBIterator iter = null;
-		try {
-			writer = new BufferedWriter(new FileWriter(new File(path+"/"+lang+"/description.summaries."+lang)));
-			iter = upperKB.getEntityIterator();
-			int n = 0;
-			while(iter.hasNext()) {
-				if (n > 10000) {
-					writer.flush();
-					n = 0;
+		final LowerKnowledgeBase kb = wikipedia;
+		generateDescriptions(new File(path+"/"+lang+"/description.summaries."+lang), 
+			entry -> describeByGraphRelations(entry, kb, lang));
+	}
+
+	private String describeByGraphRelations(Entry entry, LowerKnowledgeBase wikipedia, String lang) {
+		StringBuilder textBuilder = new StringBuilder();
+		String entityId = (String)KBEnvironment.deserialize(entry.getKey());
+
+		List<Statement> statements = upperKB.getStatements(entityId);
+		if (statements != null) {
+			for(Statement statement : statements) {
+				String value = statement.getValue();
+				if (value.startsWith("Q")) {
+					// we have an entity as value
+					Integer pageId = upperKB.getPageIdByLang(value, lang);
+					Page page = wikipedia.getPageById(pageId);
+
+					String valueEntityString = page.getTitle();
+					textBuilder.append(valueEntityString).append(" ");
+				} else {
+					// we have a literal value, and we only consider the textual values
+
 				}
+			}
+		}
 
-				Entry entry = iter.next();
-				byte[] keyData = entry.getKey();
-				byte[] valueData = entry.getValue();
-				try {
-					StringBuilder textBuilder = new StringBuilder();
-					String entityId = (String)KBEnvironment.deserialize(keyData);
-
-					List<Statement> statements = upperKB.getStatements(entityId);
-					if (statements != null) {
-						for(Statement statement : statements) {
-							String value = statement.getValue();
-							if (value.startsWith("Q")) {
-								// we have an entity as value
-								Integer pageId = upperKB.getPageIdByLang(value, lang);
-								Page page = wikipedia.getPageById(pageId);
-
-								String valueEntityString = page.getTitle();
-								textBuilder.append(valueEntityString).append(" ");
-							} else {
-								// we have a literal value, and we only consider the textual values
-
-							}
-						}
-					}
+		statements = upperKB.getReverseStatements(entityId);
+		if (statements == null) 
+			return null;
+		
+		for(Statement statement : statements) {
+			String headEntityId = statement.getConceptId();
 
-					statements = upperKB.getReverseStatements(entityId);
-					if (statements == null) 
-						continue;
-					
-					for(Statement statement : statements) {
-						String headEntityId = statement.getConceptId();
+			Integer pageId = upperKB.getPageIdByLang(headEntityId, lang);
+			Page page = wikipedia.getPageById(pageId);
 
-						Integer pageId = upperKB.getPageIdByLang(headEntityId, lang);
-						Page page = wikipedia.getPageById(pageId);
+			String headEntityString = page.getTitle();
+			textBuilder.append(headEntityString).append(" ");
+		}
 
-						String headEntityString = page.getTitle();
-						textBuilder.append(headEntityString).append(" ");
-					}
+		if (textBuilder.length() > 1) {
+			String text = normaliseDescription(textBuilder.toString(), lang);
+			return entityId + "\t" + text;
+		}
+		return null;
+	}
 
-					if (textBuilder.length() > 1) {
-						String text = normaliseDescription(textBuilder.toString(), lang);
-						writer.write(entityId + "\t" + text + "\n");
+	/**
+	 * Description of an entity of the entity database, as a line of the description file.
+	 */
+	private interface Describer {
+		/**
+		 * @return the description line of the entity of the database entry, without end of 
+		 * line, or null if the entity has no description
+		 */
+		String describe(Entry entry) throws Exception;
+	}
+
+	/**
+	 * Scans the entity database and writes the description lines of the entities in the 
+	 * given file. The scan is split into partitions of consecutive entities, each partition 
+	 * being described by a worker in its own output shard. The shards are merged in the order 
+	 * of the scan, so the file is the same whatever the number of threads.
+	 */
+	private void generateDescriptions(File file, Describer describer) {
+		BufferedWriter writer = null;
+		KBIterator iter = null;
+		try {
+			writer = new BufferedWriter(new FileWriter(file));
+			iter = upperKB.getEntityIterator();
+			final BufferedWriter output = writer;
+			final long[] nbEntities = {0};
+			OrderedParallelProcessor.process(partitions(iter), nbThreads, 
+				partition -> describe(partition, describer),
+				(rank, partition, shard) -> {
+					output.write(shard);
+					nbEntities[0] += partition.size();
+					if ((rank+1) % 100 == 0) {
+						output.flush();
+						LOGGER.info(nbEntities[0] + " entities described");
 					}
-					
-				} catch(Exception e) {
-					LOGGER.error("fail to write entity description", e);
-				}
-			}
-		} catch(IOException e) {
+				});
+			writer.flush();
+		} catch(Exception e) {
 			LOGGER.error("Error when writing entity description", e);
  		} finally {
 			IOUtils.closeQuietly(iter, writer);
 		}
+	}
 
+	/**
+	 * @return the description lines of the entities of a partition, an entity failing to be 
+	 * described being skipped
+	 */
+	private static String describe(List<Entry> partition, Describer describer) {
+		StringBuilder shard = new StringBuilder();
+		for(Entry entry : partition) {
+			try {
+				String line = describer.describe(entry);
+				if (line != null)
+					shard.append(line).append("\n");
+			} catch(Exception e) {
+				LOGGER.error("fail to write entity description", e);
+			}
+		}
+		return shard.toString();
+	}
 
+	/**
+	 * @return the consecutive partitions of the entries of the iterator, which is read as 
+	 * the partitions are requested
+	 */
+	private static Iterator<List<Entry>> partitions(final KBIterator iter) {
+		return new Iterator<List<Entry>>() {
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+
+			@Override
+			public List<Entry> next() {
+				if (!iter.hasNext())
+					throw new NoSuchElementException();
+				List<Entry> partition = new ArrayList<Entry>(PARTITION_SIZE);
+				while (iter.hasNext() && partition.size() < PARTITION_SIZE)
+					partition.add(iter.next());
+				return partition;
+			}
+		};
 	}
 
 	/**
@@ -552,6 +583,8 @@ public class EntityDescription {
             System.exit(-1);
         }
         EntityDescription entityDescription = new EntityDescription();
+        if (args.length > 2)
+            entityDescription.setNbThreads(Integer.parseInt(args[2]));
         entityDescription.generateDescriptionSummaries(args[0], lang, false);
 
         //entityDescription.generateDescriptionMentionContexts(args[0], lang);
@@ -3,8 +3,8 @@ package com.scienceminer.nerd.embeddings;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.db.EmbeddingsMatrix;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -23,11 +23,14 @@ public abstract class EntityScorer {
     }
 
     public abstract class ScorerContext {
-        protected float[] word_vecs;
+        // quantized vectors, scored with the integer kernels of Utilities
+        protected short[] word_vecs;
         protected int[] word_counts;
-        protected float[] entity_vec;
+        protected short[] entity_vec;
+        // buffer for the entity vectors read from the memory-mapped entity embeddings
+        private short[] entity_buffer;
 
-        public ScorerContext(float[] word_vecs, int[] word_counts) {
+        public ScorerContext(short[] word_vecs, int[] word_counts) {
             this.word_vecs = word_vecs;
             this.word_counts = word_counts;
         }
@@ -36,38 +39,89 @@ public abstract class EntityScorer {
             if (entity_id == null || word_counts.length == 0) {
                 return DEFAULT_SCORE;
             }
-            short[] entity_vec_tmp = kb.getEntityEmbeddings(entity_id);
-            if(entity_vec_tmp != null) {
-                entity_vec = new float[entity_vec_tmp.length];
-                for (int i = 0; i < entity_vec_tmp.length; i++) {
-                    this.entity_vec[i] = entity_vec_tmp[i];
-                }
-            }
+            // the context is shared by the candidates of a mention, an entity without 
+            // embeddings must not be scored with the vector of the previous entity
+            if (entity_buffer == null)
+                entity_buffer = new short[kb.getEmbeddingsSize()];
+            entity_vec = get_entity_vector(entity_id, entity_buffer, 0);
             return compute_score();
         }
 
+        /**
+         * Scores several entities against the context, see score(String)
+         */
+        public float[] score(List<String> entity_ids) {
+            float[] scores = new float[entity_ids.size()];
+            for(int i = 0; i < scores.length; ++i) {
+                scores[i] = score(entity_ids.get(i));
+            }
+            return scores;
+        }
+
+        /**
+         * @return the vector of an entity, copied at the given offset of the buffer when read 
+         * from the memory-mapped entity embeddings, null if the entity has no embeddings
+         */
+        protected short[] get_entity_vector(String entity_id, short[] buffer, int offset) {
+            EmbeddingsMatrix matrix = kb.getEntityEmbeddingsMatrix();
+            if (matrix != null) {
+                int row = matrix.getRow(entity_id);
+                if (row == -1)
+                    return null;
+                matrix.copyTo(row, buffer, offset);
+                return buffer;
+            }
+            return kb.getEntityEmbeddings(entity_id);
+        }
+
+        /**
+         * @return true if the current entity has embeddings
+         */
+        protected boolean has_entity() {
+            return entity_vec != null;
+        }
+
         public abstract float compute_score();
     }
 
-    public abstract ScorerContext create_context(float[] word_vecs, int[] word_counts);
+    public abstract ScorerContext create_context(short[] word_vecs, int[] word_counts);
 
     public ScorerContext context(List<String> words) {
+        return context(words, null);
+    }
+
+    /**
+     * @return the scoring context of a list of words, to be shared by all the entities scored 
+     * against these words
+     * @param cache the word embeddings already looked up in the document, null for none
+     */
+    public ScorerContext context(List<String> words, WordVectorCache cache) {
         Multiset<String> counter = TreeMultiset.create();
         counter.addAll(words);
 
         int word_dim = kb.getEmbeddingsSize();
         // word_vecs is the concatenation of all word vectors of the word list
-        float[] word_vecs = new float[counter.size() * word_dim];
+        short[] word_vecs = new short[counter.size() * word_dim];
         IntArrayList word_counts = new IntArrayList();
         int n_words = 0;
+        // without cache, the word vectors are copied directly from the mapped embeddings
+        EmbeddingsMatrix matrix = (cache == null) ? kb.getWordEmbeddingsMatrix() : null;
 
         for(Multiset.Entry<String> entry : counter.entrySet()) {
-            short[] vector = kb.getWordEmbeddings(entry.getElement());
+            if (matrix != null) {
+                int row = matrix.getRow(entry.getElement());
+                if (row != -1) {
+                    word_counts.add(entry.getCount());
+                    matrix.copyTo(row, word_vecs, n_words * word_dim);
+                    n_words += 1;
+                }
+                continue;
+            }
+            short[] vector = (cache == null) ? kb.getWordEmbeddings(entry.getElement()) : 
+                cache.get(kb, entry.getElement());
             if (vector != null) {
                 word_counts.add(entry.getCount());
-                for (int i=0; i<kb.getEmbeddingsSize(); i++) {
-                    word_vecs[n_words * word_dim + i] = vector[i];
-                }
+                System.arraycopy(vector, 0, word_vecs, n_words * word_dim, word_dim);
                 n_words += 1;
             }
         }
@@ -77,12 +131,7 @@ public abstract class EntityScorer {
     }
 
     public float[] score(List<String> entities, List<String> words) {
-        float[] scores = new float[entities.size()];
-        ScorerContext ctx = context(words);
-        for(int i = 0; i < entities.size(); ++i) {
-            scores[i] = ctx.score(entities.get(i));
-        }
-        return scores;
+        return context(words).score(entities);
     }
 
     public float score(String entity, List<String> words) {
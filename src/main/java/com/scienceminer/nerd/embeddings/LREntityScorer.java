@@ -17,21 +17,26 @@ public class LREntityScorer extends EntityScorer {
     }
 
     public class LRScorerContext extends ScorerContext {
-        public LRScorerContext(float[] word_vecs, int[] word_counts) {
+        private long[] dotprods;
+
+        public LRScorerContext(short[] word_vecs, int[] word_counts) {
             super(word_vecs, word_counts);
+            dotprods = new long[word_counts.length];
         }
 
         @Override
         public float compute_score() {
+            if (!has_entity())
+                return DEFAULT_SCORE;
             int n_words = word_counts.length;
             int word_size = kb.getEmbeddingsSize();
+            // PL: size is word_size, not word_size+1, initialize at 0.0
+            // the entity vector is scored against all the word vectors in a single pass
+            Utilities.inner(word_size, entity_vec, 0, word_vecs, 0, n_words, dotprods);
             float s = 0;
             for(int i = 0; i < n_words; ++i) {
                 int word_count = word_counts[i];
-                int word_offset = i * word_size;
-                //double dotprod = entity_vec[ word_size ];
-                // PL: size is word_size, not word_size+1, initialize at 0.0
-                double dotprod = Utilities.inner(word_size, word_vecs, word_offset, entity_vec, 0);
+                double dotprod = dotprods[i];
                 s += word_count * Math.log(1 + Math.exp(dotprod));
             }
 //System.out.println("LR scorer: " + word_counts.length + " words context / " + (-s));
@@ -40,7 +45,7 @@ public class LREntityScorer extends EntityScorer {
     }
 
     @Override
-    public ScorerContext create_context( float[] word_vecs, int[] word_counts ) {
+    public ScorerContext create_context( short[] word_vecs, int[] word_counts ) {
         return new LRScorerContext( word_vecs, word_counts );
     }
 
@@ -9,6 +9,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
 
 import com.scienceminer.nerd.main.MainArgs;
 
@@ -29,6 +32,11 @@ import com.scienceminer.nerd.main.MainArgs;
  *
  * The quantized embeddings will always be saved in the traditional word2vec .vec format.
  *
+ * The vectors are loaded once in memory as double, as parsed by the original streaming 
+ * version, so that the quantized values are the same (about 2.4GB per million vectors of 300 
+ * dimensions). The parsing, the evaluation of the quantization factors and the encoding of 
+ * the quantized vectors are done in parallel (option -threads).
+ *
  * @author roi blanco (original), with modifications patrice lopez
  */
 public class Quantizer {
@@ -39,6 +47,11 @@ public class Quantizer {
      */
     private static MainArgs gbdArgs;
 
+    /**
+     * Number of threads given in the command, null for the number of processors
+     */
+    private static Integer nbThreadsArg = null;
+
     /**
      * Inner class for holding the error and number of words
      */
@@ -78,101 +91,248 @@ public class Quantizer {
     }
 
     /**
-     * Writes out to disk the quantized vectors
-     * @param modelFile input file
-     * @param outputFile output file
-     * @param q quantized factor
-     * @param numberOfWords number of entries in the file
-     * @param hasheader whether the file has a header or not
-     * @throws IOException
+     * Vectors of an embeddings file loaded once in memory, one array per word, so that the 
+     * quantization factors are evaluated and the quantized vectors are written without 
+     * reading the file again. The number of vectors is not bounded by the maximum size of a
+     * single array.
      */
-    public void serializeW2VFormat(String modelFile, String outputFile, int q, int numberOfWords, boolean hasheader) throws
-            IOException {
-        LOGGER.info("Serializing quantized model to " + outputFile + " using q = " + q);
-        
-        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8"));
-        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(modelFile))));
-        String line = null;
-        if(hasheader) 
-            br.readLine();
-
-        line = br.readLine();
-        int len = line.split("\\s+").length - 1;
-        bw.write(numberOfWords + "\t" + len + "\t" + q);
-        bw.write("\n");
-        br.close();
-
-        br = new BufferedReader(new InputStreamReader(new FileInputStream(modelFile), "UTF-8"));
-        if (hasheader) {
-            //skip the header
-            br.readLine(); 
+    public static class Vectors {
+        public final String[] words;
+        // values[i][j] being the j-th value of the i-th word
+        public final double[][] values;
+        public final int dimension;
+
+        public Vectors(String[] words, double[][] values, int dimension) {
+            this.words = words;
+            this.values = values;
+            this.dimension = dimension;
         }
-        while((line = br.readLine()) != null) {
-            String[] parts = line.split("\\s+");
-            bw.write(parts[0] + " ");
-            for(int i = 1; i < parts.length; i++) {
-                Double ff = new Double(parts[i]);
-                int qa = (int) ((int) (Math.abs(ff) * q) * Math.signum(ff));
-                bw.write(qa + " ");
-            }
-            bw.write("\n");
+
+        public int size() {
+            return words.length;
         }
-        br.close();
-        bw.close();
     }
 
     /**
-     * To avoid storing everything in memory, we read the input file each time
+     * Lines parsed, or vectors evaluated or encoded, by a task
+     */
+    private static final int BATCH_SIZE = 10000;
+
+    private int nbThreads = Runtime.getRuntime().availableProcessors();
+
+    public void setNbThreads(int nbThreads) {
+        this.nbThreads = Math.max(1, nbThreads);
+    }
+
+    /**
+     * Loads the vectors of a word2vec-like vector file, the lines being parsed in parallel. The
+     * values are parsed as double. Vectors with NaN values are skipped, as well as vectors 
+     * whose dimension differs from the first one.
      *
      * @param modelFile original vector file
-     * @param q quantization factor
+     * @param hasheader whether the file has a header or not
      * @throws IOException
-     * @return number of words and reconstruction error
      */
-    public ErrorHolder quantizeArray(String modelFile, int q, boolean hasheader) throws IOException {
-        final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(modelFile ))));
-        String line = null;
-        double error = 0;
-        int items = 0;
-        if (hasheader) {
-            //skip the header
-            br.readLine(); 
+    public Vectors load(String modelFile, boolean hasheader) throws IOException {
+        List<String> words = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        int dimension = -1;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        Deque<Future<Vectors>> pending = new ArrayDeque<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(modelFile), "UTF-8"))) {
+            if (hasheader) {
+                //skip the header
+                br.readLine();
+            }
+            String line = null;
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            while((line = br.readLine()) != null) {
+                if (dimension == -1)
+                    dimension = line.split("\\s+").length - 1;
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    final List<String> lines = batch;
+                    final int dim = dimension;
+                    pending.add(executor.submit(() -> parse(lines, dim)));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    if (pending.size() >= 2 * nbThreads)
+                        add(get(pending.poll()), words, values);
+                }
+            }
+            if (!batch.isEmpty()) {
+                final List<String> lines = batch;
+                final int dim = dimension;
+                pending.add(executor.submit(() -> parse(lines, dim)));
+            }
+            while (!pending.isEmpty())
+                add(get(pending.poll()), words, values);
+        } finally {
+            executor.shutdownNow();
         }
-        while((line = br.readLine()) != null) {
+        LOGGER.info("Loaded " + words.size() + " vectors of dimension " + dimension + " from " + modelFile);
+        return new Vectors(words.toArray(new String[words.size()]), values.toArray(new double[values.size()][]), 
+            Math.max(0, dimension));
+    }
+
+    private static Vectors parse(List<String> lines, int dimension) {
+        String[] words = new String[lines.size()];
+        double[][] values = new double[lines.size()][];
+        int n = 0;
+        for(String line : lines) {
             if (line.indexOf("NaN") != -1) {
                 // in case we have NaN around, better skip the entry
                 continue;
             }
             String[] parts = line.split("\\s+");
-            double norm = 0;
-            items++;
-            double wordError = 0;
-            double v[] = new double[parts.length];
+            if (parts.length - 1 != dimension) {
+                LOGGER.warn("Ignoring vector of dimension " + (parts.length - 1) + " for " + parts[0]);
+                continue;
+            }
+            words[n] = parts[0];
+            values[n] = new double[dimension];
             for(int i = 1; i < parts.length; i++) {
                 try {
-                    v[i] = new Double(parts[i]);
-//if (Double.isNaN(v[i])) {
-//    System.out.println("NaN value for:" + parts[i]);
-//}
-                } catch(Exception e) {
-                    System.out.println("failing to parse line: " + line);
-                    e.printStackTrace();
+                    values[n][i - 1] = Double.parseDouble(parts[i]);
+                } catch(NumberFormatException e) {
+                    LOGGER.warn("failing to parse line: " + line);
                 }
-                norm += v[i] * v[i];
+            }
+            n++;
+        }
+        return new Vectors(Arrays.copyOf(words, n), Arrays.copyOf(values, n), dimension);
+    }
+
+    private static void add(Vectors batch, List<String> words, List<double[]> values) {
+        words.addAll(Arrays.asList(batch.words));
+        values.addAll(Arrays.asList(batch.values));
+    }
+
+    /**
+     * @return the quantized value of a vector component
+     */
+    private static int quantize(double value, int q) {
+        return (int) ((int) (Math.abs(value) * q) * Math.signum(value));
+    }
+
+    /**
+     * Writes out to disk the quantized vectors, encoded in parallel by batches and written in 
+     * the order of the vectors
+     * @param vectors the loaded vectors
+     * @param outputFile output file
+     * @param q quantized factor
+     * @throws IOException
+     */
+    public void serializeW2VFormat(Vectors vectors, String outputFile, int q) throws IOException {
+        LOGGER.info("Serializing quantized model to " + outputFile + " using q = " + q);
+
+        int nbBatches = (vectors.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 20)) {
+            output.write((vectors.size() + "\t" + vectors.dimension + "\t" + q + "\n").getBytes(StandardCharsets.UTF_8));
+            for (int b = 0; b < nbBatches; b++) {
+                final int start = b * BATCH_SIZE;
+                final int end = Math.min(vectors.size(), start + BATCH_SIZE);
+                pending.add(executor.submit(() -> encode(vectors, start, end, q)));
+                if (pending.size() >= 2 * nbThreads)
+                    output.write(get(pending.poll()));
+            }
+            while (!pending.isEmpty())
+                output.write(get(pending.poll()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] encode(Vectors vectors, int start, int end, int q) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = start; i < end; i++) {
+            builder.append(vectors.words[i]).append(' ');
+            double[] vector = vectors.values[i];
+            for(int j = 0; j < vectors.dimension; j++) {
+                builder.append(quantize(vector[j], q)).append(' ');
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Evaluates a quantization factor on the loaded vectors, the vectors being split between 
+     * the threads
+     *
+     * @param vectors the loaded vectors
+     * @param q quantization factor
+     * @return number of words and reconstruction error
+     */
+    public ErrorHolder quantizeArray(Vectors vectors, int q) throws IOException {
+        int nbBatches = (vectors.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        double[] errors = new double[nbBatches];
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int b = 0; b < nbBatches; b++) {
+                final int batch = b;
+                tasks.add(executor.submit(() -> {
+                    errors[batch] = error(vectors, batch * BATCH_SIZE, 
+                        Math.min(vectors.size(), (batch + 1) * BATCH_SIZE), q);
+                }));
+            }
+            for (Future<?> task : tasks)
+                get(task);
+        } finally {
+            executor.shutdownNow();
+        }
+        // summed in a fixed order, the result does not depend on the scheduling
+        double error = 0;
+        for (int b = 0; b < nbBatches; b++)
+            error += errors[b];
+        int items = vectors.size();
+        return new ErrorHolder(items, error / items);
+    }
+
+    /**
+     * @return the sum of the relative reconstruction errors of the given vectors
+     */
+    private static double error(Vectors vectors, int start, int end, int q) {
+        int dimension = vectors.dimension;
+        double error = 0;
+        for(int w = start; w < end; w++) {
+            double[] vector = vectors.values[w];
+            double norm = 0;
+            double wordError = 0;
+            for(int i = 0; i < dimension; i++) {
+                double v = vector[i];
+                norm += v * v;
             }
             norm = Math.sqrt(norm);
-//if (norm == 0.0) {
-//    System.out.println("warning norm=0");
-//}
-            for(int i = 1; i < parts.length; i++) {
-                int qa = (int) ((int) (Math.abs(v[i]) * q) * Math.signum(v[i]));
+            // a null vector is quantized without error
+            if (norm == 0.0)
+                continue;
+            for(int i = 0; i < dimension; i++) {
+                double v = vector[i];
+                int qa = quantize(v, q);
                 double dqa = (qa + 0.5 * Math.signum(qa)) / q;
-                wordError += (v[i] - dqa) * (v[i] - dqa);
+                wordError += (v - dqa) * (v - dqa);
             }
             error += Math.sqrt(wordError) / norm;
         }
-        br.close();
-        return new ErrorHolder(items - 1, error / items);
+        return error;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
     }
 
     /**
@@ -185,25 +345,7 @@ public class Quantizer {
      * @throws IOException
      */
     public void quantizeSinglePass(String inputFile, String outputFile, int q, boolean hasheader) throws IOException {
-        serializeW2VFormat(inputFile, outputFile, q, countWords(inputFile, hasheader), hasheader);
-    }
-
-    /**
-     * @param inputfile vector file
-     * @param hasHeader whether the input file has a header or not
-     * @return number of words in the original vector file
-     * @throws IOException
-     */
-    public int countWords(String inputfile, boolean hasHeader) throws IOException {
-        int items = 0;
-        String line = null;
-        final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(new File(inputfile))));
-        if(hasHeader) br.readLine();
-        while((line = br.readLine()) != null) {
-            items++;
-        }
-        System.out.println("Found ["+items+"] words ");
-        return items;
+        serializeW2VFormat(load(inputFile, hasheader), outputFile, q);
     }
 
     /**
@@ -212,23 +354,32 @@ public class Quantizer {
      * reconstruction error and stop there. The other option is to select a
      * tradeoff between the two losses and optimize
      *
+     * The vectors are read once, then each quantization factor of the binary search is 
+     * evaluated in memory by all the threads.
+     *
      * @param inputFile original vector file
      * @param outputFile output file
      * @param hasheader whether the input file has a header or not
      * @throws IOException
      */
     public void quantize(String inputFile, String outputFile, double targetError, boolean hasheader) throws IOException {
+        Vectors vectors = load(inputFile, hasheader);
+        serializeW2VFormat(vectors, outputFile, findQuantizer(vectors, targetError));
+    }
+
+    /**
+     * @return the quantization factor found by binary search for the target reconstruction error
+     */
+    public int findQuantizer(Vectors vectors, double targetError) throws IOException {
         int low = 1;
         int high = 128;
         int bestQ = 0;
-        int nWords = 0;
 
         // if you want rice coding you could start from 1 to 128 and increment by *2 each time (and stop when the
         // condition is met)
         while(high - low > 1) {
             bestQ = (high + low) / 2;
-            ErrorHolder err = quantizeArray(inputFile, bestQ, hasheader);
-            nWords = err.words;
+            ErrorHolder err = quantizeArray(vectors, bestQ);
             LOGGER.info("Binary search: q=" + bestQ + " err= " + err.error);
             if(err.error > targetError) {
                 low = bestQ;
@@ -236,7 +387,7 @@ public class Quantizer {
                 high = bestQ;
             }
         }
-        serializeW2VFormat(inputFile, outputFile, bestQ, nWords, hasheader);
+        return bestQ;
     }
 
     /**
@@ -287,6 +438,13 @@ public class Quantizer {
                     i++;
                     continue;
                 }
+                if (currArg.equals("-threads")) {
+                    if (pArgs[i + 1] != null) {
+                        nbThreadsArg = Integer.parseInt(pArgs[i + 1]);
+                    }
+                    i++;
+                    continue;
+                }
                 if (currArg.equals("-hashheader") || currArg.equals("-header")) {
                     gbdArgs.setHashheader(true);
                     continue;
@@ -307,6 +465,7 @@ public class Quantizer {
         help.append("-out: path to the result quantized data files\n");
         help.append("-error: error rate for quantizing, default is 0.01 (must be a double)\n");
         help.append("-quantizer: quantizer value to avoid binary search (must be an integer)\n");
+        help.append("-threads: number of threads, default is the number of processors (must be an integer)\n");
         help.append("-hashheader: flag to indicate if the data file include a header (that will be skipped)\n");
         return help.toString();
     }
@@ -320,6 +479,8 @@ public class Quantizer {
         gbdArgs = new MainArgs();
         if (processArgs(args)) {
             Quantizer q = new Quantizer();
+            if (nbThreadsArg != null)
+                q.setNbThreads(nbThreadsArg);
             if(gbdArgs.getQuantizer() != null) {
                 System.out.println("Using as a quantizer " + gbdArgs.getQuantizer() + " (won't attempt to search for a better one) ");
                 q.quantizeSinglePass(gbdArgs.getInput(), gbdArgs.getOutput(), Integer.parseInt(gbdArgs.getQuantizer()), 
@@ -5,13 +5,12 @@ import java.io.*;
 
 import com.scienceminer.nerd.kb.LowerKnowledgeBase;
 import com.scienceminer.nerd.kb.UpperKnowledgeBase;
-import com.scienceminer.nerd.mention.ProcessText;
 import com.scienceminer.nerd.disambiguation.NerdCandidate;
 import com.scienceminer.nerd.exceptions.*;
 import com.scienceminer.nerd.utilities.NerdConfig;
 import com.scienceminer.nerd.utilities.Stopwords;
+import com.scienceminer.nerd.utilities.TokenNormaliser;
 
-import org.grobid.core.utilities.UnicodeUtil;
 import org.grobid.core.layout.LayoutToken;
 
 import org.slf4j.Logger;
@@ -92,61 +91,119 @@ public class SimilarityScorer {
 	}
 
 	public float getCentroidScore(NerdCandidate candidate, List<LayoutToken> tokens, String lang) {
-		if (candidate.getWikidataId() == null)
-			return 0.0F;
+		return getCentroidScores(Arrays.asList(candidate), tokens, lang, null)[0];
+	}
+
+	/**
+	 * Scores all the candidates of a mention against the same context, which is normalised 
+	 * and turned into a centroid only once.
+	 *
+	 * @param cache the word embeddings already looked up in the document, null for none
+	 * @return the centroid similarity of each candidate, 0 for a candidate without wikidata id
+	 */
+	public float[] getCentroidScores(List<NerdCandidate> candidates, List<LayoutToken> tokens, 
+			String lang, WordVectorCache cache) {
+		float[] scores = new float[candidates.size()];
+		boolean withWikidataId = false;
+		for (NerdCandidate candidate : candidates) {
+			if (candidate.getWikidataId() != null) {
+				withWikidataId = true;
+				break;
+			}
+		}
+		if (!withWikidataId)
+			return scores;
+		EntityScorer.ScorerContext context = getCentroidContext(tokens, lang, cache);
+		if (context == null)
+			return scores;
+		List<String> entityIds = new ArrayList<>(candidates.size());
+		for (NerdCandidate candidate : candidates)
+			entityIds.add(candidate.getWikidataId());
+		// the entities are scored together against the context centroid
+		float[] entityScores = context.score(entityIds);
+		for (int i = 0; i < scores.length; i++) {
+			if (entityIds.get(i) != null && entityScores[i] > 0.0F)
+				scores[i] = entityScores[i];
+		}
+		return scores;
+	}
+
+	/**
+	 * @return the centroid scoring context of a list of tokens, to be shared by the candidates
+	 * scored against these tokens, null if there is no centroid scorer for the language
+	 * @param cache the word embeddings already looked up in the document, null for none
+	 */
+	public EntityScorer.ScorerContext getCentroidContext(List<LayoutToken> tokens, String lang, 
+			WordVectorCache cache) {
 		CentroidEntityScorer scorer = centroidScorers.get(lang);
-		if (scorer != null) {
-			List<String> terms = toStringEmbeddings(tokens, lang);
-//System.out.println("\ncandidate: "+candidate.toString());
-//System.out.println("local terms: " + terms.toString());
-			float score = scorer.score(candidate.getWikidataId(), terms);
-//System.out.println("score (centroid scorer): " + score);
-			if (score < 0.0F)
-				score = 0.0F;
-			return score;
-		} else {
+		if (scorer == null) {
 			LOGGER.warn(lang + " centroid scorer is null!");
-			return 0.0F;
+			return null;
 		}
+		List<String> terms = toStringEmbeddings(tokens, lang, cache);
+		return scorer.context(terms, cache);
+	}
+
+	/**
+	 * @return the centroid similarity of a candidate with a context built by 
+	 * getCentroidContext, not thread-safe as the context holds the current entity vector
+	 */
+	public float getCentroidScore(NerdCandidate candidate, EntityScorer.ScorerContext context) {
+		if (candidate.getWikidataId() == null || context == null)
+			return 0.0F;
+		float score = context.score(candidate.getWikidataId());
+		if (score < 0.0F)
+			score = 0.0F;
+		return score;
 	}
 
 	/**
 	 * Normalise LayoutTokens sequence as an array of words correspond to word embeddings
 	 */
 	private List<String> toStringEmbeddings(List<LayoutToken> tokens, String lang) {
+		return toStringEmbeddings(tokens, lang, null);
+	}
+
+	/**
+	 * Normalise LayoutTokens sequence as an array of words correspond to word embeddings, 
+	 * the stopwords being removed
+	 * @param cache the tokens already normalised in the document, null for none
+	 */
+	private List<String> toStringEmbeddings(List<LayoutToken> tokens, String lang, WordVectorCache cache) {
 		List<String> toks = new ArrayList<String>();
+		final Stopwords stopwords = getStopwords();
 		for(LayoutToken token : tokens) {
 			String word = token.getText();
-
-			if (word == null || word.trim().length() == 0)
-				continue;
-			if (ProcessText.delimiters.indexOf(word) != -1)
-				continue;
-
-			// unicode normalization
-			word = UnicodeUtil.normaliseText(word);
-
-			// remove possible remaining punctuations
-			word = word.replaceAll("\\p{P}", "");
-
-			// flatten numerical chars
-			word = word.replaceAll("\\d", "0");
-
-			// lower case everything (to be evaluated!)
-			word = word.toLowerCase();
-			word = word.replace("\t", "");
-
-			if (word.trim().length() == 0)
-				continue;
-
-			try {
-				if (!Stopwords.getInstance().isStopword(word, lang))
-					toks.add(word);
-			} catch(Exception e) {
-				LOGGER.warn("Problem getting Stopwords instance", e);
-				toks.add(word);
+			if (cache != null) {
+				// the memoised word of a token is already filtered from the stopwords
+				word = cache.getWord(word, w -> normalise(w, lang, stopwords));
+			} else {
+				word = normalise(word, lang, stopwords);
 			}
+			if (word != null)
+				toks.add(word);
 		}
 		return toks;
 	}
-}
\ No newline at end of file
+
+	private static Stopwords getStopwords() {
+		try {
+			return Stopwords.getInstance();
+		} catch(Exception e) {
+			LOGGER.warn("Problem getting Stopwords instance", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the normalised word of a token, null if the token is ignored or is a stopword
+	 */
+	private static String normalise(String token, String lang, Stopwords stopwords) {
+		String word = TokenNormaliser.normalise(token);
+		if (word == null)
+			return null;
+		if (stopwords != null && stopwords.isStopword(word, lang))
+			return null;
+		return word;
+	}
+}
@@ -0,0 +1,53 @@
+package com.scienceminer.nerd.embeddings;
+
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of the normalised tokens and of the word embeddings looked up while scoring the 
+ * mentions of a document. The context windows of the successive mentions overlap, so the 
+ * same tokens would otherwise be normalised and looked up again in the embeddings database 
+ * for each mention. The ignored tokens and the words without embeddings are cached too.
+ *
+ * A cache is used for a single document, in a single thread.
+ */
+public class WordVectorCache {
+
+    private static final short[] MISSING = new short[0];
+
+    private static final String IGNORED = new String();
+
+    private final Map<String, short[]> vectors = new HashMap<>();
+    private final Map<String, String> words = new HashMap<>();
+
+    /**
+     * @return the word of the token given by the normaliser, null if the token is ignored
+     */
+    public String getWord(String token, Function<String, String> normaliser) {
+        String word = words.get(token);
+        if (word == null) {
+            word = normaliser.apply(token);
+            words.put(token, (word == null) ? IGNORED : word);
+        }
+        return (word == IGNORED) ? null : word;
+    }
+
+    /**
+     * @return the embeddings of the word, null if the word has no embeddings
+     */
+    public short[] get(LowerKnowledgeBase kb, String word) {
+        short[] vector = vectors.get(word);
+        if (vector == null) {
+            vector = kb.getWordEmbeddings(word);
+            vectors.put(word, (vector == null) ? MISSING : vector);
+        }
+        return (vector == MISSING) ? null : vector;
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+}
@@ -1,5 +1,6 @@
 package com.scienceminer.nerd.evaluation;
 
+import com.scienceminer.nerd.disambiguation.CascadeRanking;
 import com.scienceminer.nerd.disambiguation.NerdCandidate;
 import com.scienceminer.nerd.disambiguation.NerdEngine;
 import com.scienceminer.nerd.disambiguation.NerdEntity;
@@ -41,6 +42,10 @@ import static com.scienceminer.nerd.kb.UpperKnowledgeBase.TARGET_LANGUAGES;
  * <p>
  * Example launch command:
  * mvn exec:java -Dexec.mainClass=com.scienceminer.nerd.evaluation.NEDCorpusEvaluation -Dexec.args="ace"
+ * <p>
+ * With the option -cascade, the ranking is done without cascade and the accuracy of the 
+ * cascade ranking is reported for a grid of thresholds, with the proportion of mentions 
+ * decided without the ranker, for choosing the cascade thresholds of the configuration.
  */
 
 public class NEDCorpusEvaluation {
@@ -70,7 +75,18 @@ public class NEDCorpusEvaluation {
         }
     }
 
+    // thresholds of the cascade ranking evaluated with the option -cascade
+    private static final double[] CASCADE_MIN_PRIORS = {0.8, 0.85, 0.9, 0.95, 0.99};
+    private static final double[] CASCADE_MIN_MARGINS = {0.5, 0.7, 0.8, 0.9};
+
     public String eval(String corpus) {
+        return eval(corpus, false);
+    }
+
+    /**
+     * @param cascade if true, the cascade ranking is evaluated for a grid of thresholds
+     */
+    public String eval(String corpus, boolean cascade) {
         StringBuilder report = new StringBuilder();
 
         String corpusPath = "data/corpus/corpus-long/" + corpus + "/";
@@ -124,6 +140,15 @@ public class NEDCorpusEvaluation {
         double recall = 0.0;
         double f1 = 0.0;
 
+        // cascade ranking, per thresholds: mentions decided by the priors and correct mentions
+        CascadeRanking[][] cascades = new CascadeRanking[CASCADE_MIN_PRIORS.length][CASCADE_MIN_MARGINS.length];
+        int[][] cascadeDecided = new int[CASCADE_MIN_PRIORS.length][CASCADE_MIN_MARGINS.length];
+        int[][] cascadeCorrect = new int[CASCADE_MIN_PRIORS.length][CASCADE_MIN_MARGINS.length];
+        for (int p = 0; p < CASCADE_MIN_PRIORS.length; p++) {
+            for (int m = 0; m < CASCADE_MIN_MARGINS.length; m++)
+                cascades[p][m] = new CascadeRanking(true, CASCADE_MIN_PRIORS[p], CASCADE_MIN_MARGINS[m]);
+        }
+
         long startTime = System.currentTimeMillis();
 
         for (int i = 0; i < docs.getLength(); i++) {
@@ -416,7 +441,10 @@ for(NerdCandidate cand : cands) {
 System.out.println("--");
 }*/
 
-                engine.rank(candidates, wikipediaMap.get(langId).getConfig().getLangCode(), null, false, tokens);
+                // the cascade is simulated on the full ranking, which does not depend on the 
+                // decided mentions
+                engine.rank(candidates, wikipediaMap.get(langId).getConfig().getLangCode(), null, false, tokens,
+                    null, cascade ? CascadeRanking.DISABLED : null);
 
                 // adjust subterm
 				/*Map<NerdEntity, List<NerdCandidate>> newCandidates = new HashMap<NerdEntity, List<NerdCandidate>>();
@@ -481,6 +509,18 @@ System.out.println("--");
                                     correct++;
                                     totalCorrect++;
                                 }
+                                if (cascade) {
+                                    for (int p = 0; p < CASCADE_MIN_PRIORS.length; p++) {
+                                        for (int m = 0; m < CASCADE_MIN_MARGINS.length; m++) {
+                                            int decided = cascades[p][m].getDecidedCandidate(cands);
+                                            if (decided != -1)
+                                                cascadeDecided[p][m]++;
+                                            NerdCandidate selected = cands.get(decided == -1 ? 0 : decided);
+                                            if (selected.getWikipediaExternalRef() == refEntity.getWikipediaExternalRef())
+                                                cascadeCorrect[p][m]++;
+                                        }
+                                    }
+                                }
                                 break;
                             }
                         }
@@ -556,6 +596,23 @@ System.out.println("--");
 
         reportMetrics(report, corpus, results);
 
+        if (cascade) {
+            report.append("\n** cascade ranking **\n");
+            report.append(String.format("\n%-12s %-12s %-12s %-12s %-7s\n\n",
+                    "min prior", "min margin", "decided", "accuracy", "delta"));
+            for (int p = 0; p < CASCADE_MIN_PRIORS.length; p++) {
+                for (int m = 0; m < CASCADE_MIN_MARGINS.length; m++) {
+                    double cascadeAccuracy = cascadeCorrect[p][m] * 1.0 / totalExpected;
+                    report.append(String.format("%-12s %-12s %-12s %-12s %-7s\n",
+                            CASCADE_MIN_PRIORS[p],
+                            CASCADE_MIN_MARGINS[m],
+                            TextUtilities.formatTwoDecimals(cascadeDecided[p][m] * 100.0 / totalFound),
+                            TextUtilities.formatTwoDecimals(cascadeAccuracy * 100),
+                            TextUtilities.formatTwoDecimals((cascadeAccuracy - accuracy) * 100)));
+                }
+            }
+        }
+
         return report.toString();
     }
 
@@ -611,8 +668,8 @@ System.out.println("--");
     }
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: command [name_of_corpus]");
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("-cascade"))) {
+            System.err.println("Usage: command [name_of_corpus] [-cascade]");
             System.err.println("corpus must be one of: " + NEDCorpusEvaluation.corpora.toString());
             System.exit(-1);
         }
@@ -623,7 +680,7 @@ System.out.println("--");
         }
 
         NEDCorpusEvaluation nedEval = new NEDCorpusEvaluation();
-        String report = nedEval.eval(corpus);
+        String report = nedEval.eval(corpus, args.length == 2);
         if (report == null) {
             System.out.println("\nThe evaluation fails for corpus " + corpus);
         } else {
@@ -0,0 +1,182 @@
+package com.scienceminer.nerd.features;
+
+import org.apache.commons.io.IOUtils;
+import smile.data.Attribute;
+import smile.data.AttributeDataset;
+import smile.data.parser.ArffParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A training dataset as the arrays expected by the Smile learners: the feature values, the
+ * responses and the attributes of the features.
+ *
+ * It is read from an ARFF file as written by {@link FeatureDatasetWriter}, the response
+ * being the last attribute as in the feature vectors. Only the header is parsed with the
+ * Smile ARFF parser, the vectors are converted line by line into the arrays, without an
+ * intermediate Smile dataset. The values are tokenized as by the Smile ARFF parser: they can
+ * be quoted with single or double quotes, with backslash escapes in the quoted values.
+ */
+public class FeatureDataset {
+
+	private final Attribute[] attributes;
+	private final double[][] x;
+	private final double[] y;
+
+	public FeatureDataset(Attribute[] attributes, double[][] x, double[] y) {
+		this.attributes = attributes;
+		this.x = x;
+		this.y = y;
+	}
+
+	public static FeatureDataset read(File file) throws IOException {
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			// header, up to @data
+			StringBuilder header = new StringBuilder();
+			int nbColumns = 0;
+			String line;
+			boolean data = false;
+			while (!data && (line = reader.readLine()) != null) {
+				String trimmed = line.trim().toLowerCase();
+				header.append(line).append("\n");
+				if (trimmed.startsWith("@attribute"))
+					nbColumns++;
+				else if (trimmed.startsWith("@data"))
+					data = true;
+			}
+			if (!data || nbColumns < 2)
+				throw new IOException("Invalid ARFF header in " + file.getPath());
+
+			Attribute[] attributes;
+			Attribute response;
+			try {
+				ArffParser parser = new ArffParser();
+				parser.setResponseIndex(nbColumns - 1);
+				AttributeDataset headerDataset = parser.parse(IOUtils.toInputStream(header.toString(), StandardCharsets.UTF_8));
+				attributes = headerDataset.attributes();
+				response = headerDataset.response();
+			} catch(ParseException e) {
+				throw new IOException("Invalid ARFF header in " + file.getPath(), e);
+			}
+
+			// vectors
+			List<double[]> rows = new ArrayList<>();
+			double[] y = new double[1024];
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("%"))
+					continue;
+				List<String> values;
+				try {
+					values = tokenize(line);
+				} catch(ParseException e) {
+					throw new IOException(file.getPath() + ": invalid data line " + lineNumber, e);
+				}
+				if (values.size() != nbColumns)
+					throw new IOException(file.getPath() + ": " + values.size() + " values instead of " +
+						nbColumns + " in data line " + lineNumber);
+				double[] row = new double[nbColumns - 1];
+				try {
+					for (int j = 0; j < row.length; j++)
+						row[j] = valueOf(attributes[j], values.get(j));
+					if (rows.size() == y.length)
+						y = Arrays.copyOf(y, y.length * 2);
+					y[rows.size()] = valueOf(response, values.get(nbColumns - 1));
+				} catch(ParseException e) {
+					throw new IOException(file.getPath() + ": invalid value in data line " + lineNumber, e);
+				}
+				rows.add(row);
+			}
+			return new FeatureDataset(attributes, rows.toArray(new double[rows.size()][]),
+				Arrays.copyOf(y, rows.size()));
+		}
+	}
+
+	/**
+	 * Splits a data line into its values, separated by commas. A quoted value is returned 
+	 * without its quotes and with its escape sequences replaced, the unquoted values are 
+	 * trimmed. A null value stands for a missing value, i.e. an unquoted ?.
+	 */
+	static List<String> tokenize(String line) throws ParseException {
+		List<String> values = new ArrayList<>();
+		int length = line.length();
+		int i = 0;
+		while (true) {
+			while (i < length && Character.isWhitespace(line.charAt(i)))
+				i++;
+			String value;
+			if (i < length && (line.charAt(i) == '\'' || line.charAt(i) == '"')) {
+				char quote = line.charAt(i++);
+				StringBuilder quoted = new StringBuilder();
+				while (i < length && line.charAt(i) != quote) {
+					char c = line.charAt(i++);
+					if (c == '\\' && i < length)
+						c = unescape(line.charAt(i++));
+					quoted.append(c);
+				}
+				if (i == length)
+					throw new ParseException("Unterminated quoted value", i);
+				i++;
+				while (i < length && Character.isWhitespace(line.charAt(i)))
+					i++;
+				if (i < length && line.charAt(i) != ',')
+					throw new ParseException("Separator expected after a quoted value", i);
+				value = quoted.toString();
+			} else {
+				int end = line.indexOf(',', i);
+				if (end == -1)
+					end = length;
+				value = line.substring(i, end).trim();
+				if (value.equals("?"))
+					value = null;
+				i = end;
+			}
+			values.add(value);
+			if (i >= length)
+				return values;
+			// skip the separator
+			i++;
+		}
+	}
+
+	private static char unescape(char c) {
+		switch (c) {
+			case 'n': return '\n';
+			case 't': return '\t';
+			case 'r': return '\r';
+			case 'b': return '\b';
+			case 'f': return '\f';
+			default: return c;
+		}
+	}
+
+	private static double valueOf(Attribute attribute, String value) throws ParseException {
+		if (value == null)
+			return Double.NaN;
+		return attribute.valueOf(value);
+	}
+
+	public Attribute[] getAttributes() {
+		return attributes;
+	}
+
+	public double[][] getX() {
+		return x;
+	}
+
+	public double[] getY() {
+		return y;
+	}
+
+	public int size() {
+		return y.length;
+	}
+}
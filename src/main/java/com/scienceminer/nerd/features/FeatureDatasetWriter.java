@@ -0,0 +1,55 @@
+package com.scienceminer.nerd.features;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a training dataset in ARFF format on disk as the feature vectors are produced, so
+ * that the dataset is never held in memory. The file can be read back with
+ * {@link FeatureDataset#read(File)}.
+ */
+public class FeatureDatasetWriter implements Closeable {
+
+	private final File file;
+	private final Writer writer;
+	private int size = 0;
+
+	/**
+	 * Creates the file and writes the ARFF header, as given by the feature vectors
+	 */
+	public FeatureDatasetWriter(File file, String arffHeader) throws IOException {
+		this.file = file;
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+		writer.write(arffHeader);
+		if (!arffHeader.endsWith("\n"))
+			writer.write("\n");
+	}
+
+	/**
+	 * Appends a feature vector, as printed by the feature vectors
+	 */
+	public void write(String vector) throws IOException {
+		writer.write(vector);
+		writer.write("\n");
+		size++;
+	}
+
+	/**
+	 * @return the number of vectors written
+	 */
+	public int size() {
+		return size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -364,6 +364,15 @@ public class GenericRankerFeatureVector extends GenericFeatureVector {
 	
 	public double[] toVector(Attribute[] attributes) {
 		double[] result = new double[this.getNumFeatures()];
+		toVector(attributes, result);
+		return result;
+	}
+
+	/**
+	 * Writes the feature values in the given vector, of size at least getNumFeatures(), 
+	 * so that a vector can be reused for several candidates.
+	 */
+	public void toVector(Attribute[] attributes, double[] result) {
 		int i = 0;
 		if (Add_prob_c) {
 			result[i] = prob_c;
@@ -528,6 +537,5 @@ public class GenericRankerFeatureVector extends GenericFeatureVector {
 			result[i] = val;
 			i++;
 		}
-		return result;
 	}
 }
\ No newline at end of file
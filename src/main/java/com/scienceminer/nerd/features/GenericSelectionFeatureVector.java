@@ -262,6 +262,15 @@ public class GenericSelectionFeatureVector extends GenericFeatureVector {
 
 	public double[] toVector(Attribute[] attributes) {
 		double[] result = new double[this.getNumFeatures()];
+		toVector(attributes, result);
+		return result;
+	}
+
+	/**
+	 * Writes the feature values in the given vector, of size at least getNumFeatures(), 
+	 * so that a vector can be reused for several candidates.
+	 */
+	public void toVector(Attribute[] attributes, double[] result) {
 		int i = 0;
 		if (Add_nerd_score) {
 			result[i] = nerd_score;
@@ -347,7 +356,5 @@ public class GenericSelectionFeatureVector extends GenericFeatureVector {
 			result[i] = embeddings_centroid_similarity;
 			i++;
 		}
-
-		return result;
 	}
 }
\ No newline at end of file
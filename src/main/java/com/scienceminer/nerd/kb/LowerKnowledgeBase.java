@@ -3,15 +3,23 @@ package com.scienceminer.nerd.kb;
 import com.scienceminer.nerd.kb.db.KBEnvironment.StatisticName;
 import com.scienceminer.nerd.kb.db.KBLowerEnvironment;
 import com.scienceminer.nerd.kb.db.LabelIterator;
+import com.scienceminer.nerd.kb.db.LinkSketches;
+import com.scienceminer.nerd.kb.db.EmbeddingsMatrix;
+import com.scienceminer.nerd.kb.db.EntityEmbeddingsIndex;
 import com.scienceminer.nerd.kb.db.PageIterator;
+import com.scienceminer.nerd.kb.db.PostingList;
+import com.scienceminer.nerd.kb.db.RelatedArticles;
+import com.scienceminer.nerd.kb.db.SimilarEntities;
 import com.scienceminer.nerd.kb.model.*;
 import com.scienceminer.nerd.kb.model.Page.PageType;
-import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
 import com.scienceminer.nerd.utilities.NerdConfig;
 import com.scienceminer.nerd.utilities.Utilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +34,12 @@ public class LowerKnowledgeBase {
 
 	private KBLowerEnvironment env = null;
 	private int wikipediaArticleCount = -1;
+	private volatile LinkSketches linkSketches = null;
+	private Thread linkSketchesBuilder = null;
+	private boolean closed = false;
+	private EmbeddingsMatrix wordEmbeddingsMatrix = null;
+	private EmbeddingsMatrix entityEmbeddingsMatrix = null;
+	private EntityEmbeddingsIndex entityEmbeddingsIndex = null;
 
 	public enum Direction {
 		In, 
@@ -43,6 +57,128 @@ public class LowerKnowledgeBase {
 		} catch(Exception e) {
 			e.printStackTrace();
 		} 
+		loadLinkSketches(conf);
+		loadEmbeddingsMatrices(conf);
+		loadEntityEmbeddingsIndex(conf);
+	}
+
+	/**
+	 * Opens the link sketches used for approximate relatedness if they are configured. If 
+	 * they are missing or have been built for another KB snapshot, they are built in a 
+	 * background thread so that the KB loading is not delayed, the relatedness being exact 
+	 * until they are opened.
+	 */
+	private void loadLinkSketches(NerdConfig conf) {
+		if (conf.getLinkSketches() == null)
+			return;
+		final File file = new File(conf.getLinkSketches());
+		if (LinkSketches.getSnapshotVersion(file) == getSnapshotVersion()) {
+			openLinkSketches(file);
+			return;
+		}
+		LOGGER.info("Building link sketches in the background for " + conf.getLangCode() + ": " + 
+			file.getPath() + ", the relatedness is exact until they are built");
+		linkSketchesBuilder = new Thread(() -> {
+			try {
+				LinkSketches.build(file, this);
+			} catch(InterruptedIOException e) {
+				LOGGER.info("Link sketches building interrupted: " + file.getPath());
+				return;
+			} catch(Exception e) {
+				LOGGER.error("Cannot build the link sketches " + file.getPath(), e);
+				return;
+			}
+			openLinkSketches(file);
+		}, "link-sketches-" + conf.getLangCode());
+		linkSketchesBuilder.setDaemon(true);
+		linkSketchesBuilder.start();
+	}
+
+	private synchronized void openLinkSketches(File file) {
+		if (closed)
+			return;
+		try {
+			linkSketches = new LinkSketches(file);
+		} catch(IOException e) {
+			LOGGER.error("Cannot load the link sketches " + file.getPath(), e);
+		}
+	}
+
+	/**
+	 * Opens the memory-mapped embeddings matrices if they are configured, building them first
+	 * from the quantized embeddings files if they are missing. 
+	 */
+	private void loadEmbeddingsMatrices(NerdConfig conf) {
+		if (conf.getEmbeddingsMatrices() == null)
+			return;
+		File directory = new File(conf.getEmbeddingsMatrices());
+		File dataDirectory = new File(conf.getDataDirectory());
+		wordEmbeddingsMatrix = loadEmbeddingsMatrix(new File(directory, "word.embeddings.matrix"), 
+			new File(dataDirectory, "word.embeddings.quantized.gz"));
+		entityEmbeddingsMatrix = loadEmbeddingsMatrix(new File(directory, "entity.embeddings.matrix"), 
+			new File(dataDirectory, "entity.embeddings.quantized.gz"));
+	}
+
+	/**
+	 * Opens the nearest-neighbour index over the entity embeddings matrix if it is configured,
+	 * building it first if it is missing or has been built for another matrix.
+	 */
+	private void loadEntityEmbeddingsIndex(NerdConfig conf) {
+		if (conf.getEntityEmbeddingsIndex() == null)
+			return;
+		File file = new File(conf.getEntityEmbeddingsIndex());
+		if (entityEmbeddingsMatrix == null) {
+			LOGGER.warn("Cannot load the entity embeddings index " + file.getPath() + 
+				", the embeddings matrices are not configured");
+			return;
+		}
+		try {
+			if (!EntityEmbeddingsIndex.isValid(file, entityEmbeddingsMatrix)) {
+				LOGGER.info("Building entity embeddings index for " + conf.getLangCode() + ": " + file.getPath());
+				EntityEmbeddingsIndex.build(entityEmbeddingsMatrix, file);
+			}
+			entityEmbeddingsIndex = new EntityEmbeddingsIndex(file, entityEmbeddingsMatrix);
+		} catch(IOException e) {
+			LOGGER.error("Cannot load the entity embeddings index " + file.getPath(), e);
+		}
+	}
+
+	/**
+	 * @return the matrix of the given file, null if it cannot be built or does not match the 
+	 * embeddings size, the embeddings databases being used instead
+	 */
+	private EmbeddingsMatrix loadEmbeddingsMatrix(File file, File embeddingsFile) {
+		try {
+			if (!EmbeddingsMatrix.isValid(file)) {
+				if (!embeddingsFile.exists()) {
+					LOGGER.warn("Cannot build the embeddings matrix " + file.getPath() + ", " + 
+						embeddingsFile.getPath() + " is missing");
+					return null;
+				}
+				LOGGER.info("Building embeddings matrix for " + env.getConfiguration().getLangCode() + 
+					": " + file.getPath());
+				EmbeddingsMatrix.build(embeddingsFile, file);
+			}
+			EmbeddingsMatrix matrix = new EmbeddingsMatrix(file);
+			if (matrix.getDimension() != getEmbeddingsSize()) {
+				LOGGER.error("The embeddings matrix " + file.getPath() + " has " + matrix.getDimension() + 
+					" dimensions instead of " + getEmbeddingsSize());
+				matrix.close();
+				return null;
+			}
+			return matrix;
+		} catch(IOException e) {
+			LOGGER.error("Cannot load the embeddings matrix " + file.getPath(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the link sketches of the articles, null if they are not configured or not
+	 * built yet
+	 */
+	public LinkSketches getLinkSketches() {
+		return linkSketches;
 	}
 
 	public int getArticleCount() {
@@ -51,6 +187,21 @@ public class LowerKnowledgeBase {
 		return wikipediaArticleCount;
 	}
 
+	/**
+	 * Returns a version identifier of the loaded Wikipedia snapshot, derived from the date of 
+	 * the last edit of the dump, its number of articles and the links used for relatedness
+	 * (incoming only or also outgoing). Data computed from the KB and persisted outside of it 
+	 * can be invalidated when this version changes.
+	 */
+	public long getSnapshotVersion() {
+		Long lastEdit = this.env.retrieveStatistic(StatisticName.lastEdit);
+		long version = (lastEdit == null) ? 0L : lastEdit.longValue();
+		version = 31 * version + getArticleCount();
+		version = 31 * version + getConfig().getLangCode().hashCode();
+		version = 31 * version + (getConfig().getUseLinkOut() ? 1 : 0);
+		return version;
+	}
+
 	/**
 	 * Returns the environment that this is connected to
 	 */
@@ -234,16 +385,45 @@ public class LowerKnowledgeBase {
 	 * 
 	 */
 	public List<Integer> getLinks(int artId, Direction dir) {
-		DbIntList ids = null;
+		PostingList ids = getLinkPostings(artId, dir);
+		if (ids.isEmpty()) 
+			return new ArrayList<Integer>();
+
+		return ids.toList();
+	}
+
+	/**
+	 * Returns the links in relation to artId with the specified direction (in or out), in 
+	 * their compressed form, sorted by ascending id. 
+	 * 
+	 */
+	public PostingList getLinkPostings(int artId, Direction dir) {
+		PostingList ids = null;
 		if (dir == Direction.In)
 			ids = env.getDbPageLinkInNoSentences().retrieve(artId);
 		else
 			ids = env.getDbPageLinkOutNoSentences().retrieve(artId);
 
-		if (ids == null || ids.getValues() == null) 
-			return new ArrayList<Integer>();
+		if (ids == null) 
+			return PostingList.EMPTY;
 
-		return ids.getValues();
+		return ids;
+	}
+
+	/**
+	 * Returns the most related articles of artId with their relatedness, as precomputed from 
+	 * the link graph, or null if not available.
+	 * 
+	 */
+	public RelatedArticles getRelatedArticles(int artId) {
+		return env.getDbRelatedArticles().retrieve(artId);
+	}
+
+	/**
+	 * @return true if the related articles have been precomputed for this Wikipedia
+	 */
+	public boolean hasRelatedArticles() {
+		return env.getDbRelatedArticles().getDatabaseSize() > 0;
 	}
 
 	/**
@@ -252,6 +432,8 @@ public class LowerKnowledgeBase {
      * @return word vector or null if not found
      */
     public short[] getWordEmbeddings(String word) {
+        if (wordEmbeddingsMatrix != null)
+            return wordEmbeddingsMatrix.getVector(word);
         return env.getDbWordEmbeddings().retrieve(word);
     }
 
@@ -261,9 +443,55 @@ public class LowerKnowledgeBase {
      * @return entity vector or null if not found
      */
     public short[] getEntityEmbeddings(String entityId) {
+        if (entityEmbeddingsMatrix != null)
+            return entityEmbeddingsMatrix.getVector(entityId);
         return env.getDbEntityEmbeddings().retrieve(entityId);
     }
 
+    /**
+     * @return the memory-mapped word embeddings, giving a direct access to the vectors, null 
+     * if not configured
+     */
+    public EmbeddingsMatrix getWordEmbeddingsMatrix() {
+        return wordEmbeddingsMatrix;
+    }
+
+    /**
+     * @return the memory-mapped entity embeddings, giving a direct access to the vectors, null 
+     * if not configured
+     */
+    public EmbeddingsMatrix getEntityEmbeddingsMatrix() {
+        return entityEmbeddingsMatrix;
+    }
+
+    /**
+     * @return the nearest-neighbour index over the entity embeddings, null if not configured
+     */
+    public EntityEmbeddingsIndex getEntityEmbeddingsIndex() {
+        return entityEmbeddingsIndex;
+    }
+
+    /**
+     * @return the k entities closest to an entity in the embeddings space by cosine similarity,
+     * the entity itself excluded, null if the index is not configured or if the entity has no 
+     * embeddings
+     */
+    public SimilarEntities getSimilarEntities(String entityId, int k) {
+        if (entityEmbeddingsIndex == null)
+            return null;
+        return entityEmbeddingsIndex.search(entityId, k, EntityEmbeddingsIndex.DEFAULT_PROBES);
+    }
+
+    /**
+     * @return the k entities closest to a vector of the embeddings space, e.g. the sum of the
+     * vectors of some words, null if the index is not configured
+     */
+    public SimilarEntities getSimilarEntities(int[] vector, int k) {
+        if (entityEmbeddingsIndex == null)
+            return null;
+        return entityEmbeddingsIndex.search(vector, k, EntityEmbeddingsIndex.DEFAULT_PROBES);
+    }
+
     /**
      * @return number of dimensions of the vectors for both word and entity embeddings
      */
@@ -294,6 +522,35 @@ public class LowerKnowledgeBase {
     } 
 
 	public void close() {
+		if (linkSketchesBuilder != null) {
+			// the building reads the KB environment, it must stop before the environment is closed
+			linkSketchesBuilder.interrupt();
+			try {
+				linkSketchesBuilder.join();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			linkSketchesBuilder = null;
+		}
+		synchronized(this) {
+			closed = true;
+			if (linkSketches != null) {
+				linkSketches.close();
+				linkSketches = null;
+			}
+		}
+		if (entityEmbeddingsIndex != null) {
+			entityEmbeddingsIndex.close();
+			entityEmbeddingsIndex = null;
+		}
+		if (wordEmbeddingsMatrix != null) {
+			wordEmbeddingsMatrix.close();
+			wordEmbeddingsMatrix = null;
+		}
+		if (entityEmbeddingsMatrix != null) {
+			entityEmbeddingsMatrix.close();
+			entityEmbeddingsMatrix = null;
+		}
 		env.close();
 		this.env = null;
 	}
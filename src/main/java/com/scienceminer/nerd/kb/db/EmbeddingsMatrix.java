@@ -0,0 +1,337 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The quantized embeddings of a language (words or entities) as a single matrix of short
+ * values stored in a memory-mapped file, with a compact index giving the row of a key. A
+ * vector is read in place from the mapped pages, which are shared by all the JVMs of the
+ * host, and the dot products are computed on the short values without copying the vector.
+ *
+ * The keys are sorted by their UTF-8 bytes so that a row is found by binary search. When a
+ * key is present several times in the embeddings file, the last vector is used, as in the
+ * embeddings database.
+ *
+ * File layout: a header (magic, format version, number of rows, dimension, number of keys,
+ * size of the keys), the offsets of the sorted keys in the key bytes, the row of each sorted
+ * key, the UTF-8 key bytes, then the vectors in the order of the embeddings file.
+ */
+public class EmbeddingsMatrix {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddingsMatrix.class);
+
+	private static final int MAGIC = 0x45464d58; // "EFMX"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	// vectors are mapped by chunks, a single mapping being limited to 2GB
+	private static final int MAX_CHUNK_SIZE = 1 << 30;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer index;
+	private final MappedByteBuffer[] vectors;
+	private final int rows;
+	private final int dimension;
+	private final int keyCount;
+	private final int rowsPerChunk;
+	// positions in the index mapping
+	private final int keyRowsOffset;
+	private final int keyBytesOffset;
+
+	/**
+	 * Opens an existing matrix, built with {@link #build(File, File)}.
+	 *
+	 * @throws IOException if the file is not valid
+	 */
+	public EmbeddingsMatrix(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		FileChannel channel = raf.getChannel();
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+			raf.close();
+			throw new IOException("Invalid embeddings matrix file: " + file.getPath());
+		}
+		this.rows = header.getInt(8);
+		this.dimension = header.getInt(12);
+		this.keyCount = header.getInt(16);
+		int keyBytesLength = header.getInt(20);
+
+		this.keyRowsOffset = 4 * (keyCount + 1);
+		this.keyBytesOffset = keyRowsOffset + 4 * keyCount;
+		long indexSize = keyBytesOffset + (long) keyBytesLength;
+		this.index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, indexSize);
+
+		long vectorOffset = getVectorOffset(keyCount, keyBytesLength);
+		this.rowsPerChunk = Math.max(1, MAX_CHUNK_SIZE / (2 * Math.max(1, dimension)));
+		int nbChunks = (rows + rowsPerChunk - 1) / rowsPerChunk;
+		this.vectors = new MappedByteBuffer[nbChunks];
+		for (int i = 0; i < nbChunks; i++) {
+			int chunkRows = Math.min(rowsPerChunk, rows - i * rowsPerChunk);
+			vectors[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+				vectorOffset + (long) i * rowsPerChunk * dimension * 2, (long) chunkRows * dimension * 2);
+		}
+		LOGGER.info("Embeddings matrix " + file.getPath() + " opened: " + keyCount + " keys, " +
+			rows + " x " + dimension);
+	}
+
+	private static long getVectorOffset(int keyCount, int keyBytesLength) {
+		long offset = HEADER_SIZE + 8L * keyCount + 4 + keyBytesLength;
+		// vectors aligned on 8 bytes
+		return (offset + 7) & ~7L;
+	}
+
+	/**
+	 * @return true if the file is a valid embeddings matrix
+	 */
+	public static boolean isValid(File file) {
+		if (!file.exists() || file.length() < HEADER_SIZE)
+			return false;
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			return input.readInt() == MAGIC && input.readInt() == FORMAT_VERSION;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Builds the matrix from a gzipped quantized embeddings file, one vector per line: the key
+	 * followed by the short values separated by spaces, an optional header line giving the
+	 * number of vectors and the dimension.
+	 */
+	public static void build(File embeddingsFile, File file) throws IOException {
+		long start = System.currentTimeMillis();
+
+		// first pass: the keys and the dimension
+		List<byte[]> keys = new ArrayList<>();
+		int dimension = -1;
+		try (BufferedReader input = openEmbeddings(embeddingsFile)) {
+			String line;
+			while ((line = input.readLine()) != null) {
+				String[] pieces = line.split(" ");
+				if (pieces.length <= 2) {
+					// this is a header
+					continue;
+				}
+				if (dimension == -1)
+					dimension = pieces.length - 1;
+				if (pieces.length - 1 != dimension) {
+					LOGGER.warn("Embeddings: ignoring vector of dimension " + (pieces.length - 1) + " for " + pieces[0]);
+					continue;
+				}
+				keys.add(pieces[0].getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		if (dimension == -1)
+			dimension = 0;
+		int rows = keys.size();
+
+		// keys sorted by bytes, the last row of a duplicated key being kept
+		Integer[] sorted = new Integer[rows];
+		for (int i = 0; i < rows; i++)
+			sorted[i] = i;
+		// stable sort, the rows of a duplicated key stay in the file order
+		Arrays.sort(sorted, (a, b) -> compare(keys.get(a), keys.get(b)));
+		int[] order = new int[rows];
+		int keyCount = 0;
+		for (int i = 0; i < rows; i++) {
+			if (i + 1 < rows && compare(keys.get(sorted[i]), keys.get(sorted[i + 1])) == 0)
+				continue;
+			order[keyCount++] = sorted[i];
+		}
+		sorted = null;
+		long keyBytesLength = 0;
+		for (int i = 0; i < keyCount; i++)
+			keyBytesLength += keys.get(order[i]).length;
+		if (keyBytesLength > Integer.MAX_VALUE - 8L * keyCount - HEADER_SIZE)
+			throw new IOException("Too many embeddings keys: " + keyBytesLength + " bytes");
+
+		if (file.getParentFile() != null && !file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20))) {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(rows);
+			output.writeInt(dimension);
+			output.writeInt(keyCount);
+			output.writeInt((int) keyBytesLength);
+			output.write(new byte[HEADER_SIZE - 24]);
+
+			int offset = 0;
+			for (int i = 0; i < keyCount; i++) {
+				output.writeInt(offset);
+				offset += keys.get(order[i]).length;
+			}
+			output.writeInt(offset);
+			for (int i = 0; i < keyCount; i++)
+				output.writeInt(order[i]);
+			for (int i = 0; i < keyCount; i++)
+				output.write(keys.get(order[i]));
+			long vectorOffset = getVectorOffset(keyCount, (int) keyBytesLength);
+			output.write(new byte[(int) (vectorOffset - output.size())]);
+			keys.clear();
+
+			// second pass: the vectors, in the order of the file
+			try (BufferedReader input = openEmbeddings(embeddingsFile)) {
+				String line;
+				while ((line = input.readLine()) != null) {
+					String[] pieces = line.split(" ");
+					if (pieces.length <= 2 || pieces.length - 1 != dimension)
+						continue;
+					for (int i = 1; i < pieces.length; i++) {
+						short value = 0;
+						try {
+							value = Short.parseShort(pieces[i]);
+						} catch(NumberFormatException e) {
+							LOGGER.warn("Embeddings: Cannot parse short value: " + pieces[i]);
+						}
+						output.writeShort(value);
+					}
+				}
+			}
+		}
+		if (file.exists())
+			file.delete();
+		if (!tmpFile.renameTo(file))
+			throw new IOException("Cannot rename " + tmpFile.getPath() + " into " + file.getPath());
+		LOGGER.info("Embeddings matrix of " + keyCount + " keys built in "
+			+ (System.currentTimeMillis() - start) + " ms: " + file.getPath());
+	}
+
+	private static BufferedReader openEmbeddings(File embeddingsFile) throws IOException {
+		InputStream input = new FileInputStream(embeddingsFile);
+		if (embeddingsFile.getName().endsWith(".gz"))
+			input = new GZIPInputStream(input, 1 << 16);
+		return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+	}
+
+	private static int compare(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (a[i] & 0xff) - (b[i] & 0xff);
+			if (diff != 0)
+				return diff;
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * @return the row of the vector of the given key, -1 if the key has no vector
+	 */
+	public int getRow(String key) {
+		if (key == null)
+			return -1;
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = keyCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int cmp = compareKey(middle, bytes);
+			if (cmp < 0)
+				low = middle + 1;
+			else if (cmp > 0)
+				high = middle - 1;
+			else
+				return getKeyRow(middle);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the key of the given rank in the sorted keys, between 0 and size() - 1
+	 */
+	public String getKey(int rank) {
+		int start = index.getInt(4 * rank);
+		int end = index.getInt(4 * (rank + 1));
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = index.get(keyBytesOffset + start + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the row of the vector of the key of the given rank in the sorted keys
+	 */
+	public int getKeyRow(int rank) {
+		return index.getInt(keyRowsOffset + 4 * rank);
+	}
+
+	/**
+	 * Compares the key of the given rank in the sorted keys with the given key bytes
+	 */
+	private int compareKey(int rank, byte[] bytes) {
+		int start = index.getInt(4 * rank);
+		int end = index.getInt(4 * (rank + 1));
+		int length = Math.min(end - start, bytes.length);
+		for (int i = 0; i < length; i++) {
+			int diff = (index.get(keyBytesOffset + start + i) & 0xff) - (bytes[i] & 0xff);
+			if (diff != 0)
+				return diff;
+		}
+		return (end - start) - bytes.length;
+	}
+
+	/**
+	 * @return a copy of the vector at the given row
+	 */
+	public short[] getVector(int row) {
+		short[] vector = new short[dimension];
+		copyTo(row, vector, 0);
+		return vector;
+	}
+
+	/**
+	 * @return a copy of the vector of the given key, null if the key has no vector
+	 */
+	public short[] getVector(String key) {
+		int row = getRow(key);
+		return (row == -1) ? null : getVector(row);
+	}
+
+	/**
+	 * Copies the vector at the given row into a short array
+	 */
+	public void copyTo(int row, short[] dest, int destOffset) {
+		MappedByteBuffer chunk = vectors[row / rowsPerChunk];
+		int offset = (row % rowsPerChunk) * dimension * 2;
+		for (int i = 0; i < dimension; i++)
+			dest[destOffset + i] = chunk.getShort(offset + 2 * i);
+	}
+
+	/**
+	 * @return the dimension of the vectors
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @return the number of keys
+	 */
+	public int size() {
+		return keyCount;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void close() {
+		try {
+			raf.close();
+		} catch (IOException e) {
+			LOGGER.warn("Cannot close the embeddings matrix " + file.getPath(), e);
+		}
+	}
+}
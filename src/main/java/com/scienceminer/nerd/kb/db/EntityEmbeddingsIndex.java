@@ -0,0 +1,400 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.utilities.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate nearest-neighbour index over the entity embeddings matrix of a language, as an
+ * inverted file: the entities are partitioned into about sqrt(n) lists by a spherical k-means
+ * of their vectors, and a query only scores the entities of the lists whose centroids are the
+ * closest to the query. These entities are scored exactly, their quantized vectors being read
+ * from the memory-mapped matrix with the integer kernels, so that the index only stores the
+ * centroids, the entities of each list and the inverse of their norms.
+ *
+ * The similarity is the cosine. Scoring all the lists gives the exact nearest entities.
+ *
+ * File layout: a header (magic, format version, number of entities, dimension, number of
+ * lists, size of the matrix file), the centroids as float, the offsets of the lists, then for
+ * each entity, list by list, its rank in the sorted keys of the matrix and its inverse norm.
+ */
+public class EntityEmbeddingsIndex {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EntityEmbeddingsIndex.class);
+
+	private static final int MAGIC = 0x45414e4e; // "EANN"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	// default number of lists scored for a query
+	public static final int DEFAULT_PROBES = 16;
+
+	// size of the sample of entities training the centroids, per list
+	private static final int SAMPLE_PER_LIST = 32;
+	private static final int KMEANS_ITERATIONS = 10;
+	// entities assigned to their list by a task of the build
+	private static final int ASSIGNMENT_CHUNK_SIZE = 4096;
+	// entities of a list scored together
+	private static final int BATCH_SIZE = 32;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final EmbeddingsMatrix matrix;
+	private final int nbEntities;
+	private final int dimension;
+	// dimension rounded to a multiple of 4 for the kernels, the vectors being padded with 0
+	private final int stride;
+	private final int nbLists;
+	private final float[] centroids;
+	private final int[] listOffsets;
+	private final MappedByteBuffer entries;
+
+	/**
+	 * Opens an existing index of the given matrix, built with {@link #build(EmbeddingsMatrix, File)}.
+	 *
+	 * @throws IOException if the file is not a valid index of the matrix
+	 */
+	public EntityEmbeddingsIndex(File file, EmbeddingsMatrix matrix) throws IOException {
+		if (!isValid(file, matrix))
+			throw new IOException("Invalid entity embeddings index file: " + file.getPath());
+		this.file = file;
+		this.matrix = matrix;
+		this.raf = new RandomAccessFile(file, "r");
+		FileChannel channel = raf.getChannel();
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		this.nbEntities = header.getInt(8);
+		this.dimension = header.getInt(12);
+		this.nbLists = header.getInt(16);
+		this.stride = (dimension + 3) & ~3;
+
+		// the centroids and the list offsets are small and read for each query
+		long centroidsOffset = HEADER_SIZE;
+		long offsetsOffset = centroidsOffset + 4L * nbLists * dimension;
+		long entriesOffset = offsetsOffset + 4L * (nbLists + 1);
+		MappedByteBuffer lists = channel.map(FileChannel.MapMode.READ_ONLY, centroidsOffset,
+			entriesOffset - centroidsOffset);
+		this.centroids = new float[nbLists * stride];
+		for (int l = 0; l < nbLists; l++) {
+			for (int i = 0; i < dimension; i++)
+				centroids[l * stride + i] = lists.getFloat(4 * (l * dimension + i));
+		}
+		this.listOffsets = new int[nbLists + 1];
+		for (int l = 0; l <= nbLists; l++)
+			listOffsets[l] = lists.getInt((int) (offsetsOffset - centroidsOffset) + 4 * l);
+		this.entries = channel.map(FileChannel.MapMode.READ_ONLY, entriesOffset, 8L * nbEntities);
+		LOGGER.info("Entity embeddings index " + file.getPath() + " opened: " + nbEntities +
+			" entities, " + nbLists + " lists");
+	}
+
+	/**
+	 * @return true if the file is a valid index of the given matrix
+	 */
+	public static boolean isValid(File file, EmbeddingsMatrix matrix) {
+		if (!file.exists() || file.length() < HEADER_SIZE)
+			return false;
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+				return false;
+			int nbEntities = input.readInt();
+			int dimension = input.readInt();
+			input.readInt();
+			input.readInt();
+			long matrixLength = input.readLong();
+			return nbEntities == matrix.size() && dimension == matrix.getDimension() &&
+				matrixLength == matrix.getFile().length();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Builds the index of all the keys of a matrix. The centroids are trained on a random
+	 * sample of the entities, then all the entities are assigned to their closest centroid,
+	 * in parallel.
+	 */
+	public static void build(EmbeddingsMatrix matrix, File file) throws IOException {
+		long start = System.currentTimeMillis();
+		int nbEntities = matrix.size();
+		int dimension = matrix.getDimension();
+		int stride = (dimension + 3) & ~3;
+		int nbLists = (nbEntities == 0) ? 0 : Math.max(1, (int) Math.round(Math.sqrt(nbEntities)));
+		if (8L * nbEntities > Integer.MAX_VALUE)
+			throw new IOException("Too many entities for the embeddings index: " + nbEntities);
+		Random random = new Random(42);
+
+		// random sample of the entities, normalised
+		int sampleSize = (int) Math.min(nbEntities, (long) nbLists * SAMPLE_PER_LIST);
+		int[] ranks = new int[nbEntities];
+		for (int i = 0; i < nbEntities; i++)
+			ranks[i] = i;
+		float[] sample = new float[sampleSize * stride];
+		short[] vector = new short[dimension];
+		for (int i = 0; i < sampleSize; i++) {
+			int j = i + random.nextInt(nbEntities - i);
+			int rank = ranks[j];
+			ranks[j] = ranks[i];
+			ranks[i] = rank;
+			matrix.copyTo(matrix.getKeyRow(rank), vector, 0);
+			normalise(vector, sample, i * stride);
+		}
+		ranks = null;
+
+		// spherical k-means of the sample, initialised with the first entities of the sample
+		float[] centroids = Arrays.copyOf(sample, nbLists * stride);
+		int[] sampleLists = new int[sampleSize];
+		for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+			final float[] current = centroids;
+			IntStream.range(0, sampleSize).parallel().forEach(i ->
+				sampleLists[i] = nearest(current, nbLists, stride, sample, i * stride));
+			float[] sums = new float[nbLists * stride];
+			int[] counts = new int[nbLists];
+			for (int i = 0; i < sampleSize; i++) {
+				int list = sampleLists[i];
+				counts[list]++;
+				for (int d = 0; d < dimension; d++)
+					sums[list * stride + d] += sample[i * stride + d];
+			}
+			for (int l = 0; l < nbLists; l++) {
+				if (counts[l] == 0) {
+					// empty list, restarted from a random entity of the sample
+					System.arraycopy(sample, random.nextInt(sampleSize) * stride, sums, l * stride, stride);
+				} else {
+					normalise(sums, l * stride, dimension);
+				}
+			}
+			centroids = sums;
+		}
+
+		// assignment of all the entities
+		final float[] finalCentroids = centroids;
+		int[] entityLists = new int[nbEntities];
+		float[] inverseNorms = new float[nbEntities];
+		int nbChunks = (nbEntities + ASSIGNMENT_CHUNK_SIZE - 1) / ASSIGNMENT_CHUNK_SIZE;
+		IntStream.range(0, nbChunks).parallel().forEach(chunk -> {
+			short[] entityVector = new short[dimension];
+			float[] normalised = new float[stride];
+			int end = Math.min(nbEntities, (chunk + 1) * ASSIGNMENT_CHUNK_SIZE);
+			for (int rank = chunk * ASSIGNMENT_CHUNK_SIZE; rank < end; rank++) {
+				matrix.copyTo(matrix.getKeyRow(rank), entityVector, 0);
+				double norm = normalise(entityVector, normalised, 0);
+				inverseNorms[rank] = (norm == 0.0) ? 0.0f : (float) (1.0 / norm);
+				entityLists[rank] = nearest(finalCentroids, nbLists, stride, normalised, 0);
+			}
+		});
+
+		// entities grouped by list
+		int[] listOffsets = new int[nbLists + 1];
+		for (int rank = 0; rank < nbEntities; rank++)
+			listOffsets[entityLists[rank] + 1]++;
+		for (int l = 0; l < nbLists; l++)
+			listOffsets[l + 1] += listOffsets[l];
+		int[] entities = new int[nbEntities];
+		int[] positions = Arrays.copyOf(listOffsets, nbLists);
+		for (int rank = 0; rank < nbEntities; rank++)
+			entities[positions[entityLists[rank]]++] = rank;
+
+		if (file.getParentFile() != null && !file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20))) {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeInt(nbEntities);
+			output.writeInt(dimension);
+			output.writeInt(nbLists);
+			output.writeInt(0);
+			output.writeLong(matrix.getFile().length());
+			for (int l = 0; l < nbLists; l++) {
+				for (int d = 0; d < dimension; d++)
+					output.writeFloat(centroids[l * stride + d]);
+			}
+			for (int l = 0; l <= nbLists; l++)
+				output.writeInt(listOffsets[l]);
+			for (int i = 0; i < nbEntities; i++) {
+				output.writeInt(entities[i]);
+				output.writeFloat(inverseNorms[entities[i]]);
+			}
+		}
+		if (file.exists())
+			file.delete();
+		if (!tmpFile.renameTo(file))
+			throw new IOException("Cannot rename " + tmpFile.getPath() + " into " + file.getPath());
+		LOGGER.info("Entity embeddings index of " + nbEntities + " entities in " + nbLists +
+			" lists built in " + (System.currentTimeMillis() - start) + " ms: " + file.getPath());
+	}
+
+	/**
+	 * Writes the normalised vector at the given offset of dest
+	 * @return the norm of the vector
+	 */
+	private static double normalise(short[] vector, float[] dest, int destOffset) {
+		double squares = 0.0;
+		for (int i = 0; i < vector.length; i++)
+			squares += (double) vector[i] * vector[i];
+		double norm = Math.sqrt(squares);
+		for (int i = 0; i < vector.length; i++)
+			dest[destOffset + i] = (norm == 0.0) ? 0.0f : (float) (vector[i] / norm);
+		return norm;
+	}
+
+	private static void normalise(float[] vector, int offset, int dimension) {
+		double squares = 0.0;
+		for (int i = 0; i < dimension; i++)
+			squares += (double) vector[offset + i] * vector[offset + i];
+		if (squares == 0.0)
+			return;
+		float norm = (float) Math.sqrt(squares);
+		for (int i = 0; i < dimension; i++)
+			vector[offset + i] /= norm;
+	}
+
+	/**
+	 * @return the list whose centroid is the closest to the normalised vector
+	 */
+	private static int nearest(float[] centroids, int nbLists, int stride, float[] vector, int offset) {
+		int best = 0;
+		float bestScore = -Float.MAX_VALUE;
+		for (int l = 0; l < nbLists; l++) {
+			float score = Utilities.inner(stride, centroids, l * stride, vector, offset);
+			if (score > bestScore) {
+				bestScore = score;
+				best = l;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the k nearest entities of an entity, the entity itself excluded, null if the
+	 * entity has no embeddings
+	 * @param nbProbes the number of lists scored, all the lists for the exact nearest entities
+	 */
+	public SimilarEntities search(String entityId, int k, int nbProbes) {
+		int row = matrix.getRow(entityId);
+		if (row == -1)
+			return null;
+		short[] vector = matrix.getVector(row);
+		int[] query = new int[stride];
+		for (int i = 0; i < dimension; i++)
+			query[i] = vector[i];
+		return search(query, k, nbProbes, row);
+	}
+
+	/**
+	 * @return the k nearest entities of a vector of the entity embeddings space, e.g. a sum of
+	 * quantized word vectors
+	 * @param nbProbes the number of lists scored, all the lists for the exact nearest entities
+	 */
+	public SimilarEntities search(int[] vector, int k, int nbProbes) {
+		return search(vector, k, nbProbes, -1);
+	}
+
+	private SimilarEntities search(int[] vector, int k, int nbProbes, int excludedRow) {
+		if (k <= 0 || nbLists == 0)
+			return SimilarEntities.EMPTY;
+		double squares = 0.0;
+		for (int i = 0; i < dimension; i++)
+			squares += (double) vector[i] * vector[i];
+		if (squares == 0.0)
+			return SimilarEntities.EMPTY;
+		double norm = Math.sqrt(squares);
+		int[] query = (vector.length >= stride) ? vector : Arrays.copyOf(vector, stride);
+
+		// the lists whose centroids are the closest to the query
+		float[] normalised = new float[stride];
+		for (int i = 0; i < dimension; i++)
+			normalised[i] = (float) (query[i] / norm);
+		TopScores probes = new TopScores(Math.min(Math.max(1, nbProbes), nbLists));
+		for (int l = 0; l < nbLists; l++)
+			probes.add(l, Utilities.inner(stride, centroids, l * stride, normalised, 0));
+
+		// exact scoring of the entities of these lists, by batches of rows
+		TopScores top = new TopScores(k);
+		short[] rows = new short[BATCH_SIZE * stride];
+		long[] inners = new long[BATCH_SIZE];
+		int[] batch = new int[BATCH_SIZE];
+		for (int p = 0; p < probes.size; p++) {
+			int list = probes.ids[p];
+			for (int start = listOffsets[list]; start < listOffsets[list + 1]; start += BATCH_SIZE) {
+				int end = Math.min(start + BATCH_SIZE, listOffsets[list + 1]);
+				int nbRows = 0;
+				for (int position = start; position < end; position++) {
+					int row = matrix.getKeyRow(entries.getInt(8 * position));
+					if (row == excludedRow)
+						continue;
+					matrix.copyTo(row, rows, nbRows * stride);
+					batch[nbRows++] = position;
+				}
+				Utilities.inner(stride, query, 0, rows, 0, nbRows, inners);
+				for (int j = 0; j < nbRows; j++) {
+					float inverseNorm = entries.getFloat(8 * batch[j] + 4);
+					top.add(entries.getInt(8 * batch[j]), (float) (inners[j] * inverseNorm / norm));
+				}
+			}
+		}
+
+		String[] ids = new String[top.size];
+		for (int i = 0; i < top.size; i++)
+			ids[i] = matrix.getKey(top.ids[i]);
+		return new SimilarEntities(ids, Arrays.copyOf(top.scores, top.size));
+	}
+
+	/**
+	 * The k best scores seen, by decreasing score, the first one being kept for equal scores
+	 */
+	private static class TopScores {
+		final int[] ids;
+		final float[] scores;
+		int size = 0;
+
+		TopScores(int k) {
+			ids = new int[k];
+			scores = new float[k];
+		}
+
+		void add(int id, float score) {
+			if (size == ids.length && score <= scores[size - 1])
+				return;
+			int i = (size == ids.length) ? size - 1 : size++;
+			while (i > 0 && scores[i - 1] < score) {
+				ids[i] = ids[i - 1];
+				scores[i] = scores[i - 1];
+				i--;
+			}
+			ids[i] = id;
+			scores[i] = score;
+		}
+	}
+
+	/**
+	 * @return the number of entities
+	 */
+	public int size() {
+		return nbEntities;
+	}
+
+	/**
+	 * @return the number of lists of the inverted file
+	 */
+	public int getNbLists() {
+		return nbLists;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void close() {
+		try {
+			raf.close();
+		} catch (IOException e) {
+			LOGGER.warn("Cannot close the entity embeddings index " + file.getPath(), e);
+		}
+	}
+}
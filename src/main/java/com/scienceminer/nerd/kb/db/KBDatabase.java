@@ -300,6 +300,11 @@ public abstract class KBDatabase<K,V> {
 		/**
 		 * Associate a string (word) to a an index bin corresponding to its frequency
 		 **/
-		wordFrequencies
+		wordFrequencies,
+
+		/**
+		 * Associates integer id of article with its most related articles and their relatedness
+		 */
+		relatedArticles
 	}
 }
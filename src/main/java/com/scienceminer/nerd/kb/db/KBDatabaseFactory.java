@@ -171,64 +171,31 @@ public class KBDatabaseFactory {
 		return new LabelDatabase(env);
 	}
 
-	public KBDatabase<Integer, DbIntList> buildPageLinkNoSentencesDatabase(DatabaseType type) {
+	public KBDatabase<Integer, PostingList> buildPageLinkNoSentencesDatabase(DatabaseType type) {
 		if (type != DatabaseType.pageLinksInNoSentences && type != DatabaseType.pageLinksOutNoSentences)
 			throw new IllegalArgumentException("type must be either DatabaseType.pageLinksInNoSentences or DatabaseType.pageLinksOutNoSentences");
 
-		return new IntRecordDatabase<DbIntList>(env, type) {
+		return new PostingListDatabase(env, type) {
 			@Override
-			public KBEntry<Integer, DbIntList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
+			public KBEntry<Integer, PostingList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
 				// this has to read from pagelinks file (with sentences)
 				Integer id = record.readInt(null);
 
 				DbLinkLocationList l = new DbLinkLocationList();
 				l.deserialize(record);
 				
-				ArrayList<Integer> linkIds = new ArrayList<Integer>();
+				int[] linkIds = new int[l.getLinkLocations().size()];
+				int nbLinks = 0;
 				for (DbLinkLocation ll : l.getLinkLocations()) {
-					if (!linkIds.contains(ll.getLinkId()))
-						linkIds.add(ll.getLinkId());
+					linkIds[nbLinks++] = ll.getLinkId();
 				}
-				return new KBEntry<>(id, new DbIntList(linkIds));
-			}
-			
-			@Override
-			public void loadFromFile(File dataFile, boolean overwrite) throws IOException  {
-				if (isLoaded && !overwrite)
-					return;
-				System.out.println("Loading " + getName());
-
-				if (dataFile == null)
-					throw new NerdResourceException("Markup file not found");
-
-				BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
-				String line = null;
-				int nbToAdd = 0;
-				Transaction tx = environment.createWriteTransaction();
-				while ((line=input.readLine()) != null) {
-					if (nbToAdd == 10000) {
-						tx.commit();
-						tx.close();
-						nbToAdd = 0;
-						tx = environment.createWriteTransaction();
-					}
-					CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
-					KBEntry<Integer,DbIntList> entry = deserialiseCsvRecord(cri);
-					try {
-						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue()));
-						nbToAdd++;
-					} catch(Exception e) {
-						e.printStackTrace();
-					}
-				}
-				tx.commit();
-				tx.close();
-				input.close();
+				// duplicates are removed when building the posting list
+				return new KBEntry<>(id, PostingList.of(linkIds, nbLinks));
 			}
 		};
 	}
 
-	public KBDatabase<Integer,DbIntList> buildIntIntListDatabase(final DatabaseType type) {
+	public KBDatabase<Integer, PostingList> buildIntIntListDatabase(final DatabaseType type) {
 		switch (type) {
 			case categoryParents:
 			case articleParents:
@@ -240,14 +207,14 @@ public class KBDatabaseFactory {
 				throw new IllegalArgumentException(type.name() + " is not a valid DatabaseType for IntIntListDatabase");
 			}
 
-		return new IntRecordDatabase<DbIntList>(env, type) {
+		return new PostingListDatabase(env, type) {
 			@Override
-			public KBEntry<Integer, DbIntList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
+			public KBEntry<Integer, PostingList> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
 				Integer k = record.readInt(null);
 				DbIntList v = new DbIntList();
 				v.deserialize(record);
 
-				return new KBEntry<>(k,v);
+				return new KBEntry<>(k, PostingList.of(v.getValues()));
 			}
 		};
 	}
@@ -282,6 +249,10 @@ public class KBDatabaseFactory {
 		};
 	}
 
+	public RelatedArticlesDatabase buildRelatedArticlesDatabase() {
+		return new RelatedArticlesDatabase(env);
+	}
+
 	public KBDatabase<Integer,DbTranslations> buildTranslationsDatabase() {
 		return new IntRecordDatabase<DbTranslations>(env, DatabaseType.translations) {
 			@Override
@@ -36,14 +36,14 @@ public class KBLowerEnvironment extends KBEnvironment {
 	private KBDatabase<String,Integer> dbCategoriesByTitle = null;
 	private KBDatabase<String,Integer> dbTemplatesByTitle = null;
 	private KBDatabase<Integer,Integer> dbRedirectTargetBySource = null;
-	private KBDatabase<Integer,DbIntList> dbRedirectSourcesByTarget = null;
-	private KBDatabase<Integer, DbIntList> dbPageLinkInNoSentences = null;
-	private KBDatabase<Integer, DbIntList> dbPageLinkOutNoSentences = null;
+	private KBDatabase<Integer, PostingList> dbRedirectSourcesByTarget = null;
+	private KBDatabase<Integer, PostingList> dbPageLinkInNoSentences = null;
+	private KBDatabase<Integer, PostingList> dbPageLinkOutNoSentences = null;
 	private PageLinkCountDatabase dbPageLinkCounts = null;
-	private KBDatabase<Integer, DbIntList> dbCategoryParents = null;
-	private KBDatabase<Integer, DbIntList> dbArticleParents = null;
-	private KBDatabase<Integer, DbIntList> dbChildCategories = null;
-	private KBDatabase<Integer, DbIntList> dbChildArticles = null;
+	private KBDatabase<Integer, PostingList> dbCategoryParents = null;
+	private KBDatabase<Integer, PostingList> dbArticleParents = null;
+	private KBDatabase<Integer, PostingList> dbChildCategories = null;
+	private KBDatabase<Integer, PostingList> dbChildArticles = null;
 	private MarkupDatabase dbMarkup = null;
 	private MarkupDatabase dbMarkupFull = null;
 	private KBDatabase<Integer, DbTranslations> dbTranslations = null;
@@ -52,6 +52,7 @@ public class KBLowerEnvironment extends KBEnvironment {
 	private KBDatabase<String, short[]> dbWordEmbeddings = null;
 	private KBDatabase<String, short[]> dbEntityEmbeddings = null;
 	private StringIntDatabase dbWordFrequencies = null;
+	private RelatedArticlesDatabase dbRelatedArticles = null;
 
 	private int embeddingsSize = 300;
 
@@ -86,15 +87,15 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbRedirectTargetBySource;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbRedirectSourcesByTarget() {
+	public KBDatabase<Integer, PostingList> getDbRedirectSourcesByTarget() {
 		return dbRedirectSourcesByTarget;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbPageLinkInNoSentences() {
+	public KBDatabase<Integer, PostingList> getDbPageLinkInNoSentences() {
 		return dbPageLinkInNoSentences;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbPageLinkOutNoSentences() {
+	public KBDatabase<Integer, PostingList> getDbPageLinkOutNoSentences() {
 		return dbPageLinkOutNoSentences;
 	}
 	
@@ -102,19 +103,19 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbPageLinkCounts;
 	}
 	
-	public KBDatabase<Integer, DbIntList> getDbCategoryParents() {
+	public KBDatabase<Integer, PostingList> getDbCategoryParents() {
 		return dbCategoryParents;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbArticleParents() {
+	public KBDatabase<Integer, PostingList> getDbArticleParents() {
 		return dbArticleParents;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbChildCategories() {
+	public KBDatabase<Integer, PostingList> getDbChildCategories() {
 		return dbChildCategories;
 	}
 
-	public KBDatabase<Integer, DbIntList> getDbChildArticles() {
+	public KBDatabase<Integer, PostingList> getDbChildArticles() {
 		return dbChildArticles;
 	}
 
@@ -146,6 +147,10 @@ public class KBLowerEnvironment extends KBEnvironment {
 		return dbWordFrequencies;
 	}
 
+	public RelatedArticlesDatabase getDbRelatedArticles() {
+		return dbRelatedArticles;
+	}
+
 	@Override
 	protected void initDatabases() {
 		System.out.println("init Environment for language " + conf.getLangCode());
@@ -210,6 +215,10 @@ public class KBLowerEnvironment extends KBEnvironment {
 
 		dbWordFrequencies = dbFactory.buildWordFrequenciesDatabase();
 		databasesByType.put(DatabaseType.wordFrequencies, dbWordFrequencies);
+
+		// computed separately from the link graph, see RelatedArticlesBuilder
+		dbRelatedArticles = dbFactory.buildRelatedArticlesDatabase();
+		databasesByType.put(DatabaseType.relatedArticles, dbRelatedArticles);
 	}
 
 	public Long retrieveStatistic(StatisticName sn) {
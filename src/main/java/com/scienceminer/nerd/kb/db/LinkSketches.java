@@ -0,0 +1,290 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.kb.LowerKnowledgeBase;
+import com.scienceminer.nerd.kb.LowerKnowledgeBase.Direction;
+import com.scienceminer.nerd.kb.model.Page;
+import com.scienceminer.nerd.kb.model.Page.PageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-size MinHash sketches of the in-link and out-link sets of all the articles of a
+ * Wikipedia, stored in a memory-mapped file, for estimating in constant time the number of
+ * links shared by two articles.
+ *
+ * Sketches are built with one permutation hashing: each link id is hashed once, the hash
+ * selects one of the SKETCH_SIZE bins and the sketch keeps the minimum hash of each bin,
+ * truncated to 16 bits. Empty bins borrow the value of the next non-empty bin (rotation
+ * densification), so that small sets get comparable sketches. The proportion of identical bins
+ * of two sketches estimates the Jaccard similarity of the two sets.
+ *
+ * File layout: a header (magic, format version, KB snapshot version, sketch size, number of
+ * articles), the sorted article ids, then for each article in the same order its number of
+ * in-links and out-links followed by the in-link and out-link sketches.
+ */
+public class LinkSketches {
+	private static final Logger LOGGER = LoggerFactory.getLogger(LinkSketches.class);
+
+	public static final int SKETCH_SIZE = 64;
+	private static final int BIN_BITS = 6;
+	private static final int VALUE_BITS = 16;
+
+	private static final int MAGIC = 0x45464c53; // "EFLS"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int RECORD_SIZE = 8 + 2 * 2 * SKETCH_SIZE;
+
+	// records are mapped by chunks, a single mapping being limited to 2GB
+	private static final int ROWS_PER_CHUNK = 1 << 20;
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer ids;
+	private final MappedByteBuffer[] records;
+	private final int count;
+
+	/**
+	 * Opens existing sketches, built with {@link #build(File, LowerKnowledgeBase)}.
+	 *
+	 * @throws IOException if the file is not valid
+	 */
+	public LinkSketches(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		FileChannel channel = raf.getChannel();
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION || header.getInt(16) != SKETCH_SIZE) {
+			raf.close();
+			throw new IOException("Invalid link sketch file: " + file.getPath());
+		}
+		this.count = header.getInt(20);
+
+		this.ids = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 4L * count);
+		long recordOffset = HEADER_SIZE + 4L * count;
+		int nbChunks = (count + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
+		this.records = new MappedByteBuffer[nbChunks];
+		for (int i = 0; i < nbChunks; i++) {
+			int rows = Math.min(ROWS_PER_CHUNK, count - i * ROWS_PER_CHUNK);
+			records[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+				recordOffset + (long) i * ROWS_PER_CHUNK * RECORD_SIZE, (long) rows * RECORD_SIZE);
+		}
+		LOGGER.info("Link sketches " + file.getPath() + " opened for " + count + " articles");
+	}
+
+	/**
+	 * @return the KB snapshot version the sketches of the given file have been built with,
+	 * or -1 if the file does not exist or is not valid
+	 */
+	public static long getSnapshotVersion(File file) {
+		if (!file.exists() || file.length() < HEADER_SIZE)
+			return -1;
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+				return -1;
+			return input.readLong();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Computes the sketches of all the articles of a Wikipedia and writes them in the given file.
+	 * The sketches are written in a temporary file renamed once complete, so that an interrupted
+	 * building does not leave a truncated file.
+	 *
+	 * @throws InterruptedIOException if the current thread is interrupted during the building
+	 */
+	public static void build(File file, LowerKnowledgeBase wikipedia) throws IOException {
+		long start = System.currentTimeMillis();
+
+		// first pass: the article ids, sorted so that a row can be found by binary search
+		int[] articleIds = new int[1 << 20];
+		int count = 0;
+		PageIterator iterator = wikipedia.getPageIterator(PageType.article);
+		try {
+			while (iterator.hasNext()) {
+				checkInterrupted();
+				Page page = iterator.next();
+				if (count == articleIds.length)
+					articleIds = Arrays.copyOf(articleIds, count * 2);
+				articleIds[count++] = page.getId();
+			}
+		} finally {
+			iterator.close();
+		}
+		Arrays.sort(articleIds, 0, count);
+
+		// second pass: the sketches, in the order of the ids
+		if (file.getParentFile() != null && !file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+		boolean useLinkOut = wikipedia.getConfig().getUseLinkOut();
+		short[] sketch = new short[SKETCH_SIZE];
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 20))) {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(wikipedia.getSnapshotVersion());
+			output.writeInt(SKETCH_SIZE);
+			output.writeInt(count);
+			output.write(new byte[HEADER_SIZE - 24]);
+			for (int i = 0; i < count; i++)
+				output.writeInt(articleIds[i]);
+
+			for (int i = 0; i < count; i++) {
+				checkInterrupted();
+				int[] inLinks = wikipedia.getLinkPostings(articleIds[i], Direction.In).toArray();
+				int[] outLinks = useLinkOut ? wikipedia.getLinkPostings(articleIds[i], Direction.Out).toArray() : new int[0];
+				output.writeInt(inLinks.length);
+				output.writeInt(outLinks.length);
+				sketch(inLinks, inLinks.length, sketch);
+				for (short value : sketch)
+					output.writeShort(value);
+				sketch(outLinks, outLinks.length, sketch);
+				for (short value : sketch)
+					output.writeShort(value);
+
+				if ((i+1) % 1000000 == 0)
+					LOGGER.info((i+1) + " article link sketches computed");
+			}
+		} catch(IOException | RuntimeException e) {
+			tmpFile.delete();
+			throw e;
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		LOGGER.info("Link sketches of " + count + " articles built in "
+			+ (System.currentTimeMillis() - start) + " ms: " + file.getPath());
+	}
+
+	private static void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted())
+			throw new InterruptedIOException("Link sketches building interrupted");
+	}
+
+	/**
+	 * Computes the sketch of a set of link ids
+	 *
+	 * @param links the link ids, considering only the first length ones
+	 * @param sketch receives the SKETCH_SIZE values of the sketch, all 0 for an empty set
+	 */
+	public static void sketch(int[] links, int length, short[] sketch) {
+		long[] minima = new long[SKETCH_SIZE];
+		Arrays.fill(minima, Long.MAX_VALUE);
+		for (int i = 0; i < length; i++) {
+			long hash = hash(links[i]);
+			int bin = (int) (hash >>> (64 - BIN_BITS));
+			long value = hash & (-1L >>> BIN_BITS);
+			if (value < minima[bin])
+				minima[bin] = value;
+		}
+		if (length == 0) {
+			Arrays.fill(sketch, (short) 0);
+			return;
+		}
+		for (int bin = 0; bin < SKETCH_SIZE; bin++) {
+			// rotation densification: an empty bin takes the value of the next non-empty one,
+			// shifted by the distance, so that two sets borrowing from different bins do not match
+			int distance = 0;
+			while (minima[(bin + distance) % SKETCH_SIZE] == Long.MAX_VALUE)
+				distance++;
+			long value = minima[(bin + distance) % SKETCH_SIZE] >>> (64 - BIN_BITS - VALUE_BITS);
+			sketch[bin] = (short) (value + distance * 0x9e37);
+		}
+	}
+
+	/**
+	 * @return the row of the given article, -1 if the article has no sketch
+	 */
+	public int getRow(int pageId) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int current = ids.getInt(middle * 4);
+			if (current < pageId)
+				low = middle + 1;
+			else if (current > pageId)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of links of the article at the given row
+	 */
+	public int getLinkCount(int row, Direction dir) {
+		MappedByteBuffer chunk = records[row / ROWS_PER_CHUNK];
+		int offset = (row % ROWS_PER_CHUNK) * RECORD_SIZE;
+		return chunk.getInt(dir == Direction.In ? offset : offset + 4);
+	}
+
+	/**
+	 * @return the number of identical values of the sketches of two articles, between 0 and
+	 * SKETCH_SIZE
+	 */
+	public int countMatches(int rowA, int rowB, Direction dir) {
+		MappedByteBuffer chunkA = records[rowA / ROWS_PER_CHUNK];
+		MappedByteBuffer chunkB = records[rowB / ROWS_PER_CHUNK];
+		int shift = 8 + (dir == Direction.In ? 0 : 2 * SKETCH_SIZE);
+		int offsetA = (rowA % ROWS_PER_CHUNK) * RECORD_SIZE + shift;
+		int offsetB = (rowB % ROWS_PER_CHUNK) * RECORD_SIZE + shift;
+		int matches = 0;
+		// compare 4 values at once
+		for (int i = 0; i < 2 * SKETCH_SIZE; i += 8) {
+			long diff = chunkA.getLong(offsetA + i) ^ chunkB.getLong(offsetB + i);
+			if ((diff & 0xffffL) == 0)
+				matches++;
+			if ((diff & 0xffff0000L) == 0)
+				matches++;
+			if ((diff & 0xffff00000000L) == 0)
+				matches++;
+			if ((diff & 0xffff000000000000L) == 0)
+				matches++;
+		}
+		return matches;
+	}
+
+	/**
+	 * @return the estimated Jaccard similarity of two sets whose sketches have the given
+	 * proportion of identical values, corrected for the chance of identical truncated values
+	 */
+	public static double estimateJaccard(double proportion) {
+		double collision = 1.0 / (1 << VALUE_BITS);
+		double jaccard = (proportion - collision) / (1.0 - collision);
+		return Math.max(0.0, Math.min(1.0, jaccard));
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public void close() {
+		try {
+			raf.close();
+		} catch (IOException e) {
+			LOGGER.warn("Error when closing the link sketches " + file.getPath(), e);
+		}
+	}
+
+	private static long hash(int value) {
+		long key = value * 0x9e3779b97f4a7c15L;
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+}
@@ -22,6 +22,12 @@ import java.io.*;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.scienceminer.nerd.exceptions.NerdResourceException;
 
@@ -39,6 +45,12 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 
 	private enum DumpTag {page, id, text, ignorable};
 
+	// number of threads formatting the wiki text of the pages while the dump is parsed
+	private int nbFormattingThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	// number of pages written in a single LMDB write transaction
+	private static final int WRITE_BATCH_SIZE = 1000;
+
 	public MarkupDatabase(KBEnvironment env) {
 		super (env, DatabaseType.markup);
 	}
@@ -96,8 +108,17 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 		return theString;
 	}
 
+	public void setNbFormattingThreads(int nbFormattingThreads) {
+		this.nbFormattingThreads = Math.max(1, nbFormattingThreads);
+	}
+
 	/**
-	 * Builds the persistent markup database from th Wikipedia XML article dump
+	 * Builds the persistent markup database from th Wikipedia XML article dump.
+	 *
+	 * The dump is parsed in the calling thread, which passes the wiki text of the pages to a 
+	 * pool of formatting workers. The formatted pages are written by the calling thread, in 
+	 * the order of the dump and by batch of WRITE_BATCH_SIZE pages per write transaction. 
+	 * At most two pages per worker are pending.
 	 *
 	 * @param dataFile the XML wikipedia dump
 	 * @param overwrite true if the existing database should be overwritten, otherwise false
@@ -140,92 +161,147 @@ public class MarkupDatabase extends KBDatabase<Integer, String> {
 			wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(env.getConfiguration().getLangCode());
 		}
 
-		int nbToAdd = 0;
-		int totalAdded = 0;
+		String lang = env.getConfiguration().getLangCode();
+		ExecutorService executor = Executors.newFixedThreadPool(nbFormattingThreads);
+		Deque<Future<KBEntry<Integer,String>>> pending = new ArrayDeque<>();
+		int maxPending = 2 * nbFormattingThreads;
+		MarkupWriter writer = new MarkupWriter();
 		boolean isArticle = false;
-		Transaction tx = environment.createWriteTransaction();
-		while (xmlStreamReader.hasNext()) {
-			int eventCode = xmlStreamReader.next();
-			switch (eventCode) {
-				case XMLStreamReader.START_ELEMENT :
-					switch(resolveDumpTag(xmlStreamReader.getLocalName())) {
-						case page: // nothing to do
-					}
-					break;
-				case XMLStreamReader.END_ELEMENT :
-					switch(resolveDumpTag(xmlStreamReader.getLocalName())) {
-						case id:
-							//only take the first id (there is a second one for the revision)
-							if (currId == null) {
-								currId = Integer.parseInt(characters.toString().trim());
-								if ( full && (currId != null) && (wikipedia != null) ) {
-									Page page = wikipedia.getPageById(currId.intValue());
-									if (page.getType() == Page.PageType.article)
-										isArticle = true;
-								}
-							}
-							break;
-						case text:
-							currMarkup = characters.toString().trim();
-							break;
-						case page:
-							if (nbToAdd == 1000) {
-								tx.commit();
-								tx.close();
-								nbToAdd = 0;
-								tx = environment.createWriteTransaction();
-								//System.out.println(totalAdded + " / " + currId);
-							}
-							if (full && isArticle) {
-								// we store the complete text if we have an article
-								currMarkup = MediaWikiParser.getInstance().formatAllWikiText(currMarkup, 
-									env.getConfiguration().getLangCode());
-								// we don't consider articles when too short or too long
-								if ( (currMarkup != null) && ((currMarkup.length() < 500) || (currMarkup.length() > 50000)) ) {
-									currMarkup = null;
+		try {
+			while (xmlStreamReader.hasNext()) {
+				int eventCode = xmlStreamReader.next();
+				switch (eventCode) {
+					case XMLStreamReader.START_ELEMENT :
+						switch(resolveDumpTag(xmlStreamReader.getLocalName())) {
+							case page: // nothing to do
+						}
+						break;
+					case XMLStreamReader.END_ELEMENT :
+						switch(resolveDumpTag(xmlStreamReader.getLocalName())) {
+							case id:
+								//only take the first id (there is a second one for the revision)
+								if (currId == null) {
+									currId = Integer.parseInt(characters.toString().trim());
+									if ( full && (currId != null) && (wikipedia != null) ) {
+										Page page = wikipedia.getPageById(currId.intValue());
+										if (page.getType() == Page.PageType.article)
+											isArticle = true;
+									}
 								}
-								
-							} else if (!full) {
-								// we only store the first paragraph/summary
-								currMarkup = MediaWikiParser.getInstance().formatFirstParagraphWikiText(currMarkup, 
-									env.getConfiguration().getLangCode());
-							} else {
+								break;
+							case text:
+								currMarkup = characters.toString().trim();
+								break;
+							case page:
 								// full and not article: we don't store that
-								currMarkup = null;
-							}
-
-							if ((currMarkup != null) && (currMarkup.trim().length() > 5)) {
-								try {
-									db.put(tx, KBEnvironment.serialize(currId), KBEnvironment.serialize(currMarkup));
-									nbToAdd++;
-									totalAdded++;
-								} catch(Exception e) {
-									System.out.println("Markup addition failed: " + currId + " / " + currMarkup);
-									e.printStackTrace();
+								if ((currId != null) && (currMarkup != null) && (!full || isArticle)) {
+									final Integer id = currId;
+									final String markup = currMarkup;
+									pending.add(executor.submit(() -> new KBEntry<>(id, formatMarkup(markup, lang))));
+									if (pending.size() >= maxPending)
+										writer.write(get(pending.poll()));
 								}
-							}
 
-							currId = null;
-							currMarkup = null;
-							isArticle = false;
-						default:
-							break;
-					}
+								currId = null;
+								currMarkup = null;
+								isArticle = false;
+							default:
+								break;
+						}
 
-					characters = new StringBuffer();
+						characters = new StringBuffer();
 
-					break;
-				case XMLStreamReader.CHARACTERS :
-					characters.append(xmlStreamReader.getText());
+						break;
+					case XMLStreamReader.CHARACTERS :
+						characters.append(xmlStreamReader.getText());
+				}
 			}
+			while (!pending.isEmpty())
+				writer.write(get(pending.poll()));
+			writer.commit();
+		} finally {
+			executor.shutdownNow();
+			writer.close();
 		}
-		tx.commit();
-		tx.close();
 		xmlStreamReader.close();
+		System.out.println(writer.totalAdded + " markup entries added");
 
 		isLoaded = true;
 	}
 
+	/**
+	 * @return the markup to be stored for a page, the first paragraph or the complete text of 
+	 * an article, null if the page is not to be stored
+	 */
+	private String formatMarkup(String markup, String lang) {
+		if (full) {
+			// we store the complete text if we have an article
+			markup = MediaWikiParser.getInstance().formatAllWikiText(markup, lang);
+			// we don't consider articles when too short or too long
+			if ( (markup != null) && ((markup.length() < 500) || (markup.length() > 50000)) ) {
+				markup = null;
+			}
+		} else {
+			// we only store the first paragraph/summary
+			markup = MediaWikiParser.getInstance().formatFirstParagraphWikiText(markup, lang);
+		}
+		return markup;
+	}
+
+	private static <T> T get(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the formatted pages in batched write transactions, to be used by a single thread
+	 */
+	private class MarkupWriter {
+		private Transaction tx = environment.createWriteTransaction();
+		private int nbToAdd = 0;
+		private int totalAdded = 0;
+
+		void write(KBEntry<Integer,String> entry) {
+			String markup = entry.getValue();
+			if ((markup == null) || (markup.trim().length() <= 5))
+				return;
+			if (nbToAdd == WRITE_BATCH_SIZE) {
+				commit();
+				tx = environment.createWriteTransaction();
+			}
+			try {
+				db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(markup));
+				nbToAdd++;
+				totalAdded++;
+			} catch(Exception e) {
+				System.out.println("Markup addition failed: " + entry.getKey() + " / " + markup);
+				e.printStackTrace();
+			}
+		}
+
+		void commit() {
+			if (tx != null) {
+				tx.commit();
+				tx.close();
+				tx = null;
+			}
+			nbToAdd = 0;
+		}
+
+		void close() {
+			if (tx != null) {
+				tx.abort();
+				tx.close();
+				tx = null;
+			}
+		}
+	}
+
 	private DumpTag resolveDumpTag(String tagName) {
 		try {
 			return DumpTag.valueOf(tagName);
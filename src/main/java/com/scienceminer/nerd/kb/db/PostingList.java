@@ -0,0 +1,275 @@
+package com.scienceminer.nerd.kb.db;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable sorted set of integer identifiers (typically page ids) kept in compressed form.
+ *
+ * The encoding is the number of values followed by the first value and then the gaps between
+ * consecutive values, each written as a variable-length integer (7 bits per byte, the high bit
+ * being set when more bytes follow). Gaps between page ids of large link lists mostly fit in
+ * one or two bytes, to be compared with the boxed ArrayList of the former {@link
+ * com.scienceminer.nerd.kb.model.hadoop.DbIntList} records.
+ *
+ * Values can be streamed into an int[], and intersections can be computed directly on the
+ * compressed form without decoding the lists first.
+ */
+public final class PostingList implements Serializable {
+
+	public static final PostingList EMPTY = new PostingList(new byte[] {0}, 0, 1);
+
+	// encoded values, including the size header
+	private final byte[] data;
+
+	// number of values in the list
+	private final int size;
+
+	// position of the first value in data, right after the size header
+	private final int start;
+
+	private PostingList(byte[] data, int size, int start) {
+		this.data = data;
+		this.size = size;
+		this.start = start;
+	}
+
+	/**
+	 * Wraps an encoded list as produced by {@link #getBytes()}, no copy is made.
+	 */
+	public static PostingList wrap(byte[] data) {
+		if (data == null || data.length == 0)
+			return EMPTY;
+		int size = 0;
+		int shift = 0;
+		int pos = 0;
+		byte b;
+		do {
+			b = data[pos++];
+			size |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return new PostingList(data, size, pos);
+	}
+
+	/**
+	 * Builds a posting list from arbitrary values, which will be sorted and deduplicated.
+	 */
+	public static PostingList of(Collection<Integer> values) {
+		if (values == null || values.isEmpty())
+			return EMPTY;
+		int[] array = new int[values.size()];
+		int i = 0;
+		for (Integer value : values)
+			array[i++] = value;
+		return of(array, array.length);
+	}
+
+	/**
+	 * Builds a posting list from the first length values of the given array, which will be sorted
+	 * and deduplicated. The array is not modified.
+	 */
+	public static PostingList of(int[] values, int length) {
+		if (values == null || length == 0)
+			return EMPTY;
+		int[] sorted = Arrays.copyOf(values, length);
+		Arrays.sort(sorted);
+		int distinct = 1;
+		for (int i = 1; i < length; i++) {
+			if (sorted[i] != sorted[distinct - 1])
+				sorted[distinct++] = sorted[i];
+		}
+		return fromSorted(sorted, distinct);
+	}
+
+	/**
+	 * Builds a posting list from the first length values of the given array, which must be
+	 * sorted in strictly ascending order.
+	 */
+	public static PostingList fromSorted(int[] values, int length) {
+		if (values == null || length == 0)
+			return EMPTY;
+		// worst case is 5 bytes per value plus the size header
+		byte[] buffer = new byte[5 * (length + 1)];
+		int pos = writeVarInt(buffer, 0, length);
+		int start = pos;
+		int previous = 0;
+		for (int i = 0; i < length; i++) {
+			if (i > 0 && values[i] <= values[i - 1])
+				throw new IllegalArgumentException("Values must be sorted in strictly ascending order");
+			pos = writeVarInt(buffer, pos, values[i] - previous);
+			previous = values[i];
+		}
+		return new PostingList(Arrays.copyOf(buffer, pos), length, start);
+	}
+
+	private static int writeVarInt(byte[] buffer, int pos, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * @return the encoded form of this list, to be used for storage
+	 */
+	public byte[] getBytes() {
+		return data;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Decodes the values into the given buffer, which must have at least {@link #size()} slots.
+	 *
+	 * @return the number of decoded values
+	 */
+	public int decodeInto(int[] buffer) {
+		int pos = start;
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			int gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[pos++];
+				gap |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += gap;
+			buffer[i] = value;
+		}
+		return size;
+	}
+
+	public int[] toArray() {
+		int[] values = new int[size];
+		decodeInto(values);
+		return values;
+	}
+
+	public List<Integer> toList() {
+		List<Integer> values = new ArrayList<>(size);
+		for (int value : toArray())
+			values.add(value);
+		return values;
+	}
+
+	/**
+	 * @return true if the given value is present in the list, decoding stops as soon as a larger
+	 * value is met
+	 */
+	public boolean contains(int target) {
+		int pos = start;
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			int gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[pos++];
+				gap |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			value += gap;
+			if (value == target)
+				return true;
+			if (value > target)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the values shared by two posting lists, merging both compressed forms in a single
+	 * pass without materializing the decoded values.
+	 */
+	public static int intersectionSize(PostingList listA, PostingList listB) {
+		if (listA == null || listB == null || listA.size == 0 || listB.size == 0)
+			return 0;
+
+		final byte[] dataA = listA.data;
+		final byte[] dataB = listB.data;
+		int posA = listA.start;
+		int posB = listB.start;
+		int remainingA = listA.size;
+		int remainingB = listB.size;
+		int valueA = 0;
+		int valueB = 0;
+		boolean advanceA = true;
+		boolean advanceB = true;
+		int intersection = 0;
+
+		while (true) {
+			if (advanceA) {
+				if (remainingA-- == 0)
+					break;
+				int gap = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = dataA[posA++];
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				valueA += gap;
+			}
+			if (advanceB) {
+				if (remainingB-- == 0)
+					break;
+				int gap = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = dataB[posB++];
+					gap |= (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				valueB += gap;
+			}
+			if (valueA == valueB) {
+				intersection++;
+				advanceA = true;
+				advanceB = true;
+			} else if (valueA < valueB) {
+				advanceA = true;
+				advanceB = false;
+			} else {
+				advanceA = false;
+				advanceB = true;
+			}
+		}
+		return intersection;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof PostingList))
+			return false;
+		PostingList list = (PostingList) other;
+		return size == list.size && Arrays.equals(toArray(), list.toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,101 @@
+package com.scienceminer.nerd.kb.db;
+
+import com.scienceminer.nerd.exceptions.NerdResourceException;
+import com.scienceminer.nerd.kb.model.hadoop.DbIntList;
+import org.apache.hadoop.record.CsvRecordInput;
+
+import org.fusesource.lmdbjni.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * A database associating an integer id with a sorted list of integer ids (links, categories,
+ * redirects), stored as a compressed {@link PostingList}.
+ *
+ * Databases built before the introduction of the compressed format store FST-serialized
+ * {@link DbIntList} records, they are still readable and converted on the fly.
+ */
+public abstract class PostingListDatabase extends KBDatabase<Integer, PostingList> {
+	private static final Logger logger = LoggerFactory.getLogger(PostingListDatabase.class);
+
+	public PostingListDatabase(KBEnvironment envi, DatabaseType type) {
+		super(envi, type);
+	}
+
+	public PostingListDatabase(KBEnvironment envi, DatabaseType type, String name) {
+		super(envi, type, name);
+	}
+
+	// using standard LMDB copy mode
+	@Override
+	public PostingList retrieve(Integer key) {
+		PostingList record = null;
+		try (Transaction tx = environment.createReadTransaction()) {
+			byte[] cachedData = db.get(tx, KBEnvironment.serialize(key));
+			if (cachedData != null) {
+				record = decode(KBEnvironment.deserialize(cachedData));
+			}
+		} catch(Exception e) {
+			logger.error("Cannot retrieve key " + key, e);
+		}
+		return record;
+	}
+
+	private static PostingList decode(Object value) {
+		if (value instanceof byte[])
+			return PostingList.wrap((byte[])value);
+		if (value instanceof DbIntList) {
+			// legacy format
+			DbIntList legacy = (DbIntList)value;
+			if (legacy.getValues() == null)
+				return PostingList.EMPTY;
+			return PostingList.of(legacy.getValues());
+		}
+		return null;
+	}
+
+	public void loadFromFile(File dataFile, boolean overwrite) throws Exception  {
+		if (isLoaded && !overwrite)
+			return;
+
+		if (dataFile == null)
+			throw new NerdResourceException("Resource file not found");
+		System.out.println("Loading " + name + " database");
+
+		BufferedReader input = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), "UTF-8"));
+		String line = null;
+		int nbToAdd = 0;
+		Transaction tx = environment.createWriteTransaction();
+		while ((line=input.readLine()) != null) {
+			if (nbToAdd == 10000) {
+				tx.commit();
+				tx.close();
+				nbToAdd = 0;
+				tx = environment.createWriteTransaction();
+			}
+			CsvRecordInput cri = new CsvRecordInput(new ByteArrayInputStream((line + "\n").getBytes("UTF-8")));
+			try {
+				KBEntry<Integer,PostingList> entry = deserialiseCsvRecord(cri);
+				if (entry != null) {
+					try {
+						db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue().getBytes()));
+						nbToAdd++;
+					} catch(Exception e) {
+						e.printStackTrace();
+					}
+				}
+			} catch(Exception e) {
+				System.out.println("Error deserialising: " + line);
+				e.printStackTrace();
+			}
+		}
+		tx.commit();
+		tx.close();
+		input.close();
+		isLoaded = true;
+	}
+
+}
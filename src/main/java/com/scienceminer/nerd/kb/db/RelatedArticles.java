@@ -0,0 +1,99 @@
+package com.scienceminer.nerd.kb.db;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The most related articles of an article with their relatedness, by decreasing relatedness.
+ *
+ * Stored as a byte array: the number of related articles, then the page ids, then the
+ * relatedness scores as float, the precision of the relatedness cache.
+ */
+public class RelatedArticles {
+
+	public static final RelatedArticles EMPTY = new RelatedArticles(new int[0], new float[0]);
+
+	private final int[] ids;
+	private final float[] scores;
+
+	public RelatedArticles(int[] ids, float[] scores) {
+		if (ids.length != scores.length)
+			throw new IllegalArgumentException("Different number of related articles and scores");
+		this.ids = ids;
+		this.scores = scores;
+	}
+
+	/**
+	 * Selects the k articles with the highest positive scores, by decreasing score and 
+	 * increasing id for equal scores. Scores are kept as float, as in the relatedness cache.
+	 */
+	public static RelatedArticles top(int[] ids, double[] scores, int k) {
+		Integer[] order = new Integer[ids.length];
+		int nbPositive = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if ((float)scores[i] > 0.0f)
+				order[nbPositive++] = i;
+		}
+		Arrays.sort(order, 0, nbPositive, (i, j) -> {
+			int compare = Float.compare((float)scores[j], (float)scores[i]);
+			if (compare != 0)
+				return compare;
+			return Integer.compare(ids[i], ids[j]);
+		});
+
+		int size = Math.min(k, nbPositive);
+		int[] topIds = new int[size];
+		float[] topScores = new float[size];
+		for (int rank = 0; rank < size; rank++) {
+			topIds[rank] = ids[order[rank]];
+			topScores[rank] = (float)scores[order[rank]];
+		}
+		return new RelatedArticles(topIds, topScores);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public int getId(int rank) {
+		return ids[rank];
+	}
+
+	public float getScore(int rank) {
+		return scores[rank];
+	}
+
+	/**
+	 * @return the relatedness with the given article, NaN if the article is not among the
+	 * related ones
+	 */
+	public float getScoreOf(int id) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] == id)
+				return scores[i];
+		}
+		return Float.NaN;
+	}
+
+	public byte[] getBytes() {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 8 * ids.length);
+		buffer.putInt(ids.length);
+		for (int id : ids)
+			buffer.putInt(id);
+		for (float score : scores)
+			buffer.putFloat(score);
+		return buffer.array();
+	}
+
+	public static RelatedArticles wrap(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int size = buffer.getInt();
+		int[] ids = new int[size];
+		float[] scores = new float[size];
+		for (int i = 0; i < size; i++)
+			ids[i] = buffer.getInt();
+		for (int i = 0; i < size; i++)
+			scores[i] = buffer.getFloat();
+		return new RelatedArticles(ids, scores);
+	}
+}
@@ -0,0 +1,65 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.apache.hadoop.record.CsvRecordInput;
+
+import org.fusesource.lmdbjni.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A database associating the integer id of an article with its most related articles.
+ *
+ * This database is not loaded from the Wikipedia dump files, it is computed from the link
+ * graph of an already built knowledge base, see
+ * {@link com.scienceminer.nerd.disambiguation.RelatedArticlesBuilder}.
+ */
+public class RelatedArticlesDatabase extends KBDatabase<Integer, RelatedArticles> {
+	private static final Logger logger = LoggerFactory.getLogger(RelatedArticlesDatabase.class);
+
+	public RelatedArticlesDatabase(KBEnvironment env) {
+		super(env, DatabaseType.relatedArticles);
+	}
+
+	// using standard LMDB copy mode
+	@Override
+	public RelatedArticles retrieve(Integer key) {
+		RelatedArticles record = null;
+		try (Transaction tx = environment.createReadTransaction()) {
+			byte[] cachedData = db.get(tx, KBEnvironment.serialize(key));
+			if (cachedData != null) {
+				record = RelatedArticles.wrap((byte[])KBEnvironment.deserialize(cachedData));
+			}
+		} catch(Exception e) {
+			logger.error("Cannot retrieve key " + key, e);
+		}
+		return record;
+	}
+
+	@Override
+	public KBEntry<Integer, RelatedArticles> deserialiseCsvRecord(CsvRecordInput record) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void loadFromFile(File dataFile, boolean overwrite) throws Exception {
+		throw new UnsupportedOperationException("The related articles are computed from the link graph");
+	}
+
+	/**
+	 * Writes a batch of entries in a single transaction
+	 */
+	public void store(List<KBEntry<Integer, RelatedArticles>> entries) {
+		try (Transaction tx = environment.createWriteTransaction()) {
+			for (KBEntry<Integer, RelatedArticles> entry : entries) {
+				db.put(tx, KBEnvironment.serialize(entry.getKey()), KBEnvironment.serialize(entry.getValue().getBytes()));
+			}
+			tx.commit();
+		}
+		isLoaded = true;
+	}
+}
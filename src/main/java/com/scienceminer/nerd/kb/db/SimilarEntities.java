@@ -0,0 +1,35 @@
+package com.scienceminer.nerd.kb.db;
+
+/**
+ * The nearest entities of a vector in the entity embeddings space with their cosine
+ * similarity, by decreasing similarity.
+ */
+public class SimilarEntities {
+
+	public static final SimilarEntities EMPTY = new SimilarEntities(new String[0], new float[0]);
+
+	private final String[] ids;
+	private final float[] scores;
+
+	public SimilarEntities(String[] ids, float[] scores) {
+		if (ids.length != scores.length)
+			throw new IllegalArgumentException("Different number of similar entities and scores");
+		this.ids = ids;
+		this.scores = scores;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * @return the identifier of the entity of the given rank, i.e. its Wikidata id
+	 */
+	public String getId(int rank) {
+		return ids[rank];
+	}
+
+	public float getScore(int rank) {
+		return scores[rank];
+	}
+}
@@ -28,13 +28,14 @@ public class Article extends Page {
 	 * @return	an array of Redirects, sorted by id
 	 */
 	public Redirect[] getRedirects()  {
-		DbIntList tmpRedirects = env.getDbRedirectSourcesByTarget().retrieve(id);
-		if (tmpRedirects == null || tmpRedirects.getValues() == null) 
+		PostingList tmpRedirects = env.getDbRedirectSourcesByTarget().retrieve(id);
+		if (tmpRedirects == null) 
 			return new Redirect[0];
 
-		Redirect[] redirects = new Redirect[tmpRedirects.getValues().size()];
-		for (int i=0; i<tmpRedirects.getValues().size(); i++)
-			redirects[i] = new Redirect(env, tmpRedirects.getValues().get(i));	
+		int[] redirectIds = tmpRedirects.toArray();
+		Redirect[] redirects = new Redirect[redirectIds.length];
+		for (int i=0; i<redirectIds.length; i++)
+			redirects[i] = new Redirect(env, redirectIds[i]);	
 
 		return redirects;	
 	}
@@ -44,13 +45,13 @@ public class Article extends Page {
 	 * 
 	 */
 	public Category[] getParentCategories() {
-		DbIntList tmpParents = env.getDbArticleParents().retrieve(id);
-		if (tmpParents == null || tmpParents.getValues() == null) 
+		PostingList tmpParents = env.getDbArticleParents().retrieve(id);
+		if (tmpParents == null) 
 			return new Category[0];
 
-		Category[] parentCategories = new Category[tmpParents.getValues().size()];
+		Category[] parentCategories = new Category[tmpParents.size()];
 		int index = 0;
-		for (int id : tmpParents.getValues()) {
+		for (int id : tmpParents.toArray()) {
 			parentCategories[index] = new Category(env, id);
 			index++;
 		}
@@ -59,15 +60,15 @@ public class Article extends Page {
 	}
 
 	public Article[] getLinksIn() {			
-		DbIntList tmpLinks = env.getDbPageLinkInNoSentences().retrieve(id);
-		if (tmpLinks == null || tmpLinks.getValues() == null) 
+		PostingList tmpLinks = env.getDbPageLinkInNoSentences().retrieve(id);
+		if (tmpLinks == null) 
 			return new Article[0];
 
-		Article[] links = new Article[tmpLinks.getValues().size()];
+		Article[] links = new Article[tmpLinks.size()];
 
 		int index = 0;
-		for (Integer id : tmpLinks.getValues()) {
-			links[index] = new Article(env, id.intValue());
+		for (int id : tmpLinks.toArray()) {
+			links[index] = new Article(env, id);
 			index++;
 		}
 
@@ -75,14 +76,14 @@ public class Article extends Page {
 	}
 
 	public Article[] getLinksOut()  {
-		DbIntList tmpLinks = env.getDbPageLinkOutNoSentences().retrieve(id);
-		if (tmpLinks == null || tmpLinks.getValues() == null) 
+		PostingList tmpLinks = env.getDbPageLinkOutNoSentences().retrieve(id);
+		if (tmpLinks == null) 
 			return new Article[0];
 
-		Article[] links = new Article[tmpLinks.getValues().size()];
+		Article[] links = new Article[tmpLinks.size()];
 		int index = 0;
-		for (Integer id : tmpLinks.getValues()) {
-			links[index] = new Article(env, id.intValue());
+		for (int id : tmpLinks.toArray()) {
+			links[index] = new Article(env, id);
 			index++;
 		}
 
@@ -1,7 +1,5 @@
 package com.scienceminer.nerd.kb.model;
 
-import java.util.Collections;
-
 import com.scienceminer.nerd.kb.db.*;
 import com.scienceminer.nerd.kb.model.hadoop.*;
 
@@ -24,14 +22,14 @@ public class Category extends Page {
 	 * Returns an array of Categories that this category belongs to.
 	 */
 	public Category[] getParentCategories() {
-		DbIntList tmpParents = env.getDbCategoryParents().retrieve(id); 
-		if (tmpParents == null || tmpParents.getValues() == null) 
+		PostingList tmpParents = env.getDbCategoryParents().retrieve(id); 
+		if (tmpParents == null) 
 			return new Category[0];
 
-		Category[] parentCategories = new Category[tmpParents.getValues().size()];
+		Category[] parentCategories = new Category[tmpParents.size()];
 
 		int index = 0;
-		for (int id:tmpParents.getValues()) {
+		for (int id:tmpParents.toArray()) {
 			parentCategories[index] = new Category(env, id);
 			index++;
 		}
@@ -43,14 +41,14 @@ public class Category extends Page {
 	 * Returns an array of Categories that this category contains. 
 	 */
 	public Category[] getChildCategories() {
-		DbIntList tmpChildCats = env.getDbChildCategories().retrieve(id); 
-		if (tmpChildCats == null || tmpChildCats.getValues() == null) 
+		PostingList tmpChildCats = env.getDbChildCategories().retrieve(id); 
+		if (tmpChildCats == null) 
 			return new Category[0];
 
-		Category[] childCategories = new Category[tmpChildCats.getValues().size()];
+		Category[] childCategories = new Category[tmpChildCats.size()];
 
 		int index = 0;
-		for (int id:tmpChildCats.getValues()) {
+		for (int id:tmpChildCats.toArray()) {
 			childCategories[index] = new Category(env, id);
 			index++;
 		}
@@ -64,11 +62,11 @@ public class Category extends Page {
 	 */
 	public boolean contains(Article article) {
 
-		DbIntList tmpChildCats = env.getDbChildArticles().retrieve(id);
-		if (tmpChildCats == null || tmpChildCats.getValues() == null) 
+		PostingList tmpChildCats = env.getDbChildArticles().retrieve(id);
+		if (tmpChildCats == null) 
 			return false;
 		
-		return Collections.binarySearch(tmpChildCats.getValues(), article.getId()) >= 0;
+		return tmpChildCats.contains(article.getId());
 	}
 	
 	/**
@@ -77,14 +75,14 @@ public class Category extends Page {
 	 */
 	public Article[] getChildArticles() {
 
-		DbIntList tmpChildArts = env.getDbChildArticles().retrieve(id);
-		if (tmpChildArts == null || tmpChildArts.getValues() == null) 
+		PostingList tmpChildArts = env.getDbChildArticles().retrieve(id);
+		if (tmpChildArts == null) 
 			return new Article[0];
 
-		Article[] childArticles = new Article[tmpChildArts.getValues().size()];
+		Article[] childArticles = new Article[tmpChildArts.size()];
 
 		int index = 0;
-		for (int id:tmpChildArts.getValues()) {
+		for (int id:tmpChildArts.toArray()) {
 			childArticles[index] = new Article(env, id);
 			index++;
 		}
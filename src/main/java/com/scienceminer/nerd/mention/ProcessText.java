@@ -1,5 +1,6 @@
 package com.scienceminer.nerd.mention;
 
+import com.codahale.metrics.Timer;
 import com.scienceminer.nerd.disambiguation.NerdContext;
 import com.scienceminer.nerd.disambiguation.NerdEngine;
 import com.scienceminer.nerd.exceptions.NerdException;
@@ -29,6 +30,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.nio.file.Path;
@@ -51,8 +54,9 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
  * quantities, biomedical substances, physical formula, etc.
  * <p>
  * The list of possible mention recognition methods are given by a list of MentionMethod
- * attributes. When processing a text, mentions will be produced sequentially by the
- * application of each of these modules, resulting in a list of Mention objects associated
+ * attributes. When processing a text, mentions will be produced by the application of each
+ * of these modules (concurrently, the mentions being merged in the order of the list), 
+ * resulting in a list of Mention objects associated
  * with the MentionMethod that produced it and usual mention data (position offset,
  * raw text, normalized text, ...).
  */
@@ -73,6 +77,26 @@ public class ProcessText {
     // default indo-european delimiters, should be moved to language specific analysers
     public static String delimiters = " \n\t" + TextUtilities.fullPunctuations + "。、，・";
 
+    // threads applying the mention recognisers concurrently, shared by all the queries; when
+    // the threads and the queue are full, the recogniser is applied by the calling thread
+    private static final int NB_RECOGNISER_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService recogniserExecutor = new ThreadPoolExecutor(
+        NB_RECOGNISER_THREADS, NB_RECOGNISER_THREADS, 0L, TimeUnit.MILLISECONDS, 
+        new ArrayBlockingQueue<>(2 * NB_RECOGNISER_THREADS),
+        runnable -> {
+            Thread thread = new Thread(runnable, "mention-recogniser");
+            thread.setDaemon(true);
+            return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+
+    // processing time of each mention recogniser
+    private static final Map<MentionMethod, Timer> recogniserTimers = new EnumMap<>(MentionMethod.class);
+    static {
+        for (MentionMethod mentionType : MentionMethod.values())
+            recogniserTimers.put(mentionType, new Timer());
+    }
+
     public static ProcessText getInstance() {
         if (instance == null)
             getNewInstance();
@@ -131,8 +155,8 @@ public class ProcessText {
      * This is the entry point for a NerdQuery to have its textual content processed.
      * The mthod will generate a list of recognized named entities produced by a list
      * of mention recognition modules specified in the list field 'mention' of the NerdQuery
-     * object. Each mention recognition method will be applied sequencially in the order
-     * given in the list field 'mention'.
+     * object. The mention recognition methods are applied concurrently, and their mentions 
+     * are returned in the order given in the list field 'mention'.
      *
      * @param nerdQuery the NERD query to be processed
      * @return the list of identified mentions
@@ -193,17 +217,17 @@ public class ProcessText {
                 }
 
                 try {
-                    for (ProcessText.MentionMethod mentionType : mentionTypes) {
-                        List<Mention> localResults = getMentions(text2tag, language, mentionType, nerdQuery.getNgramLength());
-
-                        // we "shift" the entities offset in case only specific sentences are processed
-                        for (Mention entity : localResults) {
-                            Mention mention = new Mention(entity);
-                            mention.setOffsetStart(sentence.getOffsetStart() + entity.getOffsetStart());
-                            mention.setOffsetEnd(sentence.getOffsetStart() + entity.getOffsetEnd());
-                            //mention.setSource(entity.getSource());
-                            results.add(mention);
-                        }
+                    final String sentenceText = text2tag;
+                    List<Mention> localResults = recognise(mentionTypes, 
+                        mentionType -> getMentions(sentenceText, language, mentionType, nerdQuery.getNgramLength()));
+
+                    // we "shift" the entities offset in case only specific sentences are processed
+                    for (Mention entity : localResults) {
+                        Mention mention = new Mention(entity);
+                        mention.setOffsetStart(sentence.getOffsetStart() + entity.getOffsetStart());
+                        mention.setOffsetEnd(sentence.getOffsetStart() + entity.getOffsetEnd());
+                        //mention.setSource(entity.getSource());
+                        results.add(mention);
                     }
                 } catch (Exception e) {
                     throw new NerdException("NERD error when processing text.", e);
@@ -212,10 +236,9 @@ public class ProcessText {
         } else {
             // we process the whole text
             try {
-                for (ProcessText.MentionMethod mentionType : mentionTypes) {
-                    List<Mention> localResults = getMentions(text, language, mentionType, nerdQuery.getNgramLength());
-                    results.addAll(localResults);
-                }
+                final String textToTag = text;
+                results.addAll(recognise(mentionTypes, 
+                    mentionType -> getMentions(textToTag, language, mentionType, nerdQuery.getNgramLength())));
             } catch (Exception e) {
                 throw new NerdException("NERD error when processing text.", e);
             }
@@ -238,10 +261,8 @@ public class ProcessText {
 
         // we process the whole text, sentence info does not apply to layout documents
         try {
-            for (ProcessText.MentionMethod mentionType : mentionTypes) {
-                List<Mention> localResults = getMentions(tokens, language, mentionType, nerdQuery.getNgramLength());
-                results.addAll(localResults);
-            }
+            results.addAll(recognise(mentionTypes, 
+                mentionType -> getMentions(tokens, language, mentionType, nerdQuery.getNgramLength())));
         } catch (Exception e) {
             throw new NerdException("NERD error when processing text.", e);
         }
@@ -249,6 +270,61 @@ public class ProcessText {
         return results;
     }
 
+    /**
+     * Applies the recognisers of the given mention types and returns their mentions in the 
+     * order of the mention types, i.e. the same list as if they were applied one after another.
+     * The recognisers are independent, so when there are several of them, the first one is 
+     * applied by the calling thread and the others concurrently by the shared recogniser 
+     * threads. When these threads are all busy, the recognisers are applied by the calling
+     * thread.
+     */
+    static List<Mention> recognise(List<MentionMethod> mentionTypes, 
+                                   Function<MentionMethod, List<Mention>> recogniser) throws Exception {
+        List<Mention> results = new ArrayList<>();
+        if (isEmpty(mentionTypes))
+            return results;
+
+        List<Future<List<Mention>>> pending = new ArrayList<>();
+        try {
+            for (int i = 1; i < mentionTypes.size(); i++) {
+                final MentionMethod mentionType = mentionTypes.get(i);
+                pending.add(recogniserExecutor.submit(() -> timedRecognise(mentionType, recogniser)));
+            }
+            results.addAll(timedRecognise(mentionTypes.get(0), recogniser));
+            for (Future<List<Mention>> future : pending) {
+                try {
+                    results.addAll(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception)
+                        throw (Exception) e.getCause();
+                    throw e;
+                }
+            }
+        } finally {
+            for (Future<List<Mention>> future : pending)
+                future.cancel(true);
+        }
+        return results;
+    }
+
+    private static List<Mention> timedRecognise(MentionMethod mentionType, 
+                                                Function<MentionMethod, List<Mention>> recogniser) {
+        final Timer.Context context = getRecogniserTimer(mentionType).time();
+        try {
+            return recogniser.apply(mentionType);
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * @return the timer of the applications of the recogniser of the given mention type, 
+     * exported with the metrics of the service
+     */
+    public static Timer getRecogniserTimer(MentionMethod mentionType) {
+        return recogniserTimers.get(mentionType);
+    }
+
     private List<Mention> getMentions(String text, Language language, MentionMethod mentionType, Integer ngramLength) {
         List<Mention> localResults = new ArrayList<>();
 
@@ -918,7 +994,7 @@ public class ProcessText {
                         j--;
                         if (tokens.get(j) != null) {
                             String tok = tokens.get(j).getText();
-                            if (tok.trim().length() == 0 || delimiters.contains(tok))
+                            if (TokenNormaliser.isBlankOrDelimiter(tok))
                                 continue;
                             boolean numericMatch = false;
                             if ((tok.length() > 1) && StringUtils.isNumeric(tok)) {
@@ -1089,7 +1165,7 @@ public class ProcessText {
         List<String> tokens = GrobidAnalyzer.getInstance().tokenize(term, new Language(lang, 1.0));
         List<String> newTokens = new ArrayList<>();
         for (String token : tokens) {
-            if (token.trim().length() == 0 || delimiters.contains(token))
+            if (TokenNormaliser.isBlankOrDelimiter(token))
                 continue;
             newTokens.add(token);
         }
@@ -1,5 +1,6 @@
 package com.scienceminer.nerd.service;
 
+import com.codahale.metrics.Gauge;
 import com.google.inject.Module;
 import com.hubspot.dropwizard.guicier.GuiceBundle;
 import io.dropwizard.Application;
@@ -10,6 +11,9 @@ import io.dropwizard.setup.Environment;
 import io.prometheus.client.dropwizard.DropwizardExports;
 import io.prometheus.client.exporter.MetricsServlet;
 import org.eclipse.jetty.servlets.CrossOriginFilter;
+import com.scienceminer.nerd.disambiguation.Relatedness;
+import com.scienceminer.nerd.disambiguation.RelatednessCache;
+import com.scienceminer.nerd.mention.ProcessText;
 import com.scienceminer.nerd.service.configuration.NerdServiceConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +24,8 @@ import javax.servlet.ServletRegistration;
 import java.util.Arrays;
 import java.util.EnumSet;
 
+import static com.scienceminer.nerd.kb.UpperKnowledgeBase.TARGET_LANGUAGES;
+
 public class NerdApplication extends Application<NerdServiceConfiguration> {
     private static final String RESOURCES = "/service";
 
@@ -56,6 +62,36 @@ public class NerdApplication extends Application<NerdServiceConfiguration> {
         ServletRegistration.Dynamic registration = environment.admin().addServlet("Prometheus", new MetricsServlet());
         registration.addMapping("/metrics/prometheus");
 
+        // hot swap of the ranker and selector models
+        environment.admin().addTask(new ReloadModelTask());
+
+        // relatedness cache statistics per language, read when the metrics are collected, 0 
+        // until the relatedness is initialised by the first queries
+        for (String lang : TARGET_LANGUAGES) {
+            environment.metrics().register("relatedness.cache." + lang + ".hitRate",
+                (Gauge<Double>) () -> {
+                    RelatednessCache cache = getRelatednessCache(lang);
+                    return cache == null ? 0.0 : cache.getHitRate();
+                });
+            environment.metrics().register("relatedness.cache." + lang + ".size",
+                (Gauge<Integer>) () -> {
+                    RelatednessCache cache = getRelatednessCache(lang);
+                    return cache == null ? 0 : cache.size();
+                });
+            environment.metrics().register("relatedness.cache." + lang + ".evictions",
+                (Gauge<Long>) () -> {
+                    RelatednessCache cache = getRelatednessCache(lang);
+                    return cache == null ? 0L : cache.getEvictionCount();
+                });
+        }
+
+        // processing time of the mention recognisers
+        for (ProcessText.MentionMethod mentionType : ProcessText.MentionMethod.values()) {
+            if (mentionType != ProcessText.MentionMethod.user)
+                environment.metrics().register("mention.recogniser." + mentionType.getName(), 
+                    ProcessText.getRecogniserTimer(mentionType));
+        }
+
         String allowedOrigins = configuration.getCorsAllowedOrigins();
         String allowedMethods = configuration.getCorsAllowedMethods();
         String allowedHeaders = configuration.getCorsAllowedHeaders();
@@ -77,4 +113,13 @@ public class NerdApplication extends Application<NerdServiceConfiguration> {
 
         environment.jersey().setUrlPattern(RESOURCES + "/*");
     }
+
+    /**
+     * @return the relatedness cache of the given language, null if the relatedness is not 
+     * initialised yet: the metrics must not trigger the loading of the knowledge base
+     */
+    private static RelatednessCache getRelatednessCache(String lang) {
+        Relatedness relatedness = Relatedness.getInstanceIfCreated();
+        return relatedness == null ? null : relatedness.getCache(lang);
+    }
 }
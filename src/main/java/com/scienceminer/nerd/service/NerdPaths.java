@@ -59,6 +59,16 @@ public interface NerdPaths {
 	String CONCEPT = "concept";
 	String KB = "kb";
 
+	/**
+	 * Most related concepts of a concept
+	 */
+	String RELATED = "related";
+
+	/**
+	 * Nearest concepts of a concept in the entity embeddings space
+	 */
+	String SIMILAR = "similar";
+
 
 	/**
 	 * Term lookup
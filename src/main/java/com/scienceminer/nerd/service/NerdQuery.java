@@ -134,6 +134,10 @@ public class NerdQuery {
     // override default values in the language config files
     private double maxTermFrequency = -1.0;
 
+    // relatedness computation mode, "exact" or "approximate", override the default value
+    // in the language config files
+    private String relatednessMode = null;
+
     // the type of document structure to be considered in case of processing 
     // a complete PDF document 
     private String structure = "grobid";
@@ -142,6 +146,9 @@ public class NerdQuery {
     private Integer ngramLength = null;
     private Integer targetSegmentSize = null;
     private boolean documentLevelPropagation = true;
+    // if true, the segments of a long text are disambiguated in parallel with a document-level 
+    // context, instead of successively with a sliding context
+    private boolean parallelSegmentation = false;
 
     public NerdQuery() {
     }
@@ -177,12 +184,14 @@ public class NerdQuery {
         this.minSelectorScore = query.getMinSelectorScore();
         this.minRankerScore = query.getMinRankerScore();
         this.maxTermFrequency = query.getMaxTermFrequency();
+        this.relatednessMode = query.getRelatednessMode();
 
         this.structure = query.getStructure();
 
         this.ngramLength = query.getNgramLength();
         this.targetSegmentSize = query.getTargetSegmentSize();
         this.documentLevelPropagation = query.getDocumentLevelPropagation();
+        this.parallelSegmentation = query.getParallelSegmentation();
     }
 
     public String getSoftware() {
@@ -474,6 +483,14 @@ public class NerdQuery {
         this.maxTermFrequency = maxTermFrequency;
     }
 
+    public String getRelatednessMode() {
+        return this.relatednessMode;
+    }
+
+    public void setRelatednessMode(String relatednessMode) {
+        this.relatednessMode = relatednessMode;
+    }
+
     public String getStructure() {
         return this.structure;
     }
@@ -506,6 +523,14 @@ public class NerdQuery {
         this.documentLevelPropagation = documentLevelPropagation;
     }
 
+    public boolean getParallelSegmentation() {
+        return parallelSegmentation;
+    }
+
+    public void setParallelSegmentation(boolean parallelSegmentation) {
+        this.parallelSegmentation = parallelSegmentation;
+    }
+
     public String toJSON() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
@@ -5,6 +5,8 @@ import com.scienceminer.nerd.disambiguation.NerdEntity;
 import com.scienceminer.nerd.exceptions.QueryException;
 import com.scienceminer.nerd.exceptions.ResourceNotFound;
 import com.scienceminer.nerd.kb.*;
+import com.scienceminer.nerd.kb.db.RelatedArticles;
+import com.scienceminer.nerd.kb.db.SimilarEntities;
 import com.scienceminer.nerd.kb.db.WikipediaDomainMap;
 import com.scienceminer.nerd.kb.model.Article;
 import com.scienceminer.nerd.kb.model.Label;
@@ -130,6 +132,130 @@ public class NerdRestKB {
 
     }
 
+    /**
+     * Get the most related concepts of a concept, as precomputed from the Wikipedia link graph.
+     *
+     * @param id Wikipedia page id, or Wikidata identifier of the concept
+     * @return the related concepts by decreasing relatedness
+     */
+    public String getRelatedConcepts(String id, String lang) {
+        LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+        if (wikipedia == null) {
+            LOGGER.error("The knowledge base does not cover the language " + lang + ".");
+            throw new QueryException("The knowledge base does not cover the language " + lang + ".", QueryException.LANGUAGE_ISSUE);
+        }
+
+        Integer pageId = null;
+        if (id.startsWith("Q")) {
+            pageId = UpperKnowledgeBase.getInstance().getPageIdByLang(id, lang);
+            if (pageId == null)
+                throw new ResourceNotFound("The requested resource could not be found in the current version of the KB.");
+        } else {
+            try {
+                pageId = Integer.parseInt(id);
+            } catch (Exception e) {
+                LOGGER.error("Could not parse the concept identifier.");
+                throw new QueryException("Invalid format of the supplied identifier.", QueryException.WRONG_IDENTIFIER);
+            }
+        }
+
+        if (!wikipedia.hasRelatedArticles()) {
+            LOGGER.error("The related concepts have not been computed for the language " + lang + ".");
+            throw new ResourceNotFound("The related concepts are not available for the language " + lang + ".");
+        }
+        Page page = wikipedia.getPageById(pageId);
+        if (page.getType() != PageType.article)
+            return null;
+
+        RelatedArticles related = wikipedia.getRelatedArticles(pageId);
+        if (related == null)
+            related = RelatedArticles.EMPTY;
+
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{ \"id\": \"" + new String(encoder.quoteAsString(id)) + "\", \"lang\": \"" + lang + "\", \"related\" : [");
+        for (int rank = 0; rank < related.size(); rank++) {
+            Page relatedPage = wikipedia.getPageById(related.getId(rank));
+            if (rank > 0)
+                jsonBuilder.append(", ");
+            jsonBuilder.append("{ \"wikipediaExternalRef\": " + related.getId(rank));
+            if (relatedPage.getTitle() != null)
+                jsonBuilder.append(", \"preferredTerm\": \"" + new String(encoder.quoteAsString(relatedPage.getTitle())) + "\"");
+            if (relatedPage.getWikidataId() != null)
+                jsonBuilder.append(", \"wikidataId\": \"" + relatedPage.getWikidataId() + "\"");
+            jsonBuilder.append(", \"relatedness\": " + related.getScore(rank) + " }");
+        }
+        jsonBuilder.append("] }");
+
+        return jsonBuilder.toString();
+    }
+
+    // maximum number of similar concepts of a request
+    private static final int MAX_SIMILAR_CONCEPTS = 100;
+
+    /**
+     * Get the nearest concepts of a concept in the entity embeddings space, as found by the
+     * approximate nearest-neighbour index of the language.
+     *
+     * @param id Wikipedia page id, or Wikidata identifier of the concept
+     * @param size number of similar concepts
+     * @return the similar concepts by decreasing cosine similarity
+     */
+    public String getSimilarConcepts(String id, String lang, int size) {
+        LowerKnowledgeBase wikipedia = UpperKnowledgeBase.getInstance().getWikipediaConf(lang);
+        if (wikipedia == null) {
+            LOGGER.error("The knowledge base does not cover the language " + lang + ".");
+            throw new QueryException("The knowledge base does not cover the language " + lang + ".", QueryException.LANGUAGE_ISSUE);
+        }
+        if (size <= 0 || size > MAX_SIMILAR_CONCEPTS)
+            throw new QueryException("The number of similar concepts must be between 1 and " + MAX_SIMILAR_CONCEPTS + ".", QueryException.QUERY_GENERIC_ISSUE);
+
+        String wikidataId = null;
+        if (id.startsWith("Q")) {
+            wikidataId = id;
+        } else {
+            int pageId;
+            try {
+                pageId = Integer.parseInt(id);
+            } catch (Exception e) {
+                LOGGER.error("Could not parse the concept identifier.");
+                throw new QueryException("Invalid format of the supplied identifier.", QueryException.WRONG_IDENTIFIER);
+            }
+            Page page = wikipedia.getPageById(pageId);
+            if (page == null || page.getWikidataId() == null)
+                throw new ResourceNotFound("The requested resource could not be found in the current version of the KB.");
+            wikidataId = page.getWikidataId();
+        }
+
+        if (wikipedia.getEntityEmbeddingsIndex() == null) {
+            LOGGER.error("The entity embeddings index is not available for the language " + lang + ".");
+            throw new ResourceNotFound("The similar concepts are not available for the language " + lang + ".");
+        }
+        SimilarEntities similar = wikipedia.getSimilarEntities(wikidataId, size);
+        if (similar == null)
+            throw new ResourceNotFound("The requested resource has no embeddings in the current version of the KB.");
+
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        StringBuilder jsonBuilder = new StringBuilder();
+        jsonBuilder.append("{ \"id\": \"" + new String(encoder.quoteAsString(id)) + "\", \"lang\": \"" + lang + "\", \"similar\" : [");
+        for (int rank = 0; rank < similar.size(); rank++) {
+            if (rank > 0)
+                jsonBuilder.append(", ");
+            jsonBuilder.append("{ \"wikidataId\": \"" + similar.getId(rank) + "\"");
+            Integer pageId = UpperKnowledgeBase.getInstance().getPageIdByLang(similar.getId(rank), lang);
+            if (pageId != null) {
+                jsonBuilder.append(", \"wikipediaExternalRef\": " + pageId);
+                Page similarPage = wikipedia.getPageById(pageId);
+                if (similarPage != null && similarPage.getTitle() != null)
+                    jsonBuilder.append(", \"preferredTerm\": \"" + new String(encoder.quoteAsString(similarPage.getTitle())) + "\"");
+            }
+            jsonBuilder.append(", \"similarity\": " + similar.getScore(rank) + " }");
+        }
+        jsonBuilder.append("] }");
+
+        return jsonBuilder.toString();
+    }
+
     private void handleCategories(NerdEntity entity, String identifier, com.scienceminer.nerd.kb.model.Category[] parentCategories) {
         if (ArrayUtils.isNotEmpty(parentCategories)) {
             for (com.scienceminer.nerd.kb.model.Category theCategory : parentCategories) {
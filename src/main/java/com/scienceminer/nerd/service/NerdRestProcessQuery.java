@@ -1,6 +1,7 @@
 package com.scienceminer.nerd.service;
 
 import com.scienceminer.nerd.disambiguation.*;
+import com.scienceminer.nerd.exceptions.NerdException;
 import com.scienceminer.nerd.exceptions.QueryException;
 import com.scienceminer.nerd.kb.Customisations;
 import com.scienceminer.nerd.main.Main;
@@ -8,6 +9,7 @@ import com.scienceminer.nerd.main.data.SoftwareInfo;
 import com.scienceminer.nerd.mention.Mention;
 import com.scienceminer.nerd.mention.ProcessText;
 import com.scienceminer.nerd.mention.Sentence;
+import com.scienceminer.nerd.utilities.OrderedParallelProcessor;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.grobid.core.lang.Language;
@@ -20,6 +22,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.scienceminer.nerd.disambiguation.NerdCustomisation.GENERIC_CUSTOMISATION;
 import static com.scienceminer.nerd.exceptions.QueryException.LANGUAGE_ISSUE;
@@ -29,6 +35,20 @@ import static shadedwipo.org.apache.commons.lang3.StringUtils.isEmpty;
 public class NerdRestProcessQuery {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NerdRestProcessQuery.class);
+
+    // threads disambiguating the segments of the texts in parallel, shared by all the queries;
+    // when the threads and the queue are full, the segment is disambiguated by the calling thread
+    private static final int NB_SEGMENT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService segmentExecutor = new ThreadPoolExecutor(
+        NB_SEGMENT_THREADS, NB_SEGMENT_THREADS, 0L, TimeUnit.MILLISECONDS, 
+        new ArrayBlockingQueue<>(2 * NB_SEGMENT_THREADS),
+        runnable -> {
+            Thread thread = new Thread(runnable, "segment-disambiguation");
+            thread.setDaemon(true);
+            return thread;
+        },
+        new ThreadPoolExecutor.CallerRunsPolicy());
+
     SoftwareInfo softwareInfo = SoftwareInfo.getInstance();
 
     @Inject
@@ -170,7 +190,9 @@ public class NerdRestProcessQuery {
         // sort the entities
         Collections.sort(nerdQuery.getEntities());
 
-        if (segmentation) 
+        if (segmentation && nerdQuery.getParallelSegmentation())
+            processQueryTextMentionWithParallelSegmentation(nerdQuery, processText);
+        else if (segmentation) 
             processQueryTextMentionWithSegmentation(nerdQuery, processText);
         else 
             processQueryTextMentionsNoSegmentation(nerdQuery); 
@@ -252,6 +274,117 @@ public class NerdRestProcessQuery {
         nerdQuery = NerdCategories.addCategoryDistribution(nerdQuery);
     }   
 
+    /**
+     * Two-phase alternative to the sliding window disambiguation of the segments, selected with 
+     * the query parameter parallelSegmentation. The candidates of the mentions of the segments 
+     * are first generated in parallel, and a document-level context is built from their 
+     * high-confidence senses. The segments are then disambiguated in parallel (ranking and 
+     * selection of the same candidates), all with this context. The disambiguated segments are 
+     * passed in order to a sequential pass, which reinforces the entities consistent with the 
+     * disambiguation of the same mentions in the previous segments. This sequential pass starts
+     * as soon as the first segments are disambiguated.
+     */
+    private void processQueryTextMentionWithParallelSegmentation(NerdQuery nerdQuery, ProcessText processText) {
+        NerdEngine disambiguator = NerdEngine.getInstance();
+
+        int targetSegmentSize = ProcessText.DEFAULT_TARGET_SEGMENT_SIZE;
+        if (nerdQuery.getTargetSegmentSize() != null) {
+            targetSegmentSize = nerdQuery.getTargetSegmentSize();
+        }
+
+        // get segment offsets for the text
+        List<OffsetPosition> segments = 
+            processText.segment(nerdQuery.getText(), nerdQuery.getSentences(), targetSegmentSize, nerdQuery.getLanguage());
+
+        // one working query per segment, with the mentions/entities positioned in the segment
+        List<NerdQuery> segmentQueries = new ArrayList<>();
+        for (OffsetPosition segment : segments) {
+            NerdQuery segmentQuery = new NerdQuery(nerdQuery);
+            segmentQuery.setEntities(filterEntities(nerdQuery.getEntities(), segment.start, segment.end));
+            segmentQuery.setText(nerdQuery.getText().substring(segment.start, segment.end));
+            segmentQuery.setShortText(null);
+            segmentQuery.setTokens(null);
+            segmentQueries.add(segmentQuery);
+        }
+
+        List<NerdEntity> disambiguatedEntities;
+        try {
+            // candidates of each segment, also used for its disambiguation
+            List<Map<NerdEntity, List<NerdCandidate>>> segmentCandidates = new ArrayList<>();
+            OrderedParallelProcessor.process(segmentQueries, segmentExecutor, 2 * NB_SEGMENT_THREADS, 
+                disambiguator::generateCandidates,
+                (rank, segmentQuery, candidates) -> segmentCandidates.add(candidates));
+
+            // document-level context, shared by all the segments
+            List<NerdEntity> contextEntities = 
+                disambiguator.getHighConfidenceEntities(segmentCandidates, nerdQuery.getLanguage().getLang());
+
+            disambiguatedEntities = disambiguateSegments(segmentQueries, segments, 
+                rank -> disambiguateSegment(segmentQueries.get(rank), segmentCandidates.get(rank), contextEntities));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new NerdException("Error when disambiguating the segments of the text", e);
+        }
+
+        nerdQuery.setEntities(disambiguatedEntities);
+        nerdQuery = NerdCategories.addCategoryDistribution(nerdQuery);
+    }
+
+    /**
+     * Disambiguate the segments in parallel with the given worker, which returns the entities
+     * of the segment of the given rank, then pass them in order to the sequential pass: their
+     * offsets are shifted to the text, and they are reinforced with the entities of the 
+     * previous segments.
+     *
+     * @return the entities of all the segments, in the order of the segments
+     */
+    static List<NerdEntity> disambiguateSegments(List<NerdQuery> segmentQueries, List<OffsetPosition> segments, 
+            OrderedParallelProcessor.Worker<Integer, List<NerdEntity>> worker) throws Exception {
+        List<Integer> ranks = new ArrayList<>();
+        for (int rank = 0; rank < segmentQueries.size(); rank++)
+            ranks.add(rank);
+
+        // document context of the previous segments for the sequential pass
+        DocumentContext slidingContext = new DocumentContext();
+        List<NerdEntity> disambiguatedEntities = new ArrayList<>();
+        OrderedParallelProcessor.process(ranks, segmentExecutor, 2 * NB_SEGMENT_THREADS, worker,
+            (rank, item, localEntities) -> {
+                // shifting the offsets of the disambiguated entities
+                int startSegment = segments.get(rank).start;
+                if (startSegment != 0) {
+                    for(NerdEntity entity : localEntities) {
+                        entity.setOffsetStart(entity.getOffsetStart() + startSegment);
+                        entity.setOffsetEnd(entity.getOffsetEnd() + startSegment);
+                    }
+                }
+
+                // sliding context adjustments, then update of the context with the segment
+                slidingContext.reinforce(localEntities);
+                NerdQuery segmentQuery = segmentQueries.get(rank);
+                segmentQuery.setEntities(localEntities);
+                slidingContext.update(segmentQuery);
+
+                disambiguatedEntities.addAll(localEntities);
+            });
+        return disambiguatedEntities;
+    }
+
+    /**
+     * Disambiguate the entity mentions of a segment with their candidates and the given 
+     * document-level context
+     */
+    private static List<NerdEntity> disambiguateSegment(NerdQuery segmentQuery, 
+            Map<NerdEntity, List<NerdCandidate>> candidates, List<NerdEntity> contextEntities) {
+        // the seed sorts the entities, so each segment gets its own list
+        DocumentContext documentContext = new DocumentContext();
+        documentContext.seed(new ArrayList<>(contextEntities), segmentQuery.getLanguage());
+        segmentQuery.setContext(documentContext);
+
+        NerdEngine disambiguator = NerdEngine.getInstance();
+        return disambiguator.disambiguate(segmentQuery, candidates);
+    }
+
     /**
      * Parse a structured query and return the corresponding normalized enriched and disambiguated query object.
      *
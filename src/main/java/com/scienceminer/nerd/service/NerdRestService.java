@@ -53,6 +53,7 @@ public class NerdRestService implements NerdPaths {
     private static final String LANG = "lang";
     private static final String DOI = "doi";
     private static final String NBEST = "nbest";
+    private static final String SIZE = "size";
     private static final String SENTENCE = "sentence";
     private static final String FORMAT = "format";
     private static final String CUSTOMISATION = "customisation";
@@ -79,6 +80,10 @@ public class NerdRestService implements NerdPaths {
         ProcessText.getInstance();
         SimilarityScorer.getInstance();
         NerdEngine.getInstance();
+
+        LOGGER.info("Loading ranker and selector models.");
+        NerdEngine.getInstance().loadModels();
+        LOGGER.info("Loading ranker and selector models finished.");
     }
 
     /**
@@ -365,6 +370,79 @@ public class NerdRestService implements NerdPaths {
         return response;
     }
 
+    @Path(KB + "/" + CONCEPT + "/{id}/" + RELATED)
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response getRelatedConcepts(@PathParam(ID) String identifier,
+                                       @DefaultValue(Language.EN) @QueryParam(LANG) String lang) {
+
+        String output = null;
+        Response response = null;
+
+        try {
+            output = nerdRestKB.getRelatedConcepts(identifier, lang);
+
+            if (isBlank(output)) {
+                response = Response.status(Response.Status.NOT_FOUND).build();
+            } else {
+                response = Response
+                        .status(Response.Status.OK)
+                        .entity(output)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON + "; charset=UTF-8")
+                        .header("Access-Control-Allow-Origin", "*")
+                        .header("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT")
+                        .build();
+            }
+
+        } catch (ResourceNotFound re) {
+            return handleResourceNotFound(re, identifier);
+        } catch (QueryException qe) {
+            return handleQueryException(qe, identifier);
+        } catch (Exception e) {
+            LOGGER.error("An unexpected exception occurs. ", e);
+            response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+
+        return response;
+    }
+
+    @Path(KB + "/" + CONCEPT + "/{id}/" + SIMILAR)
+    @Produces(MediaType.APPLICATION_JSON)
+    @GET
+    public Response getSimilarConcepts(@PathParam(ID) String identifier,
+                                       @DefaultValue(Language.EN) @QueryParam(LANG) String lang,
+                                       @DefaultValue("10") @QueryParam(SIZE) int size) {
+
+        String output = null;
+        Response response = null;
+
+        try {
+            output = nerdRestKB.getSimilarConcepts(identifier, lang, size);
+
+            if (isBlank(output)) {
+                response = Response.status(Response.Status.NOT_FOUND).build();
+            } else {
+                response = Response
+                        .status(Response.Status.OK)
+                        .entity(output)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON + "; charset=UTF-8")
+                        .header("Access-Control-Allow-Origin", "*")
+                        .header("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT")
+                        .build();
+            }
+
+        } catch (ResourceNotFound re) {
+            return handleResourceNotFound(re, identifier);
+        } catch (QueryException qe) {
+            return handleQueryException(qe, identifier);
+        } catch (Exception e) {
+            LOGGER.error("An unexpected exception occurs. ", e);
+            response = Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        }
+
+        return response;
+    }
+
     @GET
     @Path(KB + "/" + TERM + "/{term}")
     @Produces(MediaType.APPLICATION_JSON)
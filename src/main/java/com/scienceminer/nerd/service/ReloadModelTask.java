@@ -0,0 +1,36 @@
+package com.scienceminer.nerd.service;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.scienceminer.nerd.disambiguation.NerdEngine;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * Admin task for replacing the ranker or selector model of a language by the one currently
+ * in the model files (data/models), without restarting the service.
+ *
+ * Run like this on the admin port:
+ * curl -X POST "http://localhost:8091/tasks/reload-model?model=ranker&lang=en"
+ */
+public class ReloadModelTask extends Task {
+
+    private static final String MODEL = "model";
+    private static final String LANG = "lang";
+
+    public ReloadModelTask() {
+        super("reload-model");
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        if (parameters.get(MODEL).isEmpty() || parameters.get(LANG).isEmpty()) {
+            output.println("Missing parameter, expected: model=ranker|selector&lang=xx");
+            return;
+        }
+        String model = parameters.get(MODEL).iterator().next();
+        String lang = parameters.get(LANG).iterator().next();
+        NerdEngine.getInstance().reloadModel(model, lang);
+        output.println("Model " + model + " for " + lang + " reloaded");
+    }
+}
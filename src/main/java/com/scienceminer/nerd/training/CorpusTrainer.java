@@ -95,8 +95,7 @@ public class CorpusTrainer {
 			return;
 		}
 	    ArticleTrainingSample trainingSample = articleSets.get(0);
-	    ranker.train(trainingSample);
-	    ranker.saveTrainingData(arffRanker);
+	    ranker.train(trainingSample, arffRanker);
 	}
 
 	private void createSelectorArffFiles() throws IOException, Exception {
@@ -101,8 +101,7 @@ public class WikipediaTrainer {
 
 	private void createRankerArffFiles() throws IOException, Exception {
 	    ArticleTrainingSample trainingSample = articleSamples.get(0);
-	    ranker.train(trainingSample);
-	    ranker.saveTrainingData(arffRanker);
+	    ranker.train(trainingSample, arffRanker);
 	}
 
 	private void createSelectorArffFiles() throws IOException, Exception {
@@ -140,6 +139,12 @@ public class WikipediaTrainer {
 		File dataDir = new File(args[0]);
 		String lang = args[1];
 		WikipediaTrainer trainer = new WikipediaTrainer(dataDir, lang);
+		if (args.length > 2) {
+			// number of threads extracting the training examples
+			int nbThreads = Integer.parseInt(args[2]);
+			trainer.ranker.setTrainingThreads(nbThreads);
+			trainer.selector.setTrainingThreads(nbThreads);
+		}
 
 		System.out.println("Create article sets...");
 		trainer.createArticleSamples();
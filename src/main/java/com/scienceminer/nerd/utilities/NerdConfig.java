@@ -73,6 +73,45 @@ public class NerdConfig {
 	// the feature set to be used for the selector model
 	private String selectorFeatures = null;
 
+	// path to the persistent relatedness store, if null the relatedness 
+	// scores are only cached in memory and lost at each restart
+	private String relatednessStore = null;
+
+	// maximum number of entity pairs kept in the persistent relatedness store
+	private int relatednessStoreSize = 10000000;
+
+	// relatedness computation mode, "exact" or "approximate" (estimated from link sketches)
+	private String relatednessMode = "exact";
+
+	// path to the link sketches used by the approximate relatedness, built with the KB
+	private String linkSketches = null;
+
+	// in approximate mode, maximum uncertainty of an estimated relatedness, above which
+	// the relatedness is computed exactly
+	private double relatednessSketchMargin = 0.1;
+
+	// directory of the memory-mapped word and entity embeddings matrices, built from the 
+	// quantized embeddings files when missing, null for reading the embeddings from LMDB
+	private String embeddingsMatrices = null;
+
+	// file of the approximate nearest-neighbour index over the entity embeddings matrix, built
+	// when missing, null for none
+	private String entityEmbeddingsIndex = null;
+
+	// number of candidates taken from the nearest entities of the words of a mention when its 
+	// label lookup gives no candidate, 0 for none, requires the entity embeddings index
+	private int embeddingsCandidates = 0;
+
+	// if true, the mentions whose candidates are decided by their prior probabilities are 
+	// ranked without relatedness, embeddings similarity and ranker model
+	private boolean cascadeRanking = false;
+
+	// minimum prior probability of the best candidate of a mention for skipping the ranker
+	private double cascadeMinPriorProbability = 0.95;
+
+	// minimum difference between the two best prior probabilities for skipping the ranker
+	private double cascadeMinPriorMargin = 0.9;
+
 	public String getLangCode() {
 		return langCode;
 	}
@@ -200,4 +239,92 @@ public class NerdConfig {
 	public void setSelectorFeatures(String selectorFeatures) {
 		this.selectorFeatures = selectorFeatures;
 	}
-}
\ No newline at end of file
+
+	public String getRelatednessStore() {
+		return this.relatednessStore;
+	}
+
+	public void setRelatednessStore(String relatednessStore) {
+		this.relatednessStore = relatednessStore;
+	}
+
+	public int getRelatednessStoreSize() {
+		return this.relatednessStoreSize;
+	}
+
+	public void setRelatednessStoreSize(int relatednessStoreSize) {
+		this.relatednessStoreSize = relatednessStoreSize;
+	}
+
+	public String getRelatednessMode() {
+		return this.relatednessMode;
+	}
+
+	public void setRelatednessMode(String relatednessMode) {
+		this.relatednessMode = relatednessMode;
+	}
+
+	public String getLinkSketches() {
+		return this.linkSketches;
+	}
+
+	public void setLinkSketches(String linkSketches) {
+		this.linkSketches = linkSketches;
+	}
+
+	public String getEmbeddingsMatrices() {
+		return this.embeddingsMatrices;
+	}
+
+	public void setEmbeddingsMatrices(String embeddingsMatrices) {
+		this.embeddingsMatrices = embeddingsMatrices;
+	}
+
+	public String getEntityEmbeddingsIndex() {
+		return this.entityEmbeddingsIndex;
+	}
+
+	public void setEntityEmbeddingsIndex(String entityEmbeddingsIndex) {
+		this.entityEmbeddingsIndex = entityEmbeddingsIndex;
+	}
+
+	public int getEmbeddingsCandidates() {
+		return this.embeddingsCandidates;
+	}
+
+	public void setEmbeddingsCandidates(int embeddingsCandidates) {
+		this.embeddingsCandidates = embeddingsCandidates;
+	}
+
+	public double getRelatednessSketchMargin() {
+		return this.relatednessSketchMargin;
+	}
+
+	public void setRelatednessSketchMargin(double relatednessSketchMargin) {
+		this.relatednessSketchMargin = relatednessSketchMargin;
+	}
+
+	public boolean getCascadeRanking() {
+		return this.cascadeRanking;
+	}
+
+	public void setCascadeRanking(boolean cascadeRanking) {
+		this.cascadeRanking = cascadeRanking;
+	}
+
+	public double getCascadeMinPriorProbability() {
+		return this.cascadeMinPriorProbability;
+	}
+
+	public void setCascadeMinPriorProbability(double cascadeMinPriorProbability) {
+		this.cascadeMinPriorProbability = cascadeMinPriorProbability;
+	}
+
+	public double getCascadeMinPriorMargin() {
+		return this.cascadeMinPriorMargin;
+	}
+
+	public void setCascadeMinPriorMargin(double cascadeMinPriorMargin) {
+		this.cascadeMinPriorMargin = cascadeMinPriorMargin;
+	}
+}
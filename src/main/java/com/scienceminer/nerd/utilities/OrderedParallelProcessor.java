@@ -0,0 +1,114 @@
+package com.scienceminer.nerd.utilities;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Processes a list of items, e.g. the articles of a training sample or the segments of a
+ * text, with a bounded pool of workers. Each item gives a result (e.g. the buffer of the training examples of an
+ * article) and the results are passed to the consumer in the order of the list, so that the
+ * output does not depend on the number of workers. At most two results per worker are
+ * pending, which bounds the memory used when the consumer is slower than the workers.
+ *
+ * The items can also be given by an iterator which is only used by the calling thread, e.g.
+ * a scan of the entries of a knowledge base database: the items are then read as the workers
+ * progress rather than all loaded beforehand.
+ *
+ * The pool is created for the processing, or given by the caller to be shared between 
+ * several processings, e.g. by the concurrent requests of the service.
+ */
+public class OrderedParallelProcessor {
+
+	public interface Worker<T, R> {
+		R process(T item) throws Exception;
+	}
+
+	public interface ResultConsumer<T, R> {
+		void accept(int rank, T item, R result) throws Exception;
+	}
+
+	/**
+	 * Processes the items with the given number of threads, in the calling thread if it is 1
+	 * or less. The first exception thrown by a worker or the consumer stops the processing
+	 * and is rethrown.
+	 */
+	public static <T, R> void process(List<T> items, int nbThreads, Worker<T, R> worker,
+			ResultConsumer<T, R> consumer) throws Exception {
+		process(items.iterator(), nbThreads, worker, consumer);
+	}
+
+	/**
+	 * Processes the items of the iterator with the given number of threads, in the calling
+	 * thread if it is 1 or less. The iterator is only accessed by the calling thread.
+	 */
+	public static <T, R> void process(Iterator<T> items, int nbThreads, Worker<T, R> worker,
+			ResultConsumer<T, R> consumer) throws Exception {
+		int rank = 0;
+		if (nbThreads <= 1) {
+			while (items.hasNext()) {
+				T item = items.next();
+				consumer.accept(rank++, item, worker.process(item));
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		try {
+			process(items, executor, 2 * nbThreads, worker, consumer);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Processes the items with the given pool, which is not shut down, with at most the given
+	 * number of pending results. The tasks still pending when a worker or the consumer fails 
+	 * are cancelled.
+	 */
+	public static <T, R> void process(List<T> items, ExecutorService executor, int maxPending, 
+			Worker<T, R> worker, ResultConsumer<T, R> consumer) throws Exception {
+		process(items.iterator(), executor, maxPending, worker, consumer);
+	}
+
+	/**
+	 * Processes the items of the iterator with the given pool, which is not shut down, with at
+	 * most the given number of pending results. The iterator is only accessed by the calling 
+	 * thread.
+	 */
+	public static <T, R> void process(Iterator<T> items, ExecutorService executor, int maxPending, 
+			Worker<T, R> worker, ResultConsumer<T, R> consumer) throws Exception {
+		int rank = 0;
+		Deque<T> pendingItems = new ArrayDeque<>();
+		Deque<Future<R>> pending = new ArrayDeque<>();
+		try {
+			while (items.hasNext()) {
+				T item = items.next();
+				pendingItems.add(item);
+				pending.add(executor.submit(() -> worker.process(item)));
+				if (pending.size() >= maxPending)
+					consumer.accept(rank++, pendingItems.poll(), get(pending.poll()));
+			}
+			while (!pending.isEmpty())
+				consumer.accept(rank++, pendingItems.poll(), get(pending.poll()));
+		} finally {
+			for (Future<R> future : pending)
+				future.cancel(true);
+		}
+	}
+
+	private static <R> R get(Future<R> future) throws Exception {
+		try {
+			return future.get();
+		} catch(ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
+	}
+}
@@ -140,6 +140,8 @@ public class Stopwords {
 
 	public boolean isStopword(String text, String lang) {
 		Set<String> stopwords = allStopwords.get(lang);
+		if (stopwords == null)
+			return false;
 		return stopwords.contains(text.trim());
 	}
 }
\ No newline at end of file
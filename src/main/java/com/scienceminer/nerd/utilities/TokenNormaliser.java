@@ -0,0 +1,136 @@
+package com.scienceminer.nerd.utilities;
+
+import com.scienceminer.nerd.mention.ProcessText;
+import org.grobid.core.utilities.UnicodeUtil;
+
+import java.util.Locale;
+
+/**
+ * Normalisation of the tokens into the form of the words of the word embeddings, in a single
+ * pass over the characters of the token: unicode normalisation, removal of the punctuations,
+ * digits flattened to 0, lower case and removal of the tabs.
+ *
+ * This gives the same result as the successive regular expressions and string replacements
+ * it replaces, but the characters are written in a reusable buffer of the calling thread and
+ * the unicode normalisation and locale-sensitive lower case are only used for the tokens
+ * which are not plain ASCII.
+ */
+public class TokenNormaliser {
+
+    // reusable buffer of the calling thread
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(64));
+
+    // with these default locales, the lower case of ASCII letters is not always ASCII
+    private static final boolean ASCII_LOWER_CASE;
+    static {
+        String language = Locale.getDefault().getLanguage();
+        ASCII_LOWER_CASE = !(language.equals("tr") || language.equals("az") || language.equals("lt"));
+    }
+
+    /**
+     * @return true if the token is empty, only made of spaces or is a delimiter
+     */
+    public static boolean isBlankOrDelimiter(String token) {
+        return (token == null) || isBlank(token) || (ProcessText.delimiters.indexOf(token) != -1);
+    }
+
+    /**
+     * @return true if the string is empty or only made of spaces and control characters,
+     * as removed by String.trim()
+     */
+    public static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the token normalised as a word of the word embeddings, null if nothing remains
+     * of the token or if it is a delimiter
+     */
+    public static String normalise(String token) {
+        if (isBlankOrDelimiter(token))
+            return null;
+
+        String word = token;
+        if (!isPrintableAscii(word)) {
+            // unicode normalization
+            word = UnicodeUtil.normaliseText(word);
+        }
+
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        boolean ascii = true;
+        boolean tab = false;
+        for (int i = 0; i < word.length(); ) {
+            int c = word.codePointAt(i);
+            i += Character.charCount(c);
+            // remove punctuations
+            if (isPunctuation(c))
+                continue;
+            if (c >= '0' && c <= '9') {
+                // flatten numerical chars
+                c = '0';
+            } else if (c < 128) {
+                if (c >= 'A' && c <= 'Z' && ASCII_LOWER_CASE)
+                    c += 'a' - 'A';
+                else if (c == '\t')
+                    tab = true;
+            } else {
+                ascii = false;
+            }
+            buffer.appendCodePoint(c);
+        }
+        String result;
+        if (!ascii || !ASCII_LOWER_CASE) {
+            // lower case with the context-sensitive rules, e.g. greek final sigma, the tabs 
+            // being removed afterwards as they delimit the words
+            result = buffer.toString().toLowerCase();
+            if (tab)
+                result = result.replace("\t", "");
+        } else {
+            if (tab) {
+                int length = 0;
+                for (int i = 0; i < buffer.length(); i++) {
+                    if (buffer.charAt(i) != '\t')
+                        buffer.setCharAt(length++, buffer.charAt(i));
+                }
+                buffer.setLength(length);
+            }
+            if (isBlank(buffer))
+                return null;
+            return buffer.toString();
+        }
+        return isBlank(result) ? null : result;
+    }
+
+    private static boolean isPrintableAscii(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < ' ' || c > '~')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true for the characters of the unicode punctuation category, as matched by the
+     * regular expression \p{P}
+     */
+    private static boolean isPunctuation(int c) {
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
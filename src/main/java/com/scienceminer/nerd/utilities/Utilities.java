@@ -369,6 +369,126 @@ public class Utilities {
         return x0 + x1 + x2 + x3;
     }
 
+    /**
+     * Dot product of two quantized vectors. The products of two shorts are computed in 32 bits
+     * and accumulated in 64 bits, so the result is exact whatever the quantization factor, 
+     * without widening the vectors to float.
+     */
+    public static long inner(int size, short[] v1, int offset1, short[] v2, int offset2) {
+        if( size % 4 != 0 ) {
+            throw new IllegalArgumentException( "Vector size must be a multiple of 4" );
+        }
+
+        long x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+        for(int i = 0; i < size; i += 4) {
+            x0 += v1[offset1 + i + 0] * v2[offset2 + i + 0];
+            x1 += v1[offset1 + i + 1] * v2[offset2 + i + 1];
+            x2 += v1[offset1 + i + 2] * v2[offset2 + i + 2];
+            x3 += v1[offset1 + i + 3] * v2[offset2 + i + 3];
+        }
+
+        return x0 + x1 + x2 + x3;
+    }
+
+    /**
+     * Dot product of a vector of integers, e.g. a sum of quantized vectors, with a quantized 
+     * vector, exact as the products are computed in 64 bits.
+     */
+    public static long inner(int size, int[] v1, int offset1, short[] v2, int offset2) {
+        if( size % 4 != 0 ) {
+            throw new IllegalArgumentException( "Vector size must be a multiple of 4" );
+        }
+
+        long x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+        for(int i = 0; i < size; i += 4) {
+            x0 += (long) v1[offset1 + i + 0] * v2[offset2 + i + 0];
+            x1 += (long) v1[offset1 + i + 1] * v2[offset2 + i + 1];
+            x2 += (long) v1[offset1 + i + 2] * v2[offset2 + i + 2];
+            x3 += (long) v1[offset1 + i + 3] * v2[offset2 + i + 3];
+        }
+
+        return x0 + x1 + x2 + x3;
+    }
+
+    /**
+     * Dot products of a quantized vector with several quantized vectors of the same size stored
+     * one after the other, e.g. a context vector against the vectors of the candidate entities.
+     * The rows are processed two at a time so that each element of the vector is read once for 
+     * both rows.
+     *
+     * @param rows the concatenated vectors, the first one starting at rowsOffset
+     * @param results the dot product with each row, of length at least nbRows
+     */
+    public static void inner(int size, short[] v, int offset, short[] rows, int rowsOffset, 
+                             int nbRows, long[] results) {
+        if( size % 4 != 0 ) {
+            throw new IllegalArgumentException( "Vector size must be a multiple of 4" );
+        }
+
+        int r = 0;
+        for(; r + 1 < nbRows; r += 2) {
+            int offset1 = rowsOffset + r * size;
+            int offset2 = offset1 + size;
+            long x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+            long y0 = 0, y1 = 0, y2 = 0, y3 = 0;
+            for(int i = 0; i < size; i += 4) {
+                int a0 = v[offset + i + 0];
+                int a1 = v[offset + i + 1];
+                int a2 = v[offset + i + 2];
+                int a3 = v[offset + i + 3];
+                x0 += a0 * rows[offset1 + i + 0];
+                x1 += a1 * rows[offset1 + i + 1];
+                x2 += a2 * rows[offset1 + i + 2];
+                x3 += a3 * rows[offset1 + i + 3];
+                y0 += a0 * rows[offset2 + i + 0];
+                y1 += a1 * rows[offset2 + i + 1];
+                y2 += a2 * rows[offset2 + i + 2];
+                y3 += a3 * rows[offset2 + i + 3];
+            }
+            results[r] = x0 + x1 + x2 + x3;
+            results[r + 1] = y0 + y1 + y2 + y3;
+        }
+        if (r < nbRows)
+            results[r] = inner(size, v, offset, rows, rowsOffset + r * size);
+    }
+
+    /**
+     * Dot products of a vector of integers with several quantized vectors of the same size 
+     * stored one after the other, see inner(int, short[], int, short[], int, int, long[])
+     */
+    public static void inner(int size, int[] v, int offset, short[] rows, int rowsOffset, 
+                             int nbRows, long[] results) {
+        if( size % 4 != 0 ) {
+            throw new IllegalArgumentException( "Vector size must be a multiple of 4" );
+        }
+
+        int r = 0;
+        for(; r + 1 < nbRows; r += 2) {
+            int offset1 = rowsOffset + r * size;
+            int offset2 = offset1 + size;
+            long x0 = 0, x1 = 0, x2 = 0, x3 = 0;
+            long y0 = 0, y1 = 0, y2 = 0, y3 = 0;
+            for(int i = 0; i < size; i += 4) {
+                long a0 = v[offset + i + 0];
+                long a1 = v[offset + i + 1];
+                long a2 = v[offset + i + 2];
+                long a3 = v[offset + i + 3];
+                x0 += a0 * rows[offset1 + i + 0];
+                x1 += a1 * rows[offset1 + i + 1];
+                x2 += a2 * rows[offset1 + i + 2];
+                x3 += a3 * rows[offset1 + i + 3];
+                y0 += a0 * rows[offset2 + i + 0];
+                y1 += a1 * rows[offset2 + i + 1];
+                y2 += a2 * rows[offset2 + i + 2];
+                y3 += a3 * rows[offset2 + i + 3];
+            }
+            results[r] = x0 + x1 + x2 + x3;
+            results[r + 1] = y0 + y1 + y2 + y3;
+        }
+        if (r < nbRows)
+            results[r] = inner(size, v, offset, rows, rowsOffset + r * size);
+    }
+
     /**
      * See the clever cB format, https://github.com/rspeer/wordfreq  
      * 
@@ -27,8 +27,11 @@ public class MediaWikiParser {
     // map giving the config following a language code
     private Map<String,WikiConfig> configs = null;
 
-    // map giving a parser engine following a language code
-    private Map<String,WtEngineImpl> engines = null;
+    // per-thread map giving a parser engine following a language code: the engines are not 
+    // thread-safe, each thread parsing wiki text gets its own engine for each language, 
+    // created on first use
+    private final ThreadLocal<Map<String,WtEngineImpl>> engines = 
+        ThreadLocal.withInitial(() -> new HashMap<String,WtEngineImpl>());
 
     public static MediaWikiParser getInstance() {
         if (instance == null) {
@@ -52,63 +55,49 @@ public class MediaWikiParser {
         // set-up simple wiki configurations
         configs = new HashMap<String,WikiConfig>();
 
-        // set-up language specific parsers
-        engines = new HashMap<String,WtEngineImpl>();
-
         WikiConfig config = DefaultConfigEnWp.generate();
         configs.put("en", config);
-        WtEngineImpl engine = new WtEngineImpl(config);        
-        engines.put("en", engine);
 
         config = DefaultConfigFrWp.generate();
         configs.put("fr", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("fr", engine);
 
         config = DefaultConfigDeWp.generate();
         configs.put("de", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("de", engine);
 
         config = DefaultConfigItWp.generate();
         configs.put("it", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("it", engine);
 
         config = DefaultConfigEsWp.generate();
         configs.put("es", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("es", engine);
 
         config = DefaultConfigArWp.generate();
         configs.put("ar", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("ar", engine);
 
         config = DefaultConfigZhWp.generate();
         configs.put("zh", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("zh", engine);
 
         config = DefaultConfigJaWp.generate();
         configs.put("ja", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("ja", engine);
 
         config = DefaultConfigRuWp.generate();
         configs.put("ru", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("ru", engine);
 
         config = DefaultConfigPtWp.generate();
         configs.put("pt", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("pt", engine);
 
         config = DefaultConfigFaWp.generate();
         configs.put("fa", config);
-        engine = new WtEngineImpl(config);        
-        engines.put("fa", engine);
+    }
+
+    /**
+     * @return the parser engine of the current thread for the given language, null if the 
+     * language is not supported
+     */
+    private WtEngineImpl getEngine(String lang) {
+        WikiConfig config = configs.get(lang);
+        if (config == null)
+            return null;
+        return engines.get().computeIfAbsent(lang, l -> new WtEngineImpl(config));
     }
 
     /**
@@ -119,7 +108,7 @@ public class MediaWikiParser {
 
         // get a compiler for wiki pages
         //WtEngineImpl engine = new WtEngineImpl(config);        
-        WtEngineImpl engine = engines.get(lang);
+        WtEngineImpl engine = getEngine(lang);
 
         try {
             // Retrieve a page 
@@ -147,7 +136,7 @@ public class MediaWikiParser {
 
         // Instantiate a compiler for wiki pages
         //WtEngineImpl engine = new WtEngineImpl(config);        
-        WtEngineImpl engine = engines.get(lang);
+        WtEngineImpl engine = getEngine(lang);
 
         try {
             // Retrieve a page 
@@ -176,7 +165,7 @@ public class MediaWikiParser {
 
         // Instantiate a compiler for wiki pages
         //WtEngineImpl engine = new WtEngineImpl(config);        
-        WtEngineImpl engine = engines.get(lang);
+        WtEngineImpl engine = getEngine(lang);
 
         try {
             // Retrieve a page 
@@ -207,7 +196,7 @@ public class MediaWikiParser {
 
         // Instantiate a compiler for wiki pages
         //WtEngineImpl engine = new WtEngineImpl(config);        
-        WtEngineImpl engine = engines.get(lang);
+        WtEngineImpl engine = getEngine(lang);
 
         try {
             // Retrieve a page 
@@ -236,7 +225,7 @@ public class MediaWikiParser {
         String result = "";
         // Instantiate a compiler for wiki pages
         //WtEngineImpl engine = new WtEngineImpl(config);
-        WtEngineImpl engine = engines.get(lang);    
+        WtEngineImpl engine = getEngine(lang);    
 
         try {
             // Retrieve a page 
@@ -0,0 +1,74 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class CascadeRankingTest {
+
+    private final CascadeRanking cascade = new CascadeRanking(true, 0.9, 0.8);
+
+    @Test
+    public void testGetDecidedCandidate_singleCandidate() throws Exception {
+        assertThat(cascade.getDecidedCandidate(new double[]{0.3}), is(0));
+    }
+
+    @Test
+    public void testGetDecidedCandidate_dominantPrior() throws Exception {
+        assertThat(cascade.getDecidedCandidate(new double[]{0.02, 0.96, 0.01}), is(1));
+    }
+
+    @Test
+    public void testGetDecidedCandidate_ambiguous() throws Exception {
+        // prior too low
+        assertThat(cascade.getDecidedCandidate(new double[]{0.85, 0.01}), is(-1));
+        // margin too small
+        CascadeRanking lowMargin = new CascadeRanking(true, 0.5, 0.5);
+        assertThat(lowMargin.getDecidedCandidate(new double[]{0.3, 0.6}), is(-1));
+        assertThat(lowMargin.getDecidedCandidate(new double[]{0.6, 0.05, 0.3}), is(-1));
+    }
+
+    @Test
+    public void testGetDecidedCandidate_disabled() throws Exception {
+        assertThat(CascadeRanking.DISABLED.getDecidedCandidate(new double[]{1.0}), is(-1));
+    }
+
+    @Test
+    public void testDecide_shouldScoreOnlyTheDecidedCandidateForTheSelector() throws Exception {
+        List<NerdCandidate> candidates = candidates(0.03, 0.95, 0.02);
+
+        assertThat(cascade.decide(candidates), is(1));
+
+        // the ranker scores seen by the selector
+        assertThat(candidates.get(0).getNerdScore(), is(0.0));
+        assertThat(candidates.get(1).getNerdScore(), is(0.95));
+        assertThat(candidates.get(2).getNerdScore(), is(0.0));
+    }
+
+    @Test
+    public void testDecide_ambiguous_shouldLeaveCandidatesUnchanged() throws Exception {
+        List<NerdCandidate> candidates = candidates(0.6, 0.4);
+        candidates.get(0).setNerdScore(0.25);
+
+        assertThat(cascade.decide(candidates), is(-1));
+
+        assertThat(candidates.get(0).getNerdScore(), is(0.25));
+        assertThat(candidates.get(1).getNerdScore(), is(0.5));
+    }
+
+    private static List<NerdCandidate> candidates(double... priors) {
+        List<NerdCandidate> candidates = new ArrayList<>();
+        for (double prior : priors) {
+            NerdCandidate candidate = new NerdCandidate(new NerdEntity("Mercury", 0, 7));
+            candidate.setProb_c(prior);
+            // a score left by a previous ranking
+            candidate.setNerdScore(0.5);
+            candidates.add(candidate);
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,118 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+import smile.data.Attribute;
+import smile.data.NominalAttribute;
+import smile.data.NumericAttribute;
+import smile.regression.GradientTreeBoost;
+import smile.regression.RandomForest;
+import smile.regression.Regression;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.*;
+
+public class CompiledTreeEnsembleTest {
+
+    private static final Attribute[] ATTRIBUTES = {
+        new NumericAttribute("prob_c"),
+        new NumericAttribute("relatedness"),
+        new NominalAttribute("bestCaseContext", new String[]{"false", "true"}),
+        new NumericAttribute("embeddings_centroid_similarity")
+    };
+
+    @Test
+    public void testPredict_gradientTreeBoost_shouldMatchSmile() throws Exception {
+        double[][] x = randomVectors(new Random(34), 500);
+        double[] y = labels(x);
+        smile.math.Math.setSeed(7);
+        GradientTreeBoost model = new GradientTreeBoost(ATTRIBUTES, x, y,
+            GradientTreeBoost.Loss.LeastAbsoluteDeviation, 100, 6, 0.05, 0.5);
+
+        assertSameScores(model, CompiledTreeEnsemble.compile(model), 100);
+    }
+
+    @Test
+    public void testPredict_randomForest_shouldMatchSmile() throws Exception {
+        double[][] x = randomVectors(new Random(340), 500);
+        double[] y = labels(x);
+        smile.math.Math.setSeed(7);
+        RandomForest model = new RandomForest(ATTRIBUTES, x, y, 50);
+
+        assertSameScores(model, CompiledTreeEnsemble.compile(model), 50);
+    }
+
+    @Test
+    public void testWriteRead_shouldRestoreModel() throws Exception {
+        double[][] x = randomVectors(new Random(34), 500);
+        double[] y = labels(x);
+        smile.math.Math.setSeed(7);
+        GradientTreeBoost model = new GradientTreeBoost(ATTRIBUTES, x, y,
+            GradientTreeBoost.Loss.LeastAbsoluteDeviation, 50, 6, 0.05, 0.5);
+
+        File file = File.createTempFile("ranker", ".bin");
+        try {
+            CompiledTreeEnsemble.compile(model).write(file);
+            CompiledTreeEnsemble restored = CompiledTreeEnsemble.read(file);
+
+            assertSameScores(model, restored, 50);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRead_notABinaryModel() throws Exception {
+        File file = File.createTempFile("ranker", ".model");
+        try {
+            Files.write(file.toPath(), "<smile.regression.GradientTreeBoost>".getBytes("UTF-8"));
+            CompiledTreeEnsemble.read(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompile_unsupportedModel() throws Exception {
+        CompiledTreeEnsemble.compile(null);
+    }
+
+    private static void assertSameScores(Regression<double[]> model, CompiledTreeEnsemble compiled, int nbTrees) {
+        assertThat(compiled.getNumTrees(), is(nbTrees));
+
+        double[][] vectors = randomVectors(new Random(3400), 200);
+        double[][] samples = compiled.sampleFeatureVectors(200, new Random(34000));
+        for (double[][] x : new double[][][] {vectors, samples}) {
+            double[] scores = new double[x.length];
+            compiled.predict(x, x.length, scores);
+            for (int i = 0; i < x.length; i++) {
+                double expected = model.predict(x[i]);
+                assertThat(compiled.predict(x[i]), closeTo(expected, 1e-12));
+                assertThat(scores[i], closeTo(expected, 1e-12));
+            }
+        }
+    }
+
+    private static double[][] randomVectors(Random random, int size) {
+        double[][] x = new double[size][];
+        for (int i = 0; i < size; i++) {
+            x[i] = new double[]{random.nextDouble(), random.nextDouble(),
+                random.nextInt(2), random.nextDouble() * 2 - 1};
+        }
+        return x;
+    }
+
+    private static double[] labels(double[][] x) {
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            double score = 0.6 * x[i][0] + 0.3 * x[i][1] + 0.2 * x[i][2] + 0.2 * x[i][3];
+            y[i] = score > 0.55 ? 1.0 : 0.0;
+        }
+        return y;
+    }
+}
@@ -0,0 +1,123 @@
+package com.scienceminer.nerd.disambiguation;
+
+import com.scienceminer.nerd.kb.model.Article;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class ContextQualityTest {
+
+    // deterministic and symmetric relatedness, float values as the relatedness cache
+    private static final ContextQuality.PairRelatedness RELATEDNESS = (article1, article2) -> {
+        long key = ArticlePair.computeKey(article1, article2);
+        return (float) new Random(key).nextDouble();
+    };
+
+    @Test
+    public void testUpdate_shouldBeIdenticalToPairwiseComputation() throws Exception {
+        Random random = new Random(32);
+        for (int round = 0; round < 50; round++) {
+            int size = 2 + random.nextInt(30);
+            List<Article> articles = randomArticles(random, size);
+            List<Article> copies = copy(articles);
+
+            double expected = pairwiseQuality(articles);
+            double quality = new ContextQuality().update(copies, RELATEDNESS);
+
+            assertThat(quality, is(expected));
+            for (int i = 0; i < size; i++)
+                assertThat(copies.get(i).getWeight(), is(articles.get(i).getWeight()));
+        }
+    }
+
+    @Test
+    public void testUpdate_incrementalAdditions_shouldBeIdenticalToPairwiseComputation() throws Exception {
+        Random random = new Random(320);
+        List<Article> all = randomArticles(random, 40);
+        List<Article> reference = copy(all);
+
+        ContextQuality contextQuality = new ContextQuality();
+        List<Article> incremental = new ArrayList<>();
+        for (int i = 0; i < all.size(); i++) {
+            incremental.add(all.get(i));
+            if (i % 7 == 3)
+                contextQuality.update(incremental, RELATEDNESS);
+        }
+        double quality = contextQuality.update(incremental, RELATEDNESS);
+
+        assertThat(quality, is(pairwiseQuality(reference)));
+        for (int i = 0; i < all.size(); i++)
+            assertThat(incremental.get(i).getWeight(), is(reference.get(i).getWeight()));
+    }
+
+    @Test
+    public void testUpdate_withoutNewArticle_shouldNotComputeRelatedness() throws Exception {
+        List<Article> articles = randomArticles(new Random(3200), 10);
+        int[] nbCalls = {0};
+        ContextQuality.PairRelatedness counting = (article1, article2) -> {
+            nbCalls[0]++;
+            return RELATEDNESS.get(article1, article2);
+        };
+
+        ContextQuality contextQuality = new ContextQuality();
+        double quality = contextQuality.update(articles, counting);
+        assertThat(nbCalls[0], is(45));
+
+        assertThat(contextQuality.update(articles, counting), is(quality));
+        assertThat(nbCalls[0], is(45));
+
+        articles.add(article(1000, 0.5));
+        contextQuality.update(articles, counting);
+        assertThat(nbCalls[0], is(55));
+    }
+
+    /**
+     * The former computation of NerdContext.getQuality()
+     */
+    private static double pairwiseQuality(List<Article> contextArticles) throws Exception {
+        double totalWeight = 0.0;
+        for (Article art : contextArticles) {
+            double avgRelatedness = 0.0;
+            for (Article art2 : contextArticles) {
+                if (art.getId() != art2.getId()) {
+                    avgRelatedness += RELATEDNESS.get(art, art2);
+                }
+            }
+
+            avgRelatedness = avgRelatedness / (contextArticles.size() - 1);
+            if (art.getWeight() != null)
+                art.setWeight((art.getWeight().doubleValue() + (4*avgRelatedness)) / 5);
+            else
+                art.setWeight(((4*avgRelatedness)) / 5);
+            totalWeight += art.getWeight();
+        }
+        return totalWeight;
+    }
+
+    private static List<Article> randomArticles(Random random, int size) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Double weight = random.nextInt(5) == 0 ? null : random.nextDouble();
+            articles.add(article(i * 17 + random.nextInt(17), weight));
+        }
+        return articles;
+    }
+
+    private static List<Article> copy(List<Article> articles) {
+        List<Article> copies = new ArrayList<>();
+        for (Article article : articles)
+            copies.add(article(article.getId(), article.getWeight()));
+        return copies;
+    }
+
+    private static Article article(int id, Double weight) {
+        Article article = new Article(null, id);
+        article.setWeight(weight);
+        return article;
+    }
+}
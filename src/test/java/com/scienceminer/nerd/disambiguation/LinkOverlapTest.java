@@ -0,0 +1,111 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class LinkOverlapTest {
+
+    @Test
+    public void testIntersectionSize_emptyLists() throws Exception {
+        int[] links = {1, 2, 3};
+
+        assertThat(LinkOverlap.intersectionSize(links, 0, links, 3), is(0));
+        assertThat(LinkOverlap.intersectionSize(links, 3, new int[0], 0), is(0));
+        assertThat(LinkOverlap.gallopingIntersectionSize(new int[0], 0, links, 3), is(0));
+    }
+
+    @Test
+    public void testIntersectionSize_shouldOnlyConsiderGivenLength() throws Exception {
+        int[] linksA = {1, 5, 9, 0, 0};
+        int[] linksB = {5, 9, 12, 0};
+
+        assertThat(LinkOverlap.intersectionSize(linksA, 3, linksB, 3), is(2));
+        assertThat(LinkOverlap.intersectionSize(linksA, 2, linksB, 3), is(1));
+    }
+
+    @Test
+    public void testIntersectionSize_randomLists_shouldMatchSetIntersection() throws Exception {
+        Random random = new Random(29);
+        for (int round = 0; round < 500; round++) {
+            TreeSet<Integer> setA = randomSet(random, random.nextInt(30), 1 + random.nextInt(50000));
+            TreeSet<Integer> setB = randomSet(random, random.nextInt(5000), 1 + random.nextInt(50000));
+            int[] linksA = toArray(setA);
+            int[] linksB = toArray(setB);
+
+            TreeSet<Integer> expected = new TreeSet<>(setA);
+            expected.retainAll(setB);
+
+            assertThat(LinkOverlap.intersectionSize(linksA, linksA.length, linksB, linksB.length), is(expected.size()));
+            assertThat(LinkOverlap.intersectionSize(linksB, linksB.length, linksA, linksA.length), is(expected.size()));
+            assertThat(LinkOverlap.linearIntersectionSize(linksA, linksA.length, linksB, linksB.length), is(expected.size()));
+            assertThat(LinkOverlap.gallopingIntersectionSize(linksA, linksA.length, linksB, linksB.length), is(expected.size()));
+        }
+    }
+
+    @Test
+    public void testMutualLinks_shouldMatchFormerMerge() throws Exception {
+        Random random = new Random(290);
+        for (int round = 0; round < 500; round++) {
+            int range = 1 + random.nextInt(200);
+            TreeSet<Integer> setA = randomSet(random, random.nextInt(40), range);
+            TreeSet<Integer> setB = randomSet(random, random.nextInt(40), range);
+            int idA = random.nextInt(range);
+            int idB = random.nextInt(range);
+            int[] linksA = toArray(setA);
+            int[] linksB = toArray(setB);
+
+            int intersection = LinkOverlap.intersectionSize(linksA, linksA.length, linksB, linksB.length)
+                + LinkOverlap.mutualLinks(linksA, linksA.length, idA, linksB, linksB.length, idB);
+
+            assertThat(intersection, is(mergeIntersection(linksA, idA, linksB, idB)));
+        }
+    }
+
+    /**
+     * The shared link count of the Milne and Witten measure as it was computed before, with a
+     * single merge of the two lists
+     */
+    private static int mergeIntersection(int[] linksA, int idA, int[] linksB, int idB) {
+        int intersection = 0;
+        int indexA = 0;
+        int indexB = 0;
+        while (indexA < linksA.length || indexB < linksB.length) {
+            Integer linkA = indexA < linksA.length ? linksA[indexA] : null;
+            Integer linkB = indexB < linksB.length ? linksB[indexB] : null;
+            if (linkA != null && linkB != null && linkA.equals(linkB)) {
+                intersection++;
+                indexA++;
+                indexB++;
+            } else if (linkA != null && (linkB == null || linkA < linkB)) {
+                if (linkA == idB)
+                    intersection++;
+                indexA++;
+            } else {
+                if (linkB == idA)
+                    intersection++;
+                indexB++;
+            }
+        }
+        return intersection;
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size, int range) {
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < size; i++)
+            set.add(random.nextInt(range));
+        return set;
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        int[] result = new int[set.size()];
+        int i = 0;
+        for (Integer value : set)
+            result[i++] = value;
+        return result;
+    }
+}
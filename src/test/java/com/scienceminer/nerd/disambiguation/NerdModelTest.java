@@ -0,0 +1,109 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import smile.data.Attribute;
+import smile.data.NumericAttribute;
+import smile.regression.GradientTreeBoost;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class NerdModelTest {
+
+    private static final Attribute[] ATTRIBUTES = {
+        new NumericAttribute("prob_c"),
+        new NumericAttribute("relatedness")
+    };
+
+    private File directory;
+    private String modelPath;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("nerd-model").toFile();
+        modelPath = new File(directory, "ranker").getPath();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testReadModel_binaryModelOlderThanXmlModel_shouldLoadAndRebuildFromXml() throws Exception {
+        File binaryFile = new File(modelPath + NerdModel.BINARY_MODEL_EXTENSION);
+        File xmlFile = new File(modelPath + NerdModel.XML_MODEL_EXTENSION);
+        CompiledTreeEnsemble.compile(train(20)).write(binaryFile);
+        FileUtils.writeStringToFile(xmlFile, NerdModel.createXStream().toXML(train(50)), StandardCharsets.UTF_8);
+        binaryFile.setLastModified(xmlFile.lastModified() - 60000);
+
+        NerdModel model = new NerdModel();
+        model.readModel(modelPath);
+
+        assertThat(model.forest, is(notNullValue()));
+        assertThat(model.compiledForest.getNumTrees(), is(50));
+        assertThat(CompiledTreeEnsemble.read(binaryFile).getNumTrees(), is(50));
+        assertThat(binaryFile.lastModified() >= xmlFile.lastModified(), is(true));
+    }
+
+    @Test
+    public void testReadModel_binaryModelNewerThanXmlModel_shouldLoadBinary() throws Exception {
+        File binaryFile = new File(modelPath + NerdModel.BINARY_MODEL_EXTENSION);
+        File xmlFile = new File(modelPath + NerdModel.XML_MODEL_EXTENSION);
+        FileUtils.writeStringToFile(xmlFile, NerdModel.createXStream().toXML(train(50)), StandardCharsets.UTF_8);
+        CompiledTreeEnsemble.compile(train(20)).write(binaryFile);
+        xmlFile.setLastModified(binaryFile.lastModified() - 60000);
+
+        NerdModel model = new NerdModel();
+        model.readModel(modelPath);
+
+        assertThat(model.forest, is(nullValue()));
+        assertThat(model.compiledForest.getNumTrees(), is(20));
+    }
+
+    @Test
+    public void testPredict_failingCandidate_shouldScoreTheOthers() throws Exception {
+        NerdModel model = new NerdModel();
+        model.compiledForest = CompiledTreeEnsemble.compile(train(20));
+        // the second vector is too short for the model
+        double[][] features = {{0.9, 0.8}, {0.9}, {0.1, 0.2}, {0.5, 0.5}};
+        boolean[] failed = {false, false, false, true};
+        List<NerdCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < features.length; i++)
+            candidates.add(new NerdCandidate(new NerdEntity("Paris", 0, 5)));
+
+        double[] scores = new double[features.length];
+        model.predict(features, features.length, scores, failed, candidates);
+
+        assertThat(scores[0], is(model.compiledForest.predict(features[0])));
+        assertThat(scores[1], is(0.0));
+        assertThat(scores[2], is(model.compiledForest.predict(features[2])));
+        assertThat(scores[3], is(0.0));
+        assertThat(scores[0] > 0.0, is(true));
+    }
+
+    private static GradientTreeBoost train(int nbTrees) {
+        Random random = new Random(34);
+        double[][] x = new double[300][];
+        double[] y = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = new double[]{random.nextDouble(), random.nextDouble()};
+            y[i] = 0.7 * x[i][0] + 0.3 * x[i][1] > 0.5 ? 1.0 : 0.0;
+        }
+        smile.math.Math.setSeed(7);
+        return new GradientTreeBoost(ATTRIBUTES, x, y,
+            GradientTreeBoost.Loss.LeastAbsoluteDeviation, nbTrees, 4, 0.05, 0.5);
+    }
+}
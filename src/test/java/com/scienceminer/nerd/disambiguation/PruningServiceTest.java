@@ -4,8 +4,9 @@ import org.grobid.core.lexicon.NERLexicon;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Arrays;
-import java.util.List;
+import org.grobid.core.analyzers.GrobidAnalyzer;
+
+import java.util.*;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.hasSize;
@@ -218,6 +219,185 @@ public class PruningServiceTest {
         assertThat(result, hasSize(2));
     }
 
+    @Test
+    public void testPruneOverlap_randomEntities_shouldBeSameAsPairwiseComparison() throws Exception {
+        Random random = new Random(50);
+        for (int i = 0; i < 500; i++) {
+            long seed = random.nextLong();
+            int size = 1 + random.nextInt(40);
+            boolean shortText = random.nextBoolean();
+
+            List<NerdEntity> entities = randomEntities(new Random(seed), size);
+            List<NerdEntity> expectedEntities = randomEntities(new Random(seed), size);
+
+            assertSameEntities(target.pruneOverlap(entities, shortText),
+                pruneOverlapPairwise(expectedEntities, shortText), entities, expectedEntities);
+        }
+    }
+
+    @Test
+    public void testPruneOverlapNBest_randomEntities_shouldBeSameAsPairwiseComparison() throws Exception {
+        Random random = new Random(51);
+        for (int i = 0; i < 500; i++) {
+            long seed = random.nextLong();
+            int size = 1 + random.nextInt(40);
+            boolean shortText = random.nextBoolean();
+
+            List<NerdEntity> entities = randomEntities(new Random(seed), size);
+            List<NerdEntity> expectedEntities = randomEntities(new Random(seed), size);
+
+            assertSameEntities(target.pruneOverlapNBest(entities, shortText),
+                pruneOverlapNBestPairwise(expectedEntities, shortText), entities, expectedEntities);
+        }
+    }
+
+    private static List<NerdEntity> randomEntities(Random random, int size) {
+        String[] words = {"German", "Army", "occupied", "territory", "Austria"};
+        NERLexicon.NER_Type[] types = {null, null, NERLexicon.NER_Type.LOCATION, NERLexicon.NER_Type.PERSON};
+        double[] scores = {0.1, 0.2, 0.5, 0.9};
+        List<NerdEntity> entities = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int start = random.nextInt(60);
+            int end = start + random.nextInt(12);
+            String name = null;
+            if (random.nextInt(20) != 0) {
+                StringBuilder builder = new StringBuilder(words[random.nextInt(words.length)]);
+                for (int j = random.nextInt(3); j > 0; j--)
+                    builder.append(" ").append(words[random.nextInt(words.length)]);
+                name = builder.toString();
+            }
+            NerdEntity entity = new NerdEntity(name, start, end);
+            entity.setNormalisedName(name);
+            entity.setWikipediaExternalRef(random.nextInt(4) - 1);
+            entity.setType(types[random.nextInt(types.length)]);
+            entity.setNerdScore(scores[random.nextInt(scores.length)]);
+            entity.setSelectionScore(scores[random.nextInt(scores.length)]);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static void assertSameEntities(List<NerdEntity> result, List<NerdEntity> expected, 
+                                           List<NerdEntity> entities, List<NerdEntity> expectedEntities) {
+        assertThat(result, hasSize(expected.size()));
+        for (int i = 0; i < result.size(); i++) {
+            assertThat(positionOf(result.get(i), entities), is(positionOf(expected.get(i), expectedEntities)));
+            assertThat(result.get(i).getNerdScore(), is(expected.get(i).getNerdScore()));
+        }
+    }
+
+    private static int positionOf(NerdEntity entity, List<NerdEntity> entities) {
+        for (int i = 0; i < entities.size(); i++) {
+            if (entities.get(i) == entity)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * The overlap pruning comparing every entity with every other
+     */
+    private static List<NerdEntity> pruneOverlapPairwise(List<NerdEntity> entities, boolean shortText) {
+        PruningService pruningService = new PruningService();
+        Set<Integer> toRemove = new HashSet<>();
+        for (int pos1 = 0; pos1 < entities.size(); pos1++) {
+            if (toRemove.contains(pos1))
+                continue;
+            NerdEntity entity1 = entities.get(pos1);
+            if (entity1.getRawName() == null || entity1.getNormalisedName() == null) {
+                toRemove.add(pos1);
+                continue;
+            }
+            int arity1 = GrobidAnalyzer.getInstance().tokenize(entity1.getNormalisedName()).size();
+            for (int pos2 = 0; pos2 < entities.size(); pos2++) {
+                if (pos1 == pos2 || toRemove.contains(pos2))
+                    continue;
+                NerdEntity entity2 = entities.get(pos2);
+                if (!pruningService.areEntityOverlapping(entity1, entity2))
+                    continue;
+                if (entity2.getRawName() == null) {
+                    toRemove.add(pos2);
+                    continue;
+                }
+                if (entity2.getType() != null && entity2.getWikipediaExternalRef() == -1) {
+                    if (entity1.getWikipediaExternalRef() != -1 && entity1.getNerdScore() > 0.2) {
+                        toRemove.add(pos2);
+                        continue;
+                    }
+                }
+                if (entity1.getWikipediaExternalRef() == entity2.getWikipediaExternalRef()) {
+                    if (entity1.getType() != null && entity2.getType() == null) {
+                        toRemove.add(pos2);
+                        continue;
+                    }
+                }
+                int arity2 = GrobidAnalyzer.getInstance().tokenize(entity2.getNormalisedName()).size();
+                if (arity2 < arity1) {
+                    toRemove.add(pos2);
+                } else if (arity2 == arity1) {
+                    if (entity2.getNerdScore() < entity1.getNerdScore()) {
+                        toRemove.add(pos2);
+                    } else if (entity2.getSelectionScore() < entity1.getSelectionScore()) {
+                        toRemove.add(pos2);
+                    }
+                }
+            }
+        }
+        return keep(entities, toRemove, shortText);
+    }
+
+    /**
+     * The n-best overlap pruning comparing every entity with every other
+     */
+    private static List<NerdEntity> pruneOverlapNBestPairwise(List<NerdEntity> entities, boolean shortText) {
+        PruningService pruningService = new PruningService();
+        Set<Integer> toRemove = new HashSet<>();
+        for (int pos1 = 0; pos1 < entities.size(); pos1++) {
+            if (toRemove.contains(pos1))
+                continue;
+            NerdEntity entity1 = entities.get(pos1);
+            if (entity1.getRawName() == null) {
+                toRemove.add(pos1);
+                continue;
+            }
+            for (int pos2 = 0; pos2 < entities.size(); pos2++) {
+                if (pos1 == pos2)
+                    continue;
+                NerdEntity entity2 = entities.get(pos2);
+                if (!pruningService.areEntityOverlapping(entity1, entity2) || toRemove.contains(pos2))
+                    continue;
+                if (entity2.getRawName() == null) {
+                    toRemove.add(pos2);
+                    continue;
+                }
+                if (entity1.getWikipediaExternalRef() == entity2.getWikipediaExternalRef()) {
+                    if (entity1.getType() != null && entity2.getType() != null) {
+                        if (entity1.getType().equals(entity2.getType()))
+                            toRemove.add(pos2);
+                    } else if (entity1.getType() != null && entity2.getType() == null) {
+                        toRemove.add(pos2);
+                    } else if (entity1.getNerdScore() < entity2.getNerdScore()) {
+                        toRemove.add(pos2);
+                    }
+                }
+            }
+        }
+        return keep(entities, toRemove, shortText);
+    }
+
+    private static List<NerdEntity> keep(List<NerdEntity> entities, Set<Integer> toRemove, boolean shortText) {
+        List<NerdEntity> result = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            if (!toRemove.contains(i)) {
+                result.add(entities.get(i));
+            } else if (shortText) {
+                entities.get(i).setNerdScore(entities.get(i).getNerdScore() / 2);
+                result.add(entities.get(i));
+            }
+        }
+        return result;
+    }
+
     @Test
     public void testAreEntityOverlapping_notOverlapping_sholdReturnFalse() throws Exception {
         final NerdEntity entity1 = new NerdEntity("test", 0, 10);
@@ -0,0 +1,123 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class RelatednessCacheTest {
+
+    @Test
+    public void testGetPut() throws Exception {
+        RelatednessCache cache = new RelatednessCache(1000);
+
+        long key = ArticlePair.computeKey(12, 5);
+        assertTrue(Float.isNaN(cache.get(key)));
+
+        cache.put(key, 0.25f);
+
+        assertThat(cache.get(ArticlePair.computeKey(5, 12)), is(0.25f));
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testPut_existingKey_shouldUpdate() throws Exception {
+        RelatednessCache cache = new RelatednessCache(1000);
+        long key = ArticlePair.computeKey(1, 2);
+
+        cache.put(key, 0.1f);
+        cache.put(key, 0.9f);
+
+        assertThat(cache.get(key), is(0.9f));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void testPut_overMaximumSize_shouldEvict() throws Exception {
+        RelatednessCache cache = new RelatednessCache(6400);
+
+        for (int i = 1; i <= 100000; i++)
+            cache.put(ArticlePair.computeKey(i, i + 1), (float) i);
+
+        assertTrue(cache.size() <= 6400);
+        assertTrue(cache.getEvictionCount() > 0);
+
+        // whatever remains must still be consistent
+        int found = 0;
+        for (int i = 1; i <= 100000; i++) {
+            float value = cache.get(ArticlePair.computeKey(i, i + 1));
+            if (!Float.isNaN(value)) {
+                assertThat(value, is((float) i));
+                found++;
+            }
+        }
+        assertThat(found, is(cache.size()));
+    }
+
+    @Test
+    public void testEviction_referencedEntriesShouldSurvive() throws Exception {
+        RelatednessCache cache = new RelatednessCache(6400);
+        long hot = ArticlePair.computeKey(1, 1000000);
+        cache.put(hot, 0.5f);
+
+        for (int i = 1; i <= 100000; i++) {
+            cache.get(hot);
+            cache.put(ArticlePair.computeKey(i + 1, i + 2), 0.1f);
+        }
+
+        assertThat(cache.get(hot), is(0.5f));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        RelatednessCache cache = new RelatednessCache(1000);
+        cache.put(ArticlePair.computeKey(1, 2), 0.3f);
+        cache.get(ArticlePair.computeKey(1, 2));
+
+        cache.clear();
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getHitCount(), is(0L));
+        assertTrue(Float.isNaN(cache.get(ArticlePair.computeKey(1, 2))));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final RelatednessCache cache = new RelatednessCache(1000000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    long key = ArticlePair.computeKey(i, i + offset + 1);
+                    float value = cache.get(key);
+                    if (Float.isNaN(value))
+                        cache.put(key, (float) (i + offset + 1));
+                    else
+                        assertThat(value, is((float) (i + offset + 1)));
+                }
+            }));
+        }
+        try {
+            // rethrows here the assertion errors of the workers
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // nothing has been evicted, the whole key space fits in the cache
+        assertThat(cache.getEvictionCount(), is(0L));
+        assertThat(cache.get(ArticlePair.computeKey(10, 11)), is(11.0f));
+    }
+}
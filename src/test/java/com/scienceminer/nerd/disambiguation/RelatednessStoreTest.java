@@ -0,0 +1,118 @@
+package com.scienceminer.nerd.disambiguation;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class RelatednessStoreTest {
+
+    private static File tempStoreFile() throws Exception {
+        File file = File.createTempFile("relatedness", ".store");
+        file.delete();
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testPutGet_shouldSurviveReopening() throws Exception {
+        File file = tempStoreFile();
+
+        RelatednessStore store = new RelatednessStore(file, 10000, 42L);
+        assertTrue(store.put(ArticlePair.computeKey(3, 7), 0.75f));
+        assertTrue(store.put(ArticlePair.computeKey(1, 2), 0.1f));
+        store.close();
+
+        RelatednessStore reopened = new RelatednessStore(file, 10000, 42L);
+        assertThat(reopened.size(), is(2));
+        assertThat(reopened.get(ArticlePair.computeKey(7, 3)), is(0.75f));
+        assertThat(reopened.get(ArticlePair.computeKey(1, 2)), is(0.1f));
+        assertTrue(Float.isNaN(reopened.get(ArticlePair.computeKey(1, 3))));
+        reopened.close();
+    }
+
+    @Test
+    public void testOpen_otherSnapshotVersion_shouldInvalidate() throws Exception {
+        File file = tempStoreFile();
+
+        RelatednessStore store = new RelatednessStore(file, 10000, 42L);
+        store.put(ArticlePair.computeKey(3, 7), 0.75f);
+        store.close();
+
+        RelatednessStore reopened = new RelatednessStore(file, 10000, 43L);
+        assertThat(reopened.size(), is(0));
+        assertTrue(Float.isNaN(reopened.get(ArticlePair.computeKey(3, 7))));
+        reopened.close();
+    }
+
+    @Test
+    public void testOfferFlush() throws Exception {
+        File file = tempStoreFile();
+        RelatednessStore store = new RelatednessStore(file, 10000, 1L);
+
+        store.offer(ArticlePair.computeKey(10, 20), 0.5f);
+        assertTrue(Float.isNaN(store.get(ArticlePair.computeKey(10, 20))));
+
+        store.flush();
+        assertThat(store.get(ArticlePair.computeKey(10, 20)), is(0.5f));
+        store.close();
+    }
+
+    @Test
+    public void testPut_whenFull_shouldRefuse() throws Exception {
+        File file = tempStoreFile();
+        RelatednessStore store = new RelatednessStore(file, 10, 1L);
+
+        int stored = 0;
+        for (int i = 1; i <= 2000; i++) {
+            if (store.put(ArticlePair.computeKey(i, i + 1), 0.2f))
+                stored++;
+        }
+
+        assertTrue(store.isFull());
+        assertThat(store.size(), is(stored));
+        assertTrue(stored < 2000);
+
+        final int[] visited = {0};
+        store.forEach((key, value) -> visited[0]++, Integer.MAX_VALUE);
+        assertThat(visited[0], is(stored));
+        store.close();
+    }
+
+    @Test
+    public void testGet_concurrentPut_shouldReadStoredOrMissingScore() throws Exception {
+        File file = tempStoreFile();
+        RelatednessStore store = new RelatednessStore(file, 100000, 1L);
+        final int nbPairs = 50000;
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            for (int i = 1; i <= nbPairs; i++)
+                store.put(ArticlePair.computeKey(i, i + 1), i / (float) nbPairs);
+        });
+        int found = 0;
+        while (!writer.isDone() || found < nbPairs) {
+            if (writer.isDone())
+                // rethrows here the failure of the writer, if any
+                writer.get();
+            found = 0;
+            for (int i = 1; i <= nbPairs; i++) {
+                float value = store.get(ArticlePair.computeKey(i, i + 1));
+                if (!Float.isNaN(value)) {
+                    assertThat(value, is(i / (float) nbPairs));
+                    found++;
+                }
+            }
+        }
+        writer.get();
+        executor.shutdown();
+
+        assertThat(found, is(nbPairs));
+        store.close();
+    }
+}
@@ -0,0 +1,116 @@
+package com.scienceminer.nerd.embeddings;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class QuantizerTest {
+
+    private static final int NB_WORDS = 25000;
+    private static final int DIMENSION = 8;
+
+    private File vectorFile;
+    private File quantizedFile;
+    private Quantizer quantizer;
+
+    @Before
+    public void setUp() throws Exception {
+        vectorFile = Files.createTempFile("word.embeddings", ".vec").toFile();
+        quantizedFile = Files.createTempFile("word.embeddings", ".quantized").toFile();
+        Random random = new Random(3);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(vectorFile), StandardCharsets.UTF_8)) {
+            writer.write(NB_WORDS + " " + DIMENSION + "\n");
+            for (int i = 0; i < NB_WORDS; i++) {
+                writer.write("wörd" + i);
+                for (int j = 0; j < DIMENSION; j++)
+                    writer.write(" " + String.format(Locale.ROOT, "%.5f", (float) (random.nextGaussian() * 0.3)));
+                writer.write(" \n");
+            }
+            writer.write("broken NaN 0.1 0.2 0.3 0.4 0.5 0.6 0.7\n");
+        }
+        quantizer = new Quantizer();
+        quantizer.setNbThreads(4);
+    }
+
+    @After
+    public void tearDown() {
+        vectorFile.delete();
+        quantizedFile.delete();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        Quantizer.Vectors vectors = quantizer.load(vectorFile.getPath(), true);
+        assertThat(vectors.size(), is(NB_WORDS));
+        assertThat(vectors.dimension, is(DIMENSION));
+        assertThat(vectors.words[NB_WORDS - 1], is("wörd" + (NB_WORDS - 1)));
+    }
+
+    @Test
+    public void testQuantizeSinglePass() throws Exception {
+        quantizer.quantizeSinglePass(vectorFile.getPath(), quantizedFile.getPath(), 5, true);
+
+        List<String> input = Files.readAllLines(vectorFile.toPath(), StandardCharsets.UTF_8);
+        List<String> output = Files.readAllLines(quantizedFile.toPath(), StandardCharsets.UTF_8);
+        assertThat(output.size(), is(NB_WORDS + 1));
+        assertThat(output.get(0), is(NB_WORDS + "\t" + DIMENSION + "\t5"));
+        for (int i = 1; i <= NB_WORDS; i++) {
+            String[] parts = input.get(i).split("\\s+");
+            StringBuilder expected = new StringBuilder(parts[0] + " ");
+            for (int j = 1; j < parts.length; j++) {
+                double value = Double.parseDouble(parts[j]);
+                expected.append((int) ((int) (Math.abs(value) * 5) * Math.signum(value))).append(" ");
+            }
+            assertThat(output.get(i), is(expected.toString()));
+        }
+    }
+
+    @Test
+    public void testQuantizeSinglePass_shouldParseValuesAsDouble() throws Exception {
+        // 0.7 * 10 is 7.000000000000001 as double, but 0.7f * 10 is 6.99999988
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(vectorFile), StandardCharsets.UTF_8)) {
+            writer.write("1 2\n");
+            writer.write("seven 0.7 -0.7\n");
+        }
+        quantizer.quantizeSinglePass(vectorFile.getPath(), quantizedFile.getPath(), 10, true);
+
+        List<String> output = Files.readAllLines(quantizedFile.toPath(), StandardCharsets.UTF_8);
+        assertThat(output.get(1), is("seven 7 -7 "));
+    }
+
+    @Test
+    public void testQuantizeArray_sameErrorWithAnyNumberOfThreads() throws Exception {
+        Quantizer.Vectors vectors = quantizer.load(vectorFile.getPath(), true);
+        double error = quantizer.quantizeArray(vectors, 7).error;
+
+        Quantizer single = new Quantizer();
+        single.setNbThreads(1);
+        assertThat(single.quantizeArray(vectors, 7).error, is(error));
+
+        double expected = 0;
+        for (int w = 0; w < vectors.size(); w++) {
+            double norm = 0, wordError = 0;
+            for (int i = 0; i < DIMENSION; i++)
+                norm += vectors.values[w][i] * vectors.values[w][i];
+            for (int i = 0; i < DIMENSION; i++) {
+                double v = vectors.values[w][i];
+                int qa = (int) ((int) (Math.abs(v) * 7) * Math.signum(v));
+                double dqa = (qa + 0.5 * Math.signum(qa)) / 7;
+                wordError += (v - dqa) * (v - dqa);
+            }
+            expected += Math.sqrt(wordError) / Math.sqrt(norm);
+        }
+        assertEquals(expected / vectors.size(), error, 1e-12);
+        assertTrue(quantizer.findQuantizer(vectors, 0.01) > 7);
+    }
+}
@@ -0,0 +1,127 @@
+package com.scienceminer.nerd.features;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import smile.data.Attribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureDatasetTest {
+
+    private static final String HEADER = "@RELATION [NERD_DATA]\n\n" +
+            "@attribute prob_c REAL\n" +
+            "@attribute is_subterm {false, true}\n" +
+            "@attribute wikidata_id STRING\n" +
+            "@attribute entity? REAL\n\n" +
+            "@data\n";
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("features", ".arff").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, HEADER)) {
+            writer.write("0.75,true,Q42,1.0");
+            writer.write("0.125,false,Q1,0.0");
+            writer.write("?,false,Q42,0.0");
+            assertThat(writer.size(), is(3));
+        }
+
+        FeatureDataset dataset = FeatureDataset.read(file);
+        assertThat(dataset.size(), is(3));
+
+        Attribute[] attributes = dataset.getAttributes();
+        assertThat(attributes.length, is(3));
+        assertThat(attributes[0].getType(), is(Attribute.Type.NUMERIC));
+        assertThat(attributes[1].getType(), is(Attribute.Type.NOMINAL));
+        assertThat(attributes[2].getType(), is(Attribute.Type.STRING));
+
+        double[][] x = dataset.getX();
+        assertThat(x[0][0], is(0.75));
+        assertThat(x[0][1], is(1.0));
+        assertThat(x[1][1], is(0.0));
+        // the same string value has the same index
+        assertThat(x[2][2], is(x[0][2]));
+        assertThat(x[1][2] == x[0][2], is(false));
+        assertTrue(Double.isNaN(x[2][0]));
+
+        assertThat(dataset.getY()[0], is(1.0));
+        assertThat(dataset.getY()[1], is(0.0));
+    }
+
+    @Test
+    public void testReadEmpty() throws Exception {
+        new FeatureDatasetWriter(file, HEADER).close();
+
+        FeatureDataset dataset = FeatureDataset.read(file);
+        assertThat(dataset.size(), is(0));
+        assertThat(dataset.getAttributes().length, is(3));
+    }
+
+    @Test
+    public void testWriteRead_quotedValue_shouldBeUnquoted() throws Exception {
+        GenericRankerFeatureVector feature = new GenericRankerFeatureVector();
+        feature.target_numeric = true;
+        feature.Add_prob_c = true;
+        feature.Add_wikidata_P31_entity_id = true;
+        feature.prob_c = 0.5;
+        feature.wikidata_P31_entity_id = "Q5";
+        feature.label = 1.0;
+        try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, feature.getArffHeader())) {
+            writer.write(feature.printVector());
+            writer.write("0.25,\"Q5\",0.0");
+            writer.write("0.25,'Q 6, \\'b\\'',0.0");
+        }
+
+        FeatureDataset dataset = FeatureDataset.read(file);
+        assertThat(dataset.size(), is(3));
+
+        Attribute p31 = dataset.getAttributes()[1];
+        double[][] x = dataset.getX();
+        assertThat(x[0][0], is(0.5));
+        assertThat(x[0][1], is(p31.valueOf("Q5")));
+        assertThat(x[1][1], is(x[0][1]));
+        assertThat(x[2][1], is(p31.valueOf("Q 6, 'b'")));
+        assertThat(x[2][1] == x[0][1], is(false));
+        assertThat(dataset.getY()[0], is(1.0));
+    }
+
+    @Test
+    public void testTokenize() throws Exception {
+        assertThat(FeatureDataset.tokenize("0.75, true ,'Q42',\"a\\\"b\",?"),
+            is(Arrays.asList("0.75", "true", "Q42", "a\"b", null)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadUnterminatedQuote() throws Exception {
+        try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, HEADER)) {
+            writer.write("0.75,true,'Q42,1.0");
+        }
+        FeatureDataset.read(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidVector() throws Exception {
+        try (FeatureDatasetWriter writer = new FeatureDatasetWriter(file, HEADER)) {
+            writer.write("0.75,true,1.0");
+        }
+        FeatureDataset.read(file);
+    }
+}
@@ -0,0 +1,70 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class EmbeddingsMatrixTest {
+
+    private File embeddingsFile;
+    private File matrixFile;
+    private EmbeddingsMatrix matrix;
+
+    @Before
+    public void setUp() throws Exception {
+        embeddingsFile = Files.createTempFile("embeddings", ".quantized.gz").toFile();
+        matrixFile = Files.createTempFile("embeddings", ".matrix").toFile();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(embeddingsFile)), StandardCharsets.UTF_8)) {
+            writer.write("5 4\n");
+            writer.write("paris 1 2 3 4\n");
+            writer.write("berlin -5 6 -7 8\n");
+            writer.write("köln 100 0 0 -100\n");
+            writer.write("paris 10 20 30 40\n");
+            writer.write("Q90 -32768 32767 0 1\n");
+        }
+        EmbeddingsMatrix.build(embeddingsFile, matrixFile);
+        matrix = new EmbeddingsMatrix(matrixFile);
+    }
+
+    @After
+    public void tearDown() {
+        matrix.close();
+        embeddingsFile.delete();
+        matrixFile.delete();
+    }
+
+    @Test
+    public void testGetVector() throws Exception {
+        assertThat(EmbeddingsMatrix.isValid(matrixFile), is(true));
+        assertThat(matrix.size(), is(4));
+        assertThat(matrix.getDimension(), is(4));
+
+        assertArrayEquals(new short[]{-5, 6, -7, 8}, matrix.getVector("berlin"));
+        assertArrayEquals(new short[]{100, 0, 0, -100}, matrix.getVector("köln"));
+        assertArrayEquals(new short[]{-32768, 32767, 0, 1}, matrix.getVector("Q90"));
+        assertNull(matrix.getVector("london"));
+        assertThat(matrix.getRow("koln"), is(-1));
+        assertThat(matrix.getRow(""), is(-1));
+    }
+
+    @Test
+    public void testGetVector_duplicatedKey_shouldKeepTheLastVector() throws Exception {
+        assertArrayEquals(new short[]{10, 20, 30, 40}, matrix.getVector("paris"));
+    }
+
+    @Test
+    public void testCopyTo() throws Exception {
+        short[] rows = new short[9];
+        matrix.copyTo(matrix.getRow("berlin"), rows, 1);
+        matrix.copyTo(matrix.getRow("Q90"), rows, 5);
+        assertArrayEquals(new short[]{0, -5, 6, -7, 8, -32768, 32767, 0, 1}, rows);
+    }
+}
@@ -0,0 +1,120 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class EntityEmbeddingsIndexTest {
+
+    private static final int NB_ENTITIES = 500;
+    // not a multiple of 4, the vectors are padded for the kernels
+    private static final int DIMENSION = 6;
+
+    private File embeddingsFile;
+    private File matrixFile;
+    private File indexFile;
+    private EmbeddingsMatrix matrix;
+    private EntityEmbeddingsIndex index;
+    private short[][] vectors;
+
+    @Before
+    public void setUp() throws Exception {
+        embeddingsFile = Files.createTempFile("entity.embeddings", ".quantized.gz").toFile();
+        matrixFile = Files.createTempFile("entity.embeddings", ".matrix").toFile();
+        indexFile = Files.createTempFile("entity.embeddings", ".index").toFile();
+        Random random = new Random(17);
+        vectors = new short[NB_ENTITIES][DIMENSION];
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(embeddingsFile)), StandardCharsets.UTF_8)) {
+            writer.write(NB_ENTITIES + " " + DIMENSION + "\n");
+            for (int i = 0; i < NB_ENTITIES; i++) {
+                writer.write("Q" + i);
+                for (int d = 0; d < DIMENSION; d++) {
+                    vectors[i][d] = (short) (random.nextInt(41) - 20);
+                    writer.write(" " + vectors[i][d]);
+                }
+                writer.write("\n");
+            }
+        }
+        EmbeddingsMatrix.build(embeddingsFile, matrixFile);
+        matrix = new EmbeddingsMatrix(matrixFile);
+        EntityEmbeddingsIndex.build(matrix, indexFile);
+        index = new EntityEmbeddingsIndex(indexFile, matrix);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+        matrix.close();
+        embeddingsFile.delete();
+        matrixFile.delete();
+        indexFile.delete();
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        assertThat(EntityEmbeddingsIndex.isValid(indexFile, matrix), is(true));
+        assertThat(index.size(), is(NB_ENTITIES));
+        assertThat(index.getNbLists(), is(22));
+    }
+
+    @Test
+    public void testSearch_allLists_shouldBeExact() throws Exception {
+        int[] query = {3, -1, 0, 7, -12, 2};
+        SimilarEntities similar = index.search(query, 10, index.getNbLists());
+
+        Integer[] order = new Integer[NB_ENTITIES];
+        double[] cosines = new double[NB_ENTITIES];
+        for (int i = 0; i < NB_ENTITIES; i++) {
+            order[i] = i;
+            cosines[i] = cosine(query, vectors[i]);
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(cosines[b], cosines[a]));
+
+        assertThat(similar.size(), is(10));
+        for (int rank = 0; rank < 10; rank++) {
+            assertThat(similar.getId(rank), is("Q" + order[rank]));
+            assertEquals(cosines[order[rank]], similar.getScore(rank), 1e-5);
+        }
+    }
+
+    @Test
+    public void testSearch_entity_shouldExcludeTheEntity() throws Exception {
+        SimilarEntities similar = index.search("Q42", 5, index.getNbLists());
+        assertThat(similar.size(), is(5));
+        for (int rank = 0; rank < similar.size(); rank++)
+            assertThat(similar.getId(rank).equals("Q42"), is(false));
+        assertNull(index.search("Q1000", 5, EntityEmbeddingsIndex.DEFAULT_PROBES));
+    }
+
+    @Test
+    public void testSearch_fewLists_shouldFindTheEntityVector() throws Exception {
+        // an entity vector is in the list of its closest centroid, the first one probed
+        for (int i = 0; i < NB_ENTITIES; i += 50) {
+            int[] query = new int[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++)
+                query[d] = vectors[i][d];
+            SimilarEntities similar = index.search(query, 1, 1);
+            assertEquals(1.0, similar.getScore(0), 1e-5);
+        }
+    }
+
+    private static double cosine(int[] query, short[] vector) {
+        double inner = 0.0, norm1 = 0.0, norm2 = 0.0;
+        for (int d = 0; d < DIMENSION; d++) {
+            inner += query[d] * vector[d];
+            norm1 += query[d] * query[d];
+            norm2 += vector[d] * vector[d];
+        }
+        return inner / Math.sqrt(norm1 * norm2);
+    }
+}
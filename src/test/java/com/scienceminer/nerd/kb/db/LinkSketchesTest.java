@@ -0,0 +1,74 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.*;
+
+public class LinkSketchesTest {
+
+    @Test
+    public void testSketch_identicalSets_shouldFullyMatch() throws Exception {
+        int[] links = {3, 17, 256, 1000, 424242};
+        short[] sketchA = new short[LinkSketches.SKETCH_SIZE];
+        short[] sketchB = new short[LinkSketches.SKETCH_SIZE];
+
+        LinkSketches.sketch(links, links.length, sketchA);
+        LinkSketches.sketch(links.clone(), links.length, sketchB);
+
+        assertThat(matches(sketchA, sketchB), is(LinkSketches.SKETCH_SIZE));
+        assertThat(LinkSketches.estimateJaccard(1.0), is(1.0));
+    }
+
+    @Test
+    public void testSketch_emptySet() throws Exception {
+        short[] sketch = new short[LinkSketches.SKETCH_SIZE];
+        sketch[0] = 42;
+
+        LinkSketches.sketch(new int[0], 0, sketch);
+
+        assertArrayEquals(new short[LinkSketches.SKETCH_SIZE], sketch);
+    }
+
+    @Test
+    public void testEstimateJaccard_randomSets_shouldBeClose() throws Exception {
+        Random random = new Random(31);
+        short[] sketchA = new short[LinkSketches.SKETCH_SIZE];
+        short[] sketchB = new short[LinkSketches.SKETCH_SIZE];
+        double[] jaccards = {0.0, 0.2, 0.5, 0.8};
+        for (double jaccard : jaccards) {
+            // |A| = |B| = 3000, shared = J * 6000 / (1 + J)
+            int shared = (int) Math.round(jaccard * 6000 / (1 + jaccard));
+            double error = 0.0;
+            int rounds = 50;
+            for (int round = 0; round < rounds; round++) {
+                int[] linksA = new int[3000];
+                int[] linksB = new int[3000];
+                int base = random.nextInt(1000000) * 10000;
+                for (int i = 0; i < 3000; i++) {
+                    linksA[i] = base + i;
+                    linksB[i] = (i < shared) ? base + i : base + 5000 + i;
+                }
+                LinkSketches.sketch(linksA, linksA.length, sketchA);
+                LinkSketches.sketch(linksB, linksB.length, sketchB);
+
+                double proportion = (double) matches(sketchA, sketchB) / LinkSketches.SKETCH_SIZE;
+                error += LinkSketches.estimateJaccard(proportion) - jaccard;
+            }
+            // the estimator is unbiased, the average error vanishes
+            assertThat(error / rounds, closeTo(0.0, 0.03));
+        }
+    }
+
+    private static int matches(short[] sketchA, short[] sketchB) {
+        int matches = 0;
+        for (int i = 0; i < sketchA.length; i++) {
+            if (sketchA[i] == sketchB[i])
+                matches++;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,82 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class PostingListTest {
+
+    @Test
+    public void testRoundTrip_shouldSortAndDeduplicate() throws Exception {
+        PostingList list = PostingList.of(Arrays.asList(42, 7, 1000000, 7, 128, 127));
+
+        assertThat(list.size(), is(5));
+        assertArrayEquals(new int[]{7, 42, 127, 128, 1000000}, list.toArray());
+        assertThat(list.toList(), is(Arrays.asList(7, 42, 127, 128, 1000000)));
+    }
+
+    @Test
+    public void testWrap_shouldDecodeStoredBytes() throws Exception {
+        PostingList list = PostingList.of(new int[]{3, 300, 30000, 3000000, Integer.MAX_VALUE}, 5);
+
+        PostingList wrapped = PostingList.wrap(list.getBytes());
+
+        assertThat(wrapped.size(), is(5));
+        assertArrayEquals(list.toArray(), wrapped.toArray());
+        assertThat(wrapped, is(list));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertTrue(PostingList.wrap(PostingList.EMPTY.getBytes()).isEmpty());
+        assertTrue(PostingList.of(new int[0], 0).isEmpty());
+        assertFalse(PostingList.EMPTY.contains(0));
+        assertThat(PostingList.intersectionSize(PostingList.EMPTY, PostingList.of(Arrays.asList(1, 2))), is(0));
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        PostingList list = PostingList.of(Arrays.asList(5, 10, 15));
+
+        assertTrue(list.contains(5));
+        assertTrue(list.contains(15));
+        assertFalse(list.contains(4));
+        assertFalse(list.contains(11));
+        assertFalse(list.contains(16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSorted_unsortedInput_shouldFail() throws Exception {
+        PostingList.fromSorted(new int[]{3, 2}, 2);
+    }
+
+    @Test
+    public void testIntersectionSize_randomLists_shouldMatchSetIntersection() throws Exception {
+        Random random = new Random(26);
+        for (int round = 0; round < 200; round++) {
+            TreeSet<Integer> setA = new TreeSet<>();
+            TreeSet<Integer> setB = new TreeSet<>();
+            int range = 1 + random.nextInt(100000);
+            int sizeA = random.nextInt(2000);
+            int sizeB = random.nextInt(50);
+            for (int i = 0; i < sizeA; i++)
+                setA.add(random.nextInt(range));
+            for (int i = 0; i < sizeB; i++)
+                setB.add(random.nextInt(range));
+
+            PostingList listA = PostingList.of(setA);
+            PostingList listB = PostingList.of(setB);
+
+            TreeSet<Integer> expected = new TreeSet<>(setA);
+            expected.retainAll(setB);
+
+            assertThat(PostingList.intersectionSize(listA, listB), is(expected.size()));
+            assertThat(PostingList.intersectionSize(listB, listA), is(expected.size()));
+        }
+    }
+}
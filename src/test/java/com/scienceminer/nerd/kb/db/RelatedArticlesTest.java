@@ -0,0 +1,45 @@
+package com.scienceminer.nerd.kb.db;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class RelatedArticlesTest {
+
+    @Test
+    public void testTop_shouldKeepHighestPositiveScores() throws Exception {
+        int[] ids = {10, 20, 30, 40, 50, 60};
+        double[] scores = {0.2, 0.0, 0.9, 0.5, 0.9, 0.7};
+
+        RelatedArticles related = RelatedArticles.top(ids, scores, 4);
+
+        assertThat(related.size(), is(4));
+        // equal scores by increasing id
+        assertThat(related.getId(0), is(30));
+        assertThat(related.getId(1), is(50));
+        assertThat(related.getId(2), is(60));
+        assertThat(related.getId(3), is(40));
+        assertThat(related.getScore(0), is(0.9f));
+    }
+
+    @Test
+    public void testTop_withoutPositiveScore_shouldBeEmpty() throws Exception {
+        RelatedArticles related = RelatedArticles.top(new int[]{1, 2}, new double[]{0.0, 0.0}, 10);
+
+        assertThat(related.size(), is(0));
+        assertThat(Float.isNaN(related.getScoreOf(1)), is(true));
+    }
+
+    @Test
+    public void testWrap_shouldRestoreArticlesAndScores() throws Exception {
+        RelatedArticles related = new RelatedArticles(new int[]{7, 3, 12}, new float[]{0.8f, 0.4f, 0.1f});
+
+        RelatedArticles restored = RelatedArticles.wrap(related.getBytes());
+
+        assertThat(restored.size(), is(3));
+        assertThat(restored.getId(1), is(3));
+        assertThat(restored.getScoreOf(12), is(0.1f));
+        assertThat(Float.isNaN(restored.getScoreOf(5)), is(true));
+    }
+}
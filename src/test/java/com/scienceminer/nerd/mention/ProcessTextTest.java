@@ -711,6 +711,38 @@ public class ProcessTextTest {
         assertThat(mentions.size(), is(103));
     }
 
+    @Test
+    public void testRecognise_shouldMergeMentionsInTheOrderOfTheMentionTypes() throws Exception {
+        List<ProcessText.MentionMethod> mentionTypes =
+                Arrays.asList(ProcessText.MentionMethod.ner, ProcessText.MentionMethod.wikipedia);
+        long count = ProcessText.getRecogniserTimer(ProcessText.MentionMethod.wikipedia).getCount();
+
+        List<Mention> mentions = ProcessText.recognise(mentionTypes, mentionType -> {
+            try {
+                // the first recogniser is the slowest
+                Thread.sleep(mentionType == ProcessText.MentionMethod.ner ? 50 : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Arrays.asList(new Mention(mentionType.getName() + " 1", mentionType),
+                    new Mention(mentionType.getName() + " 2", mentionType));
+        });
+
+        assertThat(mentions.stream().map(Mention::getRawName).collect(Collectors.toList()),
+                is(Arrays.asList("ner 1", "ner 2", "wikipedia 1", "wikipedia 2")));
+        assertThat(ProcessText.getRecogniserTimer(ProcessText.MentionMethod.wikipedia).getCount(), is(count + 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRecognise_shouldRethrowRecogniserException() throws Exception {
+        ProcessText.recognise(Arrays.asList(ProcessText.MentionMethod.ner, ProcessText.MentionMethod.wikipedia),
+                mentionType -> {
+                    if (mentionType == ProcessText.MentionMethod.wikipedia)
+                        throw new IllegalStateException("recogniser failure");
+                    return new ArrayList<>();
+                });
+    }
+
     @Test
     public void testFrenchStopWord() throws Exception {
         String input = "l’avocat";
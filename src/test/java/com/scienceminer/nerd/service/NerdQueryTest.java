@@ -217,5 +217,14 @@ public class NerdQueryTest {
         assertThat(nerdQuery.getMinRankerScore(), is(0.0123));
     }
 
+    @Test
+    public void testDeserializeQuery_parallelSegmentation() throws Exception {
+        assertThat(target.fromJson("{'text': 'bla bla'}").getParallelSegmentation(), is(false));
+
+        NerdQuery nerdQuery = target.fromJson("{'text': 'bla bla', 'parallelSegmentation': true}");
+        assertThat(nerdQuery.getParallelSegmentation(), is(true));
+        assertThat(new NerdQuery(nerdQuery).getParallelSegmentation(), is(true));
+    }
+
 
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.scienceminer.nerd.service;
 import com.scienceminer.nerd.disambiguation.NerdEntity;
 import com.scienceminer.nerd.mention.Mention;
 import com.scienceminer.nerd.mention.ProcessText;
+import org.grobid.core.utilities.OffsetPosition;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -11,6 +12,7 @@ import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.assertThat;
 
@@ -244,5 +246,45 @@ public class NerdRestProcessQueryTest {
         assertThat(query.getEntities().get(0).getSource(), is(nullValue()));
     }
 
+    @Test
+    public void testDisambiguateSegments_shouldShiftOffsetsAndReinforceInSegmentOrder() throws Exception {
+        List<OffsetPosition> segments = new ArrayList<>();
+        List<NerdQuery> segmentQueries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            segments.add(new OffsetPosition(i * 30, (i + 1) * 30));
+            segmentQueries.add(new NerdQuery());
+        }
+
+        List<NerdEntity> entities = NerdRestProcessQuery.disambiguateSegments(segmentQueries, segments,
+            rank -> {
+                // the first segments are the slowest to be disambiguated
+                Thread.sleep(20 - rank);
+                List<NerdEntity> localEntities = new ArrayList<>();
+                localEntities.add(segmentEntity("Paris", 2, 7, 22989, 0.5));
+                // the first sense of Mercury in the document is the planet
+                localEntities.add(segmentEntity("Mercury", 10, 17, rank == 0 ? 19694 : 18617, 0.5));
+                return localEntities;
+            });
+
+        assertThat(entities, hasSize(40));
+        for (int rank = 0; rank < 20; rank++) {
+            NerdEntity paris = entities.get(2 * rank);
+            assertThat(paris.getRawName(), is("Paris"));
+            assertThat(paris.getOffsetStart(), is(rank * 30 + 2));
+            assertThat(paris.getOffsetEnd(), is(rank * 30 + 7));
+            assertThat(paris.getNerdScore(), closeTo(Math.min(1.0, 0.5 + 0.02 * rank), 1e-9));
+
+            NerdEntity mercury = entities.get(2 * rank + 1);
+            assertThat(mercury.getOffsetStart(), is(rank * 30 + 10));
+            assertThat(mercury.getNerdScore(), is(0.5));
+            assertThat(segmentQueries.get(rank).getEntities().get(0), is(paris));
+        }
+    }
 
-}
\ No newline at end of file
+    private static NerdEntity segmentEntity(String rawName, int start, int end, int pageId, double score) {
+        NerdEntity entity = new NerdEntity(rawName, start, end);
+        entity.setWikipediaExternalRef(pageId);
+        entity.setNerdScore(score);
+        return entity;
+    }
+}
@@ -0,0 +1,122 @@
+package com.scienceminer.nerd.utilities;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class OrderedParallelProcessorTest {
+
+    @Test
+    public void testProcess_shouldConsumeResultsInOrder() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            items.add(i);
+        Random random = new Random(38);
+        List<Integer> delays = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++)
+            delays.add(random.nextInt(3));
+
+        for (int nbThreads : new int[]{1, 4}) {
+            List<Integer> ranks = new ArrayList<>();
+            List<String> results = new ArrayList<>();
+            OrderedParallelProcessor.process(items, nbThreads,
+                item -> {
+                    Thread.sleep(delays.get(item));
+                    return "item " + item;
+                },
+                (rank, item, result) -> {
+                    ranks.add(rank);
+                    results.add(result);
+                });
+
+            assertThat(results.size(), is(items.size()));
+            for (int i = 0; i < items.size(); i++) {
+                assertThat(ranks.get(i), is(i));
+                assertThat(results.get(i), is("item " + i));
+            }
+        }
+    }
+
+    @Test
+    public void testProcess_iterator_shouldReadItemsInTheCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        Iterator<Integer> items = new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                assertThat(Thread.currentThread(), is(caller));
+                return next < 100;
+            }
+
+            @Override
+            public Integer next() {
+                assertThat(Thread.currentThread(), is(caller));
+                return next++;
+            }
+        };
+        List<Integer> results = new ArrayList<>();
+        OrderedParallelProcessor.process(items, 4,
+            item -> item * item,
+            (rank, item, result) -> {
+                assertThat(item, is(rank));
+                results.add(result);
+            });
+
+        assertThat(results.size(), is(100));
+        for (int i = 0; i < results.size(); i++)
+            assertThat(results.get(i), is(i * i));
+    }
+
+    @Test
+    public void testProcess_sharedCallerRunsPool_shouldConsumeResultsInOrder() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            items.add(i);
+        // a single worker and no queue, most of the items are processed by the caller
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (int run = 0; run < 2; run++) {
+                List<String> results = new ArrayList<>();
+                OrderedParallelProcessor.process(items, executor, 4,
+                    item -> {
+                        Thread.sleep(item % 3);
+                        return "item " + item;
+                    },
+                    (rank, item, result) -> results.add(result));
+
+                assertThat(results.size(), is(items.size()));
+                for (int i = 0; i < items.size(); i++)
+                    assertThat(results.get(i), is("item " + i));
+            }
+            assertThat(executor.isShutdown(), is(false));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testProcess_shouldRethrowWorkerException() throws Exception {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            items.add(i);
+        OrderedParallelProcessor.process(items, 4,
+            item -> {
+                if (item == 7)
+                    throw new IOException("article " + item);
+                return item;
+            },
+            (rank, item, result) -> { });
+    }
+}
@@ -0,0 +1,66 @@
+package com.scienceminer.nerd.utilities;
+
+import com.scienceminer.nerd.mention.ProcessText;
+import org.grobid.core.utilities.UnicodeUtil;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TokenNormaliserTest {
+
+    @Test
+    public void testNormalise() throws Exception {
+        assertThat(TokenNormaliser.normalise("Paris"), is("paris"));
+        assertThat(TokenNormaliser.normalise("1984"), is("0000"));
+        assertThat(TokenNormaliser.normalise("U.S.A."), is("usa"));
+        assertThat(TokenNormaliser.normalise("ΟΔΥΣΣΕΥΣ"), is("οδυσσευς"));
+        assertThat(TokenNormaliser.normalise("Köln"), is("köln"));
+        assertThat(TokenNormaliser.normalise("\"state-of-the-art\""), is("stateoftheart"));
+    }
+
+    @Test
+    public void testNormalise_ignoredTokens() throws Exception {
+        assertThat(TokenNormaliser.normalise(null), is(nullValue()));
+        assertThat(TokenNormaliser.normalise(""), is(nullValue()));
+        assertThat(TokenNormaliser.normalise(" \t"), is(nullValue()));
+        assertThat(TokenNormaliser.normalise(","), is(nullValue()));
+        assertThat(TokenNormaliser.normalise("..."), is(nullValue()));
+        assertThat(TokenNormaliser.normalise("«»"), is(nullValue()));
+    }
+
+    @Test
+    public void testNormalise_sameAsRegularExpressions() throws Exception {
+        String alphabet = "aZ09 \t.,;-_()'\"«»–—…éÉßΣσÆİı你好。、";
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            int length = 1 + random.nextInt(8);
+            StringBuilder token = new StringBuilder();
+            for (int j = 0; j < length; j++)
+                token.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            String expected = normaliseWithRegularExpressions(token.toString());
+            assertThat(token.toString(), TokenNormaliser.normalise(token.toString()), is(expected));
+        }
+    }
+
+    /**
+     * The normalisation of the embeddings words with regular expressions
+     */
+    private static String normaliseWithRegularExpressions(String word) {
+        if (word.trim().length() == 0)
+            return null;
+        if (ProcessText.delimiters.indexOf(word) != -1)
+            return null;
+        word = UnicodeUtil.normaliseText(word);
+        word = word.replaceAll("\\p{P}", "");
+        word = word.replaceAll("\\d", "0");
+        word = word.toLowerCase();
+        word = word.replace("\t", "");
+        if (word.trim().length() == 0)
+            return null;
+        return word;
+    }
+}
@@ -0,0 +1,91 @@
+package com.scienceminer.nerd.utilities;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class UtilitiesTest {
+
+    @Test
+    public void testInner_quantized_shouldBeExact() throws Exception {
+        Random random = new Random(5);
+        for (int k = 0; k < 100; k++) {
+            int size = 4 * (1 + random.nextInt(100));
+            short[] v1 = randomVector(random, size + 3);
+            short[] v2 = randomVector(random, size + 5);
+            int[] centroid = new int[size + 2];
+            for (int i = 0; i < centroid.length; i++)
+                centroid[i] = random.nextInt();
+
+            long expected = 0;
+            long expectedCentroid = 0;
+            for (int i = 0; i < size; i++) {
+                expected += (long) v1[3 + i] * v2[5 + i];
+                expectedCentroid += (long) centroid[2 + i] * v2[5 + i];
+            }
+            assertThat(Utilities.inner(size, v1, 3, v2, 5), is(expected));
+            assertThat(Utilities.inner(size, centroid, 2, v2, 5), is(expectedCentroid));
+        }
+    }
+
+    @Test
+    public void testInner_extremeValues() throws Exception {
+        short[] v = new short[300];
+        Arrays.fill(v, Short.MIN_VALUE);
+        // 300 * 2^30 overflows 32 bits
+        assertThat(Utilities.inner(300, v, 0, v, 0), is(300L << 30));
+    }
+
+    @Test
+    public void testInner_sameAsFloatKernel() throws Exception {
+        // with the usual quantization factors, the partial sums are exact as float too
+        Random random = new Random(9);
+        for (int k = 0; k < 100; k++) {
+            short[] v1 = new short[300];
+            short[] v2 = new short[300];
+            float[] f1 = new float[300];
+            float[] f2 = new float[300];
+            for (int i = 0; i < 300; i++) {
+                v1[i] = (short) Math.round(random.nextGaussian() * 5);
+                v2[i] = (short) Math.round(random.nextGaussian() * 5);
+                f1[i] = v1[i];
+                f2[i] = v2[i];
+            }
+            assertThat((float) Utilities.inner(300, v1, 0, v2, 0), is(Utilities.inner(300, f1, 0, f2, 0)));
+        }
+    }
+
+    @Test
+    public void testInner_multiRows() throws Exception {
+        Random random = new Random(13);
+        for (int nbRows = 0; nbRows < 6; nbRows++) {
+            int size = 8;
+            short[] v = randomVector(random, size + 1);
+            int[] centroid = new int[size];
+            for (int i = 0; i < size; i++)
+                centroid[i] = random.nextInt(1 << 20) - (1 << 19);
+            short[] rows = randomVector(random, 2 + nbRows * size);
+            long[] results = new long[nbRows];
+            long[] centroidResults = new long[nbRows];
+
+            Utilities.inner(size, v, 1, rows, 2, nbRows, results);
+            Utilities.inner(size, centroid, 0, rows, 2, nbRows, centroidResults);
+
+            for (int r = 0; r < nbRows; r++) {
+                assertThat(results[r], is(Utilities.inner(size, v, 1, rows, 2 + r * size)));
+                assertThat(centroidResults[r], is(Utilities.inner(size, centroid, 0, rows, 2 + r * size)));
+            }
+        }
+    }
+
+    private static short[] randomVector(Random random, int size) {
+        short[] vector = new short[size];
+        for (int i = 0; i < size; i++)
+            vector[i] = (short) random.nextInt(1 << 16);
+        return vector;
+    }
+}